@@ -3,6 +3,7 @@ package com.example.microservicesjavaapp;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 /**
  * Main entry point for the Microservices Java Application.
@@ -16,9 +17,11 @@ import org.springframework.scheduling.annotation.EnableAsync;
  *
  * The @EnableAsync annotation enables Spring's asynchronous method execution capability,
  * which will be crucial for processing orders asynchronously as per the requirements.
+ * The @EnableScheduling annotation enables background jobs such as the abandoned-cart reaper.
  */
 @SpringBootApplication
 @EnableAsync // Enables asynchronous method execution
+@EnableScheduling // Enables scheduled background jobs
 public class MicroservicesJavaAppApplication {
 
     /**
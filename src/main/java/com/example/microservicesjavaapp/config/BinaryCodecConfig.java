@@ -0,0 +1,118 @@
+package com.example.microservicesjavaapp.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.reactivestreams.Publisher;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.web.codec.CodecCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.cbor.Jackson2CborDecoder;
+import org.springframework.http.codec.cbor.Jackson2CborEncoder;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+import org.springframework.http.codec.json.Jackson2SmileDecoder;
+import org.springframework.http.codec.json.Jackson2SmileEncoder;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.util.MimeType;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+
+/**
+ * Configuration class for the binary encodings of the cart API.
+ * Clients that send 'Accept: application/cbor' or 'Accept: application/x-jackson-smile' (and the matching
+ * Content-Type on request bodies) get CBOR or Smile instead of JSON text; JSON stays the default.
+ * The binary mappers are built from Spring Boot's Jackson2ObjectMapperBuilder, so they carry the same
+ * modules, serializers and settings as the JSON ObjectMapper and write the same fields for every DTO.
+ */
+@Configuration
+public class BinaryCodecConfig {
+
+    public static final MediaType APPLICATION_SMILE = MediaType.parseMediaType("application/x-jackson-smile");
+
+    /**
+     * CBOR message converter for the servlet stack. It replaces Spring MVC's default one, which would be
+     * built without the application's Jackson settings.
+     *
+     * @param builder Spring Boot's Jackson2ObjectMapperBuilder (a fresh instance per injection point).
+     * @return The CBOR HttpMessageConverter.
+     */
+    @Bean
+    @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET) // WebFlux gets codecs instead
+    public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2CborHttpMessageConverter(cborMapper(builder));
+    }
+
+    /**
+     * Smile message converter for the servlet stack, replacing Spring MVC's default one.
+     *
+     * @param builder Spring Boot's Jackson2ObjectMapperBuilder (a fresh instance per injection point).
+     * @return The Smile HttpMessageConverter.
+     */
+    @Bean
+    @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET) // WebFlux gets codecs instead
+    public MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2SmileHttpMessageConverter(smileMapper(builder));
+    }
+
+    /**
+     * CBOR and Smile encoders and decoders for the reactive stack.
+     * Custom codecs are consulted before the default ones, so the JSON encoder is registered again ahead of
+     * CBOR: a request without an Accept header keeps getting JSON, as on the servlet stack.
+     *
+     * @param objectMapper Spring Boot's JSON ObjectMapper.
+     * @param builders Provider of Spring Boot's Jackson2ObjectMapperBuilder instances.
+     * @return A CodecCustomizer applied by WebFlux and WebTestClient.
+     */
+    @Bean
+    @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE) // Only when the reactive stack is selected
+    public CodecCustomizer binaryCodecCustomizer(ObjectMapper objectMapper, ObjectProvider<Jackson2ObjectMapperBuilder> builders) {
+        ObjectMapper cborMapper = cborMapper(builders.getObject());
+        ObjectMapper smileMapper = smileMapper(builders.getObject());
+        return configurer -> {
+            configurer.customCodecs().registerWithDefaultConfig(new Jackson2JsonEncoder(objectMapper));
+            // Mime types must be given explicitly: without them the codecs would claim JSON
+            configurer.customCodecs().registerWithDefaultConfig(new SingleValueCborEncoder(cborMapper));
+            configurer.customCodecs().registerWithDefaultConfig(new Jackson2CborDecoder(cborMapper, MediaType.APPLICATION_CBOR));
+            configurer.defaultCodecs().jackson2SmileEncoder(new Jackson2SmileEncoder(smileMapper, APPLICATION_SMILE));
+            configurer.defaultCodecs().jackson2SmileDecoder(new Jackson2SmileDecoder(smileMapper, APPLICATION_SMILE));
+        };
+    }
+
+    private static ObjectMapper cborMapper(Jackson2ObjectMapperBuilder builder) {
+        return builder.factory(new CBORFactory()).build();
+    }
+
+    private static ObjectMapper smileMapper(Jackson2ObjectMapperBuilder builder) {
+        return builder.factory(new SmileFactory()).build();
+    }
+
+    /**
+     * Jackson2CborEncoder only implements encodeValue() and rejects encode(); WebFlux calls encode() for
+     * every response body. The cart API only returns single values, so a Mono is encoded in one go.
+     */
+    private static final class SingleValueCborEncoder extends Jackson2CborEncoder {
+
+        private SingleValueCborEncoder(ObjectMapper mapper) {
+            super(mapper, MediaType.APPLICATION_CBOR);
+        }
+
+        @Override
+        public Flux<DataBuffer> encode(Publisher<?> inputStream, DataBufferFactory bufferFactory,
+                                       ResolvableType elementType, MimeType mimeType, Map<String, Object> hints) {
+            if (!(inputStream instanceof Mono<?> value)) {
+                return super.encode(inputStream, bufferFactory, elementType, mimeType, hints); // Streams stay unsupported
+            }
+            return value.map(element -> encodeValue(element, bufferFactory, elementType, mimeType, hints)).flux();
+        }
+    }
+}
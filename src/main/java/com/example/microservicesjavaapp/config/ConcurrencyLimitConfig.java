@@ -0,0 +1,103 @@
+package com.example.microservicesjavaapp.config;
+
+import com.example.microservicesjavaapp.exception.ReactiveExceptionHandler;
+import com.example.microservicesjavaapp.service.ConcurrencyLimiter;
+import com.example.microservicesjavaapp.service.ConcurrencyLimiter.Permit;
+import com.example.microservicesjavaapp.service.ConcurrencyLimiter.Priority;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Configuration class for the adaptive concurrency limit of the cart endpoints (see ConcurrencyLimiter).
+ * Both stacks take a slot once the request is authenticated and rate limited, and give it back when the
+ * response is complete. A request without a slot gets 503 Service Unavailable with a Retry-After header
+ * and the usual error body. Disabled with 'app.concurrency-limit.enabled=false'.
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.concurrency-limit.enabled", havingValue = "true", matchIfMissing = true)
+public class ConcurrencyLimitConfig {
+
+    private static final String OVERLOADED = "Server busy, please retry shortly";
+    private static final String PERMIT = ConcurrencyLimitConfig.class.getName() + ".PERMIT";
+
+    /**
+     * Registers the concurrency limit interceptor on the servlet stack; the 503 is rendered by
+     * GlobalExceptionHandler.
+     *
+     * @param concurrencyLimiter The adaptive concurrency limiter.
+     * @return A WebMvcConfigurer adding the interceptor.
+     */
+    @Bean
+    @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET) // The WebFilter below covers the reactive stack
+    public WebMvcConfigurer concurrencyLimitWebMvcConfigurer(ConcurrencyLimiter concurrencyLimiter) {
+        HandlerInterceptor interceptor = new HandlerInterceptor() {
+            @Override
+            public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+                Priority priority = Priority.of(request.getMethod(), request.getServletPath());
+                if (priority == null) {
+                    return true;
+                }
+                Permit permit = concurrencyLimiter.tryAcquire(priority);
+                if (permit == null) {
+                    response.setHeader("Retry-After", "1");
+                    throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, OVERLOADED);
+                }
+                request.setAttribute(PERMIT, permit);
+                return true;
+            }
+
+            @Override
+            public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+                if (request.getAttribute(PERMIT) instanceof Permit permit) {
+                    request.removeAttribute(PERMIT);
+                    permit.release();
+                }
+            }
+        };
+        return new WebMvcConfigurer() {
+            @Override
+            public void addInterceptors(InterceptorRegistry registry) {
+                registry.addInterceptor(interceptor).addPathPatterns("/api/carts", "/api/carts/**");
+            }
+        };
+    }
+
+    /**
+     * Concurrency limit filter for the reactive stack, running after Spring Security and the rate limit.
+     *
+     * @param concurrencyLimiter The adaptive concurrency limiter.
+     * @param objectMapper Spring Boot's JSON ObjectMapper.
+     * @return A WebFilter applying the concurrency limit.
+     */
+    @Bean
+    @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE) // The interceptor above covers the servlet stack
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    public WebFilter concurrencyLimitWebFilter(ConcurrencyLimiter concurrencyLimiter, ObjectMapper objectMapper) {
+        return (exchange, chain) -> {
+            String path = exchange.getRequest().getPath().pathWithinApplication().value();
+            Priority priority = Priority.of(exchange.getRequest().getMethod().name(), path);
+            if (priority == null) {
+                return chain.filter(exchange);
+            }
+            Permit permit = concurrencyLimiter.tryAcquire(priority);
+            if (permit == null) {
+                exchange.getResponse().getHeaders().set("Retry-After", "1");
+                return ReactiveExceptionHandler.writeError(exchange, objectMapper, HttpStatus.SERVICE_UNAVAILABLE, OVERLOADED);
+            }
+            return chain.filter(exchange).doFinally(signal -> permit.release());
+        };
+    }
+}
@@ -0,0 +1,140 @@
+package com.example.microservicesjavaapp.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Configuration class for the connection hold time of the API: how long each /api request on the
+ * servlet stack keeps JDBC connections out of the pool, from getConnection() until close(), summed over
+ * the connections it borrowed. Published per endpoint as the 'http.server.requests.connection.hold'
+ * timer (tags 'method' and 'uri'), next to Spring's 'http.server.requests'; the closer the two, the more
+ * of a request's time the pool is paying for. Connections borrowed outside a request (background jobs,
+ * startup) are not timed.
+ * Disabled with 'app.connection-hold.enabled=false'.
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.connection-hold.enabled", havingValue = "true", matchIfMissing = true)
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET) // Hold times are bound to the request thread
+public class ConnectionHoldConfig {
+
+    private static final ThreadLocal<long[]> HELD_NANOS = new ThreadLocal<>();
+
+    /**
+     * Wraps the application's DataSource, so the connections it hands out report how long they were held.
+     *
+     * @return A BeanPostProcessor wrapping every DataSource bean.
+     */
+    @Bean
+    public static BeanPostProcessor connectionHoldBeanPostProcessor() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                return bean instanceof DataSource dataSource && !(bean instanceof HoldTimingDataSource)
+                        ? new HoldTimingDataSource(dataSource) : bean;
+            }
+        };
+    }
+
+    /**
+     * Starts timing before the handler of every /api request runs and records the total when the request
+     * is complete, response included.
+     *
+     * @param meterRegistry The registry the timer is published to.
+     * @return A WebMvcConfigurer adding the timing interceptor.
+     */
+    @Bean
+    public WebMvcConfigurer connectionHoldWebMvcConfigurer(MeterRegistry meterRegistry) {
+        HandlerInterceptor interceptor = new HandlerInterceptor() {
+            @Override
+            public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+                HELD_NANOS.set(new long[1]);
+                return true;
+            }
+
+            @Override
+            public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+                long[] held = HELD_NANOS.get();
+                HELD_NANOS.remove();
+                Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+                if (held == null || pattern == null) {
+                    return;
+                }
+                Timer.builder("http.server.requests.connection.hold")
+                        .description("Time a request held JDBC connections, summed over the connections it borrowed")
+                        .tag("method", request.getMethod())
+                        .tag("uri", pattern.toString())
+                        .register(meterRegistry)
+                        .record(held[0], TimeUnit.NANOSECONDS);
+            }
+        };
+        return new WebMvcConfigurer() {
+            @Override
+            public void addInterceptors(InterceptorRegistry registry) {
+                registry.addInterceptor(interceptor).addPathPatterns("/api/**")
+                        .order(Ordered.HIGHEST_PRECEDENCE); // Completes after every other interceptor has let go of its connection
+            }
+        };
+    }
+
+    /**
+     * A DataSource whose connections add the time they were held to the request borrowing them.
+     * Spring Boot's pool metrics unwrap it to reach the pool.
+     */
+    private static final class HoldTimingDataSource extends DelegatingDataSource {
+
+        private HoldTimingDataSource(DataSource targetDataSource) {
+            super(targetDataSource);
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            return timed(super.getConnection());
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            return timed(super.getConnection(username, password));
+        }
+
+        private static Connection timed(Connection connection) {
+            long[] held = HELD_NANOS.get();
+            if (held == null) {
+                return connection;
+            }
+            long borrowed = System.nanoTime();
+            boolean[] closed = new boolean[1];
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                    (proxy, method, args) -> {
+                        if (method.getName().equals("close") && !closed[0]) {
+                            closed[0] = true;
+                            held[0] += System.nanoTime() - borrowed;
+                        }
+                        try {
+                            return method.invoke(connection, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getTargetException();
+                        }
+                    });
+        }
+    }
+}
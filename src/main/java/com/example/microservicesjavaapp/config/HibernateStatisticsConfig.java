@@ -0,0 +1,125 @@
+package com.example.microservicesjavaapp.config;
+
+import com.example.microservicesjavaapp.service.QueryStatistics;
+import com.example.microservicesjavaapp.service.QueryStatistics.Counter;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.stat.internal.StatisticsImpl;
+import org.hibernate.stat.spi.StatisticsFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Configuration class for the Hibernate statistics of the API (see QueryStatistics).
+ * Turns Hibernate's statistics on, with a statistics implementation that also counts statements,
+ * entity and collection loads and flushes for the request running on the current thread, and has the
+ * servlet stack attribute those counts to the endpoint that handled the request. The reactive stack
+ * serves its requests through R2DBC, which Hibernate does not see.
+ * Disabled with 'app.hibernate-stats.enabled=false'.
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.hibernate-stats.enabled", havingValue = "true", matchIfMissing = true)
+public class HibernateStatisticsConfig {
+
+    /**
+     * Enables Hibernate's statistics and plugs in the per-request counting implementation.
+     *
+     * @return A HibernatePropertiesCustomizer applied to the EntityManagerFactory.
+     */
+    @Bean
+    public HibernatePropertiesCustomizer hibernateStatisticsCustomizer() {
+        return properties -> {
+            properties.put(AvailableSettings.GENERATE_STATISTICS, true);
+            properties.put(AvailableSettings.STATS_BUILDER, (StatisticsFactory) RequestCountingStatistics::new);
+        };
+    }
+
+    /**
+     * Counts the Hibernate work of every /api request on the servlet stack, from before the handler runs
+     * until the response is written, so lazy loads made while serializing are included.
+     *
+     * @param queryStatistics The per-endpoint statistics.
+     * @return A WebMvcConfigurer adding the counting interceptor.
+     */
+    @Bean
+    @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET) // Reactive requests never reach Hibernate
+    public WebMvcConfigurer hibernateStatisticsWebMvcConfigurer(QueryStatistics queryStatistics) {
+        HandlerInterceptor interceptor = new HandlerInterceptor() {
+            @Override
+            public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+                queryStatistics.begin();
+                return true;
+            }
+
+            @Override
+            public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+                Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+                queryStatistics.end(pattern != null ? request.getMethod() + " " + pattern : null);
+            }
+        };
+        return new WebMvcConfigurer() {
+            @Override
+            public void addInterceptors(InterceptorRegistry registry) {
+                registry.addInterceptor(interceptor).addPathPatterns("/api/**")
+                        .order(Ordered.HIGHEST_PRECEDENCE); // Around the rate and concurrency limits too
+            }
+        };
+    }
+
+    /**
+     * Hibernate's statistics, also counting for QueryStatistics. Hibernate only calls these methods while
+     * statistics are enabled, so the counts depend on 'hibernate.generate_statistics'.
+     */
+    private static final class RequestCountingStatistics extends StatisticsImpl {
+
+        private RequestCountingStatistics(SessionFactoryImplementor sessionFactory) {
+            super(sessionFactory);
+        }
+
+        @Override
+        public void prepareStatement() {
+            super.prepareStatement();
+            QueryStatistics.count(Counter.STATEMENTS);
+        }
+
+        @Override
+        public void loadEntity(String entityName) {
+            super.loadEntity(entityName);
+            QueryStatistics.count(Counter.ENTITY_LOADS);
+        }
+
+        @Override
+        public void fetchEntity(String entityName) {
+            super.fetchEntity(entityName);
+            QueryStatistics.count(Counter.ENTITY_FETCHES);
+        }
+
+        @Override
+        public void loadCollection(String role) {
+            super.loadCollection(role);
+            QueryStatistics.count(Counter.COLLECTION_LOADS);
+        }
+
+        @Override
+        public void fetchCollection(String role) {
+            super.fetchCollection(role);
+            QueryStatistics.count(Counter.COLLECTION_FETCHES);
+        }
+
+        @Override
+        public void flush() {
+            super.flush();
+            QueryStatistics.count(Counter.FLUSHES);
+        }
+    }
+}
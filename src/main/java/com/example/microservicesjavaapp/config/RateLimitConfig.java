@@ -0,0 +1,104 @@
+package com.example.microservicesjavaapp.config;
+
+import com.example.microservicesjavaapp.exception.ReactiveExceptionHandler;
+import com.example.microservicesjavaapp.service.RateLimiter;
+import com.example.microservicesjavaapp.service.RateLimiter.Decision;
+import com.example.microservicesjavaapp.service.RateLimiter.EndpointClass;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.security.Principal;
+
+/**
+ * Configuration class for the per-user rate limit of the cart endpoints (see RateLimiter).
+ * Both stacks check the limit after authentication, keyed by the authenticated user's name, and add the
+ * RateLimit-Limit, RateLimit-Remaining and RateLimit-Reset headers to every cart response. A throttled
+ * request gets 429 Too Many Requests with a Retry-After header and the usual error body.
+ * Disabled with 'app.rate-limit.enabled=false'.
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.rate-limit.enabled", havingValue = "true", matchIfMissing = true)
+public class RateLimitConfig {
+
+    private static final String TOO_MANY_REQUESTS = "Too many requests";
+
+    /**
+     * Registers the rate limit interceptor on the servlet stack. Interceptors run after the security
+     * filter chain, so the user is known; the 429 is rendered by GlobalExceptionHandler.
+     *
+     * @param rateLimiter The per-user rate limiter.
+     * @return A WebMvcConfigurer adding the interceptor.
+     */
+    @Bean
+    @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET) // The WebFilter below covers the reactive stack
+    public WebMvcConfigurer rateLimitWebMvcConfigurer(RateLimiter rateLimiter) {
+        HandlerInterceptor interceptor = new HandlerInterceptor() {
+            @Override
+            public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+                Principal principal = request.getUserPrincipal();
+                EndpointClass endpoint = EndpointClass.of(request.getMethod(), request.getServletPath());
+                if (principal == null || endpoint == null) {
+                    return true;
+                }
+                Decision decision = rateLimiter.tryAcquire(principal.getName(), endpoint);
+                decision.writeHeaders(response::setHeader);
+                if (!decision.allowed()) {
+                    throw new ResponseStatusException(HttpStatus.TOO_MANY_REQUESTS, TOO_MANY_REQUESTS);
+                }
+                return true;
+            }
+        };
+        return new WebMvcConfigurer() {
+            @Override
+            public void addInterceptors(InterceptorRegistry registry) {
+                registry.addInterceptor(interceptor).addPathPatterns("/api/carts", "/api/carts/**")
+                        .order(Ordered.HIGHEST_PRECEDENCE); // Before the concurrency limit: throttled requests never take a slot
+            }
+        };
+    }
+
+    /**
+     * Rate limit filter for the reactive stack. It runs after Spring Security's filter chain, and before
+     * the concurrency limit so that throttled requests never take a slot. Errors raised by a WebFilter
+     * never reach ReactiveExceptionHandler, so the 429 body is written by its writeError.
+     *
+     * @param rateLimiter The per-user rate limiter.
+     * @param objectMapper Spring Boot's JSON ObjectMapper.
+     * @return A WebFilter applying the rate limit.
+     */
+    @Bean
+    @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE) // The interceptor above covers the servlet stack
+    @Order(Ordered.LOWEST_PRECEDENCE - 1)
+    public WebFilter rateLimitWebFilter(RateLimiter rateLimiter, ObjectMapper objectMapper) {
+        return (exchange, chain) -> {
+            String path = exchange.getRequest().getPath().pathWithinApplication().value();
+            EndpointClass endpoint = EndpointClass.of(exchange.getRequest().getMethod().name(), path);
+            if (endpoint == null) {
+                return chain.filter(exchange);
+            }
+            return exchange.getPrincipal()
+                    .map(principal -> {
+                        Decision decision = rateLimiter.tryAcquire(principal.getName(), endpoint);
+                        decision.writeHeaders(exchange.getResponse().getHeaders()::set);
+                        return decision.allowed();
+                    })
+                    .defaultIfEmpty(true) // Anonymous: left to Spring Security
+                    .flatMap(allowed -> allowed
+                            ? chain.filter(exchange)
+                            : ReactiveExceptionHandler.writeError(exchange, objectMapper, HttpStatus.TOO_MANY_REQUESTS, TOO_MANY_REQUESTS));
+        };
+    }
+}
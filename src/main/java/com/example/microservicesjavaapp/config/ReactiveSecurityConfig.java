@@ -0,0 +1,65 @@
+package com.example.microservicesjavaapp.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.security.config.annotation.web.reactive.EnableWebFluxSecurity;
+import org.springframework.security.config.web.server.ServerHttpSecurity;
+import org.springframework.security.core.userdetails.MapReactiveUserDetailsService;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.web.server.SecurityWebFilterChain;
+
+/**
+ * Configuration class for Spring Security on the reactive stack.
+ * Mirrors SecurityConfig: basic authentication on every request and the same in-memory user.
+ */
+@Configuration
+@EnableWebFluxSecurity // Enables Spring Security's WebFlux support
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE) // Only when the reactive stack is selected
+public class ReactiveSecurityConfig {
+
+    /**
+     * Configures the security filter chain, defining authorization rules for HTTP requests.
+     *
+     * @param http The ServerHttpSecurity object to configure.
+     * @return A SecurityWebFilterChain instance.
+     */
+    @Bean
+    public SecurityWebFilterChain securityWebFilterChain(ServerHttpSecurity http) {
+        return http
+                .authorizeExchange(authorize -> authorize
+                        .anyExchange().authenticated() // All requests require authentication
+                )
+                .csrf(ServerHttpSecurity.CsrfSpec::disable) // Disable CSRF, as in SecurityConfig
+                .httpBasic(httpBasic -> { }) // Enable HTTP Basic authentication
+                .build();
+    }
+
+    /**
+     * Configures an in-memory reactive user details service with the same user as SecurityConfig.
+     *
+     * @return A MapReactiveUserDetailsService instance.
+     */
+    @Bean
+    public MapReactiveUserDetailsService userDetailsService() {
+        UserDetails user = User.builder()
+                .username("user")
+                .password(passwordEncoder().encode("password")) // Encode the password
+                .roles("USER") // Assign a role
+                .build();
+        return new MapReactiveUserDetailsService(user);
+    }
+
+    /**
+     * Provides a password encoder for encoding user passwords.
+     *
+     * @return A PasswordEncoder instance.
+     */
+    @Bean
+    public PasswordEncoder passwordEncoder() {
+        return new BCryptPasswordEncoder();
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.microservicesjavaapp.config;
+
+import io.r2dbc.h2.H2ConnectionConfiguration;
+import io.r2dbc.h2.H2ConnectionFactory;
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.r2dbc.connection.R2dbcTransactionManager;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.transaction.reactive.TransactionalOperator;
+
+/**
+ * Configuration class for the reactive edition of the cart API ('reactive' profile).
+ * Runs WebFlux on Netty and opens an R2DBC connection pool on the same H2 database as the JDBC DataSource,
+ * so both stacks see the same data.
+ * The pool is deliberately not exposed as a ConnectionFactory bean: Boot would then back off the JDBC
+ * DataSource that JPA, the reaper and the archiver still need. Only the DatabaseClient and the
+ * TransactionalOperator built on it are beans.
+ */
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE) // Only when the reactive stack is selected
+public class ReactiveStackConfig implements DisposableBean {
+
+    private static final String H2_PREFIX = "jdbc:h2:";
+
+    private final ConnectionPool connectionPool;
+
+    public ReactiveStackConfig(DataSourceProperties dataSourceProperties,
+                               @Value("${app.reactive.pool.max-size:32}") int maxPoolSize) {
+        String url = dataSourceProperties.determineUrl();
+        if (url == null || !url.startsWith(H2_PREFIX)) {
+            throw new IllegalStateException("The reactive stack only supports H2 databases, got: " + url);
+        }
+        H2ConnectionConfiguration configuration = H2ConnectionConfiguration.builder()
+                .url(url.substring(H2_PREFIX.length()))
+                .username(dataSourceProperties.determineUsername())
+                .password(dataSourceProperties.determinePassword())
+                .build();
+        this.connectionPool = new ConnectionPool(ConnectionPoolConfiguration.builder(new H2ConnectionFactory(configuration))
+                .maxSize(maxPoolSize)
+                .build());
+    }
+
+    /**
+     * Serves the reactive stack from Netty; Boot would otherwise pick Tomcat, which is on the classpath too.
+     *
+     * @return A NettyReactiveWebServerFactory instance.
+     */
+    @Bean
+    public NettyReactiveWebServerFactory nettyReactiveWebServerFactory() {
+        return new NettyReactiveWebServerFactory();
+    }
+
+    /**
+     * Provides the non-blocking SQL client used by the reactive repositories.
+     *
+     * @return A DatabaseClient bound to the R2DBC connection pool.
+     */
+    @Bean
+    public DatabaseClient databaseClient() {
+        return DatabaseClient.create(connectionPool);
+    }
+
+    /**
+     * Provides reactive transaction demarcation for the reactive cart service.
+     *
+     * @return A TransactionalOperator backed by an R2DBC transaction manager.
+     */
+    @Bean
+    public TransactionalOperator transactionalOperator() {
+        return TransactionalOperator.create(new R2dbcTransactionManager(connectionPool));
+    }
+
+    @Override
+    public void destroy() {
+        connectionPool.dispose();
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.microservicesjavaapp.config;
+
+import com.example.microservicesjavaapp.service.ReplicaFeeder;
+import com.example.microservicesjavaapp.service.ReplicaReads;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Configuration class for the read replica ('replica' profile, or 'app.read-replica.enabled=true').
+ * Replaces Boot's DataSource with one routing every connection to one of two pools: the primary, on the
+ * 'spring.datasource' settings, and the replica, on 'app.read-replica.url'. Only the read-only transactions
+ * started by ReplicaReads for the cart API's queries go to the replica; writes, schema and data
+ * initialization, background jobs and every other transaction go to the primary.
+ * With 'app.read-replica.replication.enabled=true', a ReplicaFeeder stands in for the database's own
+ * replication and copies the primary into the replica, for trying it out locally on two H2 databases.
+ * The reactive stack is not routed: it reaches the primary through its own R2DBC pool.
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.read-replica.enabled", havingValue = "true")
+public class ReadReplicaConfig implements DisposableBean {
+
+    private static final String PRIMARY = "primary";
+    private static final String REPLICA = "replica";
+
+    private final HikariDataSource primary;
+    private final HikariDataSource replica;
+
+    public ReadReplicaConfig(DataSourceProperties dataSourceProperties,
+                             @Value("${app.read-replica.url}") String replicaUrl,
+                             @Value("${app.read-replica.username:${spring.datasource.username:}}") String replicaUsername,
+                             @Value("${app.read-replica.password:${spring.datasource.password:}}") String replicaPassword) {
+        this.primary = dataSourceProperties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        this.primary.setPoolName(PRIMARY);
+        this.replica = DataSourceBuilder.create().type(HikariDataSource.class)
+                .driverClassName(dataSourceProperties.determineDriverClassName())
+                .url(replicaUrl)
+                .username(replicaUsername)
+                .password(replicaPassword)
+                .build();
+        this.replica.setPoolName(REPLICA);
+    }
+
+    /**
+     * Provides the application's DataSource, routing each connection by the transaction asking for it.
+     *
+     * @return A DataSource over the primary and replica pools.
+     */
+    @Bean
+    public DataSource dataSource() {
+        AbstractRoutingDataSource routing = new AbstractRoutingDataSource() {
+            @Override
+            protected Object determineCurrentLookupKey() {
+                return ReplicaReads.isReplicaRead() ? REPLICA : PRIMARY;
+            }
+        };
+        routing.setTargetDataSources(Map.of(PRIMARY, primary, REPLICA, replica));
+        routing.setDefaultTargetDataSource(primary);
+        return routing;
+    }
+
+    /**
+     * Provides the stand-in for replication, copying the primary into the replica on a schedule.
+     *
+     * @param meterRegistry The registry where the replication timer is published.
+     * @param tables The tables to copy, parents before children.
+     * @return A ReplicaFeeder over the two pools.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "app.read-replica.replication.enabled", havingValue = "true")
+    public ReplicaFeeder replicaFeeder(MeterRegistry meterRegistry,
+                                       @Value("${app.read-replica.replication.tables}") List<String> tables) {
+        return new ReplicaFeeder(primary, replica, tables, meterRegistry);
+    }
+
+    @Override
+    public void destroy() {
+        replica.close();
+        primary.close();
+    }
+}
@@ -1,5 +1,8 @@
 package com.example.microservicesjavaapp.config;
 
+import com.example.microservicesjavaapp.service.RequestTimings;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
@@ -11,6 +14,7 @@ import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.provisioning.InMemoryUserDetailsManager;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.access.intercept.AuthorizationFilter;
 
 /**
  * Configuration class for Spring Security.
@@ -19,17 +23,20 @@ import org.springframework.security.web.SecurityFilterChain;
  */
 @Configuration
 @EnableWebSecurity // Enables Spring Security's web security features
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET) // ReactiveSecurityConfig covers the reactive stack
 public class SecurityConfig {
 
     /**
      * Configures the security filter chain, defining authorization rules for HTTP requests.
      *
      * @param http The HttpSecurity object to configure.
+     * @param serverTiming Whether requests are timed for the Server-Timing header (see ServerTimingConfig).
      * @return A SecurityFilterChain instance.
      * @throws Exception if an error occurs during configuration.
      */
     @Bean
-    public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
+    public SecurityFilterChain securityFilterChain(HttpSecurity http,
+                                                   @Value("${app.server-timing.enabled:false}") boolean serverTiming) throws Exception {
         http
                 .authorizeHttpRequests(authorize -> authorize
                         .requestMatchers("/h2-console/**").permitAll()
@@ -40,6 +47,13 @@ public class SecurityConfig {
                         .frameOptions(frame -> frame.disable())
                 )
                 .httpBasic(httpBasic -> httpBasic.init(http)); // Enable HTTP Basic authentication
+        if (serverTiming) {
+            // Last in the chain: the request has been authenticated and authorized
+            http.addFilterAfter((request, response, chain) -> {
+                RequestTimings.authenticated();
+                chain.doFilter(request, response);
+            }, AuthorizationFilter.class);
+        }
 
         return http.build();
     }
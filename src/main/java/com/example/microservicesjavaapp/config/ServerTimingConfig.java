@@ -0,0 +1,140 @@
+package com.example.microservicesjavaapp.config;
+
+import com.example.microservicesjavaapp.service.CartService;
+import com.example.microservicesjavaapp.service.RequestTimings;
+import com.example.microservicesjavaapp.service.RequestTimings.Phase;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.spi.LoggingEventBuilder;
+import org.springframework.aop.framework.Advised;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.security.SecurityProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.repository.Repository;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Configuration class for the per-request latency breakdown of the servlet stack (see RequestTimings).
+ * Every /api response carries a Server-Timing header with the time the request spent authenticating
+ * (the security filter chain), waiting for cart locks, in repository calls, in the cart service and
+ * writing its body. Requests slower than 'app.server-timing.slow-threshold' are logged, a sample of
+ * 'app.server-timing.log-sample-rate' of them, with the phases as key-value fields.
+ *
+ * The response body is buffered until the request ends, so the header can include the serialization.
+ * Opt-in with 'app.server-timing.enabled=true'.
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.server-timing.enabled", havingValue = "true")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET) // Request timings are bound to the request thread
+public class ServerTimingConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(ServerTimingConfig.class);
+
+    /**
+     * Times every /api request. Ordered just before Spring Security's filter chain, so authentication is
+     * part of the measurement.
+     *
+     * @param slowThreshold Requests at least this slow are candidates for the slow request log.
+     * @param logSampleRate The fraction of slow requests that are logged, from 0 to 1.
+     * @return The registration of the timing filter.
+     */
+    @Bean
+    public FilterRegistrationBean<OncePerRequestFilter> serverTimingFilter(
+            @Value("${app.server-timing.slow-threshold:PT0.5S}") Duration slowThreshold,
+            @Value("${app.server-timing.log-sample-rate:1.0}") double logSampleRate) {
+        long slowNanos = slowThreshold.toNanos();
+        OncePerRequestFilter filter = new OncePerRequestFilter() {
+            @Override
+            protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+                    throws ServletException, IOException {
+                ContentCachingResponseWrapper buffered = new ContentCachingResponseWrapper(response);
+                RequestTimings timings = RequestTimings.start();
+                try {
+                    chain.doFilter(request, buffered);
+                } finally {
+                    RequestTimings.stop();
+                }
+                buffered.setHeader("Server-Timing", timings.toServerTiming());
+                if (timings.totalNanos() >= slowNanos && ThreadLocalRandom.current().nextDouble() < logSampleRate) {
+                    logSlowRequest(request, buffered.getStatus(), timings);
+                }
+                buffered.copyBodyToResponse();
+            }
+        };
+        FilterRegistrationBean<OncePerRequestFilter> registration = new FilterRegistrationBean<>(filter);
+        registration.addUrlPatterns("/api/*");
+        registration.setOrder(SecurityProperties.DEFAULT_FILTER_ORDER - 1);
+        return registration;
+    }
+
+    /**
+     * Times the calls made to the cart service and to the repositories. The timing advice is put in front
+     * of the existing ones (transactions included) of the proxies they already are.
+     *
+     * @return A BeanPostProcessor adding the timing advice.
+     */
+    @Bean
+    public static BeanPostProcessor serverTimingBeanPostProcessor() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                Phase phase = bean instanceof CartService ? Phase.SERVICE : bean instanceof Repository<?, ?> ? Phase.DB : null;
+                if (phase == null) {
+                    return bean;
+                }
+                if (bean instanceof Advised advised && !advised.isFrozen()) {
+                    advised.addAdvice(0, timing(phase));
+                    return bean;
+                }
+                ProxyFactory proxyFactory = new ProxyFactory(bean);
+                proxyFactory.addAdvice(timing(phase));
+                return proxyFactory.getProxy();
+            }
+        };
+    }
+
+    private static MethodInterceptor timing(Phase phase) {
+        return invocation -> {
+            RequestTimings timings = RequestTimings.current();
+            if (timings == null) {
+                return invocation.proceed(); // Background jobs, startup
+            }
+            timings.enter(phase);
+            long start = System.nanoTime();
+            try {
+                return invocation.proceed();
+            } finally {
+                timings.exit(phase, System.nanoTime() - start);
+            }
+        };
+    }
+
+    private static void logSlowRequest(HttpServletRequest request, int status, RequestTimings timings) {
+        LoggingEventBuilder event = logger.atWarn()
+                .addKeyValue("http.method", request.getMethod())
+                .addKeyValue("http.path", request.getRequestURI())
+                .addKeyValue("http.status", status)
+                .addKeyValue("timing.total_ms", timings.totalMillis());
+        for (Phase phase : Phase.values()) {
+            event = event.addKeyValue("timing." + phase.metric() + "_ms", timings.millis(phase))
+                    .addKeyValue("timing." + phase.metric() + "_calls", timings.calls(phase));
+        }
+        event.log("Slow request {} {} ({}): {}", request.getMethod(), request.getRequestURI(), status, timings.toServerTiming());
+    }
+}
@@ -2,14 +2,20 @@ package com.example.microservicesjavaapp.controller;
 
 import com.example.microservicesjavaapp.dto.AddProductRequest;
 import com.example.microservicesjavaapp.dto.CartDto;
+import com.example.microservicesjavaapp.dto.CartHistoryEventDto;
 import com.example.microservicesjavaapp.dto.CartItemDto;
+import com.example.microservicesjavaapp.dto.CartStateDto;
+import com.example.microservicesjavaapp.dto.CartTotalDto;
 import com.example.microservicesjavaapp.dto.CreateCartRequest;
+import com.example.microservicesjavaapp.dto.OrderHistoryDto;
 import com.example.microservicesjavaapp.service.CartService;
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.Max;
 import jakarta.validation.constraints.Min;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
@@ -22,10 +28,13 @@ import java.util.List;
  * This class exposes endpoints for creating, adding products to, removing products from,
  * listing products in, processing, and listing carts associated with a user.
  * It uses the CartService to perform business logic and returns DTOs.
+ * DTOs are written as JSON, or as CBOR / Smile when the client asks for them in the Accept header
+ * (request bodies likewise follow Content-Type); see BinaryCodecConfig.
  */
 @RestController // Marks this class as a Spring REST Controller
 @RequestMapping("/api/carts") // Base path for all endpoints in this controller
 @Validated // Enables validation on controller method parameters
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET) // ReactiveCartController serves the reactive stack
 public class CartController {
 
     private static final Logger logger = LoggerFactory.getLogger(CartController.class);
@@ -92,8 +101,53 @@ public class CartController {
     }
 
     /**
-     * Processes a shopping cart order asynchronously.
-     * Returns an immediate "processing" message.
+     * Previews the totals of a shopping cart from its running subtotal and discounted total.
+     *
+     * @param cartId The ID of the cart.
+     * @return ResponseEntity with the CartTotalDto and HTTP status 200 (OK).
+     */
+    @GetMapping("/{cartId}/total") // Maps GET requests to /api/carts/{cartId}/total
+    public ResponseEntity<CartTotalDto> getCartTotal(@PathVariable @Min(1) Long cartId) {
+        logger.info("Received request to get the total of cart ID: {}", cartId);
+        return ResponseEntity.ok(cartService.getCartTotal(cartId));
+    }
+
+    /**
+     * Lists the changes made to a shopping cart, oldest first, from its event-sourced history.
+     * Pages through a long history with 'fromVersion' and 'limit'.
+     *
+     * @param cartId The ID of the cart.
+     * @param fromVersion The first version to list (default 1).
+     * @param limit The most events to list (default 100, at most 1000).
+     * @return ResponseEntity with a list of CartHistoryEventDto entities and HTTP status 200 (OK).
+     */
+    @GetMapping("/{cartId}/history") // Maps GET requests to /api/carts/{cartId}/history
+    public ResponseEntity<List<CartHistoryEventDto>> getCartHistory(
+            @PathVariable @Min(1) Long cartId,
+            @RequestParam(defaultValue = "1") @Min(1) Long fromVersion,
+            @RequestParam(defaultValue = "100") @Min(1) @Max(1000) Integer limit) {
+        logger.info("Received request to get the history of cart ID: {} from version {}", cartId, fromVersion);
+        return ResponseEntity.ok(cartService.getCartHistory(cartId, fromVersion, limit));
+    }
+
+    /**
+     * Replays the history of a shopping cart up to a version, e.g. to see it as it was before checkout.
+     *
+     * @param cartId The ID of the cart.
+     * @param version The version to rebuild the cart at.
+     * @return ResponseEntity with the CartStateDto and HTTP status 200 (OK).
+     */
+    @GetMapping("/{cartId}/history/{version}") // Maps GET requests to /api/carts/{cartId}/history/{version}
+    public ResponseEntity<CartStateDto> getCartAtVersion(
+            @PathVariable @Min(1) Long cartId,
+            @PathVariable @Min(1) Long version) {
+        logger.info("Received request to rebuild cart ID: {} at version {}", cartId, version);
+        return ResponseEntity.ok(cartService.getCartAtVersion(cartId, version));
+    }
+
+    /**
+     * Queues a shopping cart order for processing.
+     * Returns an immediate "processing" message once the order is durably queued.
      *
      * @param cartId The ID of the cart to process.
      * @return ResponseEntity with a success message and HTTP status 202 (Accepted).
@@ -101,7 +155,7 @@ public class CartController {
     @PostMapping("/{cartId}/process") // Maps POST requests to /api/carts/{cartId}/process
     public ResponseEntity<String> processCart(@PathVariable @Min(1) Long cartId) {
         logger.info("Received request to process cart ID: {}", cartId);
-        cartService.processOrder(cartId); // This call is asynchronous
+        cartService.enqueueOrder(cartId); // Processed by an OrderJobWorker, on this or another instance
         return new ResponseEntity<>("Estamos procesando su orden", HttpStatus.ACCEPTED);
     }
 
@@ -117,4 +171,18 @@ public class CartController {
         List<CartDto> cartDtos = cartService.getCartsByUserId(userId);
         return ResponseEntity.ok(cartDtos);
     }
-}
\ No newline at end of file
+
+    /**
+     * Lists the archived orders of a specific user.
+     * Processed carts move here from the live cart listing once the archiver has run.
+     *
+     * @param userId The ID of the user.
+     * @return ResponseEntity with a list of OrderHistoryDto entities and HTTP status 200 (OK).
+     */
+    @GetMapping("/user/{userId}/history") // Maps GET requests to /api/carts/user/{userId}/history
+    public ResponseEntity<List<OrderHistoryDto>> getOrderHistory(@PathVariable @Min(1) Long userId) {
+        logger.info("Received request to get order history for user ID: {}", userId);
+        List<OrderHistoryDto> history = cartService.getOrderHistory(userId);
+        return ResponseEntity.ok(history);
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.microservicesjavaapp.controller;
+
+import com.example.microservicesjavaapp.service.CartLockRegistry;
+import com.example.microservicesjavaapp.service.CartLockRegistry.CartLockStats;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Actuator endpoint exposing the current contention state of the per-cart locks.
+ * Available at /actuator/cartlocks, which lists up to 20 carts, and /actuator/cartlocks/{limit}.
+ */
+@Component
+@Endpoint(id = "cartlocks") // Exposed through Actuator as /actuator/cartlocks
+public class CartLockEndpoint {
+
+    private static final int DEFAULT_LIMIT = 20;
+
+    @Autowired
+    private CartLockRegistry cartLockRegistry;
+
+    /**
+     * Lists the currently most contended carts, ordered by lock queue length, up to the default limit.
+     *
+     * @return A map with the number of tracked carts and the per-cart contention figures.
+     */
+    @ReadOperation
+    public Map<String, Object> cartLocks() {
+        return cartLocks(DEFAULT_LIMIT);
+    }
+
+    /**
+     * Lists the currently most contended carts, ordered by lock queue length.
+     *
+     * @param limit The maximum number of carts to list (the default limit when not positive).
+     * @return A map with the number of tracked carts and the per-cart contention figures.
+     */
+    @ReadOperation
+    public Map<String, Object> cartLocks(@Selector int limit) {
+        List<CartLockStats> hottest = cartLockRegistry.mostContended(limit > 0 ? limit : DEFAULT_LIMIT);
+
+        Map<String, Object> body = new HashMap<>();
+        body.put("trackedCarts", cartLockRegistry.size());
+        body.put("carts", hottest);
+        return body;
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.microservicesjavaapp.controller;
+
+import com.example.microservicesjavaapp.service.QueryStatistics;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Actuator endpoint exposing Hibernate statistics per API endpoint, next to Hibernate's own totals.
+ * Available at /actuator/hibernatestats; a DELETE on it starts a new measurement window.
+ */
+@Component
+@Endpoint(id = "hibernatestats") // Exposed through Actuator as /actuator/hibernatestats
+public class HibernateStatisticsEndpoint {
+
+    @Autowired
+    private QueryStatistics queryStatistics;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    /**
+     * Lists, for every endpoint called since the last reset, the statements, entity loads, collection
+     * fetches and flushes of its requests, in total, at most and on average per request.
+     *
+     * @return A map with the per-endpoint figures and Hibernate's totals for the whole application.
+     */
+    @ReadOperation
+    public Map<String, Object> hibernateStats() {
+        Statistics statistics = statistics();
+        Map<String, Object> totals = new LinkedHashMap<>();
+        totals.put("statements", statistics.getPrepareStatementCount());
+        totals.put("entityLoads", statistics.getEntityLoadCount());
+        totals.put("entityFetches", statistics.getEntityFetchCount());
+        totals.put("collectionLoads", statistics.getCollectionLoadCount());
+        totals.put("collectionFetches", statistics.getCollectionFetchCount());
+        totals.put("flushes", statistics.getFlushCount());
+        totals.put("slowestQuery", statistics.getQueryExecutionMaxTimeQueryString());
+        totals.put("slowestQueryMillis", statistics.getQueryExecutionMaxTime());
+
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("enabled", statistics.isStatisticsEnabled());
+        body.put("endpoints", queryStatistics.snapshot());
+        body.put("totals", totals); // Background jobs included
+        return body;
+    }
+
+    /**
+     * Clears the per-endpoint figures and Hibernate's totals.
+     */
+    @DeleteOperation
+    public void reset() {
+        queryStatistics.reset();
+        statistics().clear();
+    }
+
+    private Statistics statistics() {
+        return entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+}
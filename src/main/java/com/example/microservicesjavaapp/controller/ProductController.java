@@ -0,0 +1,52 @@
+package com.example.microservicesjavaapp.controller;
+
+import com.example.microservicesjavaapp.dto.ProductPageDto;
+import com.example.microservicesjavaapp.service.ProductCatalog;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * REST Controller for browsing and searching the product catalog.
+ * Served by both the servlet and the reactive stack: it only reads the in-memory ProductCatalog,
+ * so there is nothing to block on and no reactive edition is needed.
+ */
+@RestController // Marks this class as a Spring REST Controller
+@RequestMapping("/api/products") // Base path for all endpoints in this controller
+public class ProductController {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProductController.class);
+
+    private static final int MAX_PAGE_SIZE = 100;
+
+    @Autowired
+    private ProductCatalog productCatalog;
+
+    /**
+     * Lists products in ID order, optionally filtered by category and by name prefix.
+     *
+     * @param category Only products of this category.
+     * @param q Only products whose name has a word starting with each word of q (case-insensitive).
+     * @param page The zero-based page number.
+     * @param size The page size, at most 100.
+     * @return ResponseEntity with the ProductPageDto and HTTP status 200 (OK).
+     */
+    @GetMapping // Maps GET requests to /api/products
+    public ResponseEntity<ProductPageDto> getProducts(@RequestParam(required = false) String category,
+                                                      @RequestParam(required = false) String q,
+                                                      @RequestParam(defaultValue = "0") int page,
+                                                      @RequestParam(defaultValue = "20") int size) {
+        logger.info("Received request to list products (category: {}, q: {}, page: {}, size: {})", category, q, page, size);
+        if (page < 0 || size < 1 || size > MAX_PAGE_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Page must be at least 0 and size between 1 and " + MAX_PAGE_SIZE);
+        }
+        return ResponseEntity.ok(productCatalog.search(category, q, page, size));
+    }
+}
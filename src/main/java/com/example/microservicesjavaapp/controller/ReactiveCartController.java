@@ -0,0 +1,186 @@
+package com.example.microservicesjavaapp.controller;
+
+import com.example.microservicesjavaapp.dto.AddProductRequest;
+import com.example.microservicesjavaapp.dto.CartDto;
+import com.example.microservicesjavaapp.dto.CartHistoryEventDto;
+import com.example.microservicesjavaapp.dto.CartItemDto;
+import com.example.microservicesjavaapp.dto.CartStateDto;
+import com.example.microservicesjavaapp.dto.CartTotalDto;
+import com.example.microservicesjavaapp.dto.CreateCartRequest;
+import com.example.microservicesjavaapp.dto.OrderHistoryDto;
+import com.example.microservicesjavaapp.service.ReactiveCartService;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * Reactive REST Controller for managing shopping cart operations ('reactive' profile).
+ * Exposes the same endpoints, status codes and bodies as CartController, served by WebFlux
+ * from the ReactiveCartService, including the CBOR / Smile content negotiation (see BinaryCodecConfig).
+ */
+@RestController // Marks this class as a Spring REST Controller
+@RequestMapping("/api/carts") // Base path for all endpoints in this controller
+@Validated // Enables validation on controller method parameters
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE) // CartController serves the servlet stack
+public class ReactiveCartController {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReactiveCartController.class);
+
+    @Autowired
+    private ReactiveCartService cartService;
+
+    /**
+     * Creates a new shopping cart for a specified user.
+     *
+     * @param request The request body containing the user ID.
+     * @return A Mono emitting the created CartDto with HTTP status 201 (Created).
+     */
+    @PostMapping // Maps POST requests to /api/carts
+    public Mono<ResponseEntity<CartDto>> createCart(@Valid @RequestBody CreateCartRequest request) {
+        logger.info("Received request to create cart for user ID: {}", request.getUserId());
+        return cartService.createCart(request.getUserId())
+                .map(cartDto -> new ResponseEntity<>(cartDto, HttpStatus.CREATED));
+    }
+
+    /**
+     * Adds a product to an existing shopping cart.
+     *
+     * @param cartId The ID of the cart to which to add the product.
+     * @param request The request body containing product code and quantity.
+     * @return A Mono emitting the updated CartItemDto with HTTP status 200 (OK).
+     */
+    @PostMapping("/{cartId}/items") // Maps POST requests to /api/carts/{cartId}/items
+    public Mono<ResponseEntity<CartItemDto>> addProductToCart(
+            @PathVariable @Min(1) Long cartId,
+            @Valid @RequestBody AddProductRequest request) {
+        logger.info("Received request to add product {} (qty {}) to cart ID: {}", request.getProductCode(), request.getQuantity(), cartId);
+        return cartService.addProductToCart(cartId, request.getProductCode(), request.getQuantity())
+                .map(ResponseEntity::ok);
+    }
+
+    /**
+     * Removes a product from an existing shopping cart.
+     *
+     * @param cartId The ID of the cart from which to remove the product.
+     * @param productId The ID of the product to remove.
+     * @return A Mono emitting HTTP status 204 (No Content).
+     */
+    @DeleteMapping("/{cartId}/items/{productId}") // Maps DELETE requests to /api/carts/{cartId}/items/{productId}
+    public Mono<ResponseEntity<Void>> removeProductFromCart(
+            @PathVariable @Min(1) Long cartId,
+            @PathVariable @Min(1) Long productId) {
+        logger.info("Received request to remove product ID {} from cart ID: {}", productId, cartId);
+        return cartService.removeProductFromCart(cartId, productId)
+                .then(Mono.just(ResponseEntity.noContent().build()));
+    }
+
+    /**
+     * Lists all products within a specific shopping cart.
+     *
+     * @param cartId The ID of the cart.
+     * @return A Mono emitting the list of CartItemDto entities with HTTP status 200 (OK).
+     */
+    @GetMapping("/{cartId}/items") // Maps GET requests to /api/carts/{cartId}/items
+    public Mono<ResponseEntity<List<CartItemDto>>> getCartProducts(@PathVariable @Min(1) Long cartId) {
+        logger.info("Received request to get products for cart ID: {}", cartId);
+        return cartService.getCartProducts(cartId)
+                .map(ResponseEntity::ok);
+    }
+
+    /**
+     * Previews the totals of a shopping cart from its running subtotal and discounted total.
+     *
+     * @param cartId The ID of the cart.
+     * @return A Mono emitting the CartTotalDto with HTTP status 200 (OK).
+     */
+    @GetMapping("/{cartId}/total") // Maps GET requests to /api/carts/{cartId}/total
+    public Mono<ResponseEntity<CartTotalDto>> getCartTotal(@PathVariable @Min(1) Long cartId) {
+        logger.info("Received request to get the total of cart ID: {}", cartId);
+        return cartService.getCartTotal(cartId)
+                .map(ResponseEntity::ok);
+    }
+
+    /**
+     * Lists the changes made to a shopping cart, oldest first, from its event-sourced history.
+     *
+     * @param cartId The ID of the cart.
+     * @param fromVersion The first version to list (default 1).
+     * @param limit The most events to list (default 100, at most 1000).
+     * @return A Mono emitting the list of CartHistoryEventDto entities with HTTP status 200 (OK).
+     */
+    @GetMapping("/{cartId}/history") // Maps GET requests to /api/carts/{cartId}/history
+    public Mono<ResponseEntity<List<CartHistoryEventDto>>> getCartHistory(
+            @PathVariable @Min(1) Long cartId,
+            @RequestParam(defaultValue = "1") @Min(1) Long fromVersion,
+            @RequestParam(defaultValue = "100") @Min(1) @Max(1000) Integer limit) {
+        logger.info("Received request to get the history of cart ID: {} from version {}", cartId, fromVersion);
+        return cartService.getCartHistory(cartId, fromVersion, limit)
+                .map(ResponseEntity::ok);
+    }
+
+    /**
+     * Replays the history of a shopping cart up to a version.
+     *
+     * @param cartId The ID of the cart.
+     * @param version The version to rebuild the cart at.
+     * @return A Mono emitting the CartStateDto with HTTP status 200 (OK).
+     */
+    @GetMapping("/{cartId}/history/{version}") // Maps GET requests to /api/carts/{cartId}/history/{version}
+    public Mono<ResponseEntity<CartStateDto>> getCartAtVersion(
+            @PathVariable @Min(1) Long cartId,
+            @PathVariable @Min(1) Long version) {
+        logger.info("Received request to rebuild cart ID: {} at version {}", cartId, version);
+        return cartService.getCartAtVersion(cartId, version)
+                .map(ResponseEntity::ok);
+    }
+
+    /**
+     * Queues a shopping cart order for processing and returns once it is durably queued.
+     *
+     * @param cartId The ID of the cart to process.
+     * @return A Mono emitting a success message with HTTP status 202 (Accepted).
+     */
+    @PostMapping("/{cartId}/process") // Maps POST requests to /api/carts/{cartId}/process
+    public Mono<ResponseEntity<String>> processCart(@PathVariable @Min(1) Long cartId) {
+        logger.info("Received request to process cart ID: {}", cartId);
+        return cartService.enqueueOrder(cartId) // Processed by an OrderJobWorker, on this or another instance
+                .thenReturn(new ResponseEntity<>("Estamos procesando su orden", HttpStatus.ACCEPTED));
+    }
+
+    /**
+     * Lists all carts associated with a specific user.
+     *
+     * @param userId The ID of the user.
+     * @return A Mono emitting the list of CartDto entities with HTTP status 200 (OK).
+     */
+    @GetMapping("/user/{userId}") // Maps GET requests to /api/carts/user/{userId}
+    public Mono<ResponseEntity<List<CartDto>>> getCartsByUserId(@PathVariable @Min(1) Long userId) {
+        logger.info("Received request to get carts for user ID: {}", userId);
+        return cartService.getCartsByUserId(userId)
+                .map(ResponseEntity::ok);
+    }
+
+    /**
+     * Lists the archived orders of a specific user.
+     *
+     * @param userId The ID of the user.
+     * @return A Mono emitting the list of OrderHistoryDto entities with HTTP status 200 (OK).
+     */
+    @GetMapping("/user/{userId}/history") // Maps GET requests to /api/carts/user/{userId}/history
+    public Mono<ResponseEntity<List<OrderHistoryDto>>> getOrderHistory(@PathVariable @Min(1) Long userId) {
+        logger.info("Received request to get order history for user ID: {}", userId);
+        return cartService.getOrderHistory(userId)
+                .map(ResponseEntity::ok);
+    }
+}
@@ -0,0 +1,23 @@
+package com.example.microservicesjavaapp.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+/**
+ * Data Transfer Object for the payload of a cart lifecycle event (see OutboxEvent).
+ * Carries the state of the cart right after the change, so consumers need no call back to this service.
+ */
+@Data // Lombok to generate getters, setters, equals, hashCode, and toString
+@NoArgsConstructor // Lombok to generate a no-argument constructor
+@AllArgsConstructor // Lombok to generate an all-argument constructor
+public class CartEventDto {
+    private Long cartId;
+    private Long userId;
+    private String productCode; // The product added or removed; null for cart-level events
+    private Integer quantity; // The product's quantity in the cart after the change; null for cart-level events
+    private BigDecimal subtotal; // The cart's running totals after the change
+    private BigDecimal discountedTotal;
+}
@@ -0,0 +1,26 @@
+package com.example.microservicesjavaapp.dto;
+
+import com.example.microservicesjavaapp.model.OutboxEvent.EventType;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Data Transfer Object for an event of a cart's history.
+ * Used to list the changes made to a cart, in the order they were made.
+ */
+@Data // Lombok to generate getters, setters, equals, hashCode, and toString
+@NoArgsConstructor // Lombok to generate a no-argument constructor
+@AllArgsConstructor // Lombok to generate an all-argument constructor
+public class CartHistoryEventDto {
+    private Long version; // Position of the event in the cart's history, from 1
+    private EventType type;
+    private LocalDateTime at;
+    private Long productId; // The product added or removed; null for cart-level events
+    private Integer quantity; // The product's quantity in the cart after the change; 0 for cart-level events
+    private BigDecimal subtotal; // The cart's running totals after the change
+    private BigDecimal discountedTotal;
+}
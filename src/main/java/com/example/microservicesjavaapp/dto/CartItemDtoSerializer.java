@@ -0,0 +1,73 @@
+package com.example.microservicesjavaapp.dto;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.json.JsonGeneratorImpl;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import org.springframework.boot.jackson.JsonComponent;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+
+/**
+ * Jackson serializer for CartItemDto, registered with the application's ObjectMapper.
+ * Writes the same JSON as the default bean serializer, but copies the nested product from
+ * ProductJsonCache instead of serializing it field by field on every line. CartDto needs no serializer
+ * of its own: its items are written through this one.
+ */
+@JsonComponent // Registers this serializer with Spring Boot's ObjectMapper (MVC and WebFlux)
+public class CartItemDtoSerializer extends JsonSerializer<CartItemDto> {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private final ProductJsonCache productJsonCache;
+
+    public CartItemDtoSerializer(ProductJsonCache productJsonCache) {
+        this.productJsonCache = productJsonCache;
+    }
+
+    @Override
+    public void serialize(CartItemDto item, JsonGenerator gen, SerializerProvider provider) throws IOException {
+        gen.writeStartObject(item);
+        if (item.getId() == null) {
+            gen.writeNullField("id");
+        } else {
+            gen.writeNumberField("id", item.getId());
+        }
+
+        ProductDto product = item.getProduct();
+        if (product == null || gen.getPrettyPrinter() != null || !(gen instanceof JsonGeneratorImpl)) {
+            // Pre-encoded JSON is compact text; indented and binary (CBOR, Smile) output go through the regular serializer
+            provider.defaultSerializeField("product", product, gen);
+        } else {
+            gen.writeFieldName("product");
+            gen.writeRawValue(productJsonCache.json(product, dto -> encode(dto, gen, provider)));
+        }
+
+        if (item.getQuantity() == null) {
+            gen.writeNullField("quantity");
+        } else {
+            gen.writeNumberField("quantity", item.getQuantity());
+        }
+        gen.writeEndObject();
+    }
+
+    /**
+     * Encodes a product with the provider's own ProductDto serializer, so the cached JSON matches
+     * what the ObjectMapper would write.
+     */
+    private static String encode(ProductDto product, JsonGenerator gen, SerializerProvider provider) {
+        StringWriter json = new StringWriter();
+        try (JsonGenerator productGen = JSON_FACTORY.createGenerator(json)) {
+            for (JsonGenerator.Feature feature : JsonGenerator.Feature.values()) { // Same output settings as the outer generator
+                productGen.configure(feature, gen.isEnabled(feature));
+            }
+            provider.findValueSerializer(ProductDto.class).serialize(product, productGen, provider);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not encode product " + product.getId(), e);
+        }
+        return json.toString();
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.microservicesjavaapp.dto;
+
+import com.example.microservicesjavaapp.model.Cart.CartStatus;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Data Transfer Object for a cart rebuilt from its history, as it was at a given version.
+ */
+@Data // Lombok to generate getters, setters, equals, hashCode, and toString
+@NoArgsConstructor // Lombok to generate a no-argument constructor
+@AllArgsConstructor // Lombok to generate an all-argument constructor
+public class CartStateDto {
+    private Long cartId;
+    private Long version;
+    private CartStatus status;
+    private LocalDateTime updatedAt; // When the event of that version happened
+    private BigDecimal subtotal;
+    private BigDecimal discountedTotal;
+    private List<Line> lines; // By product ID
+
+    /**
+     * A product in the rebuilt cart.
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Line {
+        private Long productId;
+        private Integer quantity;
+    }
+}
@@ -0,0 +1,20 @@
+package com.example.microservicesjavaapp.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+/**
+ * Data Transfer Object for cart total previews.
+ * Carries the running totals kept on the cart, so it is served without reading the cart's lines.
+ */
+@Data // Lombok to generate getters, setters, equals, hashCode, and toString
+@NoArgsConstructor // Lombok to generate a no-argument constructor
+@AllArgsConstructor // Lombok to generate an all-argument constructor
+public class CartTotalDto {
+    private Long cartId;
+    private BigDecimal subtotal; // Sum of price x quantity over the cart's lines
+    private BigDecimal discountedTotal; // Subtotal after category discounts, the amount charged at checkout
+}
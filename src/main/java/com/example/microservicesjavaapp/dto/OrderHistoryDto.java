@@ -0,0 +1,25 @@
+package com.example.microservicesjavaapp.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Data Transfer Object for archived order responses.
+ * Used to represent a processed cart served from the order history.
+ */
+@Data // Lombok to generate getters, setters, equals, hashCode, and toString
+@NoArgsConstructor // Lombok to generate a no-argument constructor
+@AllArgsConstructor // Lombok to generate an all-argument constructor
+public class OrderHistoryDto {
+    private Long cartId;
+    private Long userId;
+    private LocalDateTime createdAt;
+    private LocalDateTime processedAt;
+    private BigDecimal totalAmount;
+    private List<OrderLineDto> lines; // Nested list of order line DTOs
+}
@@ -0,0 +1,21 @@
+package com.example.microservicesjavaapp.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+/**
+ * Data Transfer Object for a line of an archived order.
+ * Carries the product details as they were when the order was checked out.
+ */
+@Data // Lombok to generate getters, setters, equals, hashCode, and toString
+@NoArgsConstructor // Lombok to generate a no-argument constructor
+@AllArgsConstructor // Lombok to generate an all-argument constructor
+public class OrderLineDto {
+    private Long productId;
+    private String productCode;
+    private Integer quantity;
+    private BigDecimal unitPrice;
+}
@@ -0,0 +1,98 @@
+package com.example.microservicesjavaapp.dto;
+
+import com.example.microservicesjavaapp.model.Product;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Cache of pre-encoded JSON for products, used by CartItemDtoSerializer.
+ * Cart responses repeat the same few products on many lines; each product's JSON is encoded once per
+ * product version and then copied into responses as UTF-8 bytes.
+ *
+ * An entry is only served while the product still has the exact same field values it was encoded
+ * from, so changes made outside JPA (SQL, the reactive stack) are picked up on the next response.
+ * Updates and deletions through JPA also evict the entry right away, see {@link EvictOnChange}.
+ */
+@Component // Marks this class as a Spring-managed component
+public class ProductJsonCache {
+
+    // One entry per product ID; the catalog is small, so entries are only dropped when a product changes
+    private final Map<Long, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the encoded JSON of a product, encoding it on first use or after it changed.
+     *
+     * @param product The product to write.
+     * @param encoder Encodes the product to JSON when there is no current entry.
+     * @return The product's JSON, with its UTF-8 bytes already computed.
+     */
+    public SerializableString json(ProductDto product, Function<ProductDto, String> encoder) {
+        Long id = product.getId();
+        if (id == null) {
+            return encode(product, encoder);
+        }
+        Entry entry = entries.get(id);
+        if (entry == null || !entry.product().equals(product)) {
+            // Snapshot, so later changes to the caller's DTO cannot alter what the entry was encoded from
+            ProductDto snapshot = new ProductDto(id, product.getCode(), product.getName(), product.getPrice(), product.getCategory());
+            entry = new Entry(snapshot, encode(snapshot, encoder));
+            entries.put(id, entry);
+        }
+        return entry.json();
+    }
+
+    /**
+     * Drops the cached JSON of a product.
+     *
+     * @param productId The ID of the product.
+     */
+    public void evict(Long productId) {
+        if (productId != null) {
+            entries.remove(productId);
+        }
+    }
+
+    /**
+     * Returns the number of cached products.
+     *
+     * @return The number of entries.
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    private static SerializedString encode(ProductDto product, Function<ProductDto, String> encoder) {
+        SerializedString json = new SerializedString(encoder.apply(product));
+        json.asUnquotedUTF8(); // Encodes (and keeps) the UTF-8 bytes now, instead of on the first response
+        return json;
+    }
+
+    private record Entry(ProductDto product, SerializedString json) {
+    }
+
+    /**
+     * JPA entity listener that evicts a product's cached JSON when the product is updated or deleted.
+     * Instantiated by Hibernate through the Spring bean container.
+     */
+    public static class EvictOnChange {
+
+        private final ProductJsonCache cache;
+
+        public EvictOnChange(ProductJsonCache cache) {
+            this.cache = cache;
+        }
+
+        @PostUpdate
+        @PostRemove
+        void evict(Product product) {
+            cache.evict(product.getId());
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.example.microservicesjavaapp.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Data Transfer Object for one page of the product catalog.
+ * Products are listed in ID order, so pages stay stable while the catalog does not change.
+ */
+@Data // Lombok to generate getters, setters, equals, hashCode, and toString
+@NoArgsConstructor // Lombok to generate a no-argument constructor
+@AllArgsConstructor // Lombok to generate an all-argument constructor
+public class ProductPageDto {
+    private List<ProductDto> content;
+    private int page; // Zero-based page number
+    private int size; // Requested page size
+    private long totalElements; // Number of products matching the filters, over all pages
+    private int totalPages;
+}
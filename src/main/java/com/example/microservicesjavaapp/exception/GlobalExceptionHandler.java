@@ -2,6 +2,7 @@ package com.example.microservicesjavaapp.exception;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.MethodArgumentNotValidException;
@@ -22,6 +23,7 @@ import java.util.Map;
  * It ensures that consistent and user-friendly error responses are returned.
  */
 @ControllerAdvice // Marks this class to handle exceptions globally across controllers
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET) // ReactiveExceptionHandler covers the reactive stack
 public class GlobalExceptionHandler {
 
     private static final Logger logger = LoggerFactory.getLogger(GlobalExceptionHandler.class);
@@ -0,0 +1,130 @@
+package com.example.microservicesjavaapp.exception;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.validation.FieldError;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.support.WebExchangeBindException;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Exception handler for the reactive stack.
+ * Produces the same error bodies as GlobalExceptionHandler, so clients cannot tell the stacks apart.
+ */
+@ControllerAdvice // Marks this class to handle exceptions globally across controllers
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE) // GlobalExceptionHandler covers the servlet stack
+public class ReactiveExceptionHandler {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReactiveExceptionHandler.class);
+
+    /**
+     * Handles exceptions thrown by @ResponseStatusException (e.g., from service layer).
+     *
+     * @param ex The ResponseStatusException that was thrown.
+     * @param exchange The current server exchange.
+     * @return A ResponseEntity containing error details and the appropriate HTTP status.
+     */
+    @ExceptionHandler(ResponseStatusException.class)
+    public ResponseEntity<Map<String, Object>> handleResponseStatusException(ResponseStatusException ex, ServerWebExchange exchange) {
+        logger.error("ResponseStatusException caught: {}", ex.getMessage(), ex);
+
+        Map<String, Object> body = new HashMap<>();
+        body.put("timestamp", LocalDateTime.now());
+        body.put("status", ex.getStatusCode().value());
+        body.put("message", ex.getReason());
+        body.put("path", exchange.getRequest().getPath().value());
+
+        return new ResponseEntity<>(body, ex.getStatusCode());
+    }
+
+    /**
+     * Handles validation exceptions (e.g., @Valid annotations failing in controllers).
+     *
+     * @param ex The WebExchangeBindException that was thrown.
+     * @param exchange The current server exchange.
+     * @return A ResponseEntity containing error details with validation messages and HTTP status 400 (Bad Request).
+     */
+    @ExceptionHandler(WebExchangeBindException.class)
+    public ResponseEntity<Map<String, Object>> handleValidationExceptions(WebExchangeBindException ex, ServerWebExchange exchange) {
+        logger.error("WebExchangeBindException caught: {}", ex.getMessage(), ex);
+
+        Map<String, String> errors = new HashMap<>();
+        ex.getBindingResult().getAllErrors().forEach((error) -> {
+            String fieldName = ((FieldError) error).getField();
+            String errorMessage = error.getDefaultMessage();
+            errors.put(fieldName, errorMessage);
+        });
+
+        Map<String, Object> body = new HashMap<>();
+        body.put("timestamp", LocalDateTime.now());
+        body.put("status", HttpStatus.BAD_REQUEST.value());
+        body.put("error", HttpStatus.BAD_REQUEST.getReasonPhrase());
+        body.put("message", "Validation failed");
+        body.put("details", errors);
+        body.put("path", exchange.getRequest().getPath().value());
+
+        return new ResponseEntity<>(body, HttpStatus.BAD_REQUEST);
+    }
+
+    /**
+     * Handles any other unexpected exceptions.
+     *
+     * @param ex The Exception that was thrown.
+     * @param exchange The current server exchange.
+     * @return A ResponseEntity containing generic error details and HTTP status 500 (Internal Server Error).
+     */
+    @ExceptionHandler(Exception.class)
+    public ResponseEntity<Map<String, Object>> handleGlobalException(Exception ex, ServerWebExchange exchange) {
+        logger.error("An unexpected error occurred: {}", ex.getMessage(), ex);
+
+        Map<String, Object> body = new HashMap<>();
+        body.put("timestamp", LocalDateTime.now());
+        body.put("status", HttpStatus.INTERNAL_SERVER_ERROR.value());
+        body.put("error", HttpStatus.INTERNAL_SERVER_ERROR.getReasonPhrase());
+        body.put("message", "An unexpected error occurred. Please try again later.");
+        body.put("path", exchange.getRequest().getPath().value());
+
+        return new ResponseEntity<>(body, HttpStatus.INTERNAL_SERVER_ERROR);
+    }
+
+    /**
+     * Writes an error response from a WebFilter, whose errors never reach this handler, with the same
+     * body as handleResponseStatusException.
+     *
+     * @param exchange The current server exchange.
+     * @param objectMapper Spring Boot's JSON ObjectMapper.
+     * @param status The HTTP status of the response.
+     * @param message The error message.
+     * @return Completes once the response is written.
+     */
+    public static Mono<Void> writeError(ServerWebExchange exchange, ObjectMapper objectMapper, HttpStatus status, String message) {
+        Map<String, Object> body = new HashMap<>();
+        body.put("timestamp", LocalDateTime.now());
+        body.put("status", status.value());
+        body.put("message", message);
+        body.put("path", exchange.getRequest().getPath().value());
+
+        ServerHttpResponse response = exchange.getResponse();
+        response.setStatusCode(status);
+        response.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+        try {
+            return response.writeWith(Mono.just(response.bufferFactory().wrap(objectMapper.writeValueAsBytes(body))));
+        } catch (JsonProcessingException e) {
+            return Mono.error(e);
+        }
+    }
+}
@@ -3,16 +3,21 @@ package com.example.microservicesjavaapp.model;
 import jakarta.persistence.CascadeType;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.FetchType;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import jakarta.persistence.JoinColumn;
+import jakarta.persistence.Lob;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.OneToMany;
 import jakarta.persistence.Table;
 import jakarta.validation.constraints.NotNull;
 import lombok.*;
 
+import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.HashSet;
 import java.util.Set;
@@ -33,7 +38,7 @@ public class Cart {
     @GeneratedValue(strategy = GenerationType.IDENTITY) // Configures the primary key to be auto-generated by the database
     private Long id; // Unique identifier for the cart
 
-    @ManyToOne // Defines a many-to-one relationship with the User entity
+    @ManyToOne(fetch = FetchType.LAZY) // Defines a many-to-one relationship with the User entity, loaded only where a fetch plan asks for it
     @JoinColumn(name = "user_id", nullable = false) // Specifies the foreign key column in the 'carts' table
     @NotNull(message = "User cannot be null for a cart") // Validation constraint: user cannot be null
     private User user; // The user to whom this cart belongs
@@ -41,6 +46,9 @@ public class Cart {
     @Column(nullable = false)
     private LocalDateTime createdAt; // Timestamp when the cart was created
 
+    @Column(nullable = false)
+    private LocalDateTime updatedAt; // Timestamp of the last change to the cart or its items, used to expire idle carts
+
     // Represents the items within this cart.
     // CascadeType.ALL ensures that operations (persist, merge, remove) on the Cart
     // are cascaded to its associated CartItem entities.
@@ -58,9 +66,23 @@ public class Cart {
     }
 
     @Column(nullable = false)
+    @Enumerated(EnumType.STRING) // Stored by name, matching the VARCHAR 'status' column in schema.sql
     @NotNull(message = "Cart status cannot be null")
     private CartStatus status; // The current status of the cart
 
+    // Running totals over the cart's lines, updated in the same transaction as every item change so
+    // checkout and the totals preview never have to walk the lines (see CartPricing)
+    @Column(nullable = false, precision = 19, scale = 2)
+    private BigDecimal subtotal = BigDecimal.ZERO; // Sum of price x quantity
+
+    @Column(nullable = false, precision = 19, scale = 2)
+    private BigDecimal discountedTotal = BigDecimal.ZERO; // Subtotal after category discounts, the amount charged
+
+    @ToString.Exclude
+    @Lob
+    @Column(name = "order_lines")
+    private String orderLines; // Lines as charged at checkout, encoded as in OrderHistory; null until the cart is processed
+
     /**
      * Pre-persists hook to set creation timestamp and initial status.
      * This method is called automatically before the entity is first persisted to the database.
@@ -70,8 +92,25 @@ public class Cart {
         if (createdAt == null) {
             createdAt = LocalDateTime.now();
         }
+        if (updatedAt == null) {
+            updatedAt = createdAt;
+        }
         if (status == null) {
             status = CartStatus.ACTIVE; // Default status for a new cart
         }
+        if (subtotal == null) {
+            subtotal = BigDecimal.ZERO;
+        }
+        if (discountedTotal == null) {
+            discountedTotal = BigDecimal.ZERO;
+        }
+    }
+
+    /**
+     * Pre-update hook to refresh the last-modified timestamp whenever the cart row changes.
+     */
+    @jakarta.persistence.PreUpdate
+    protected void onUpdate() {
+        updatedAt = LocalDateTime.now();
     }
 }
\ No newline at end of file
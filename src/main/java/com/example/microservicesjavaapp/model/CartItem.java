@@ -2,6 +2,7 @@ package com.example.microservicesjavaapp.model;
 
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
+import jakarta.persistence.FetchType;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
@@ -34,12 +35,12 @@ public class CartItem {
 
     @ToString.Exclude
     @EqualsAndHashCode.Exclude
-    @ManyToOne // Defines a many-to-one relationship with the Cart entity
+    @ManyToOne(fetch = FetchType.LAZY) // Defines a many-to-one relationship with the Cart entity, loaded only where a fetch plan asks for it
     @JoinColumn(name = "cart_id", nullable = false) // Specifies the foreign key column in the 'cart_items' table
     @NotNull(message = "Cart cannot be null for a cart item") // Validation constraint: cart cannot be null
     private Cart cart; // The cart to which this item belongs
 
-    @ManyToOne // Defines a many-to-one relationship with the Product entity
+    @ManyToOne(fetch = FetchType.LAZY) // Defines a many-to-one relationship with the Product entity, loaded only where a fetch plan asks for it
     @JoinColumn(name = "product_id", nullable = false) // Specifies the foreign key column in the 'cart_items' table
     @NotNull(message = "Product cannot be null for a cart item") // Validation constraint: product cannot be null
     private Product product; // The product included in this cart item
@@ -1,7 +1,9 @@
 package com.example.microservicesjavaapp.model;
 
+import com.example.microservicesjavaapp.service.DiscountEngine;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
+import jakarta.persistence.EntityListeners;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
@@ -22,6 +24,7 @@ import java.math.BigDecimal;
  * Discounts are applied based on product categories and have a percentage value.
  */
 @Entity // Marks this class as a JPA entity
+@EntityListeners(DiscountEngine.ReloadOnChange.class) // Recompiles the discount rules once the change commits
 @Table(name = "discounts") // Specifies the table name in the database
 @Data // Lombok annotation to generate getters, setters, toString, equals, and hashCode
 @NoArgsConstructor // Lombok annotation to generate a no-argument constructor
@@ -0,0 +1,60 @@
+package com.example.microservicesjavaapp.model;
+
+import com.example.microservicesjavaapp.service.DiscountEngine;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EntityListeners;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import jakarta.validation.constraints.DecimalMax;
+import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Represents a DiscountRule entity in the system.
+ * This entity is mapped to the 'discount_rules' table in the database.
+ * A rule targets either one product or a whole category, applies from a minimum quantity on the line
+ * (quantity tiers) and may be limited to a time window. Category-wide discounts without tiers or
+ * windows stay in the 'discounts' table; DiscountEngine evaluates both.
+ */
+@Entity // Marks this class as a JPA entity
+@EntityListeners(DiscountEngine.ReloadOnChange.class) // Recompiles the discount rules once the change commits
+@Table(name = "discount_rules") // Specifies the table name in the database
+@Data // Lombok annotation to generate getters, setters, toString, equals, and hashCode
+@NoArgsConstructor // Lombok annotation to generate a no-argument constructor
+@AllArgsConstructor // Lombok annotation to generate an all-argument constructor
+public class DiscountRule {
+
+    @Id // Marks this field as the primary key
+    @GeneratedValue(strategy = GenerationType.IDENTITY) // Configures the primary key to be auto-generated by the database
+    private Long id; // Unique identifier for the rule
+
+    @Column(name = "product_id") // Set for product-level rules, null for category rules
+    private Long productId; // The product to which this rule applies
+
+    private String category; // The category to which this rule applies, when productId is null
+
+    @Column(nullable = false) // Ensures the minimum quantity is not null
+    @NotNull(message = "Minimum quantity cannot be null") // Validation constraint: minimum quantity cannot be null
+    @Min(value = 1, message = "Minimum quantity must be at least 1") // Validation constraint: min 1
+    private Integer minQuantity; // The line quantity from which this rule applies
+
+    @Column(nullable = false) // Ensures the discount percentage is not null
+    @NotNull(message = "Discount percentage cannot be null") // Validation constraint: discount percentage cannot be null
+    @DecimalMin(value = "0.01", message = "Discount percentage must be greater than 0") // Validation constraint: min 0.01%
+    @DecimalMax(value = "100.00", message = "Discount percentage cannot exceed 100") // Validation constraint: max 100%
+    private BigDecimal percentage; // The discount percentage (e.g., 10.00 for 10%)
+
+    private LocalDateTime validFrom; // Start of the window (inclusive), or null for no start
+
+    private LocalDateTime validUntil; // End of the window (exclusive), or null for no end
+}
@@ -0,0 +1,72 @@
+package com.example.microservicesjavaapp.model;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Lob;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Immutable;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Represents an archived order in the system.
+ * This entity is mapped to the append-only 'order_history' table, which receives processed carts
+ * once they are old enough to leave the live 'carts'/'cart_items' tables.
+ * Each row is denormalized: user and product details are copied in, and the order lines are kept
+ * in a single compact column (see {@link Line}).
+ */
+@Entity // Marks this class as a JPA entity
+@Immutable // Rows are written once by the archiver and never updated
+@Table(name = "order_history") // Specifies the table name in the database
+@Data // Lombok annotation to generate getters, setters, toString, equals, and hashCode
+@NoArgsConstructor // Lombok annotation to generate a no-argument constructor
+@AllArgsConstructor // Lombok annotation to generate an all-argument constructor
+public class OrderHistory {
+
+    @Id // Marks this field as the primary key
+    @GeneratedValue(strategy = GenerationType.IDENTITY) // Configures the primary key to be auto-generated by the database
+    private Long id; // Unique identifier for the history row
+
+    @Column(nullable = false, unique = true)
+    private Long cartId; // ID the order had as a live cart
+
+    @Column(nullable = false)
+    private Long userId; // Owner of the order (no foreign key: history outlives user changes)
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt; // When the cart was created
+
+    @Column(nullable = false)
+    private LocalDateTime processedAt; // When the cart was processed
+
+    @Column(nullable = false)
+    private Integer lineCount; // Number of order lines
+
+    @Column(nullable = false)
+    private BigDecimal totalAmount; // Order total after category discounts
+
+    @Lob
+    @Column(name = "order_lines", nullable = false)
+    private String orderLines; // Order lines encoded as a JSON array of Line tuples
+
+    /**
+     * One order line as stored in 'order_lines'.
+     * Serialized as a positional array ([productId, code, quantity, unitPrice]) to keep rows small.
+     *
+     * @param productId The ID of the product.
+     * @param code The product code at checkout.
+     * @param quantity The quantity ordered.
+     * @param unitPrice The unit price charged at checkout.
+     */
+    @JsonFormat(shape = JsonFormat.Shape.ARRAY)
+    public record Line(Long productId, String code, Integer quantity, BigDecimal unitPrice) {
+    }
+}
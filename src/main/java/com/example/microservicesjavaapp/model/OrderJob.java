@@ -0,0 +1,65 @@
+package com.example.microservicesjavaapp.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Represents a checkout waiting to be processed.
+ * This entity is mapped to the 'order_jobs' table, the durable queue that OrderJobQueue hands out to
+ * the OrderJobWorker of every application instance.
+ */
+@Entity // Marks this class as a JPA entity
+@Table(name = "order_jobs") // Specifies the table name in the database
+@Data // Lombok annotation to generate getters, setters, toString, equals, and hashCode
+@NoArgsConstructor // Lombok annotation to generate a no-argument constructor
+@AllArgsConstructor // Lombok annotation to generate an all-argument constructor
+public class OrderJob {
+
+    @Id // Marks this field as the primary key
+    @GeneratedValue(strategy = GenerationType.IDENTITY) // Configures the primary key to be auto-generated by the database
+    private Long id; // Unique identifier for the job
+
+    @Column(nullable = false, unique = true)
+    private Long cartId; // The cart to process
+
+    @Enumerated(EnumType.STRING) // Stores the enum as a string in the database
+    @Column(nullable = false, length = 20)
+    private JobStatus status; // Where the job stands
+
+    @Column(nullable = false)
+    private Integer attempts; // Number of times the job was claimed
+
+    @Column(nullable = false)
+    private LocalDateTime availableAt; // The job is not claimed before this instant
+
+    @Column(length = 64)
+    private String leaseOwner; // Instance working on the job, while RUNNING
+
+    private LocalDateTime leaseUntil; // Another instance may reclaim the job after this instant
+
+    @Column(length = 1000)
+    private String lastError; // Failure of the last attempt, if any
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt; // When the checkout was requested
+
+    /**
+     * Enum for job status. Jobs that succeed are deleted, so there is no DONE.
+     */
+    public enum JobStatus {
+        PENDING, // Waiting for its first attempt or for a retry
+        RUNNING, // Claimed by an instance until 'leaseUntil'
+        DEAD // Failed 'app.order-jobs.max-attempts' times; left for an operator, or requeued by a new checkout of the cart
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.microservicesjavaapp.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Represents a cart lifecycle event waiting to be published.
+ * This entity is mapped to the 'outbox_events' table: events are written in the same transaction as the
+ * cart change they describe, so they exist if and only if the change was committed, and OutboxDispatcher
+ * publishes them to the configured OutboxSink afterwards.
+ */
+@Entity // Marks this class as a JPA entity
+@Table(name = "outbox_events") // Specifies the table name in the database
+@Data // Lombok annotation to generate getters, setters, toString, equals, and hashCode
+@NoArgsConstructor // Lombok annotation to generate a no-argument constructor
+@AllArgsConstructor // Lombok annotation to generate an all-argument constructor
+public class OutboxEvent {
+
+    @Id // Marks this field as the primary key
+    @GeneratedValue(strategy = GenerationType.IDENTITY) // Configures the primary key to be auto-generated by the database
+    private Long id; // Unique identifier for the event, increasing in the order events were written
+
+    @Column(nullable = false)
+    private Long aggregateId; // ID of the cart the event is about
+
+    @Enumerated(EnumType.STRING) // Stores the enum as a string in the database
+    @Column(nullable = false, length = 40)
+    private EventType eventType; // What happened to the cart
+
+    @Column(nullable = false, length = 4000)
+    private String payload; // The event as JSON (see CartEventDto)
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt; // When the change happened
+
+    /**
+     * Enum for the cart lifecycle events.
+     */
+    public enum EventType {
+        CART_CREATED,
+        CART_ITEM_ADDED, // A product was added, or its quantity increased
+        CART_ITEM_REMOVED,
+        CART_PROCESSED // The order was checked out and processed
+    }
+}
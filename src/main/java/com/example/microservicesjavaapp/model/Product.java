@@ -1,7 +1,10 @@
 package com.example.microservicesjavaapp.model;
 
+import com.example.microservicesjavaapp.dto.ProductJsonCache;
+import com.example.microservicesjavaapp.service.ProductCatalog;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
+import jakarta.persistence.EntityListeners;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
@@ -9,6 +12,7 @@ import jakarta.persistence.Table;
 import jakarta.validation.constraints.DecimalMin;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.PositiveOrZero;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
@@ -18,9 +22,13 @@ import java.math.BigDecimal;
 /**
  * Represents a Product entity in the system.
  * This entity is mapped to the 'products' table in the database.
- * Products have a name, price, and category.
+ * Products have a name, price, category and a stock of units on hand.
  */
 @Entity // Marks this class as a JPA entity
+@EntityListeners({
+        ProductJsonCache.EvictOnChange.class, // Drops the product's cached response JSON when it changes
+        ProductCatalog.IndexOnChange.class // Re-indexes the product in the catalog once the change commits
+})
 @Table(name = "products") // Specifies the table name in the database
 @Data // Lombok annotation to generate getters, setters, toString, equals, and hashCode
 @NoArgsConstructor // Lombok annotation to generate a no-argument constructor
@@ -47,4 +55,9 @@ public class Product {
     @Column(nullable = false) // Ensures the category is not null
     @NotBlank(message = "Category cannot be empty") // Validation constraint: category cannot be blank
     private String category; // The category of the product (e.g., "Electronics", "Books", "Food")
+
+    @Column(nullable = false) // Ensures the stock is not null
+    @NotNull(message = "Stock cannot be null") // Validation constraint: stock cannot be null
+    @PositiveOrZero(message = "Stock cannot be negative") // Validation constraint: stock must be at least 0
+    private Integer stock; // Units on hand; units in ACTIVE carts are reserved, and only taken off at checkout
 }
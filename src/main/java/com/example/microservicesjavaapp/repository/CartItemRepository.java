@@ -3,9 +3,14 @@ package com.example.microservicesjavaapp.repository;
 import com.example.microservicesjavaapp.model.Cart;
 import com.example.microservicesjavaapp.model.CartItem;
 import com.example.microservicesjavaapp.model.Product;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -28,13 +33,30 @@ public interface CartItemRepository extends JpaRepository<CartItem, Long> {
     Optional<CartItem> findByCartAndProduct(Cart cart, Product product);
 
     /**
-     * Finds all CartItems associated with a specific Cart.
-     * This is used to retrieve all products within a given shopping cart.
+     * Finds all CartItems associated with a specific Cart, together with their products.
+     * This is used to retrieve all products within a given shopping cart in one query.
      *
      * @param cart The Cart entity for which to retrieve items.
-     * @return A list of CartItem entities.
+     * @return A list of CartItem entities with their products initialized.
      */
-    List<CartItem> findByCart(Cart cart);
+    @EntityGraph(attributePaths = "product")
+    List<CartItem> findWithProductByCart(Cart cart);
+
+    /**
+     * Checks whether a Cart has any items, without loading them.
+     *
+     * @param cart The Cart entity.
+     * @return true if the cart has at least one item.
+     */
+    boolean existsByCart(Cart cart);
+
+    /**
+     * Counts the items of a Cart, without loading them.
+     *
+     * @param cart The Cart entity.
+     * @return The number of items in the cart.
+     */
+    int countByCart(Cart cart);
 
     /**
      * Finds a CartItem by its ID and the associated Cart.
@@ -45,4 +67,25 @@ public interface CartItemRepository extends JpaRepository<CartItem, Long> {
      * @return An Optional containing the CartItem if found, or empty if not.
      */
     Optional<CartItem> findByIdAndCart(Long id, Cart cart);
-}
\ No newline at end of file
+
+    /**
+     * Bulk-deletes all items belonging to the given carts in a single statement.
+     *
+     * @param cartIds The IDs of the carts whose items are deleted.
+     * @return The number of deleted items.
+     */
+    @Modifying
+    @Query("delete from CartItem i where i.cart.id in :cartIds")
+    int deleteByCartIdIn(@Param("cartIds") Collection<Long> cartIds);
+
+    /**
+     * Sums the quantities of the items of the given carts per product.
+     * Used to hand the stock of deleted carts back to StockReservations.
+     *
+     * @param cartIds The IDs of the carts.
+     * @return One entry per product found in the carts.
+     */
+    @Query("select new com.example.microservicesjavaapp.repository.ProductQuantity(i.product.id, sum(i.quantity)) "
+            + "from CartItem i where i.cart.id in :cartIds group by i.product.id")
+    List<ProductQuantity> sumQuantityByProductForCartIdIn(@Param("cartIds") Collection<Long> cartIds);
+}
@@ -2,9 +2,19 @@ package com.example.microservicesjavaapp.repository;
 
 import com.example.microservicesjavaapp.model.Cart;
 import com.example.microservicesjavaapp.model.User;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -26,13 +36,28 @@ public interface CartRepository extends JpaRepository<Cart, Long> {
     Optional<Cart> findByIdAndStatus(Long id, Cart.CartStatus status);
 
     /**
-     * Finds all carts associated with a specific user.
-     * This fulfills the requirement to "Listar los carritos asociados a un cliente."
+     * Finds a Cart by its ID and status and locks its row until the transaction ends.
+     * Used by checkout, so two instances processing the same cart run one after the other and the
+     * second finds it no longer ACTIVE.
+     *
+     * @param id The ID of the cart to find.
+     * @param status The status the cart must be in.
+     * @return An Optional containing the locked Cart if found, or empty if not.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select c from Cart c where c.id = :id and c.status = :status")
+    Optional<Cart> lockByIdAndStatus(@Param("id") Long id, @Param("status") Cart.CartStatus status);
+
+    /**
+     * Finds all carts associated with a specific user, together with their user, items and products.
+     * This fulfills the requirement to "Listar los carritos asociados a un cliente."; the fetch plan
+     * covers everything CartDtoMapper.toCartDto reads, in one query.
      *
      * @param user The User entity for whom to retrieve carts.
-     * @return A list of Carts associated with the given user.
+     * @return A list of Carts associated with the given user, with their associations initialized.
      */
-    List<Cart> findByUser(User user);
+    @EntityGraph(attributePaths = {"user", "items", "items.product"})
+    List<Cart> findWithItemsByUser(User user);
 
     /**
      * Finds all carts associated with a specific user and a specific status.
@@ -42,4 +67,101 @@ public interface CartRepository extends JpaRepository<Cart, Long> {
      * @return A list of Carts associated with the given user and status.
      */
     List<Cart> findByUserAndStatus(User user, Cart.CartStatus status);
+
+    /**
+     * Finds and row-locks the IDs of carts in a given status that have not changed since the cutoff,
+     * oldest first. Served by the (status, updated_at) index; the lock keeps concurrent writers
+     * from touching a cart between its selection and its deletion.
+     *
+     * @param status The status of the carts to look for.
+     * @param cutoff Carts last modified before this instant are considered idle.
+     * @param page Bounds the number of IDs returned.
+     * @return The IDs of the idle carts.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select c.id from Cart c where c.status = :status and c.updatedAt < :cutoff order by c.updatedAt")
+    List<Long> lockIdleCartIds(@Param("status") Cart.CartStatus status, @Param("cutoff") LocalDateTime cutoff, Pageable page);
+
+    /**
+     * Bulk-deletes the carts with the given IDs. Their items must be deleted first.
+     *
+     * @param ids The IDs of the carts to delete.
+     * @return The number of deleted carts.
+     */
+    @Modifying
+    @Query("delete from Cart c where c.id in :ids")
+    int deleteByIdIn(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Loads the carts with the given IDs together with their user, items and products in one query.
+     * Used when a batch of carts has to be read in full, e.g. by the archiver.
+     *
+     * @param ids The IDs of the carts to load.
+     * @return The carts with their associations initialized.
+     */
+    @Query("select distinct c from Cart c join fetch c.user left join fetch c.items i left join fetch i.product where c.id in :ids")
+    List<Cart> findAllWithItemsByIdIn(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Finds and row-locks, among the given carts, those in a given status, skipping carts locked by
+     * another transaction (a checkout, the reaper, an item change about to commit).
+     * Native for SKIP LOCKED, which Hibernate's H2Dialect does not render.
+     *
+     * @param ids The IDs of the carts.
+     * @param status The status the carts must be in.
+     * @return The IDs of the carts locked.
+     */
+    @Query(value = "SELECT id FROM carts WHERE id IN (:ids) AND status = :status FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<Long> lockIdsByStatusSkipLocked(@Param("ids") Collection<Long> ids, @Param("status") String status);
+
+    /**
+     * Finds, among the given carts, the IDs of those in a given status, without locking them.
+     *
+     * @param ids The IDs of the carts.
+     * @param status The status the carts must be in.
+     * @return The IDs of the matching carts.
+     */
+    @Query("select c.id from Cart c where c.id in :ids and c.status = :status")
+    List<Long> findIdsByIdInAndStatus(@Param("ids") Collection<Long> ids, @Param("status") Cart.CartStatus status);
+
+    /**
+     * Finds the highest cart ID in use, read from the end of the primary key index.
+     *
+     * @return The highest cart ID, or null if there are no carts.
+     */
+    @Query("select max(c.id) from Cart c")
+    Long findMaxId();
+
+    /**
+     * Finds the IDs of carts in a given status, in ID order, starting at a given ID.
+     * Used to pick a contiguous sample of carts from a random starting point.
+     *
+     * @param status The status of the carts to look for.
+     * @param fromId The lowest ID to return.
+     * @param page Bounds the number of IDs returned.
+     * @return The IDs of the matching carts.
+     */
+    @Query("select c.id from Cart c where c.status = :status and c.id >= :fromId order by c.id")
+    List<Long> findIdsByStatusFromId(@Param("status") Cart.CartStatus status, @Param("fromId") Long fromId, Pageable page);
+
+    /**
+     * Overwrites a cart's running totals, but only if they still hold the values they had when the
+     * replacement was computed; a concurrent item change wins over the correction.
+     * Leaves 'updatedAt' alone, so a correction never keeps an abandoned cart alive.
+     *
+     * @param id The ID of the cart.
+     * @param expectedSubtotal The subtotal the cart must still have.
+     * @param expectedDiscountedTotal The discounted total the cart must still have.
+     * @param subtotal The new subtotal.
+     * @param discountedTotal The new discounted total.
+     * @return The number of updated carts (0 or 1).
+     */
+    @Modifying
+    @Query("update Cart c set c.subtotal = :subtotal, c.discountedTotal = :discountedTotal "
+            + "where c.id = :id and c.subtotal = :expectedSubtotal and c.discountedTotal = :expectedDiscountedTotal")
+    int updateTotalsIfUnchanged(@Param("id") Long id,
+                                @Param("expectedSubtotal") BigDecimal expectedSubtotal,
+                                @Param("expectedDiscountedTotal") BigDecimal expectedDiscountedTotal,
+                                @Param("subtotal") BigDecimal subtotal,
+                                @Param("discountedTotal") BigDecimal discountedTotal);
 }
@@ -0,0 +1,13 @@
+package com.example.microservicesjavaapp.repository;
+
+import com.example.microservicesjavaapp.model.DiscountRule;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Spring Data JPA Repository for the DiscountRule entity.
+ * Rules are only ever read all at once, by DiscountEngine when it compiles them.
+ */
+@Repository // Marks this interface as a Spring Data JPA repository
+public interface DiscountRuleRepository extends JpaRepository<DiscountRule, Long> {
+}
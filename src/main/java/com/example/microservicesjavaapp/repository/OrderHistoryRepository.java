@@ -0,0 +1,24 @@
+package com.example.microservicesjavaapp.repository;
+
+import com.example.microservicesjavaapp.model.OrderHistory;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * Spring Data JPA Repository for the OrderHistory entity.
+ * This interface extends JpaRepository, providing standard CRUD operations
+ * for the archived orders.
+ */
+@Repository // Marks this interface as a Spring Data JPA repository
+public interface OrderHistoryRepository extends JpaRepository<OrderHistory, Long> {
+
+    /**
+     * Finds all archived orders of a user, most recently processed first.
+     *
+     * @param userId The ID of the user.
+     * @return A list of the user's archived orders.
+     */
+    List<OrderHistory> findByUserIdOrderByProcessedAtDesc(Long userId);
+}
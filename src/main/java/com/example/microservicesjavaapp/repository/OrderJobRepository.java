@@ -0,0 +1,74 @@
+package com.example.microservicesjavaapp.repository;
+
+import com.example.microservicesjavaapp.model.OrderJob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Spring Data JPA Repository for the OrderJob entity.
+ * The claim queries lock the rows they return with FOR UPDATE SKIP LOCKED, so instances polling at the
+ * same time each get different jobs instead of waiting for each other. They are native because
+ * Hibernate's H2Dialect renders every pessimistic lock as a plain FOR UPDATE, although H2 supports
+ * SKIP LOCKED.
+ */
+@Repository // Marks this interface as a Spring Data JPA repository
+public interface OrderJobRepository extends JpaRepository<OrderJob, Long> {
+
+    /**
+     * Queues a job for a cart, unless the cart already has a PENDING or RUNNING one. A DEAD job is reset
+     * to a fresh PENDING one, so checking the cart out again retries it.
+     *
+     * @param cartId The ID of the cart.
+     * @param now The current time: the job is due straight away.
+     * @return 1 if a job was queued or requeued, 0 if the cart already had a live one.
+     */
+    @Modifying
+    @Query(value = "MERGE INTO order_jobs j USING (VALUES (CAST(:cartId AS BIGINT), CAST(:now AS TIMESTAMP(6)))) AS q(cart_id, queued_at) "
+            + "ON j.cart_id = q.cart_id "
+            + "WHEN MATCHED AND j.status = 'DEAD' THEN UPDATE SET status = 'PENDING', attempts = 0, available_at = q.queued_at, "
+            + "last_error = NULL, created_at = q.queued_at "
+            + "WHEN NOT MATCHED THEN INSERT (cart_id, status, attempts, available_at, created_at) "
+            + "VALUES (q.cart_id, 'PENDING', 0, q.queued_at, q.queued_at)", nativeQuery = true)
+    int insertOrRequeue(@Param("cartId") Long cartId, @Param("now") LocalDateTime now);
+
+    /**
+     * Finds and locks jobs of a status that are due, oldest first, skipping jobs locked by other claims.
+     *
+     * @param status The status of the jobs (PENDING).
+     * @param now Jobs available at or before this instant are due.
+     * @param limit The maximum number of jobs returned.
+     * @return The locked jobs.
+     */
+    @Query(value = "SELECT * FROM order_jobs WHERE status = :status AND available_at <= :now "
+            + "ORDER BY available_at FETCH FIRST :limit ROWS ONLY FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<OrderJob> lockDueJobs(@Param("status") String status, @Param("now") LocalDateTime now, @Param("limit") int limit);
+
+    /**
+     * Finds and locks jobs of a status whose lease has expired, skipping jobs locked by other claims.
+     *
+     * @param status The status of the jobs (RUNNING).
+     * @param now Leases ending before this instant have expired.
+     * @param limit The maximum number of jobs returned.
+     * @return The locked jobs.
+     */
+    @Query(value = "SELECT * FROM order_jobs WHERE status = :status AND lease_until < :now "
+            + "ORDER BY lease_until FETCH FIRST :limit ROWS ONLY FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<OrderJob> lockExpiredJobs(@Param("status") String status, @Param("now") LocalDateTime now, @Param("limit") int limit);
+
+    /**
+     * Deletes a finished job, provided the given instance still holds its lease.
+     *
+     * @param id The ID of the job.
+     * @param leaseOwner The instance that processed the job.
+     * @return 1 if the job was deleted, 0 if its lease had been taken over.
+     */
+    @Modifying
+    @Query("delete from OrderJob j where j.id = :id and j.leaseOwner = :leaseOwner")
+    int deleteByIdAndLeaseOwner(@Param("id") Long id, @Param("leaseOwner") String leaseOwner);
+}
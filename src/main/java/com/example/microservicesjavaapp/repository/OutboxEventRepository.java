@@ -0,0 +1,33 @@
+package com.example.microservicesjavaapp.repository;
+
+import com.example.microservicesjavaapp.model.OutboxEvent;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * Spring Data JPA Repository for the OutboxEvent entity.
+ */
+@Repository // Marks this interface as a Spring Data JPA repository
+public interface OutboxEventRepository extends JpaRepository<OutboxEvent, Long> {
+
+    /**
+     * Locks the dispatcher row until the transaction ends, unless another instance holds it.
+     * Native for SKIP LOCKED, which Hibernate's H2Dialect does not render.
+     *
+     * @return The row's ID if this transaction now holds the lock, an empty list if another one does.
+     */
+    @Query(value = "SELECT id FROM outbox_dispatcher WHERE id = 1 FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<Integer> lockDispatcher();
+
+    /**
+     * Finds the oldest events, in the order they were written.
+     *
+     * @param page Bounds the number of events returned.
+     * @return The events, by ascending ID.
+     */
+    List<OutboxEvent> findByOrderByIdAsc(Pageable page);
+}
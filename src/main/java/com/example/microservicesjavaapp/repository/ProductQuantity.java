@@ -0,0 +1,10 @@
+package com.example.microservicesjavaapp.repository;
+
+/**
+ * Total quantity of a product across a set of cart items.
+ *
+ * @param productId The ID of the product.
+ * @param quantity The summed quantity.
+ */
+public record ProductQuantity(Long productId, Long quantity) {
+}
@@ -1,7 +1,11 @@
 package com.example.microservicesjavaapp.repository;
 
+import com.example.microservicesjavaapp.model.Cart;
 import com.example.microservicesjavaapp.model.Product;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.Optional;
@@ -22,4 +26,31 @@ public interface ProductRepository extends JpaRepository<Product, Long> {
      * @return An Optional containing the Product if found, or empty if not.
      */
     Optional<Product> findByCode(String code);
-}
\ No newline at end of file
+
+    /**
+     * Computes the units of a product that are free to reserve: its stock less the units sitting in
+     * carts of the given status.
+     *
+     * @param id The ID of the product.
+     * @param reservingStatus The status of the carts whose items hold stock (ACTIVE).
+     * @return The unreserved units (negative when more is reserved than on hand), or null if the product does not exist.
+     */
+    @Query("select p.stock - coalesce((select sum(i.quantity) from CartItem i where i.product = p and i.cart.status = :status), 0) "
+            + "from Product p where p.id = :id")
+    Long findUnreservedStock(@Param("id") Long id, @Param("status") Cart.CartStatus reservingStatus);
+
+    /**
+     * Takes the quantities of a cart's items off the stock of their products, in a single statement.
+     * Used at checkout, when the cart's reservations become sales. A product without enough units on hand
+     * violates the CHECK (stock >= 0) constraint of 'products', which fails the whole statement: the stock
+     * never goes negative, whatever the in-memory reservations allowed.
+     *
+     * @param cartId The ID of the cart being checked out.
+     * @return The number of updated products.
+     * @throws org.springframework.dao.DataIntegrityViolationException If a product does not have enough stock.
+     */
+    @Modifying
+    @Query("update Product p set p.stock = p.stock - (select i.quantity from CartItem i where i.cart.id = :cartId and i.product = p) "
+            + "where p.id in (select i.product.id from CartItem i where i.cart.id = :cartId)")
+    int decrementStockByCartItems(@Param("cartId") Long cartId);
+}
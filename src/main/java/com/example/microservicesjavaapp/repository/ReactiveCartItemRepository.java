@@ -0,0 +1,144 @@
+package com.example.microservicesjavaapp.repository;
+
+import com.example.microservicesjavaapp.model.Cart;
+import com.example.microservicesjavaapp.model.CartItem;
+import com.example.microservicesjavaapp.model.Product;
+import io.r2dbc.spi.Readable;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+
+/**
+ * R2DBC repository for the 'cart_items' table, used by the reactive stack.
+ * Items are read together with their product. Their 'cart' only carries the cart ID, like a JPA reference.
+ */
+@Repository // Marks this class as a data access component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE) // Only when the reactive stack is selected
+public class ReactiveCartItemRepository {
+
+    private static final String SELECT_ITEM = "SELECT i.id, i.cart_id, i.quantity, " + ReactiveProductRepository.COLUMNS + " "
+            + "FROM cart_items i JOIN products p ON p.id = i.product_id ";
+
+    private final DatabaseClient databaseClient;
+
+    public ReactiveCartItemRepository(DatabaseClient databaseClient) {
+        this.databaseClient = databaseClient;
+    }
+
+    /**
+     * Finds all items of a cart.
+     *
+     * @param cartId The ID of the cart.
+     * @return A Flux of the cart's items.
+     */
+    public Flux<CartItem> findByCartId(Long cartId) {
+        return databaseClient.sql(SELECT_ITEM + "WHERE i.cart_id = :cartId")
+                .bind("cartId", cartId)
+                .map(ReactiveCartItemRepository::toCartItem)
+                .all();
+    }
+
+    /**
+     * Checks whether a cart has any items, without reading them.
+     *
+     * @param cartId The ID of the cart.
+     * @return A Mono emitting true if the cart has at least one item.
+     */
+    public Mono<Boolean> existsByCartId(Long cartId) {
+        return databaseClient.sql("SELECT 1 FROM cart_items WHERE cart_id = :cartId LIMIT 1")
+                .bind("cartId", cartId)
+                .map(row -> Boolean.TRUE)
+                .first()
+                .defaultIfEmpty(Boolean.FALSE);
+    }
+
+    /**
+     * Finds the items of several carts in one query.
+     *
+     * @param cartIds The IDs of the carts.
+     * @return A Flux of the items of all given carts.
+     */
+    public Flux<CartItem> findByCartIdIn(Collection<Long> cartIds) {
+        return databaseClient.sql(SELECT_ITEM + "WHERE i.cart_id IN (:cartIds)")
+                .bind("cartIds", cartIds)
+                .map(ReactiveCartItemRepository::toCartItem)
+                .all();
+    }
+
+    /**
+     * Finds the item of a product within a cart.
+     *
+     * @param cartId The ID of the cart.
+     * @param productId The ID of the product.
+     * @return A Mono emitting the CartItem, or empty if the product is not in the cart.
+     */
+    public Mono<CartItem> findByCartIdAndProductId(Long cartId, Long productId) {
+        return databaseClient.sql(SELECT_ITEM + "WHERE i.cart_id = :cartId AND i.product_id = :productId")
+                .bind("cartId", cartId)
+                .bind("productId", productId)
+                .map(ReactiveCartItemRepository::toCartItem)
+                .one();
+    }
+
+    /**
+     * Inserts a new item into a cart.
+     *
+     * @param cartId The ID of the cart.
+     * @param product The product to add.
+     * @param quantity The quantity to add.
+     * @return A Mono emitting the stored CartItem, with its generated ID.
+     */
+    public Mono<CartItem> insert(Long cartId, Product product, Integer quantity) {
+        return databaseClient.sql("INSERT INTO cart_items (cart_id, product_id, quantity) VALUES (:cartId, :productId, :quantity)")
+                .bind("cartId", cartId)
+                .bind("productId", product.getId())
+                .bind("quantity", quantity)
+                .filter(statement -> statement.returnGeneratedValues("id"))
+                .map(row -> row.get("id", Long.class))
+                .one()
+                .map(id -> new CartItem(id, cartReference(cartId), product, quantity));
+    }
+
+    /**
+     * Sets the quantity of a cart item.
+     *
+     * @param id The ID of the cart item.
+     * @param quantity The new quantity.
+     * @return A Mono emitting the number of updated rows.
+     */
+    public Mono<Long> updateQuantity(Long id, Integer quantity) {
+        return databaseClient.sql("UPDATE cart_items SET quantity = :quantity WHERE id = :id")
+                .bind("quantity", quantity)
+                .bind("id", id)
+                .fetch()
+                .rowsUpdated();
+    }
+
+    /**
+     * Deletes a cart item.
+     *
+     * @param id The ID of the cart item.
+     * @return A Mono emitting the number of deleted rows.
+     */
+    public Mono<Long> deleteById(Long id) {
+        return databaseClient.sql("DELETE FROM cart_items WHERE id = :id")
+                .bind("id", id)
+                .fetch()
+                .rowsUpdated();
+    }
+
+    private static CartItem toCartItem(Readable row) {
+        return new CartItem(row.get("id", Long.class), cartReference(row.get("cart_id", Long.class)),
+                ReactiveProductRepository.toProduct(row), row.get("quantity", Integer.class));
+    }
+
+    private static Cart cartReference(Long cartId) {
+        Cart cart = new Cart();
+        cart.setId(cartId);
+        return cart;
+    }
+}
@@ -0,0 +1,171 @@
+package com.example.microservicesjavaapp.repository;
+
+import com.example.microservicesjavaapp.model.Cart;
+import com.example.microservicesjavaapp.model.Cart.CartStatus;
+import com.example.microservicesjavaapp.model.User;
+import io.r2dbc.spi.Readable;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+
+/**
+ * R2DBC repository for the 'carts' table, used by the reactive stack.
+ * Carts are read together with their owner (one join on the primary key of 'users'); their items are
+ * loaded separately through ReactiveCartItemRepository.
+ */
+@Repository // Marks this class as a data access component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE) // Only when the reactive stack is selected
+public class ReactiveCartRepository {
+
+    private static final String SELECT_CART = "SELECT c.id, c.created_at, c.updated_at, c.status, c.subtotal, c.discounted_total, "
+            + "u.id AS user_id, u.username FROM carts c JOIN users u ON u.id = c.user_id ";
+
+    private final DatabaseClient databaseClient;
+
+    public ReactiveCartRepository(DatabaseClient databaseClient) {
+        this.databaseClient = databaseClient;
+    }
+
+    /**
+     * Finds a Cart by its ID, in any status.
+     *
+     * @param id The ID of the cart to find.
+     * @return A Mono emitting the Cart, or empty if not found.
+     */
+    public Mono<Cart> findById(Long id) {
+        return databaseClient.sql(SELECT_CART + "WHERE c.id = :id")
+                .bind("id", id)
+                .map(ReactiveCartRepository::toCart)
+                .one();
+    }
+
+    /**
+     * Finds a Cart by its ID and status.
+     *
+     * @param id The ID of the cart to find.
+     * @param status The status the cart must be in.
+     * @return A Mono emitting the Cart, or empty if not found.
+     */
+    public Mono<Cart> findByIdAndStatus(Long id, CartStatus status) {
+        return databaseClient.sql(SELECT_CART + "WHERE c.id = :id AND c.status = :status")
+                .bind("id", id)
+                .bind("status", status.name())
+                .map(ReactiveCartRepository::toCart)
+                .one();
+    }
+
+    /**
+     * Finds all carts associated with a specific user, in creation order.
+     *
+     * @param userId The ID of the user.
+     * @return A Flux of the user's Carts, without their items.
+     */
+    public Flux<Cart> findByUserId(Long userId) {
+        return databaseClient.sql(SELECT_CART + "WHERE c.user_id = :userId ORDER BY c.id")
+                .bind("userId", userId)
+                .map(ReactiveCartRepository::toCart)
+                .all();
+    }
+
+    /**
+     * Checks whether a Cart with the given ID exists, in any status.
+     *
+     * @param id The ID of the cart.
+     * @return A Mono emitting true if the cart exists.
+     */
+    public Mono<Boolean> existsById(Long id) {
+        return databaseClient.sql("SELECT 1 FROM carts WHERE id = :id")
+                .bind("id", id)
+                .map(row -> Boolean.TRUE)
+                .first()
+                .defaultIfEmpty(Boolean.FALSE);
+    }
+
+    /**
+     * Inserts a new cart for a user.
+     *
+     * @param user The owner of the cart.
+     * @param status The initial status of the cart.
+     * @return A Mono emitting the stored Cart, with its generated ID.
+     */
+    public Mono<Cart> insert(User user, CartStatus status) {
+        LocalDateTime now = LocalDateTime.now();
+        return databaseClient.sql("INSERT INTO carts (user_id, created_at, updated_at, status) "
+                        + "VALUES (:userId, :createdAt, :updatedAt, :status)")
+                .bind("userId", user.getId())
+                .bind("createdAt", now)
+                .bind("updatedAt", now)
+                .bind("status", status.name())
+                .filter(statement -> statement.returnGeneratedValues("id"))
+                .map(row -> row.get("id", Long.class))
+                .one()
+                .map(id -> new Cart(id, user, now, now, new HashSet<>(), status, BigDecimal.ZERO, BigDecimal.ZERO, null));
+    }
+
+    /**
+     * Stores the cart's running totals and records the change, keeping the cart away from the
+     * abandoned-cart reaper.
+     *
+     * @param cart The cart, with its updated running totals.
+     * @param updatedAt The time of the change.
+     * @return A Mono emitting the number of updated rows.
+     */
+    public Mono<Long> updateTotals(Cart cart, LocalDateTime updatedAt) {
+        return databaseClient.sql("UPDATE carts SET subtotal = :subtotal, discounted_total = :discountedTotal, "
+                        + "updated_at = :updatedAt WHERE id = :id")
+                .bind("subtotal", cart.getSubtotal())
+                .bind("discountedTotal", cart.getDiscountedTotal())
+                .bind("updatedAt", updatedAt)
+                .bind("id", cart.getId())
+                .fetch()
+                .rowsUpdated();
+    }
+
+    /**
+     * Stores what a cart is charged at checkout: its totals and its lines.
+     *
+     * @param cart The cart, with the totals it is charged.
+     * @param orderLines The lines it is charged, encoded as in the order history.
+     * @return A Mono emitting the number of updated rows.
+     */
+    public Mono<Long> updateCharge(Cart cart, String orderLines) {
+        return databaseClient.sql("UPDATE carts SET subtotal = :subtotal, discounted_total = :discountedTotal, "
+                        + "order_lines = :orderLines WHERE id = :id")
+                .bind("subtotal", cart.getSubtotal())
+                .bind("discountedTotal", cart.getDiscountedTotal())
+                .bind("orderLines", orderLines)
+                .bind("id", cart.getId())
+                .fetch()
+                .rowsUpdated();
+    }
+
+    /**
+     * Moves an ACTIVE cart to PROCESSED.
+     *
+     * @param id The ID of the cart.
+     * @return A Mono emitting true if the cart was still ACTIVE and is now PROCESSED.
+     */
+    public Mono<Boolean> markProcessed(Long id) {
+        return databaseClient.sql("UPDATE carts SET status = :processed, updated_at = :updatedAt WHERE id = :id AND status = :active")
+                .bind("processed", CartStatus.PROCESSED.name())
+                .bind("updatedAt", LocalDateTime.now())
+                .bind("id", id)
+                .bind("active", CartStatus.ACTIVE.name())
+                .fetch()
+                .rowsUpdated()
+                .map(rows -> rows > 0);
+    }
+
+    private static Cart toCart(Readable row) {
+        User user = new User(row.get("user_id", Long.class), row.get("username", String.class));
+        return new Cart(row.get("id", Long.class), user, row.get("created_at", LocalDateTime.class),
+                row.get("updated_at", LocalDateTime.class), new HashSet<>(), CartStatus.valueOf(row.get("status", String.class)),
+                row.get("subtotal", BigDecimal.class), row.get("discounted_total", BigDecimal.class), null);
+    }
+}
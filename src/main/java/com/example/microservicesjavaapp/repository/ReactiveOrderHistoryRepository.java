@@ -0,0 +1,41 @@
+package com.example.microservicesjavaapp.repository;
+
+import com.example.microservicesjavaapp.model.OrderHistory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * R2DBC repository for the 'order_history' table, used by the reactive stack.
+ */
+@Repository // Marks this class as a data access component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE) // Only when the reactive stack is selected
+public class ReactiveOrderHistoryRepository {
+
+    private final DatabaseClient databaseClient;
+
+    public ReactiveOrderHistoryRepository(DatabaseClient databaseClient) {
+        this.databaseClient = databaseClient;
+    }
+
+    /**
+     * Finds all archived orders of a user, most recently processed first.
+     *
+     * @param userId The ID of the user.
+     * @return A Flux of the user's archived orders.
+     */
+    public Flux<OrderHistory> findByUserIdOrderByProcessedAtDesc(Long userId) {
+        return databaseClient.sql("SELECT id, cart_id, user_id, created_at, processed_at, line_count, total_amount, order_lines "
+                        + "FROM order_history WHERE user_id = :userId ORDER BY processed_at DESC")
+                .bind("userId", userId)
+                .map(row -> new OrderHistory(row.get("id", Long.class), row.get("cart_id", Long.class),
+                        row.get("user_id", Long.class), row.get("created_at", LocalDateTime.class),
+                        row.get("processed_at", LocalDateTime.class), row.get("line_count", Integer.class),
+                        row.get("total_amount", BigDecimal.class), row.get("order_lines", String.class)))
+                .all();
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.microservicesjavaapp.repository;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+
+/**
+ * R2DBC repository for the 'order_jobs' table, used by the reactive stack to queue checkouts.
+ * Claiming and completing jobs is left to OrderJobQueue, which runs on worker threads on both stacks.
+ */
+@Repository // Marks this class as a data access component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE) // Only when the reactive stack is selected
+public class ReactiveOrderJobRepository {
+
+    private final DatabaseClient databaseClient;
+
+    public ReactiveOrderJobRepository(DatabaseClient databaseClient) {
+        this.databaseClient = databaseClient;
+    }
+
+    /**
+     * Queues a job for a cart, as OrderJobRepository.insertOrRequeue does: unless the cart already has a
+     * PENDING or RUNNING one, and resetting a DEAD one.
+     *
+     * @param cartId The ID of the cart.
+     * @param now The current time: the job is due straight away.
+     * @return A Mono emitting true if a job was queued or requeued, false if the cart already had a live one.
+     */
+    public Mono<Boolean> insertOrRequeue(Long cartId, LocalDateTime now) {
+        return databaseClient.sql("MERGE INTO order_jobs j USING (VALUES (CAST(:cartId AS BIGINT), CAST(:now AS TIMESTAMP(6)))) AS q(cart_id, queued_at) "
+                        + "ON j.cart_id = q.cart_id "
+                        + "WHEN MATCHED AND j.status = 'DEAD' THEN UPDATE SET status = 'PENDING', attempts = 0, available_at = q.queued_at, "
+                        + "last_error = NULL, created_at = q.queued_at "
+                        + "WHEN NOT MATCHED THEN INSERT (cart_id, status, attempts, available_at, created_at) "
+                        + "VALUES (q.cart_id, 'PENDING', 0, q.queued_at, q.queued_at)")
+                .bind("cartId", cartId)
+                .bind("now", now)
+                .fetch().rowsUpdated()
+                .map(inserted -> inserted > 0)
+                .onErrorReturn(DataIntegrityViolationException.class, false); // Queued concurrently by another request
+    }
+}
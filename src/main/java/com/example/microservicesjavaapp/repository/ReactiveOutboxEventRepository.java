@@ -0,0 +1,38 @@
+package com.example.microservicesjavaapp.repository;
+
+import com.example.microservicesjavaapp.model.OutboxEvent;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Mono;
+
+/**
+ * R2DBC repository for the 'outbox_events' table, used by the reactive stack to record cart events
+ * inside its R2DBC transactions. Publishing them is left to OutboxDispatcher, as on the servlet stack.
+ */
+@Repository // Marks this class as a data access component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE) // Only when the reactive stack is selected
+public class ReactiveOutboxEventRepository {
+
+    private final DatabaseClient databaseClient;
+
+    public ReactiveOutboxEventRepository(DatabaseClient databaseClient) {
+        this.databaseClient = databaseClient;
+    }
+
+    /**
+     * Inserts an event.
+     *
+     * @param event The event, without an ID.
+     * @return A Mono completing once the event is written.
+     */
+    public Mono<Void> insert(OutboxEvent event) {
+        return databaseClient.sql("INSERT INTO outbox_events (aggregate_id, event_type, payload, created_at) "
+                        + "VALUES (:aggregateId, :eventType, :payload, :createdAt)")
+                .bind("aggregateId", event.getAggregateId())
+                .bind("eventType", event.getEventType().name())
+                .bind("payload", event.getPayload())
+                .bind("createdAt", event.getCreatedAt())
+                .then();
+    }
+}
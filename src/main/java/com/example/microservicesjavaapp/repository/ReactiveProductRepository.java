@@ -0,0 +1,93 @@
+package com.example.microservicesjavaapp.repository;
+
+import com.example.microservicesjavaapp.model.Cart.CartStatus;
+import com.example.microservicesjavaapp.model.Product;
+import io.r2dbc.spi.Readable;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+
+/**
+ * R2DBC repository for the 'products' table, used by the reactive stack.
+ */
+@Repository // Marks this class as a data access component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE) // Only when the reactive stack is selected
+public class ReactiveProductRepository {
+
+    static final String COLUMNS = "p.id AS product_id, p.code, p.name, p.price, p.category, p.stock";
+
+    private final DatabaseClient databaseClient;
+
+    public ReactiveProductRepository(DatabaseClient databaseClient) {
+        this.databaseClient = databaseClient;
+    }
+
+    /**
+     * Finds a Product by its unique code.
+     *
+     * @param code The unique code of the product to find.
+     * @return A Mono emitting the Product, or empty if not found.
+     */
+    public Mono<Product> findByCode(String code) {
+        return databaseClient.sql("SELECT " + COLUMNS + " FROM products p WHERE p.code = :code")
+                .bind("code", code)
+                .map(ReactiveProductRepository::toProduct)
+                .one();
+    }
+
+    /**
+     * Finds a Product by its ID.
+     *
+     * @param id The ID of the product to find.
+     * @return A Mono emitting the Product, or empty if not found.
+     */
+    public Mono<Product> findById(Long id) {
+        return databaseClient.sql("SELECT " + COLUMNS + " FROM products p WHERE p.id = :id")
+                .bind("id", id)
+                .map(ReactiveProductRepository::toProduct)
+                .one();
+    }
+
+    /**
+     * Computes the units of a product that are free to reserve: its stock less the units in ACTIVE carts.
+     *
+     * @param id The ID of the product.
+     * @return A Mono emitting the unreserved units, or empty if the product does not exist.
+     */
+    public Mono<Long> findUnreservedStock(Long id) {
+        return databaseClient.sql("SELECT p.stock - COALESCE((SELECT SUM(i.quantity) FROM cart_items i JOIN carts c ON c.id = i.cart_id "
+                        + "WHERE i.product_id = p.id AND c.status = :active), 0) AS unreserved FROM products p WHERE p.id = :id")
+                .bind("active", CartStatus.ACTIVE.name())
+                .bind("id", id)
+                .map(row -> row.get("unreserved", Long.class))
+                .one();
+    }
+
+    /**
+     * Takes the quantities of a cart's items off the stock of their products, in a single statement.
+     *
+     * Fails with a DataIntegrityViolationException, updating nothing, if a product does not have enough stock
+     * (see ProductRepository.decrementStockByCartItems).
+     *
+     * @param cartId The ID of the cart being checked out.
+     * @return A Mono emitting the number of updated products.
+     */
+    public Mono<Long> decrementStockByCartItems(Long cartId) {
+        return databaseClient.sql("UPDATE products p SET stock = stock - (SELECT i.quantity FROM cart_items i WHERE i.cart_id = :cartId AND i.product_id = p.id) "
+                        + "WHERE p.id IN (SELECT i.product_id FROM cart_items i WHERE i.cart_id = :cartId)")
+                .bind("cartId", cartId)
+                .fetch()
+                .rowsUpdated();
+    }
+
+    /**
+     * Maps the product columns selected with {@link #COLUMNS}.
+     */
+    static Product toProduct(Readable row) {
+        return new Product(row.get("product_id", Long.class), row.get("code", String.class), row.get("name", String.class),
+                row.get("price", BigDecimal.class), row.get("category", String.class), row.get("stock", Integer.class));
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.microservicesjavaapp.repository;
+
+import com.example.microservicesjavaapp.model.User;
+import io.r2dbc.spi.Readable;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Mono;
+
+/**
+ * R2DBC repository for the 'users' table, used by the reactive stack.
+ */
+@Repository // Marks this class as a data access component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE) // Only when the reactive stack is selected
+public class ReactiveUserRepository {
+
+    private final DatabaseClient databaseClient;
+
+    public ReactiveUserRepository(DatabaseClient databaseClient) {
+        this.databaseClient = databaseClient;
+    }
+
+    /**
+     * Finds a User by its ID.
+     *
+     * @param id The ID of the user.
+     * @return A Mono emitting the User, or empty if not found.
+     */
+    public Mono<User> findById(Long id) {
+        return databaseClient.sql("SELECT id, username FROM users WHERE id = :id")
+                .bind("id", id)
+                .map(ReactiveUserRepository::toUser)
+                .one();
+    }
+
+    /**
+     * Checks whether a User with the given ID exists.
+     *
+     * @param id The ID of the user.
+     * @return A Mono emitting true if the user exists.
+     */
+    public Mono<Boolean> existsById(Long id) {
+        return databaseClient.sql("SELECT 1 FROM users WHERE id = :id")
+                .bind("id", id)
+                .map(row -> Boolean.TRUE)
+                .first()
+                .defaultIfEmpty(Boolean.FALSE);
+    }
+
+    static User toUser(Readable row) {
+        return new User(row.get("id", Long.class), row.get("username", String.class));
+    }
+}
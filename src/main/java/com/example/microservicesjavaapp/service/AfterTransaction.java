@@ -0,0 +1,55 @@
+package com.example.microservicesjavaapp.service;
+
+import org.springframework.core.Ordered;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Runs the in-memory side of a cart store change once the current transaction ends.
+ * The actions run before StockReservations settles its changes, so a reconciliation never sees the
+ * stock settled but the lines not yet.
+ */
+final class AfterTransaction {
+
+    private AfterTransaction() {
+    }
+
+    /**
+     * Runs undo if the current transaction rolls back. Outside a transaction the change stands: there is
+     * nothing to roll back.
+     */
+    static void onRollback(Runnable undo) {
+        register(null, undo);
+    }
+
+    /**
+     * Runs action once the current transaction commits, or right away outside a transaction.
+     */
+    static void onCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            register(action, null);
+        } else {
+            action.run();
+        }
+    }
+
+    private static void register(Runnable onCommit, Runnable onRollback) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public int getOrder() {
+                return Ordered.HIGHEST_PRECEDENCE;
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                Runnable action = status == STATUS_COMMITTED ? onCommit : onRollback;
+                if (action != null) {
+                    action.run();
+                }
+            }
+        });
+    }
+}
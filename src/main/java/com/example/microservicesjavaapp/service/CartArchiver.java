@@ -0,0 +1,144 @@
+package com.example.microservicesjavaapp.service;
+
+import com.example.microservicesjavaapp.model.Cart;
+import com.example.microservicesjavaapp.model.Cart.CartStatus;
+import com.example.microservicesjavaapp.model.CartItem;
+import com.example.microservicesjavaapp.model.OrderHistory;
+import com.example.microservicesjavaapp.repository.CartItemRepository;
+import com.example.microservicesjavaapp.repository.CartRepository;
+import com.example.microservicesjavaapp.repository.OrderHistoryRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scheduled job that moves processed carts out of the live tables.
+ * PROCESSED carts last modified more than 'app.cart-archiver.archive-after' ago are copied into the
+ * append-only 'order_history' table (one row per order) and then deleted from 'carts'/'cart_items',
+ * so the live tables, and the indexes behind every active-cart query, only hold recent carts.
+ * Like the reaper, it works in bounded batches with one short transaction per batch.
+ */
+@Component // Marks this class as a Spring-managed component
+@ConditionalOnProperty(name = "app.cart-archiver.enabled", havingValue = "true", matchIfMissing = true)
+public class CartArchiver {
+
+    private static final Logger logger = LoggerFactory.getLogger(CartArchiver.class);
+
+    private final CartRepository cartRepository;
+    private final CartItemRepository cartItemRepository;
+    private final OrderHistoryRepository orderHistoryRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration archiveAfter;
+    private final int batchSize;
+    private final Counter cartsArchived;
+    private final Timer runTimer;
+
+    public CartArchiver(CartRepository cartRepository,
+                        CartItemRepository cartItemRepository,
+                        OrderHistoryRepository orderHistoryRepository,
+                        PlatformTransactionManager transactionManager,
+                        MeterRegistry meterRegistry,
+                        @Value("${app.cart-archiver.archive-after:PT24H}") Duration archiveAfter,
+                        @Value("${app.cart-archiver.batch-size:200}") int batchSize) {
+        this.cartRepository = cartRepository;
+        this.cartItemRepository = cartItemRepository;
+        this.orderHistoryRepository = orderHistoryRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.archiveAfter = archiveAfter;
+        this.batchSize = batchSize;
+        this.cartsArchived = Counter.builder("cart.archiver.carts.archived")
+                .description("Processed carts moved to the order history")
+                .register(meterRegistry);
+        this.runTimer = Timer.builder("cart.archiver.run")
+                .description("Duration of a full archiver run")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Runs the archiver on the configured schedule.
+     */
+    @Scheduled(fixedDelayString = "${app.cart-archiver.interval:PT15M}", initialDelayString = "${app.cart-archiver.interval:PT15M}")
+    public void scheduledArchive() {
+        archive(LocalDateTime.now().minus(archiveAfter));
+    }
+
+    /**
+     * Archives every PROCESSED cart last modified before the cutoff, batch by batch.
+     *
+     * @param cutoff Carts processed before this instant are archived.
+     * @return The number of carts archived.
+     */
+    public long archive(LocalDateTime cutoff) {
+        long start = System.nanoTime();
+        long archived = 0;
+
+        while (true) {
+            Integer batch = transactionTemplate.execute(status -> archiveBatch(cutoff));
+            if (batch == null || batch == 0) {
+                break;
+            }
+            archived += batch;
+            if (batch < batchSize) {
+                break;
+            }
+        }
+
+        long elapsed = System.nanoTime() - start;
+        runTimer.record(elapsed, TimeUnit.NANOSECONDS);
+        cartsArchived.increment(archived);
+        if (archived > 0) {
+            logger.info("Cart archiver moved {} processed carts to the order history in {} ms.",
+                    archived, TimeUnit.NANOSECONDS.toMillis(elapsed));
+        }
+        return archived;
+    }
+
+    private int archiveBatch(LocalDateTime cutoff) {
+        List<Long> ids = cartRepository.lockIdleCartIds(CartStatus.PROCESSED, cutoff, PageRequest.of(0, batchSize));
+        if (ids.isEmpty()) {
+            return 0;
+        }
+
+        List<OrderHistory> history = new ArrayList<>(ids.size());
+        for (Cart cart : cartRepository.findAllWithItemsByIdIn(ids)) {
+            history.add(toOrderHistory(cart));
+        }
+        orderHistoryRepository.saveAll(history);
+        cartItemRepository.deleteByCartIdIn(ids);
+        cartRepository.deleteByIdIn(ids);
+        return ids.size();
+    }
+
+    /**
+     * Copies the order as it was charged at checkout: the catalog's prices and discounts may have changed since.
+     */
+    private OrderHistory toOrderHistory(Cart cart) {
+        String orderLines = cart.getOrderLines();
+        if (orderLines == null) {
+            // Processed before checkout recorded its lines: the catalog prices are the closest left
+            List<CartStore.Line> lines = new ArrayList<>(cart.getItems().size());
+            for (CartItem item : cart.getItems()) {
+                lines.add(new CartStore.Line(item.getId(), item.getProduct(), item.getQuantity()));
+            }
+            orderLines = OrderLineCodec.encode(CartPricing.orderLines(lines));
+        }
+
+        return new OrderHistory(null, cart.getId(), cart.getUser().getId(), cart.getCreatedAt(), cart.getUpdatedAt(),
+                cart.getItems().size(), cart.getDiscountedTotal(), orderLines);
+    }
+}
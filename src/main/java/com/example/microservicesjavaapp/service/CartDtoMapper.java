@@ -0,0 +1,137 @@
+package com.example.microservicesjavaapp.service;
+
+import com.example.microservicesjavaapp.dto.CartDto;
+import com.example.microservicesjavaapp.dto.CartHistoryEventDto;
+import com.example.microservicesjavaapp.dto.CartItemDto;
+import com.example.microservicesjavaapp.dto.CartStateDto;
+import com.example.microservicesjavaapp.dto.CartTotalDto;
+import com.example.microservicesjavaapp.dto.OrderHistoryDto;
+import com.example.microservicesjavaapp.dto.OrderLineDto;
+import com.example.microservicesjavaapp.dto.ProductDto;
+import com.example.microservicesjavaapp.dto.UserDto;
+import com.example.microservicesjavaapp.model.Cart;
+import com.example.microservicesjavaapp.model.CartItem;
+import com.example.microservicesjavaapp.model.OrderHistory;
+import com.example.microservicesjavaapp.model.Product;
+import com.example.microservicesjavaapp.model.User;
+
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Maps entities to the DTOs returned by the cart API, for both the servlet and the reactive services.
+ */
+final class CartDtoMapper {
+
+    private CartDtoMapper() {
+    }
+
+    /**
+     * Helper method to convert a User entity to a UserDto.
+     * @param user The User entity.
+     * @return The corresponding UserDto.
+     */
+    static UserDto toUserDto(User user) {
+        return new UserDto(user.getId(), user.getUsername());
+    }
+
+    /**
+     * Helper method to convert a Product entity to a ProductDto.
+     * @param product The Product entity.
+     * @return The corresponding ProductDto.
+     */
+    static ProductDto toProductDto(Product product) {
+        return new ProductDto(product.getId(), product.getCode(), product.getName(), product.getPrice(), product.getCategory());
+    }
+
+    /**
+     * Helper method to convert a CartItem entity to a CartItemDto.
+     * @param cartItem The CartItem entity.
+     * @return The corresponding CartItemDto.
+     */
+    static CartItemDto toCartItemDto(CartItem cartItem) {
+        return new CartItemDto(cartItem.getId(), toProductDto(cartItem.getProduct()), cartItem.getQuantity());
+    }
+
+    /**
+     * Helper method to convert a line of a CartStore to a CartItemDto.
+     * @param line The line.
+     * @return The corresponding CartItemDto.
+     */
+    static CartItemDto toCartItemDto(CartStore.Line line) {
+        return new CartItemDto(line.itemId(), toProductDto(line.product()), line.quantity());
+    }
+
+    /**
+     * Helper method to convert a Cart entity to a CartDto.
+     * Includes nested DTO conversion for User and CartItems.
+     * @param cart The Cart entity.
+     * @return The corresponding CartDto.
+     */
+    static CartDto toCartDto(Cart cart) {
+        Set<CartItemDto> itemDtos = cart.getItems().stream()
+                .map(CartDtoMapper::toCartItemDto)
+                .collect(Collectors.toSet());
+        return new CartDto(cart.getId(), toUserDto(cart.getUser()), cart.getCreatedAt(), cart.getStatus(), itemDtos);
+    }
+
+    /**
+     * Helper method to convert a Cart entity and its lines, as read from a CartStore, to a CartDto.
+     * @param cart The Cart entity.
+     * @param lines The lines of the cart.
+     * @return The corresponding CartDto.
+     */
+    static CartDto toCartDto(Cart cart, List<CartStore.Line> lines) {
+        Set<CartItemDto> itemDtos = lines.stream()
+                .map(CartDtoMapper::toCartItemDto)
+                .collect(Collectors.toSet());
+        return new CartDto(cart.getId(), toUserDto(cart.getUser()), cart.getCreatedAt(), cart.getStatus(), itemDtos);
+    }
+
+    /**
+     * Helper method to convert a Cart's running totals to a CartTotalDto.
+     * @param cart The Cart entity.
+     * @return The corresponding CartTotalDto.
+     */
+    static CartTotalDto toCartTotalDto(Cart cart) {
+        return new CartTotalDto(cart.getId(), cart.getSubtotal(), cart.getDiscountedTotal());
+    }
+
+    /**
+     * Helper method to convert an archived OrderHistory row to an OrderHistoryDto.
+     * Decodes the compact order lines stored with the row.
+     * @param orderHistory The OrderHistory entity.
+     * @return The corresponding OrderHistoryDto.
+     */
+    static OrderHistoryDto toOrderHistoryDto(OrderHistory orderHistory) {
+        List<OrderLineDto> lines = OrderLineCodec.decode(orderHistory.getOrderLines()).stream()
+                .map(line -> new OrderLineDto(line.productId(), line.code(), line.quantity(), line.unitPrice()))
+                .collect(Collectors.toList());
+        return new OrderHistoryDto(orderHistory.getCartId(), orderHistory.getUserId(), orderHistory.getCreatedAt(),
+                orderHistory.getProcessedAt(), orderHistory.getTotalAmount(), lines);
+    }
+
+    /**
+     * Helper method to convert an event of a cart's history to a CartHistoryEventDto.
+     * @param event The event.
+     * @return The corresponding CartHistoryEventDto.
+     */
+    static CartHistoryEventDto toCartHistoryEventDto(CartHistory.Event event) {
+        return new CartHistoryEventDto(event.version(), event.type(), event.at(), event.productId(), event.quantity(),
+                event.subtotal(), event.discountedTotal());
+    }
+
+    /**
+     * Helper method to convert a cart rebuilt from its history to a CartStateDto.
+     * @param state The rebuilt cart.
+     * @return The corresponding CartStateDto.
+     */
+    static CartStateDto toCartStateDto(CartHistory.State state) {
+        List<CartStateDto.Line> lines = state.lines().entrySet().stream()
+                .map(line -> new CartStateDto.Line(line.getKey(), line.getValue()))
+                .toList();
+        return new CartStateDto(state.cartId(), state.version(), state.status(), state.updatedAt(), state.subtotal(),
+                state.discountedTotal(), lines);
+    }
+}
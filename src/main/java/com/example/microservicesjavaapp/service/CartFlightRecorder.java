@@ -0,0 +1,196 @@
+package com.example.microservicesjavaapp.service;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Emits JDK Flight Recorder events for the cart service, so a recording taken during a latency spike
+ * shows which carts and operations the time went to: cart lock waits, service operations and the
+ * stages of an order being processed. Their settings are in 'jfr/cart.jfc'.
+ *
+ * Off unless 'app.jfr.enabled' is true (the 'jfr' profile). When off, every begin method returns null
+ * without allocating and every end method returns at the null check; when on, events are only filled
+ * in and committed while a recording has them enabled and above their threshold.
+ */
+@Component // Marks this class as a Spring-managed component
+public class CartFlightRecorder {
+
+    /** Stages of CartServiceImpl.processOrder, in order. */
+    public static final String STAGE_LOCK = "lock";
+    public static final String STAGE_LOAD = "load";
+    public static final String STAGE_VALIDATE = "validate";
+    public static final String STAGE_SETTLE = "settle";
+
+    private final boolean enabled;
+
+    public CartFlightRecorder(@Value("${app.jfr.enabled:false}") boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Starts timing an operation of the cart service.
+     *
+     * @param operation The name of the service method.
+     * @param cartId The ID of the cart, null if not known yet.
+     * @return The started event, or null if it is not being recorded.
+     */
+    public CartOperationEvent beginOperation(String operation, Long cartId) {
+        if (!enabled) {
+            return null;
+        }
+        CartOperationEvent event = new CartOperationEvent();
+        if (!event.isEnabled()) {
+            return null;
+        }
+        event.operation = operation;
+        event.cartId = cartId != null ? cartId : 0L;
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Ends an operation started by {@link #beginOperation(String, Long)}; also called when it failed.
+     *
+     * @param event The event returned by beginOperation, may be null.
+     * @param cartId The ID of the cart, for operations that only know it at the end; null to keep the one given at the start.
+     * @param lineCount The number of lines of the cart, -1 if not known without a query.
+     */
+    public void endOperation(CartOperationEvent event, Long cartId, int lineCount) {
+        if (event == null) {
+            return;
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            if (cartId != null) {
+                event.cartId = cartId;
+            }
+            event.lineCount = lineCount;
+            event.commit();
+        }
+    }
+
+    /**
+     * Starts timing a stage of an order being processed.
+     *
+     * @param cartId The ID of the cart being processed.
+     * @param stage One of the STAGE_ constants.
+     * @return The started event, or null if it is not being recorded.
+     */
+    public CheckoutStageEvent beginStage(Long cartId, String stage) {
+        if (!enabled) {
+            return null;
+        }
+        CheckoutStageEvent event = new CheckoutStageEvent();
+        if (!event.isEnabled()) {
+            return null;
+        }
+        event.cartId = cartId;
+        event.stage = stage;
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Ends a stage started by {@link #beginStage(Long, String)}.
+     *
+     * @param event The event returned by beginStage, may be null.
+     */
+    public void endStage(CheckoutStageEvent event) {
+        if (event != null) {
+            event.commit(); // Ends the event, then commits it if it is over the threshold
+        }
+    }
+
+    /**
+     * Starts timing the wait for a cart lock.
+     *
+     * @return The started event, or null if it is not being recorded.
+     */
+    public CartLockEvent beginLockWait() {
+        if (!enabled) {
+            return null;
+        }
+        CartLockEvent event = new CartLockEvent();
+        if (!event.isEnabled()) {
+            return null;
+        }
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Ends the wait started by {@link #beginLockWait()}, once the lock is held.
+     *
+     * @param event The event returned by beginLockWait, may be null.
+     * @param cartId The ID of the locked cart.
+     * @param queued The number of threads already waiting when the caller arrived.
+     * @param waitNanos How long the caller waited.
+     */
+    public void endLockWait(CartLockEvent event, Long cartId, int queued, long waitNanos) {
+        if (event == null) {
+            return;
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.cartId = cartId;
+            event.queued = queued;
+            event.waitNanos = waitNanos;
+            event.commit();
+        }
+    }
+
+    @Name("com.example.cart.LockAcquired")
+    @Label("Cart Lock Acquired")
+    @Description("A thread waited for, then acquired, the lock of a cart")
+    @Category({"Shopping Cart"})
+    @StackTrace(false)
+    public static class CartLockEvent extends Event {
+        @Label("Cart ID")
+        long cartId;
+
+        @Label("Queued Threads")
+        @Description("Threads already waiting for the lock when this one arrived")
+        int queued;
+
+        @Label("Wait")
+        @Timespan(Timespan.NANOSECONDS)
+        long waitNanos;
+    }
+
+    @Name("com.example.cart.Operation")
+    @Label("Cart Operation")
+    @Description("A call to the cart service")
+    @Category({"Shopping Cart"})
+    @StackTrace(false)
+    public static class CartOperationEvent extends Event {
+        @Label("Operation")
+        String operation;
+
+        @Label("Cart ID")
+        long cartId;
+
+        @Label("Line Count")
+        @Description("Lines in the cart, -1 if they were not loaded")
+        int lineCount;
+    }
+
+    @Name("com.example.cart.CheckoutStage")
+    @Label("Checkout Stage")
+    @Description("A stage of an order being processed")
+    @Category({"Shopping Cart"})
+    @StackTrace(false)
+    public static class CheckoutStageEvent extends Event {
+        @Label("Cart ID")
+        long cartId;
+
+        @Label("Stage")
+        String stage;
+    }
+}
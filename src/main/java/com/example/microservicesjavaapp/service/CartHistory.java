@@ -0,0 +1,178 @@
+package com.example.microservicesjavaapp.service;
+
+import com.example.microservicesjavaapp.model.Cart;
+import com.example.microservicesjavaapp.model.Cart.CartStatus;
+import com.example.microservicesjavaapp.model.OutboxEvent.EventType;
+import jakarta.transaction.Transactional;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+
+/**
+ * Event-sourced history of the carts, for audit and replay: every change CartServiceImpl makes to a cart
+ * is appended to 'cart_events' as a compact binary event (see CartHistoryCodec), numbered per cart from 1.
+ * Every 'app.cart-history.snapshot-interval' events the state the cart reached is written to
+ * 'cart_snapshots', so rebuilding a cart at any version reads one snapshot and fewer than that many events,
+ * however long its history.
+ *
+ * Both tables are only ever inserted into, in the transaction of the change, so the history holds a change
+ * if and only if it committed. It outlives the cart: the reaper and the archiver delete carts, not their
+ * history. The 'carts' and 'cart_items' tables stay the query model; nothing reads the history on the
+ * request path.
+ */
+@Component // Marks this class as a Spring-managed component
+public class CartHistory {
+
+    /**
+     * A change to a cart.
+     *
+     * @param version The position of the event in the cart's history, from 1.
+     * @param type What happened to the cart.
+     * @param at When it happened.
+     * @param productId The product added or removed, or null for cart-level events.
+     * @param quantity The product's quantity in the cart after the change, 0 for cart-level events.
+     * @param subtotal The cart's running subtotal after the change.
+     * @param discountedTotal The cart's running discounted total after the change.
+     */
+    public record Event(long version, EventType type, LocalDateTime at, Long productId, int quantity,
+                        BigDecimal subtotal, BigDecimal discountedTotal) {
+    }
+
+    /**
+     * A cart as it was at a version of its history.
+     *
+     * @param cartId The ID of the cart.
+     * @param version The version the state is at.
+     * @param status The status of the cart.
+     * @param updatedAt When the event of that version happened.
+     * @param lines The quantity of each product in the cart, by product ID in ascending order.
+     * @param subtotal The cart's running subtotal.
+     * @param discountedTotal The cart's running discounted total.
+     */
+    public record State(long cartId, long version, CartStatus status, LocalDateTime updatedAt,
+                        Map<Long, Integer> lines, BigDecimal subtotal, BigDecimal discountedTotal) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int snapshotInterval;
+
+    public CartHistory(JdbcTemplate jdbcTemplate,
+                       @Value("${app.cart-history.snapshot-interval:50}") int snapshotInterval) {
+        if (snapshotInterval < 1) {
+            throw new IllegalArgumentException("app.cart-history.snapshot-interval must be at least 1");
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.snapshotInterval = snapshotInterval;
+    }
+
+    /**
+     * Appends an event to the cart's history in the current transaction, and a snapshot if the event's
+     * version is a multiple of the snapshot interval. The caller holds the cart's lock, so versions are
+     * handed out one at a time; the primary key would reject a duplicate anyway.
+     *
+     * @param type What happened to the cart.
+     * @param cart The cart, as it is after the change.
+     * @param productId The product added or removed, or null.
+     * @param quantity The product's quantity in the cart after the change, or null.
+     * @return The version of the event.
+     */
+    @Transactional(Transactional.TxType.MANDATORY) // Outside the change's transaction the event could outlive a rollback
+    public long record(EventType type, Cart cart, Long productId, Integer quantity) {
+        Long last = jdbcTemplate.queryForObject("SELECT MAX(version) FROM cart_events WHERE cart_id = ?", Long.class, cart.getId());
+        long version = last == null ? 1 : last + 1;
+        Event event = new Event(version, type, LocalDateTime.now(), productId, quantity == null ? 0 : quantity,
+                cart.getSubtotal(), cart.getDiscountedTotal());
+        jdbcTemplate.update("INSERT INTO cart_events (cart_id, version, payload) VALUES (?, ?, ?)",
+                cart.getId(), version, CartHistoryCodec.encode(event));
+        if (version % snapshotInterval == 0) {
+            State state = rebuild(cart.getId(), version).orElseThrow();
+            jdbcTemplate.update("INSERT INTO cart_snapshots (cart_id, version, state) VALUES (?, ?, ?)",
+                    cart.getId(), version, CartHistoryCodec.encode(state));
+        }
+        return version;
+    }
+
+    /**
+     * Lists the history of a cart.
+     *
+     * @param cartId The ID of the cart.
+     * @param fromVersion The first version to list.
+     * @param limit The most events to list.
+     * @return The events, oldest first; empty if the cart has none from that version.
+     */
+    public List<Event> events(long cartId, long fromVersion, int limit) {
+        return jdbcTemplate.query("SELECT version, payload FROM cart_events WHERE cart_id = ? AND version >= ? "
+                        + "ORDER BY version FETCH FIRST ? ROWS ONLY",
+                (row, rowNum) -> CartHistoryCodec.decodeEvent(row.getLong(1), row.getBytes(2)), cartId, fromVersion, limit);
+    }
+
+    /**
+     * Rebuilds a cart as it was at a version: from the latest snapshot at or before it, then the events
+     * after the snapshot up to the version.
+     *
+     * @param cartId The ID of the cart.
+     * @param version The version to rebuild.
+     * @return The state at that version; empty if the cart's history does not reach it.
+     */
+    public Optional<State> rebuild(long cartId, long version) {
+        if (version < 1) {
+            return Optional.empty();
+        }
+        List<State> snapshots = jdbcTemplate.query("SELECT version, state FROM cart_snapshots WHERE cart_id = ? AND version <= ? "
+                        + "ORDER BY version DESC FETCH FIRST 1 ROW ONLY",
+                (row, rowNum) -> CartHistoryCodec.decodeState(cartId, row.getLong(1), row.getBytes(2)), cartId, version);
+        State base = snapshots.isEmpty() ? null : snapshots.get(0);
+        List<Event> events = jdbcTemplate.query("SELECT version, payload FROM cart_events WHERE cart_id = ? AND version > ? "
+                        + "AND version <= ? ORDER BY version",
+                (row, rowNum) -> CartHistoryCodec.decodeEvent(row.getLong(1), row.getBytes(2)),
+                cartId, base == null ? 0 : base.version(), version);
+        State state = replay(cartId, base, events);
+        return state != null && state.version() == version ? Optional.of(state) : Optional.empty();
+    }
+
+    /**
+     * Applies events, in order, to a state.
+     *
+     * @param cartId The ID of the cart.
+     * @param base The state to start from, or null to start from an empty cart.
+     * @param events The events following the base state.
+     * @return The state after the last event; the base state if there are none.
+     */
+    static State replay(long cartId, State base, List<Event> events) {
+        if (events.isEmpty()) {
+            return base;
+        }
+        TreeMap<Long, Integer> lines = base == null ? new TreeMap<>() : new TreeMap<>(base.lines());
+        CartStatus status = base == null ? CartStatus.ACTIVE : base.status();
+        BigDecimal subtotal = base == null ? BigDecimal.ZERO : base.subtotal();
+        BigDecimal discountedTotal = base == null ? BigDecimal.ZERO : base.discountedTotal();
+        for (Event event : events) {
+            switch (event.type()) {
+                case CART_CREATED -> {
+                    lines.clear();
+                    status = CartStatus.ACTIVE;
+                }
+                case CART_ITEM_ADDED, CART_ITEM_REMOVED -> {
+                    if (event.quantity() > 0) {
+                        lines.put(event.productId(), event.quantity());
+                    } else {
+                        lines.remove(event.productId());
+                    }
+                }
+                case CART_PROCESSED -> status = CartStatus.PROCESSED;
+            }
+            subtotal = event.subtotal();
+            discountedTotal = event.discountedTotal();
+        }
+        Event last = events.get(events.size() - 1);
+        return new State(cartId, last.version(), status, last.at(), Collections.unmodifiableMap(lines), subtotal, discountedTotal);
+    }
+}
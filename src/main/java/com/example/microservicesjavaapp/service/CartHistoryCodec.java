@@ -0,0 +1,137 @@
+package com.example.microservicesjavaapp.service;
+
+import com.example.microservicesjavaapp.model.Cart.CartStatus;
+import com.example.microservicesjavaapp.model.OutboxEvent.EventType;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Encodes and decodes the binary 'payload' of 'cart_events' and 'state' of 'cart_snapshots', big-endian.
+ * The cart ID and version are columns of their own and not repeated inside.
+ *
+ * Event (38 bytes): [format (1) | type (1) | at (8) | product ID (8), 0 for none | quantity (4) |
+ * subtotal (8) | discounted total (8)].
+ * State (30 bytes + 12 per line): [format (1) | status (1) | updated at (8) | subtotal (8) |
+ * discounted total (8) | line count (4) | lines: product ID (8) | quantity (4)].
+ * Instants are microseconds since the epoch of the local date-time, as stored in TIMESTAMP(6) columns;
+ * amounts are whole cents, rounded like the DECIMAL(19, 2) amount columns.
+ */
+final class CartHistoryCodec {
+
+    static final int EVENT_BYTES = 38;
+    private static final byte FORMAT = 1;
+
+    private CartHistoryCodec() {
+    }
+
+    static byte[] encode(CartHistory.Event event) {
+        ByteBuffer buffer = ByteBuffer.allocate(EVENT_BYTES);
+        buffer.put(FORMAT);
+        buffer.put(code(event.type()));
+        buffer.putLong(micros(event.at()));
+        buffer.putLong(event.productId() == null ? 0 : event.productId());
+        buffer.putInt(event.quantity());
+        buffer.putLong(cents(event.subtotal()));
+        buffer.putLong(cents(event.discountedTotal()));
+        return buffer.array();
+    }
+
+    static CartHistory.Event decodeEvent(long version, byte[] encoded) {
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(encoded);
+            checkFormat(buffer.get());
+            EventType type = type(buffer.get());
+            LocalDateTime at = dateTime(buffer.getLong());
+            long productId = buffer.getLong();
+            return new CartHistory.Event(version, type, at, productId == 0 ? null : productId, buffer.getInt(),
+                    amount(buffer.getLong()), amount(buffer.getLong()));
+        } catch (BufferUnderflowException e) {
+            throw new IllegalStateException("Truncated cart event at version " + version, e);
+        }
+    }
+
+    static byte[] encode(CartHistory.State state) {
+        ByteBuffer buffer = ByteBuffer.allocate(30 + 12 * state.lines().size());
+        buffer.put(FORMAT);
+        buffer.put((byte) (state.status() == CartStatus.ACTIVE ? 1 : 2));
+        buffer.putLong(micros(state.updatedAt()));
+        buffer.putLong(cents(state.subtotal()));
+        buffer.putLong(cents(state.discountedTotal()));
+        buffer.putInt(state.lines().size());
+        state.lines().forEach((productId, quantity) -> buffer.putLong(productId).putInt(quantity));
+        return buffer.array();
+    }
+
+    static CartHistory.State decodeState(long cartId, long version, byte[] encoded) {
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(encoded);
+            checkFormat(buffer.get());
+            byte status = buffer.get();
+            if (status != 1 && status != 2) {
+                throw new IllegalStateException("Unknown cart status code " + status + " in a snapshot");
+            }
+            LocalDateTime updatedAt = dateTime(buffer.getLong());
+            BigDecimal subtotal = amount(buffer.getLong());
+            BigDecimal discountedTotal = amount(buffer.getLong());
+            int count = buffer.getInt();
+            Map<Long, Integer> lines = new TreeMap<>();
+            for (int i = 0; i < count; i++) {
+                lines.put(buffer.getLong(), buffer.getInt());
+            }
+            return new CartHistory.State(cartId, version, status == 1 ? CartStatus.ACTIVE : CartStatus.PROCESSED,
+                    updatedAt, Collections.unmodifiableMap(lines), subtotal, discountedTotal);
+        } catch (BufferUnderflowException e) {
+            throw new IllegalStateException("Truncated snapshot of cart " + cartId + " at version " + version, e);
+        }
+    }
+
+    // Fixed codes rather than ordinals, so reordering the enum never changes the meaning of stored events
+    private static byte code(EventType type) {
+        return switch (type) {
+            case CART_CREATED -> 1;
+            case CART_ITEM_ADDED -> 2;
+            case CART_ITEM_REMOVED -> 3;
+            case CART_PROCESSED -> 4;
+        };
+    }
+
+    private static EventType type(byte code) {
+        return switch (code) {
+            case 1 -> EventType.CART_CREATED;
+            case 2 -> EventType.CART_ITEM_ADDED;
+            case 3 -> EventType.CART_ITEM_REMOVED;
+            case 4 -> EventType.CART_PROCESSED;
+            default -> throw new IllegalStateException("Unknown cart event code " + code);
+        };
+    }
+
+    private static void checkFormat(byte format) {
+        if (format != FORMAT) {
+            throw new IllegalStateException("Unsupported cart history format " + format);
+        }
+    }
+
+    private static long micros(LocalDateTime dateTime) {
+        return dateTime.toEpochSecond(ZoneOffset.UTC) * 1_000_000 + dateTime.getNano() / 1_000;
+    }
+
+    private static LocalDateTime dateTime(long micros) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(micros, 1_000_000), (int) Math.floorMod(micros, 1_000_000) * 1_000, ZoneOffset.UTC);
+    }
+
+    private static long cents(BigDecimal amount) {
+        return amount.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    private static BigDecimal amount(long cents) {
+        return BigDecimal.valueOf(cents, 2);
+    }
+}
@@ -0,0 +1,258 @@
+package com.example.microservicesjavaapp.service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only journal of cart line changes in a memory-mapped file, the durable half of the write-behind
+ * cart store. A record sets a line to an absolute quantity, so replaying a record twice changes nothing.
+ *
+ * Layout, in native byte order:
+ * - header (16 bytes): [magic (4) | version (4) | checkpoint (8)], the checkpoint being the last sequence
+ *   number whose change is known to be in the database;
+ * - records (32 bytes each): [sequence (8) | cart ID (8) | product ID (8) | quantity (4) | CRC32C of the
+ *   first 28 bytes (4)].
+ * Sequence numbers only grow, across compactions too. Recovery reads records from the start while their
+ * checksum holds and each sequence follows the previous one, so a record torn by a crash, or the stale
+ * tail of an older generation, ends the journal.
+ *
+ * A record is in the page cache as soon as append returns and survives the process being killed; with
+ * 'sync' it is also forced to the device before append returns, surviving a power loss at the cost of a
+ * flush per change. A full journal is compacted into a new file, renamed over the old one.
+ *
+ * Not thread-safe: the caller serializes every call.
+ */
+final class CartJournal implements AutoCloseable {
+
+    static final int HEADER_BYTES = 16;
+    static final int RECORD_BYTES = 32;
+    private static final int MAGIC = 0x434A4E4C; // "CJNL"
+    private static final int VERSION = 1;
+    private static final int CHECKPOINT = 8;
+
+    /**
+     * A line change as read back from the journal.
+     */
+    record Entry(long sequence, long cartId, long productId, int quantity) {
+    }
+
+    private final Path path;
+    private final int capacity;
+    private final boolean sync;
+    private final CRC32C crc = new CRC32C();
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int records;
+    private long lastSequence;
+    private long checkpoint;
+    private List<Entry> recovered;
+
+    /**
+     * Opens the journal at path, creating it if needed, and reads back the changes after its checkpoint.
+     *
+     * @param path The journal file.
+     * @param capacity The number of records the file has room for.
+     * @param sync Whether every append is forced to the storage device.
+     */
+    CartJournal(Path path, int capacity, boolean sync) {
+        this.path = path;
+        this.capacity = capacity;
+        this.sync = sync;
+        try {
+            if (path.getParent() != null) {
+                Files.createDirectories(path.getParent());
+            }
+            map(path);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open the cart journal " + path, e);
+        }
+        if (buffer.getInt(0) != MAGIC) {
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, VERSION);
+            buffer.putLong(CHECKPOINT, 0);
+            this.recovered = List.of();
+            return;
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IllegalStateException("Unsupported cart journal version " + buffer.getInt(4) + " in " + path);
+        }
+        this.checkpoint = buffer.getLong(CHECKPOINT);
+        this.recovered = recover();
+    }
+
+    /**
+     * @return The changes after the checkpoint found when the journal was opened, oldest first.
+     */
+    List<Entry> recovered() {
+        return recovered;
+    }
+
+    /**
+     * Appends a change.
+     *
+     * @return The sequence number of the record, or -1 if the journal is full.
+     */
+    long append(long cartId, long productId, int quantity) {
+        if (records >= capacity) {
+            return -1;
+        }
+        long sequence = lastSequence + 1;
+        int offset = HEADER_BYTES + records * RECORD_BYTES;
+        write(buffer, offset, sequence, cartId, productId, quantity);
+        if (sync) {
+            buffer.force(offset, RECORD_BYTES);
+        }
+        records++;
+        lastSequence = sequence;
+        return sequence;
+    }
+
+    /**
+     * Records that every change up to sequence is in the database: recovery skips them.
+     */
+    void checkpoint(long sequence) {
+        if (sequence <= checkpoint) {
+            return;
+        }
+        checkpoint = sequence;
+        buffer.putLong(CHECKPOINT, sequence);
+        if (sync) {
+            buffer.force(0, HEADER_BYTES);
+        }
+    }
+
+    /**
+     * Replaces the journal with one holding only the given lines, as new records, with the checkpoint
+     * just before them. The new file is written and forced aside, then renamed over the old one, so a
+     * crash leaves one generation or the other, complete.
+     *
+     * @param lines The current state of every line not yet in the database; their sequence numbers are ignored.
+     * @return The sequence numbers given to the lines, in order.
+     */
+    long[] compact(List<Entry> lines) {
+        if (lines.size() > capacity) {
+            throw new IllegalStateException("The cart journal " + path + " cannot hold the " + lines.size()
+                    + " unflushed lines; raise its capacity or flush more often");
+        }
+        Path next = path.resolveSibling(path.getFileName() + ".compact");
+        long[] sequences = new long[lines.size()];
+        try {
+            Files.deleteIfExists(next);
+            try (FileChannel nextChannel = FileChannel.open(next, StandardOpenOption.CREATE_NEW,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                MappedByteBuffer nextBuffer = nextChannel.map(FileChannel.MapMode.READ_WRITE, 0, size());
+                nextBuffer.order(ByteOrder.nativeOrder());
+                nextBuffer.putInt(0, MAGIC);
+                nextBuffer.putInt(4, VERSION);
+                nextBuffer.putLong(CHECKPOINT, lastSequence);
+                for (int i = 0; i < sequences.length; i++) {
+                    Entry line = lines.get(i);
+                    sequences[i] = lastSequence + 1 + i;
+                    write(nextBuffer, HEADER_BYTES + i * RECORD_BYTES, sequences[i], line.cartId(), line.productId(), line.quantity());
+                }
+                nextBuffer.force();
+            }
+            Files.move(next, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            channel.close(); // The old mapping is released once collected
+            map(path);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot compact the cart journal " + path, e);
+        }
+        checkpoint = lastSequence;
+        records = lines.size();
+        lastSequence += lines.size();
+        return sequences;
+    }
+
+    /**
+     * @return The sequence number of the last record appended, 0 if none ever was.
+     */
+    long lastSequence() {
+        return lastSequence;
+    }
+
+    /**
+     * @return The number of records in the file, whether or not past the checkpoint.
+     */
+    int records() {
+        return records;
+    }
+
+    /**
+     * @return The number of records the file has room for.
+     */
+    int capacity() {
+        return capacity;
+    }
+
+    @Override
+    public void close() {
+        try {
+            buffer.force();
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot close the cart journal " + path, e);
+        }
+    }
+
+    private void map(Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(size(), channel.size()));
+        buffer.order(ByteOrder.nativeOrder());
+    }
+
+    private long size() {
+        return HEADER_BYTES + (long) capacity * RECORD_BYTES;
+    }
+
+    private List<Entry> recover() {
+        List<Entry> entries = new ArrayList<>();
+        int limit = (buffer.capacity() - HEADER_BYTES) / RECORD_BYTES; // The file may predate a smaller capacity
+        long previous = 0;
+        int count = 0;
+        for (; count < limit; count++) {
+            int offset = HEADER_BYTES + count * RECORD_BYTES;
+            long sequence = buffer.getLong(offset);
+            if (sequence == 0 || (previous != 0 && sequence != previous + 1) || checksum(buffer, offset) != buffer.getInt(offset + 28)) {
+                break;
+            }
+            if (sequence > checkpoint) {
+                entries.add(new Entry(sequence, buffer.getLong(offset + 8), buffer.getLong(offset + 16), buffer.getInt(offset + 24)));
+            }
+            previous = sequence;
+        }
+        for (int stale = count; stale < limit; stale++) {
+            int offset = HEADER_BYTES + stale * RECORD_BYTES;
+            if (buffer.getLong(offset) != 0) {
+                buffer.putLong(offset, 0); // Or a later recovery could take it for the record appended before it
+            }
+        }
+        records = count;
+        lastSequence = Math.max(previous, checkpoint);
+        return List.copyOf(entries);
+    }
+
+    private void write(MappedByteBuffer target, int offset, long sequence, long cartId, long productId, int quantity) {
+        target.putLong(offset, sequence);
+        target.putLong(offset + 8, cartId);
+        target.putLong(offset + 16, productId);
+        target.putInt(offset + 24, quantity);
+        target.putInt(offset + 28, checksum(target, offset)); // Last: a record cut short never checks out
+    }
+
+    private int checksum(MappedByteBuffer source, int offset) {
+        crc.reset();
+        crc.update(source.slice(offset, 28));
+        return (int) crc.getValue();
+    }
+}
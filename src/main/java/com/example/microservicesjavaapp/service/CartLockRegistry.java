@@ -0,0 +1,208 @@
+package com.example.microservicesjavaapp.service;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+
+/**
+ * Registry of the per-cart locks used by the cart service to serialize writers on the same cart.
+ * Besides handing out the locks, it records how long callers wait for them, how deep the queue
+ * is when they arrive (a convoy indicator) and how long the lock is held, so hot carts can be
+ * spotted through metrics and the 'cartlocks' actuator endpoint.
+ *
+ * Locks are reference counted: an entry lives in the map only while at least one thread holds
+ * or waits for it, so the map never grows with the number of carts ever touched.
+ */
+@Component // Marks this class as a Spring-managed component
+public class CartLockRegistry {
+
+    private final ConcurrentHashMap<Long, CartLock> locks = new ConcurrentHashMap<>();
+    private final boolean fair;
+    private final Timer waitTimer;
+    private final Timer holdTimer;
+    private final DistributionSummary queueDepth;
+    private final CartFlightRecorder flightRecorder;
+
+    /**
+     * Creates a registry publishing its metrics to the given meter registry.
+     *
+     * @param meterRegistry The registry where lock wait/hold timers are published.
+     * @param fair Whether cart locks grant access in arrival order (see 'app.cart-lock.fair').
+     * @param flightRecorder Where lock waits are reported as JFR events.
+     */
+    @Autowired
+    public CartLockRegistry(MeterRegistry meterRegistry, @Value("${app.cart-lock.fair:false}") boolean fair,
+                            CartFlightRecorder flightRecorder) {
+        this.fair = fair;
+        this.flightRecorder = flightRecorder;
+        this.waitTimer = Timer.builder("cart.lock.wait")
+                .description("Time spent waiting to acquire a cart lock")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.holdTimer = Timer.builder("cart.lock.hold")
+                .description("Time a cart lock is held by its owner")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+        this.queueDepth = DistributionSummary.builder("cart.lock.queue.depth")
+                .description("Number of threads already queued on a cart lock when a new caller arrives")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Acquires the lock of the given cart, blocking until it is available.
+     * Every successful call must be paired with {@link #release(Long, CartLock)} or
+     * {@link #releaseAfterTransaction(Long, CartLock)} in a finally block.
+     *
+     * @param cartId The ID of the cart to lock.
+     * @return The acquired lock handle.
+     */
+    public CartLock acquire(Long cartId) {
+        CartLock lock = locks.compute(cartId, (id, existing) -> {
+            CartLock l = existing != null ? existing : new CartLock(id, fair);
+            l.users++;
+            return l;
+        });
+
+        int queued = lock.getQueueLength();
+        queueDepth.record(queued);
+
+        CartFlightRecorder.CartLockEvent event = flightRecorder.beginLockWait();
+        long start = System.nanoTime();
+        lock.lock();
+        long waited = System.nanoTime() - start;
+        flightRecorder.endLockWait(event, cartId, queued, waited);
+        RequestTimings.record(RequestTimings.Phase.LOCK, waited); // Server-Timing 'lock', when the request is timed
+
+        waitTimer.record(waited, TimeUnit.NANOSECONDS);
+        lock.acquisitions.increment();
+        if (queued > 0 || waited > TimeUnit.MICROSECONDS.toNanos(50)) {
+            lock.contendedAcquisitions.increment();
+        }
+        lock.totalWaitNanos.add(waited);
+        if (lock.getHoldCount() == 1) {
+            lock.heldSince = System.nanoTime();
+        }
+        return lock;
+    }
+
+    /**
+     * Releases a lock previously obtained through {@link #acquire(Long)} and drops the registry
+     * entry once no other thread holds or waits for it.
+     *
+     * @param cartId The ID of the locked cart.
+     * @param lock The handle returned by {@link #acquire(Long)}.
+     */
+    public void release(Long cartId, CartLock lock) {
+        if (lock.getHoldCount() == 1) {
+            holdTimer.record(System.nanoTime() - lock.heldSince, TimeUnit.NANOSECONDS);
+            lock.heldSince = 0L;
+        }
+        lock.unlock();
+        locks.computeIfPresent(cartId, (id, l) -> --l.users == 0 ? null : l);
+    }
+
+    /**
+     * Releases the lock once the surrounding transaction has committed or rolled back, so the next
+     * writer on the cart always sees this writer's changes. Outside a transaction it releases immediately.
+     *
+     * @param cartId The ID of the locked cart.
+     * @param lock The handle returned by {@link #acquire(Long)}.
+     */
+    public void releaseAfterTransaction(Long cartId, CartLock lock) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            release(cartId, lock);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                release(cartId, lock);
+            }
+        });
+    }
+
+    /**
+     * @return The number of carts that currently have a lock entry (held or awaited).
+     */
+    public int size() {
+        return locks.size();
+    }
+
+    /**
+     * Lists the carts with the longest lock queues right now, most contended first.
+     *
+     * @param limit The maximum number of carts to return.
+     * @return A snapshot of the contention state of the hottest carts.
+     */
+    public List<CartLockStats> mostContended(int limit) {
+        long now = System.nanoTime();
+        return locks.values().stream()
+                .map(l -> l.snapshot(now))
+                .sorted(Comparator.comparingInt(CartLockStats::queueLength)
+                        .thenComparingLong(CartLockStats::contendedAcquisitions)
+                        .reversed())
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * A cart lock carrying the counters used for contention diagnostics.
+     * The {@code users} count is only mutated inside {@link ConcurrentHashMap#compute}, which serializes it per key.
+     */
+    public static final class CartLock extends ReentrantLock {
+        private final Long cartId;
+        private int users;
+        private volatile long heldSince;
+        private final LongAdder acquisitions = new LongAdder();
+        private final LongAdder contendedAcquisitions = new LongAdder();
+        private final LongAdder totalWaitNanos = new LongAdder();
+
+        private CartLock(Long cartId, boolean fair) {
+            super(fair);
+            this.cartId = cartId;
+        }
+
+        private CartLockStats snapshot(long now) {
+            long since = heldSince;
+            long count = acquisitions.sum();
+            return new CartLockStats(
+                    cartId,
+                    getQueueLength(),
+                    isLocked(),
+                    since == 0L ? 0L : TimeUnit.NANOSECONDS.toMillis(now - since),
+                    count,
+                    contendedAcquisitions.sum(),
+                    count == 0 ? 0L : TimeUnit.NANOSECONDS.toMicros(totalWaitNanos.sum() / count));
+        }
+    }
+
+    /**
+     * Point-in-time contention figures for one cart lock.
+     *
+     * @param cartId The ID of the cart.
+     * @param queueLength Estimated number of threads waiting for the lock.
+     * @param locked Whether the lock is currently held.
+     * @param heldForMillis How long the current owner has held the lock, 0 if not held.
+     * @param acquisitions Acquisitions since the entry was created.
+     * @param contendedAcquisitions Acquisitions that had to wait behind another thread.
+     * @param avgWaitMicros Average wait per acquisition since the entry was created.
+     */
+    public record CartLockStats(Long cartId, int queueLength, boolean locked, long heldForMillis,
+                                long acquisitions, long contendedAcquisitions, long avgWaitMicros) {
+    }
+}
@@ -0,0 +1,138 @@
+package com.example.microservicesjavaapp.service;
+
+import com.example.microservicesjavaapp.model.Cart;
+import com.example.microservicesjavaapp.model.OrderHistory;
+import com.example.microservicesjavaapp.model.Product;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Price arithmetic shared by the cart services, checkout and the totals checker.
+ * Every line amount is rounded to cents on its own, so a running total kept up to date line by line
+ * always equals the same total recomputed from scratch.
+ */
+final class CartPricing {
+
+    private static final BigDecimal HUNDRED = BigDecimal.valueOf(100);
+
+    /**
+     * A cart's totals recomputed from its lines.
+     *
+     * @param subtotal The sum of the undiscounted line amounts.
+     * @param discountedTotal The sum of the discounted line amounts.
+     */
+    record Totals(BigDecimal subtotal, BigDecimal discountedTotal) {
+
+        /**
+         * @return Whether the cart's running totals equal these.
+         */
+        boolean matches(Cart cart) {
+            return subtotal.compareTo(cart.getSubtotal()) == 0 && discountedTotal.compareTo(cart.getDiscountedTotal()) == 0;
+        }
+
+        /**
+         * Replaces the cart's running totals with these.
+         */
+        void applyTo(Cart cart) {
+            cart.setSubtotal(subtotal);
+            cart.setDiscountedTotal(discountedTotal);
+        }
+    }
+
+    private CartPricing() {
+    }
+
+    /**
+     * Recomputes a cart's totals from its lines, at the current prices and discounts.
+     *
+     * @param lines The lines of the cart, with their products.
+     * @param discountEngine Supplies each line's discount percentage.
+     * @return The recomputed totals.
+     */
+    static Totals totals(Collection<CartStore.Line> lines, DiscountEngine discountEngine) {
+        BigDecimal subtotal = BigDecimal.ZERO;
+        BigDecimal discountedTotal = BigDecimal.ZERO;
+        for (CartStore.Line line : lines) {
+            subtotal = subtotal.add(lineSubtotal(line.product(), line.quantity()));
+            discountedTotal = discountedTotal.add(lineTotal(line.product(), line.quantity(), discountEngine));
+        }
+        return new Totals(subtotal, discountedTotal);
+    }
+
+    /**
+     * Captures a cart's lines as they are charged at checkout, for the order history.
+     *
+     * @param lines The lines of the cart, with their products.
+     * @return One order line per cart line, at the product's current code and price, ordered by product ID.
+     */
+    static List<OrderHistory.Line> orderLines(Collection<CartStore.Line> lines) {
+        List<OrderHistory.Line> orderLines = new ArrayList<>(lines.size());
+        for (CartStore.Line line : lines) {
+            Product product = line.product();
+            orderLines.add(new OrderHistory.Line(product.getId(), product.getCode(), line.quantity(), product.getPrice()));
+        }
+        orderLines.sort(Comparator.comparing(OrderHistory.Line::productId));
+        return orderLines;
+    }
+
+    /**
+     * Computes the undiscounted amount of a cart line.
+     *
+     * @param product The product of the line.
+     * @param quantity The quantity of the line (0 for a line that does not exist).
+     * @return price x quantity, in cents.
+     */
+    static BigDecimal lineSubtotal(Product product, int quantity) {
+        return product.getPrice().multiply(BigDecimal.valueOf(quantity)).setScale(2, RoundingMode.HALF_UP);
+    }
+
+    /**
+     * Computes the amount charged for a cart line, after the best discount rule for its quantity.
+     *
+     * @param product The product of the line.
+     * @param quantity The quantity of the line (0 for a line that does not exist).
+     * @param discountEngine Supplies the line's discount percentage.
+     * @return The discounted amount, in cents.
+     */
+    static BigDecimal lineTotal(Product product, int quantity, DiscountEngine discountEngine) {
+        return quantity == 0 ? BigDecimal.ZERO.setScale(2) : lineTotal(product, quantity, discountEngine.percentage(product, quantity));
+    }
+
+    /**
+     * Computes the amount charged for a cart line, after a given discount.
+     *
+     * @param product The product of the line.
+     * @param quantity The quantity of the line (0 for a line that does not exist).
+     * @param percentage The discount percentage of the line (0 when there is none).
+     * @return The discounted amount, in cents.
+     */
+    static BigDecimal lineTotal(Product product, int quantity, BigDecimal percentage) {
+        BigDecimal amount = product.getPrice().multiply(BigDecimal.valueOf(quantity));
+        amount = amount.subtract(amount.multiply(percentage).divide(HUNDRED));
+        return amount.setScale(2, RoundingMode.HALF_UP);
+    }
+
+    /**
+     * Applies a change of one line's quantity to the cart's running totals.
+     * The discount of the old and the new quantity may differ when the line crosses a quantity tier.
+     *
+     * @param cart The cart whose totals are updated.
+     * @param product The product of the changed line.
+     * @param discountEngine Supplies the line's discount percentage for each quantity.
+     * @param oldQuantity The quantity before the change (0 for a new line).
+     * @param newQuantity The quantity after the change (0 for a removed line).
+     */
+    static void applyQuantityChange(Cart cart, Product product, DiscountEngine discountEngine, int oldQuantity, int newQuantity) {
+        cart.setSubtotal(cart.getSubtotal()
+                .add(lineSubtotal(product, newQuantity))
+                .subtract(lineSubtotal(product, oldQuantity)));
+        cart.setDiscountedTotal(cart.getDiscountedTotal()
+                .add(lineTotal(product, newQuantity, discountEngine))
+                .subtract(lineTotal(product, oldQuantity, discountEngine)));
+    }
+}
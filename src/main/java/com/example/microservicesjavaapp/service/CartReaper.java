@@ -0,0 +1,136 @@
+package com.example.microservicesjavaapp.service;
+
+import com.example.microservicesjavaapp.model.Cart.CartStatus;
+import com.example.microservicesjavaapp.repository.CartRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scheduled job that expires abandoned carts.
+ * ACTIVE carts that have not been modified for longer than 'app.cart-reaper.ttl' are deleted together
+ * with their items. Each batch of at most 'app.cart-reaper.batch-size' carts runs in its own short
+ * transaction, so a large backlog never turns into one long transaction holding thousands of row locks.
+ * The stock reserved by a deleted cart goes back to StockReservations once its batch commits.
+ *
+ * Per-cart locks need no cleanup here: CartLockRegistry drops an entry as soon as nobody holds it.
+ */
+@Component // Marks this class as a Spring-managed component
+@ConditionalOnProperty(name = "app.cart-reaper.enabled", havingValue = "true", matchIfMissing = true)
+public class CartReaper {
+
+    private static final Logger logger = LoggerFactory.getLogger(CartReaper.class);
+
+    private final CartRepository cartRepository;
+    private final CartStore cartStore;
+    private final StockReservations stockReservations;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration ttl;
+    private final int batchSize;
+    private final Counter cartsRemoved;
+    private final Counter itemsRemoved;
+    private final Timer sweepTimer;
+
+    public CartReaper(CartRepository cartRepository,
+                      CartStore cartStore,
+                      StockReservations stockReservations,
+                      PlatformTransactionManager transactionManager,
+                      MeterRegistry meterRegistry,
+                      @Value("${app.cart-reaper.ttl:PT24H}") Duration ttl,
+                      @Value("${app.cart-reaper.batch-size:500}") int batchSize) {
+        this.cartRepository = cartRepository;
+        this.cartStore = cartStore;
+        this.stockReservations = stockReservations;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.ttl = ttl;
+        this.batchSize = batchSize;
+        this.cartsRemoved = Counter.builder("cart.reaper.carts.removed")
+                .description("Abandoned carts deleted by the reaper")
+                .register(meterRegistry);
+        this.itemsRemoved = Counter.builder("cart.reaper.items.removed")
+                .description("Cart items deleted together with abandoned carts")
+                .register(meterRegistry);
+        this.sweepTimer = Timer.builder("cart.reaper.sweep")
+                .description("Duration of a full reaper sweep")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Runs a sweep on the configured schedule.
+     */
+    @Scheduled(fixedDelayString = "${app.cart-reaper.interval:PT5M}", initialDelayString = "${app.cart-reaper.interval:PT5M}")
+    public void scheduledSweep() {
+        sweep(LocalDateTime.now().minus(ttl));
+    }
+
+    /**
+     * Deletes every ACTIVE cart last modified before the cutoff, batch by batch, until none is left.
+     *
+     * @param cutoff Carts idle since before this instant are removed.
+     * @return The number of carts and items removed and how long the sweep took.
+     */
+    public SweepResult sweep(LocalDateTime cutoff) {
+        long start = System.nanoTime();
+        long carts = 0;
+        long items = 0;
+
+        while (true) {
+            SweepResult batch = transactionTemplate.execute(status -> deleteBatch(cutoff));
+            if (batch == null || batch.cartsRemoved() == 0) {
+                break;
+            }
+            carts += batch.cartsRemoved();
+            items += batch.itemsRemoved();
+            if (batch.cartsRemoved() < batchSize) {
+                break;
+            }
+        }
+
+        long elapsed = System.nanoTime() - start;
+        sweepTimer.record(elapsed, TimeUnit.NANOSECONDS);
+        cartsRemoved.increment(carts);
+        itemsRemoved.increment(items);
+        if (carts > 0) {
+            logger.info("Cart reaper removed {} carts and {} items idle since before {} in {} ms.",
+                    carts, items, cutoff, TimeUnit.NANOSECONDS.toMillis(elapsed));
+        } else {
+            logger.debug("Cart reaper found no carts idle since before {}.", cutoff);
+        }
+        return new SweepResult(carts, items, TimeUnit.NANOSECONDS.toMillis(elapsed));
+    }
+
+    private SweepResult deleteBatch(LocalDateTime cutoff) {
+        List<Long> ids = cartRepository.lockIdleCartIds(CartStatus.ACTIVE, cutoff, PageRequest.of(0, batchSize));
+        if (ids.isEmpty()) {
+            return new SweepResult(0, 0, 0);
+        }
+        StockReservations.StockChanges stock = stockReservations.inTransaction();
+        int items = cartStore.discard(ids, stock);
+        int carts = cartRepository.deleteByIdIn(ids);
+        return new SweepResult(carts, items, 0);
+    }
+
+    /**
+     * Outcome of a sweep.
+     *
+     * @param cartsRemoved Number of carts deleted.
+     * @param itemsRemoved Number of cart items deleted.
+     * @param durationMillis Wall-clock duration of the sweep.
+     */
+    public record SweepResult(long cartsRemoved, long itemsRemoved, long durationMillis) {
+    }
+}
@@ -1,7 +1,11 @@
 package com.example.microservicesjavaapp.service;
 
 import com.example.microservicesjavaapp.dto.CartDto;
+import com.example.microservicesjavaapp.dto.CartHistoryEventDto;
 import com.example.microservicesjavaapp.dto.CartItemDto;
+import com.example.microservicesjavaapp.dto.CartStateDto;
+import com.example.microservicesjavaapp.dto.CartTotalDto;
+import com.example.microservicesjavaapp.dto.OrderHistoryDto;
 
 import java.util.List;
 
@@ -46,6 +50,15 @@ public interface CartService {
      */
     List<CartItemDto> getCartProducts(Long cartId);
 
+    /**
+     * Previews the totals of a cart from its running subtotal and discounted total,
+     * without reading the cart's lines.
+     *
+     * @param cartId The ID of the cart.
+     * @return The cart's CartTotalDto.
+     */
+    CartTotalDto getCartTotal(Long cartId);
+
     /**
      * Retrieves all carts associated with a specific user.
      *
@@ -55,9 +68,47 @@ public interface CartService {
     List<CartDto> getCartsByUserId(Long userId);
 
     /**
-     * Asynchronously processes a shopping cart order.
-     * This method simulates order validation, discount application, and total calculation.
-     * It marks the cart as PROCESSED after completion.
+     * Retrieves the archived (processed and moved to history) orders of a specific user.
+     *
+     * @param userId The ID of the user.
+     * @return A list of OrderHistoryDto entities, most recently processed first.
+     */
+    List<OrderHistoryDto> getOrderHistory(Long userId);
+
+    /**
+     * Lists the changes made to a cart, from its event-sourced history.
+     * The history outlives the cart, so a reaped or archived cart can still be audited.
+     *
+     * @param cartId The ID of the cart.
+     * @param fromVersion The first version to list, from 1.
+     * @param limit The most events to list.
+     * @return A list of CartHistoryEventDto entities, oldest first.
+     */
+    List<CartHistoryEventDto> getCartHistory(Long cartId, Long fromVersion, Integer limit);
+
+    /**
+     * Rebuilds a cart as it was at a version of its history, e.g. right before checkout.
+     *
+     * @param cartId The ID of the cart.
+     * @param version The version to rebuild, from 1.
+     * @return The CartStateDto at that version.
+     */
+    CartStateDto getCartAtVersion(Long cartId, Long version);
+
+    /**
+     * Queues a shopping cart order for processing and returns immediately.
+     * The order is kept in the 'order_jobs' table until an OrderJobWorker, on any instance, has
+     * processed it; queueing a cart that is already queued does nothing.
+     *
+     * @param cartId The ID of the cart to process.
+     */
+    void enqueueOrder(Long cartId);
+
+    /**
+     * Processes a shopping cart order, as a job of the order queue.
+     * This method simulates order validation and charges the cart's running discounted total.
+     * It marks the cart as PROCESSED after completion; a cart that is not ACTIVE is left alone.
+     * An exception means the attempt failed and rolled back, so the job is retried.
      *
      * @param cartId The ID of the cart to process.
      */
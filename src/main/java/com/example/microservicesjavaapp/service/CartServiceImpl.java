@@ -2,35 +2,36 @@ package com.example.microservicesjavaapp.service;
 
 import com.example.microservicesjavaapp.model.Cart;
 import com.example.microservicesjavaapp.model.Cart.CartStatus;
-import com.example.microservicesjavaapp.model.CartItem;
-import com.example.microservicesjavaapp.model.Discount;
+import com.example.microservicesjavaapp.model.OutboxEvent.EventType;
 import com.example.microservicesjavaapp.model.Product;
 import com.example.microservicesjavaapp.model.User;
-import com.example.microservicesjavaapp.repository.CartItemRepository;
 import com.example.microservicesjavaapp.repository.CartRepository;
-import com.example.microservicesjavaapp.repository.DiscountRepository;
+import com.example.microservicesjavaapp.repository.OrderHistoryRepository;
 import com.example.microservicesjavaapp.repository.ProductRepository;
 import com.example.microservicesjavaapp.repository.UserRepository;
 import com.example.microservicesjavaapp.dto.CartDto;
+import com.example.microservicesjavaapp.dto.CartHistoryEventDto;
 import com.example.microservicesjavaapp.dto.CartItemDto;
-import com.example.microservicesjavaapp.dto.ProductDto;
-import com.example.microservicesjavaapp.dto.UserDto;
+import com.example.microservicesjavaapp.dto.CartStateDto;
+import com.example.microservicesjavaapp.dto.CartTotalDto;
+import com.example.microservicesjavaapp.dto.OrderHistoryDto;
+import com.example.microservicesjavaapp.service.CartFlightRecorder.CartOperationEvent;
+import com.example.microservicesjavaapp.service.CartFlightRecorder.CheckoutStageEvent;
+import com.example.microservicesjavaapp.service.CartLockRegistry.CartLock;
 import jakarta.transaction.Transactional;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.http.HttpStatus;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 import org.springframework.web.server.ResponseStatusException;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
 import java.util.stream.Collectors;
 
 /**
@@ -47,8 +48,9 @@ public class CartServiceImpl implements CartService { // Implements the new inte
     @Autowired
     private CartRepository cartRepository;
 
+    // Where the lines of the carts are kept: 'cart_items' through JPA, or off-heap memory (app.cart-store.engine)
     @Autowired
-    private CartItemRepository cartItemRepository;
+    private CartStore cartStore;
 
     @Autowired
     private ProductRepository productRepository;
@@ -56,34 +58,78 @@ public class CartServiceImpl implements CartService { // Implements the new inte
     @Autowired
     private UserRepository userRepository;
 
+    // Compiled discount rules, evaluated in memory for every line
     @Autowired
-    private DiscountRepository discountRepository;
+    private DiscountEngine discountEngine;
 
-    // A map to hold locks for each cart, preventing race conditions
-    private final ConcurrentHashMap<Long, Lock> cartLocks = new ConcurrentHashMap<>();
+    // Lock-free per-product stock counters, settled when the transaction ends
+    @Autowired
+    private StockReservations stockReservations;
+
+    @Autowired
+    private OrderHistoryRepository orderHistoryRepository;
+
+    // Hands out per-cart locks, preventing race conditions, and tracks their contention
+    @Autowired
+    private CartLockRegistry cartLocks;
+
+    // Concurrent identical reads share one run of their queries
+    @Autowired
+    private SingleFlight singleFlight;
+
+    // Durable checkout queue, processed by the OrderJobWorker of every instance
+    @Autowired
+    private OrderJobQueue orderJobQueue;
+
+    // Cart events for downstream systems, written in each change's transaction and published later
+    @Autowired
+    private Outbox outbox;
+
+    // Append-only binary history of every change to a cart, with periodic snapshots, for audit and replay
+    @Autowired
+    private CartHistory cartHistory;
+
+    // JFR events per operation and checkout stage, for recordings taken during latency spikes
+    @Autowired
+    private CartFlightRecorder flightRecorder;
+
+    // Sends the queries to the read replica, except right after the user's own changes
+    @Autowired
+    private ReplicaReads replicaReads;
 
     @Override // Mark that this method implements an interface method
     @Transactional
     public CartDto createCart(Long userId) {
-        User user = userRepository.findById(userId)
-                .orElseThrow(() -> {
-                    logger.warn("User with ID {} not found.", userId);
-                    return new ResponseStatusException(HttpStatus.NOT_FOUND, "User not found");
-                });
+        CartOperationEvent event = flightRecorder.beginOperation("createCart", null);
+        Long cartId = null;
+        try {
+            User user = userRepository.findById(userId)
+                    .orElseThrow(() -> {
+                        logger.warn("User with ID {} not found.", userId);
+                        return new ResponseStatusException(HttpStatus.NOT_FOUND, "User not found");
+                    });
 
-        Cart cart = new Cart();
-        cart.setUser(user);
-        cart.setStatus(CartStatus.ACTIVE);
-        cart = cartRepository.save(cart);
-        logger.info("Cart created with ID {} for user ID {}.", cart.getId(), userId);
-        return toCartDto(cart);
+            Cart cart = new Cart();
+            cart.setUser(user);
+            cart.setStatus(CartStatus.ACTIVE);
+            cart = cartRepository.save(cart);
+            cartId = cart.getId();
+            outbox.record(EventType.CART_CREATED, cart, null, null);
+            cartHistory.record(EventType.CART_CREATED, cart, null, null);
+            replicaReads.recordWrite(userId, cartId);
+            logger.info("Cart created with ID {} for user ID {}.", cart.getId(), userId);
+            return CartDtoMapper.toCartDto(cart);
+        } finally {
+            flightRecorder.endOperation(event, cartId, 0);
+        }
     }
 
     @Override
     @Transactional
     public CartItemDto addProductToCart(Long cartId, String productCode, Integer quantity) {
-        Lock lock = cartLocks.computeIfAbsent(cartId, k -> new ReentrantLock());
-        lock.lock();
+        CartOperationEvent event = flightRecorder.beginOperation("addProductToCart", cartId);
+        CartLock lock = cartLocks.acquire(cartId);
+        int lineCount = -1;
 
         try {
             Cart cart = cartRepository.findByIdAndStatus(cartId, CartStatus.ACTIVE)
@@ -91,39 +137,39 @@ public class CartServiceImpl implements CartService { // Implements the new inte
                         logger.warn("Active cart with ID {} not found.", cartId);
                         return new ResponseStatusException(HttpStatus.NOT_FOUND, "Active cart not found or already processed");
                     });
+            cart.setUpdatedAt(LocalDateTime.now()); // Keeps the cart away from the abandoned-cart reaper
 
             Product product = productRepository.findByCode(productCode)
                     .orElseThrow(() -> {
                         logger.warn("Product with code {} not found.", productCode);
                         return new ResponseStatusException(HttpStatus.NOT_FOUND, "Product not found");
                     });
+            stockReservations.inTransaction().reserve(product.getId(), quantity); // Given back if the transaction rolls back
 
-            Optional<CartItem> existingCartItem = cartItemRepository.findByCartAndProduct(cart, product);
-
-            CartItem cartItem;
-            if (existingCartItem.isPresent()) {
-                cartItem = existingCartItem.get();
-                cartItem.setQuantity(cartItem.getQuantity() + quantity);
-                logger.info("Updated quantity of product {} in cart {}. New quantity: {}", productCode, cartId, cartItem.getQuantity());
+            CartStore.Change change = cartStore.add(cart, product, quantity);
+            lineCount = change.lineCount();
+            if (change.previousQuantity() > 0) {
+                logger.info("Updated quantity of product {} in cart {}. New quantity: {}", productCode, cartId, change.quantity());
             } else {
-                cartItem = new CartItem();
-                cartItem.setCart(cart);
-                cartItem.setProduct(product);
-                cartItem.setQuantity(quantity);
-                cart.getItems().add(cartItem);
                 logger.info("Added product {} to cart {} with quantity {}.", productCode, cartId, quantity);
             }
-            return toCartItemDto(cartItemRepository.save(cartItem));
+            CartPricing.applyQuantityChange(cart, product, discountEngine, change.previousQuantity(), change.quantity());
+            outbox.record(EventType.CART_ITEM_ADDED, cart, productCode, change.quantity());
+            cartHistory.record(EventType.CART_ITEM_ADDED, cart, product.getId(), change.quantity());
+            replicaReads.recordWrite(cart.getUser().getId(), cartId);
+            return CartDtoMapper.toCartItemDto(new CartStore.Line(change.itemId(), product, change.quantity()));
         } finally {
-            lock.unlock();
+            cartLocks.releaseAfterTransaction(cartId, lock);
+            flightRecorder.endOperation(event, null, lineCount);
         }
     }
 
     @Override
     @Transactional
     public void removeProductFromCart(Long cartId, Long productId) {
-        Lock lock = cartLocks.computeIfAbsent(cartId, k -> new ReentrantLock());
-        lock.lock();
+        CartOperationEvent event = flightRecorder.beginOperation("removeProductFromCart", cartId);
+        CartLock lock = cartLocks.acquire(cartId);
+        int lineCount = -1;
 
         try {
             Cart cart = cartRepository.findByIdAndStatus(cartId, CartStatus.ACTIVE)
@@ -131,6 +177,7 @@ public class CartServiceImpl implements CartService { // Implements the new inte
                         logger.warn("Active cart with ID {} not found.", cartId);
                         return new ResponseStatusException(HttpStatus.NOT_FOUND, "Active cart not found or already processed");
                     });
+            cart.setUpdatedAt(LocalDateTime.now()); // Keeps the cart away from the abandoned-cart reaper
 
             Product product = productRepository.findById(productId)
                     .orElseThrow(() -> {
@@ -138,141 +185,200 @@ public class CartServiceImpl implements CartService { // Implements the new inte
                         return new ResponseStatusException(HttpStatus.NOT_FOUND, "Product not found");
                     });
 
-            CartItem cartItem = cartItemRepository.findByCartAndProduct(cart, product)
+            CartStore.Change change = cartStore.remove(cart, product)
                     .orElseThrow(() -> {
                         logger.warn("Product with ID {} not found in cart {}.", productId, cartId);
                         return new ResponseStatusException(HttpStatus.NOT_FOUND, "Product not found in cart");
                     });
+            lineCount = change.lineCount();
 
-            cart.getItems().remove(cartItem);
-            cartItemRepository.delete(cartItem);
+            CartPricing.applyQuantityChange(cart, product, discountEngine, change.previousQuantity(), 0);
+            stockReservations.inTransaction().release(productId, change.previousQuantity()); // Given back once the transaction commits
+            outbox.record(EventType.CART_ITEM_REMOVED, cart, product.getCode(), 0);
+            cartHistory.record(EventType.CART_ITEM_REMOVED, cart, productId, 0);
+            replicaReads.recordWrite(cart.getUser().getId(), cartId);
             logger.info("Removed product with ID {} from cart {}.", productId, cartId);
         } finally {
-            lock.unlock();
+            cartLocks.releaseAfterTransaction(cartId, lock);
+            flightRecorder.endOperation(event, null, lineCount);
         }
     }
 
     @Override
     public List<CartItemDto> getCartProducts(Long cartId) {
-        Cart cart = cartRepository.findById(cartId)
-                .orElseThrow(() -> {
-                    logger.warn("Cart with ID {} not found.", cartId);
-                    return new ResponseStatusException(HttpStatus.NOT_FOUND, "Cart not found");
-                });
-        return cartItemRepository.findByCart(cart).stream()
-                .map(this::toCartItemDto)
-                .collect(Collectors.toList());
+        CartOperationEvent event = flightRecorder.beginOperation("getCartProducts", cartId);
+        int lineCount = -1;
+        try {
+            // Routed first: a read pinned to the primary must not join one running on the lagging replica
+            ReplicaReads.Target target = replicaReads.route(null, cartId);
+            List<CartItemDto> items = singleFlight.execute("cart-items", List.of(target, cartId), () -> replicaReads.read(target, () -> {
+                Cart cart = cartRepository.findById(cartId)
+                        .orElseThrow(() -> {
+                            logger.warn("Cart with ID {} not found.", cartId);
+                            return new ResponseStatusException(HttpStatus.NOT_FOUND, "Cart not found");
+                        });
+                return cartStore.lines(cart).stream()
+                        .map(CartDtoMapper::toCartItemDto)
+                        .toList(); // Unmodifiable: the list may be shared by coalesced calls
+            }));
+            lineCount = items.size();
+            return items;
+        } finally {
+            flightRecorder.endOperation(event, null, lineCount);
+        }
+    }
+
+    @Override
+    public CartTotalDto getCartTotal(Long cartId) {
+        CartOperationEvent event = flightRecorder.beginOperation("getCartTotal", cartId);
+        try {
+            Cart cart = replicaReads.read(null, cartId, () -> cartRepository.findById(cartId))
+                    .orElseThrow(() -> {
+                        logger.warn("Cart with ID {} not found.", cartId);
+                        return new ResponseStatusException(HttpStatus.NOT_FOUND, "Cart not found");
+                    });
+            return CartDtoMapper.toCartTotalDto(cart);
+        } finally {
+            flightRecorder.endOperation(event, null, -1); // The totals come from the cart row alone; counting its lines would take a query
+        }
     }
 
     @Override
     public List<CartDto> getCartsByUserId(Long userId) {
-        User user = userRepository.findById(userId)
+        // Routed first: a read pinned to the primary must not join one running on the lagging replica
+        ReplicaReads.Target target = replicaReads.route(userId, null);
+        return singleFlight.execute("user-carts", List.of(target, userId), () -> replicaReads.read(target, () -> {
+            User user = userRepository.findById(userId)
+                    .orElseThrow(() -> {
+                        logger.warn("User with ID {} not found.", userId);
+                        return new ResponseStatusException(HttpStatus.NOT_FOUND, "User not found");
+                    });
+            List<Cart> carts = cartRepository.findWithItemsByUser(user);
+            Map<Long, List<CartStore.Line>> lines = cartStore.lines(carts);
+            return carts.stream()
+                    .map(cart -> CartDtoMapper.toCartDto(cart, lines.get(cart.getId())))
+                    .toList(); // Unmodifiable: the list may be shared by coalesced calls
+        }));
+    }
+
+    @Override
+    public List<OrderHistoryDto> getOrderHistory(Long userId) {
+        return replicaReads.read(userId, null, () -> {
+            if (!userRepository.existsById(userId)) {
+                logger.warn("User with ID {} not found.", userId);
+                throw new ResponseStatusException(HttpStatus.NOT_FOUND, "User not found");
+            }
+            return orderHistoryRepository.findByUserIdOrderByProcessedAtDesc(userId).stream()
+                    .map(CartDtoMapper::toOrderHistoryDto)
+                    .collect(Collectors.toList());
+        });
+    }
+
+    @Override
+    public List<CartHistoryEventDto> getCartHistory(Long cartId, Long fromVersion, Integer limit) {
+        List<CartHistoryEventDto> events = cartHistory.events(cartId, fromVersion, limit).stream()
+                .map(CartDtoMapper::toCartHistoryEventDto)
+                .toList();
+        if (events.isEmpty() && fromVersion <= 1) {
+            logger.warn("No history recorded for cart ID {}.", cartId);
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Cart history not found");
+        }
+        return events;
+    }
+
+    @Override
+    public CartStateDto getCartAtVersion(Long cartId, Long version) {
+        return cartHistory.rebuild(cartId, version)
+                .map(CartDtoMapper::toCartStateDto)
                 .orElseThrow(() -> {
-                    logger.warn("User with ID {} not found.", userId);
-                    return new ResponseStatusException(HttpStatus.NOT_FOUND, "User not found");
+                    logger.warn("Version {} of cart ID {} not found in its history.", version, cartId);
+                    return new ResponseStatusException(HttpStatus.NOT_FOUND, "Cart version not found");
                 });
-        return cartRepository.findByUser(user).stream()
-                .map(this::toCartDto)
-                .collect(Collectors.toList());
     }
 
     @Override
-    @Async
+    public void enqueueOrder(Long cartId) {
+        orderJobQueue.enqueue(cartId);
+    }
+
+    @Override
     @Transactional
     public void processOrder(Long cartId) {
-        Lock lock = cartLocks.computeIfAbsent(cartId, k -> new ReentrantLock());
-        lock.lock();
+        CartOperationEvent event = flightRecorder.beginOperation("processOrder", cartId);
+        CheckoutStageEvent stage = flightRecorder.beginStage(cartId, CartFlightRecorder.STAGE_LOCK);
+        CartLock lock = cartLocks.acquire(cartId);
+        flightRecorder.endStage(stage);
+        int lineCount = -1;
 
         try {
-            logger.info("Starting asynchronous processing for cart ID {}.", cartId);
-
-            Cart cart = cartRepository.findByIdAndStatus(cartId, CartStatus.ACTIVE)
-                    .orElseThrow(() -> {
-                        logger.warn("Active cart with ID {} not found for processing.", cartId);
-                        throw new IllegalStateException("Cart not found or already processed for ID: " + cartId);
-                    });
+            logger.info("Starting processing for cart ID {}.", cartId);
 
-            BigDecimal totalAmount = BigDecimal.ZERO;
-            Set<CartItem> items = cart.getItems();
+            // The row lock keeps a second run of the job, on any instance, waiting until this one commits
+            stage = flightRecorder.beginStage(cartId, CartFlightRecorder.STAGE_LOAD);
+            Optional<Cart> activeCart = cartRepository.lockByIdAndStatus(cartId, CartStatus.ACTIVE);
+            if (activeCart.isEmpty()) {
+                logger.warn("Active cart with ID {} not found for processing.", cartId);
+                return;
+            }
+            Cart cart = activeCart.get();
+            boolean empty = !cartStore.hasLines(cart);
+            flightRecorder.endStage(stage);
 
-            if (items.isEmpty()) {
+            if (empty) {
                 logger.warn("Cart {} is empty, cannot process.", cartId);
+                lineCount = 0;
                 cart.setStatus(CartStatus.PROCESSED);
+                cart.setOrderLines(OrderLineCodec.encode(List.of()));
                 cartRepository.save(cart);
+                outbox.record(EventType.CART_PROCESSED, cart, null, null);
+                cartHistory.record(EventType.CART_PROCESSED, cart, null, null);
+                replicaReads.recordWrite(cart.getUser().getId(), cartId);
                 logger.info("Cart {} processed (empty).", cartId);
                 return;
             }
 
-            for (CartItem item : items) {
-                Product product = item.getProduct();
-                BigDecimal itemPrice = product.getPrice().multiply(BigDecimal.valueOf(item.getQuantity()));
-                logger.debug("Item: {}, Quantity: {}, Price: {}", product.getName(), item.getQuantity(), itemPrice);
-
-                Optional<Discount> discount = discountRepository.findByCategory(product.getCategory());
-                if (discount.isPresent()) {
-                    BigDecimal discountAmount = itemPrice.multiply(discount.get().getPercentage().divide(BigDecimal.valueOf(100)));
-                    itemPrice = itemPrice.subtract(discountAmount);
-                    logger.debug("Applied {}% discount to {}. Discount amount: {}. New item price: {}",
-                            discount.get().getPercentage(), product.getName(), discountAmount, itemPrice);
-                }
-                totalAmount = totalAmount.add(itemPrice);
-            }
-
+            stage = flightRecorder.beginStage(cartId, CartFlightRecorder.STAGE_VALIDATE);
             Thread.sleep(2000);
-
+            flightRecorder.endStage(stage);
+
+            // The reservations become sales: the units leave the stock as the cart leaves ACTIVE.
+            // Done last, so the product rows stay locked only until the commit right after.
+            stage = flightRecorder.beginStage(cartId, CartFlightRecorder.STAGE_SETTLE);
+            cartStore.promote(cart); // Lines kept in memory become 'cart_items' rows, which the settlement reads
+            // Charged at today's prices and discounts: the running totals go stale when a price changes or a
+            // discount window opens or closes after the items were added
+            List<CartStore.Line> lines = cartStore.lines(cart);
+            lineCount = lines.size();
+            CartPricing.Totals totals = CartPricing.totals(lines, discountEngine);
+            if (!totals.matches(cart)) {
+                logger.info("Cart {} re-priced at checkout: total {} is now {}.", cartId, cart.getDiscountedTotal(), totals.discountedTotal());
+                totals.applyTo(cart);
+            }
+            cart.setOrderLines(OrderLineCodec.encode(CartPricing.orderLines(lines))); // What the order history keeps
+            BigDecimal totalAmount = cart.getDiscountedTotal();
+            logger.debug("Cart {} subtotal: {}, after discounts: {}", cartId, cart.getSubtotal(), totalAmount);
+            try {
+                productRepository.decrementStockByCartItems(cartId);
+            } catch (DataIntegrityViolationException e) {
+                // Another instance sold the same units: rolls back, the job is attempted again after a restock
+                throw new IllegalStateException("Not enough stock on hand to settle cart ID " + cartId, e);
+            }
             cart.setStatus(CartStatus.PROCESSED);
             cartRepository.save(cart);
+            outbox.record(EventType.CART_PROCESSED, cart, null, null);
+            cartHistory.record(EventType.CART_PROCESSED, cart, null, null);
+            replicaReads.recordWrite(cart.getUser().getId(), cartId);
+            flightRecorder.endStage(stage);
 
             logger.info("Order for cart ID {} processed successfully. Total amount: {}", cartId, totalAmount);
 
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
-            logger.error("Order processing for cart ID {} was interrupted.", cartId, e);
-        } catch (Exception e) {
-            logger.error("Error processing order for cart ID {}: {}", cartId, e.getMessage(), e);
+            // Rolls back: the job is attempted again
+            throw new IllegalStateException("Order processing for cart ID " + cartId + " was interrupted", e);
         } finally {
-            cartLocks.remove(cartId);
-            lock.unlock();
+            cartLocks.releaseAfterTransaction(cartId, lock);
+            flightRecorder.endOperation(event, null, lineCount);
         }
     }
-
-    /**
-     * Helper method to convert a User entity to a UserDto.
-     * @param user The User entity.
-     * @return The corresponding UserDto.
-     */
-    private UserDto toUserDto(User user) {
-        return new UserDto(user.getId(), user.getUsername());
-    }
-
-    /**
-     * Helper method to convert a Product entity to a ProductDto.
-     * @param product The Product entity.
-     * @return The corresponding ProductDto.
-     */
-    private ProductDto toProductDto(Product product) {
-        return new ProductDto(product.getId(), product.getCode(), product.getName(), product.getPrice(), product.getCategory());
-    }
-
-    /**
-     * Helper method to convert a CartItem entity to a CartItemDto.
-     * @param cartItem The CartItem entity.
-     * @return The corresponding CartItemDto.
-     */
-    private CartItemDto toCartItemDto(CartItem cartItem) {
-        return new CartItemDto(cartItem.getId(), toProductDto(cartItem.getProduct()), cartItem.getQuantity());
-    }
-
-    /**
-     * Helper method to convert a Cart entity to a CartDto.
-     * Includes nested DTO conversion for User and CartItems.
-     * @param cart The Cart entity.
-     * @return The corresponding CartDto.
-     */
-    private CartDto toCartDto(Cart cart) {
-        Set<CartItemDto> itemDtos = cart.getItems().stream()
-                .map(this::toCartItemDto)
-                .collect(Collectors.toSet());
-        return new CartDto(cart.getId(), toUserDto(cart.getUser()), cart.getCreatedAt(), cart.getStatus(), itemDtos);
-    }
 }
@@ -0,0 +1,114 @@
+package com.example.microservicesjavaapp.service;
+
+import com.example.microservicesjavaapp.model.Cart;
+import com.example.microservicesjavaapp.model.Product;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Storage engine for the lines of the carts: which products a cart holds and how many of each.
+ * CartServiceImpl, the reaper and the totals checker go through it for every line; the cart itself
+ * (owner, status, running totals) always stays in the 'carts' table.
+ *
+ * Three engines are available, selected with 'app.cart-store.engine':
+ * - 'jpa' (default, JpaCartStore): lines are CartItem rows in 'cart_items'.
+ * - 'offheap' (OffHeapCartStore): lines of ACTIVE carts are kept in memory, off the Java heap, and
+ *   promoted to 'cart_items' at checkout.
+ * - 'write-behind' (WriteBehindCartStore): changes are journaled to a memory-mapped file and written to
+ *   'cart_items' in batches, shortly after the request.
+ *
+ * Changes are made inside the caller's transaction, while it holds the cart's lock, and are undone if
+ * that transaction rolls back.
+ */
+public interface CartStore {
+
+    /**
+     * A line of a cart.
+     *
+     * @param itemId The ID of the CartItem row; for a line held in memory by the off-heap store, the ID of its
+     *               product, unique within the cart; null for a line the write-behind store has not written yet.
+     * @param product The product of the line.
+     * @param quantity The units of the product in the cart.
+     */
+    record Line(Long itemId, Product product, int quantity) {
+    }
+
+    /**
+     * The outcome of a change to a line.
+     *
+     * @param itemId The ID of the line, as in Line.
+     * @param previousQuantity The units before the change, 0 if the line was new.
+     * @param quantity The units after the change, 0 if the line was removed.
+     * @param lineCount The number of lines of the cart after the change.
+     */
+    record Change(Long itemId, int previousQuantity, int quantity, int lineCount) {
+    }
+
+    /**
+     * Adds units of a product to a cart, creating its line if needed.
+     *
+     * @param cart The ACTIVE cart, locked by the caller.
+     * @param product The product.
+     * @param quantity The units to add.
+     * @return The change made to the line.
+     */
+    Change add(Cart cart, Product product, int quantity);
+
+    /**
+     * Removes the line of a product from a cart.
+     *
+     * @param cart The ACTIVE cart, locked by the caller.
+     * @param product The product.
+     * @return The change made to the line, or empty if the cart has no line for the product.
+     */
+    Optional<Change> remove(Cart cart, Product product);
+
+    /**
+     * Lists the lines of a cart, with their products.
+     *
+     * @param cart The cart.
+     * @return The lines of the cart.
+     */
+    List<Line> lines(Cart cart);
+
+    /**
+     * Lists the lines of several carts, with their products, in as few queries as the engine allows.
+     *
+     * @param carts The carts, loaded with their items and their products (see CartRepository.findWithItemsByUser).
+     * @return The lines of each cart, by cart ID; carts without lines map to an empty list.
+     */
+    Map<Long, List<Line>> lines(List<Cart> carts);
+
+    /**
+     * @param cart The cart.
+     * @return Whether the cart has at least one line.
+     */
+    boolean hasLines(Cart cart);
+
+    /**
+     * Makes sure the lines of a cart being checked out are rows of 'cart_items', where checkout and the
+     * archiver read them.
+     *
+     * @param cart The ACTIVE cart, locked by the caller.
+     */
+    void promote(Cart cart);
+
+    /**
+     * Drops the lines of carts being deleted and hands their units back to the stock once the transaction
+     * commits.
+     *
+     * @param cartIds The IDs of the carts, locked by the caller.
+     * @param stock The stock changes of the caller's transaction.
+     * @return The number of lines dropped.
+     */
+    int discard(List<Long> cartIds, StockReservations.StockChanges stock);
+
+    /**
+     * @param productId The ID of the product.
+     * @return The units of the product held by lines that are not rows of 'cart_items', which the
+     *         database cannot count as reserved.
+     */
+    long unsavedReservedUnits(long productId);
+}
@@ -0,0 +1,145 @@
+package com.example.microservicesjavaapp.service;
+
+import com.example.microservicesjavaapp.model.Cart;
+import com.example.microservicesjavaapp.model.Cart.CartStatus;
+import com.example.microservicesjavaapp.repository.CartRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scheduled job that verifies the running totals of ACTIVE carts.
+ * Add and remove keep 'subtotal' and 'discounted_total' up to date incrementally, so a price or discount
+ * changed after an item was added, a time-windowed discount starting or ending, or a write made outside
+ * the cart services, leaves them stale.
+ * Every run recomputes a sample of 'app.cart-totals-checker.sample-size' carts from their lines, starting at
+ * a random cart ID, and reports each drifted cart. Checkout re-prices the cart on its own, so the report is
+ * what matters; with 'app.cart-totals-checker.repair' enabled (off by default) the stored totals are also
+ * corrected, but only if no item change touched them in the meantime.
+ */
+@Component // Marks this class as a Spring-managed component
+@ConditionalOnProperty(name = "app.cart-totals-checker.enabled", havingValue = "true", matchIfMissing = true)
+public class CartTotalsChecker {
+
+    private static final Logger logger = LoggerFactory.getLogger(CartTotalsChecker.class);
+
+    private final CartRepository cartRepository;
+    private final CartStore cartStore;
+    private final DiscountEngine discountEngine;
+    private final TransactionTemplate transactionTemplate;
+    private final int sampleSize;
+    private final boolean repair;
+    private final Counter cartsChecked;
+    private final Counter cartsDrifted;
+    private final Timer checkTimer;
+
+    public CartTotalsChecker(CartRepository cartRepository,
+                             CartStore cartStore,
+                             DiscountEngine discountEngine,
+                             PlatformTransactionManager transactionManager,
+                             MeterRegistry meterRegistry,
+                             @Value("${app.cart-totals-checker.sample-size:100}") int sampleSize,
+                             @Value("${app.cart-totals-checker.repair:false}") boolean repair) {
+        this.cartRepository = cartRepository;
+        this.cartStore = cartStore;
+        this.discountEngine = discountEngine;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.sampleSize = sampleSize;
+        this.repair = repair;
+        this.cartsChecked = Counter.builder("cart.totals.checked")
+                .description("Carts whose running totals were recomputed by the checker")
+                .register(meterRegistry);
+        this.cartsDrifted = Counter.builder("cart.totals.drifted")
+                .description("Carts whose running totals did not match their lines")
+                .register(meterRegistry);
+        this.checkTimer = Timer.builder("cart.totals.check")
+                .description("Duration of a totals checker run")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Runs a check on the configured schedule.
+     */
+    @Scheduled(fixedDelayString = "${app.cart-totals-checker.interval:PT10M}", initialDelayString = "${app.cart-totals-checker.interval:PT10M}")
+    public void scheduledCheck() {
+        check(sampleSize);
+    }
+
+    /**
+     * Recomputes the totals of up to sampleSize ACTIVE carts and compares them with the stored ones.
+     *
+     * @param sampleSize The maximum number of carts to check.
+     * @return The number of carts whose stored totals had drifted.
+     */
+    public int check(int sampleSize) {
+        long start = System.nanoTime();
+        Integer drifted = transactionTemplate.execute(status -> checkSample(sampleSize));
+        checkTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return drifted == null ? 0 : drifted;
+    }
+
+    private int checkSample(int sampleSize) {
+        Set<Long> ids = sampleIds(sampleSize);
+        if (ids.isEmpty()) {
+            return 0;
+        }
+
+        int drifted = 0;
+        List<Cart> carts = cartRepository.findAllWithItemsByIdIn(ids);
+        Map<Long, List<CartStore.Line>> lines = cartStore.lines(carts);
+        for (Cart cart : carts) {
+            CartPricing.Totals totals = CartPricing.totals(lines.get(cart.getId()), discountEngine);
+            if (totals.matches(cart)) {
+                continue;
+            }
+
+            drifted++;
+            logger.warn("Cart {} totals drifted: stored subtotal {} / total {}, recomputed {} / {}.",
+                    cart.getId(), cart.getSubtotal(), cart.getDiscountedTotal(), totals.subtotal(), totals.discountedTotal());
+            if (repair && cartRepository.updateTotalsIfUnchanged(cart.getId(), cart.getSubtotal(),
+                    cart.getDiscountedTotal(), totals.subtotal(), totals.discountedTotal()) == 0) {
+                logger.info("Cart {} changed while being checked; its totals were left for the next run.", cart.getId());
+            }
+        }
+
+        cartsChecked.increment(ids.size());
+        cartsDrifted.increment(drifted);
+        logger.debug("Cart totals checker verified {} carts, {} drifted.", ids.size(), drifted);
+        return drifted;
+    }
+
+    /**
+     * Picks a contiguous run of ACTIVE cart IDs from a random starting point, wrapping around to the
+     * lowest IDs when the run reaches the end of the table.
+     */
+    private Set<Long> sampleIds(int sampleSize) {
+        Long maxId = cartRepository.findMaxId();
+        if (maxId == null || sampleSize <= 0) {
+            return Set.of();
+        }
+        long fromId = ThreadLocalRandom.current().nextLong(1, maxId + 1);
+        Set<Long> ids = new LinkedHashSet<>(cartRepository.findIdsByStatusFromId(CartStatus.ACTIVE, fromId,
+                PageRequest.of(0, sampleSize)));
+        if (ids.size() < sampleSize) {
+            ids.addAll(cartRepository.findIdsByStatusFromId(CartStatus.ACTIVE, 0L,
+                    PageRequest.of(0, sampleSize - ids.size())));
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,239 @@
+package com.example.microservicesjavaapp.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Adaptive limit on the number of cart requests handled at once, across all users.
+ * Requests over the limit are rejected straight away (503) instead of queueing in front of a slow
+ * database or order executor, which keeps the latency of the admitted ones close to normal.
+ *
+ * The limit follows measured latency, in the gradient form of TCP Vegas: every 'window' it compares the
+ * window's average latency with a slowly moving long-term average. While latency holds, the limit grows
+ * by about half its square root per window; when latency rises the limit shrinks in proportion, settling
+ * at the few requests the slowed-down server still completes in time. Windows in which fewer than half
+ * the slots were used leave the limit alone: they say nothing about how much load the server can take.
+ *
+ * Reads and checkout may use the whole limit, item changes 'normal-share' of it and cart creation
+ * 'low-share', so when the server is saturated new carts are shed first and carts that exist can still
+ * be read and checked out. Applied to both stacks by ConcurrencyLimitConfig.
+ */
+@Component // Marks this class as a Spring-managed component
+@ConditionalOnProperty(name = "app.concurrency-limit.enabled", havingValue = "true", matchIfMissing = true)
+public class ConcurrencyLimiter {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConcurrencyLimiter.class);
+
+    private static final double RTT_TOLERANCE = 1.5; // Latency may rise by half before the limit shrinks
+    private static final double LONG_RTT_SMOOTHING = 0.05; // Weight of a window in the long-term average
+    private static final double LIMIT_SMOOTHING = 0.5; // Weight of a window's estimate in the new limit
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final Map<Priority, Double> shares = new EnumMap<>(Priority.class);
+    private final long windowNanos;
+    private final int minWindowSamples;
+    private final LongSupplier nanoClock;
+    private final Map<Priority, Counter> rejected = new EnumMap<>(Priority.class);
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile double limit;
+
+    private final LongAdder windowLatency = new LongAdder();
+    private final LongAdder windowSamples = new LongAdder();
+    private final AtomicInteger windowPeak = new AtomicInteger();
+    private final AtomicLong windowStart;
+    private final AtomicBoolean updating = new AtomicBoolean();
+    private double longLatency; // Only read and written while 'updating' is held
+
+    /**
+     * Creates a limiter updating its limit after every sample taken at least one second after the previous
+     * update, with a private meter registry (used by unit tests).
+     *
+     * @param initialLimit The limit to start from.
+     * @param minLimit The lowest the limit may go.
+     * @param maxLimit The highest the limit may go.
+     * @param normalShare Share of the limit available to item changes.
+     * @param lowShare Share of the limit available to cart creation.
+     * @param nanoClock Supplies the current time in nanoseconds.
+     */
+    ConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, double normalShare, double lowShare, LongSupplier nanoClock) {
+        this(initialLimit, minLimit, maxLimit, normalShare, lowShare, Duration.ofSeconds(1), 1, nanoClock, new SimpleMeterRegistry());
+    }
+
+    /**
+     * Creates a limiter with the configured settings, publishing its metrics to the given registry.
+     */
+    @Autowired
+    public ConcurrencyLimiter(@Value("${app.concurrency-limit.initial-limit:20}") int initialLimit,
+                              @Value("${app.concurrency-limit.min-limit:4}") int minLimit,
+                              @Value("${app.concurrency-limit.max-limit:200}") int maxLimit,
+                              @Value("${app.concurrency-limit.normal-share:0.9}") double normalShare,
+                              @Value("${app.concurrency-limit.low-share:0.75}") double lowShare,
+                              @Value("${app.concurrency-limit.window:PT0.5S}") Duration window,
+                              @Value("${app.concurrency-limit.min-window-samples:10}") int minWindowSamples,
+                              MeterRegistry meterRegistry) {
+        this(initialLimit, minLimit, maxLimit, normalShare, lowShare, window, minWindowSamples, System::nanoTime, meterRegistry);
+    }
+
+    private ConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, double normalShare, double lowShare,
+                               Duration window, int minWindowSamples, LongSupplier nanoClock, MeterRegistry meterRegistry) {
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.shares.put(Priority.HIGH, 1.0);
+        this.shares.put(Priority.NORMAL, normalShare);
+        this.shares.put(Priority.LOW, lowShare);
+        this.windowNanos = window.toNanos();
+        this.minWindowSamples = minWindowSamples;
+        this.nanoClock = nanoClock;
+        this.windowStart = new AtomicLong(nanoClock.getAsLong());
+        for (Priority priority : Priority.values()) {
+            rejected.put(priority, Counter.builder("concurrency.limit.rejected")
+                    .description("Cart requests shed by the concurrency limiter")
+                    .tag("priority", priority.name().toLowerCase())
+                    .register(meterRegistry));
+        }
+        Gauge.builder("concurrency.limit", this, ConcurrencyLimiter::limit)
+                .description("Current adaptive limit on concurrent cart requests")
+                .register(meterRegistry);
+        Gauge.builder("concurrency.limit.in-flight", inFlight, AtomicInteger::get)
+                .description("Cart requests currently being handled")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Takes a slot for a request, if its priority's share of the limit is not used up.
+     *
+     * @param priority The priority of the request.
+     * @return The slot, to be released when the request completes, or null if the request must be rejected.
+     */
+    public Permit tryAcquire(Priority priority) {
+        int allowed = Math.max(1, (int) (limit * shares.get(priority)));
+        int current;
+        do {
+            current = inFlight.get();
+            if (current >= allowed) {
+                rejected.get(priority).increment();
+                return null;
+            }
+        } while (!inFlight.compareAndSet(current, current + 1));
+        windowPeak.accumulateAndGet(current + 1, Math::max);
+        return new Permit(nanoClock.getAsLong());
+    }
+
+    /**
+     * @return The current limit.
+     */
+    public double limit() {
+        return limit;
+    }
+
+    /**
+     * @return The number of requests currently holding a slot.
+     */
+    public int inFlight() {
+        return inFlight.get();
+    }
+
+    private void onSample(long latencyNanos, long now) {
+        windowLatency.add(latencyNanos);
+        windowSamples.increment();
+        if (now - windowStart.get() < windowNanos || windowSamples.sum() < minWindowSamples
+                || !updating.compareAndSet(false, true)) {
+            return; // Window still open, or another request is closing it
+        }
+        try {
+            long samples = windowSamples.sumThenReset();
+            double shortLatency = (double) windowLatency.sumThenReset() / samples;
+            int peak = windowPeak.getAndSet(inFlight.get());
+            windowStart.set(now);
+            if (longLatency == 0) {
+                longLatency = shortLatency;
+            } else {
+                longLatency = longLatency * (1 - LONG_RTT_SMOOTHING) + shortLatency * LONG_RTT_SMOOTHING;
+                if (longLatency / shortLatency > 2) {
+                    longLatency *= 0.95; // Latency is back to normal after a long overload: forget it faster
+                }
+            }
+            double current = limit;
+            if (peak < current / 2) {
+                return;
+            }
+            double gradient = Math.max(0.5, Math.min(1.0, RTT_TOLERANCE * longLatency / shortLatency));
+            double estimate = current * gradient + Math.sqrt(current);
+            double updated = Math.max(minLimit, Math.min(maxLimit, current * (1 - LIMIT_SMOOTHING) + estimate * LIMIT_SMOOTHING));
+            if ((int) updated != (int) current) {
+                logger.debug("Concurrency limit {} -> {} (latency {} us, long-term {} us).", (int) current, (int) updated,
+                        (long) shortLatency / 1_000, (long) longLatency / 1_000);
+            }
+            limit = updated;
+        } finally {
+            updating.set(false);
+        }
+    }
+
+    /**
+     * How much of the limit a request may use.
+     */
+    public enum Priority {
+        HIGH, // Reads and checkout: the whole limit
+        NORMAL, // Item changes: 'normal-share' of the limit
+        LOW; // Cart creation: 'low-share' of the limit
+
+        /**
+         * Classifies a request.
+         *
+         * @param method The HTTP method.
+         * @param path The request path, without the context path.
+         * @return The priority, or null if the request is not limited.
+         */
+        public static Priority of(String method, String path) {
+            if (path.equals("/api/carts")) {
+                return method.equals("POST") ? LOW : null;
+            }
+            if (!path.startsWith("/api/carts/")) {
+                return null;
+            }
+            return method.equals("GET") || path.endsWith("/process") ? HIGH : NORMAL;
+        }
+    }
+
+    /**
+     * A slot held by one request. Releasing it records the request's latency.
+     */
+    public final class Permit {
+
+        private final long start;
+
+        private Permit(long start) {
+            this.start = start;
+        }
+
+        /**
+         * Gives the slot back. Must be called exactly once.
+         */
+        public void release() {
+            inFlight.decrementAndGet();
+            long now = nanoClock.getAsLong();
+            onSample(now - start, now);
+        }
+    }
+}
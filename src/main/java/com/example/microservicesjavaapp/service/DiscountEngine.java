@@ -0,0 +1,176 @@
+package com.example.microservicesjavaapp.service;
+
+import com.example.microservicesjavaapp.model.Discount;
+import com.example.microservicesjavaapp.model.DiscountRule;
+import com.example.microservicesjavaapp.model.Product;
+import com.example.microservicesjavaapp.repository.DiscountRepository;
+import com.example.microservicesjavaapp.repository.DiscountRuleRepository;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Evaluates the discount of a cart line against an in-memory, compiled copy of every discount rule:
+ * the category discounts of the 'discounts' table and the product-level, quantity-tiered and
+ * time-windowed rules of 'discount_rules'. When several rules match a line, the highest percentage wins.
+ *
+ * Rules are loaded once and compiled into an immutable {@link DiscountIndex}; lookups only read the
+ * current index, never the database. A new rule set is compiled off to the side and swapped in
+ * atomically: after a change to a Discount or DiscountRule commits (see {@link ReloadOnChange}), every
+ * 'app.discounts.refresh-interval' for changes made outside JPA, and, without reloading, whenever a rule's
+ * time window starts or ends.
+ */
+@Component // Marks this class as a Spring-managed component
+public class DiscountEngine {
+
+    private static final Logger logger = LoggerFactory.getLogger(DiscountEngine.class);
+
+    private final Supplier<List<DiscountIndex.Rule>> loader;
+    private final Clock clock;
+    private final AtomicReference<DiscountIndex> index;
+
+    /**
+     * Creates an engine over a fixed rule set (used by unit tests and benchmarks).
+     *
+     * @param loader Supplies the rules on every reload.
+     * @param clock The clock that decides which time-windowed rules are active.
+     */
+    DiscountEngine(Supplier<List<DiscountIndex.Rule>> loader, Clock clock) {
+        this.loader = loader;
+        this.clock = clock;
+        this.index = new AtomicReference<>(DiscountIndex.compile(loader.get(), clock.millis()));
+    }
+
+    /**
+     * Creates an engine loading its rules from the database.
+     *
+     * @param discountRepository Repository of the category discounts.
+     * @param discountRuleRepository Repository of the product, tiered and time-windowed rules.
+     * @param transactionManager Runs each load in its own read-only transaction.
+     */
+    @Autowired
+    public DiscountEngine(DiscountRepository discountRepository,
+                          DiscountRuleRepository discountRuleRepository,
+                          PlatformTransactionManager transactionManager) {
+        this(databaseLoader(discountRepository, discountRuleRepository, transactionManager), Clock.systemDefaultZone());
+    }
+
+    /**
+     * Finds the discount percentage of a cart line.
+     *
+     * @param product The product of the line.
+     * @param quantity The quantity of the line.
+     * @return The percentage to take off the line, or BigDecimal.ZERO when no rule applies.
+     */
+    public BigDecimal percentage(Product product, int quantity) {
+        DiscountIndex current = index.get();
+        long now = clock.millis();
+        if (now >= current.expiresAt()) {
+            // A rule started or ended: recompile the same rules for the new window, once, whoever gets there first
+            current = index.updateAndGet(i -> now >= i.expiresAt() ? DiscountIndex.compile(i.rules(), now) : i);
+        }
+        return current.percentage(product.getId(), product.getCategory(), quantity);
+    }
+
+    /**
+     * Reloads every rule from its source and swaps the recompiled index in.
+     * Reloads run one at a time: otherwise a slow scheduled reload could swap in rules read before a
+     * commit after the reload that followed that commit had already swapped in the new ones.
+     */
+    @Scheduled(fixedDelayString = "${app.discounts.refresh-interval:PT5M}", initialDelayString = "${app.discounts.refresh-interval:PT5M}")
+    public synchronized void reload() {
+        DiscountIndex reloaded = DiscountIndex.compile(loader.get(), clock.millis());
+        index.set(reloaded);
+        logger.debug("Discount rules reloaded: {} rules, {} active.", reloaded.rules().size(), reloaded.activeRules());
+    }
+
+    /**
+     * Reloads the rules once the surrounding transaction has committed, so the reload sees its changes.
+     * Several changes in one transaction cause a single reload. Outside a transaction it reloads immediately.
+     */
+    public void reloadAfterCommit() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            reload();
+            return;
+        }
+        if (TransactionSynchronizationManager.hasResource(this)) {
+            return; // Already scheduled for this transaction
+        }
+        TransactionSynchronizationManager.bindResource(this, Boolean.TRUE);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(DiscountEngine.this);
+                if (status == STATUS_COMMITTED) {
+                    reload();
+                }
+            }
+        });
+    }
+
+    private static Supplier<List<DiscountIndex.Rule>> databaseLoader(DiscountRepository discountRepository,
+                                                                     DiscountRuleRepository discountRuleRepository,
+                                                                     PlatformTransactionManager transactionManager) {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        // A new transaction, as a reload also runs after another transaction has completed
+        transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        transactionTemplate.setReadOnly(true);
+        return () -> transactionTemplate.execute(status -> {
+            List<DiscountIndex.Rule> rules = new ArrayList<>();
+            for (Discount discount : discountRepository.findAll()) {
+                rules.add(DiscountIndex.Rule.forCategory(discount.getCategory(), 1, discount.getPercentage()));
+            }
+            for (DiscountRule rule : discountRuleRepository.findAll()) {
+                rules.add(new DiscountIndex.Rule(rule.getProductId(), rule.getCategory(), rule.getMinQuantity(),
+                        rule.getPercentage(), epochMillis(rule.getValidFrom(), Long.MIN_VALUE),
+                        epochMillis(rule.getValidUntil(), Long.MAX_VALUE)));
+            }
+            return rules;
+        });
+    }
+
+    private static long epochMillis(LocalDateTime time, long unbounded) {
+        return time == null ? unbounded : time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    /**
+     * JPA entity listener that reloads the discount rules after a Discount or DiscountRule is created,
+     * updated or deleted. Instantiated by Hibernate through the Spring bean container.
+     */
+    public static class ReloadOnChange {
+
+        // Resolved lazily: the engine depends on the repositories, which need the persistence unit built first
+        private final ObjectProvider<DiscountEngine> engine;
+
+        public ReloadOnChange(ObjectProvider<DiscountEngine> engine) {
+            this.engine = engine;
+        }
+
+        @PostPersist
+        @PostUpdate
+        @PostRemove
+        void reload(Object discount) {
+            engine.ifAvailable(DiscountEngine::reloadAfterCommit);
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.example.microservicesjavaapp.service;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Immutable, compiled form of the discount rules in effect during one time window.
+ * Rules are grouped by product ID and by category; each group is a pair of arrays sorted by minimum
+ * quantity, with the percentages already turned into a running maximum, so a line's tier is one binary
+ * search. A lookup is two hash lookups and two searches over primitive arrays, and allocates nothing.
+ *
+ * The index only holds the rules active at the instant it was compiled for, and stays valid until the
+ * next instant at which a rule starts or ends ({@link #expiresAt()}); DiscountEngine then recompiles the
+ * same rules for the new window.
+ */
+final class DiscountIndex {
+
+    private final List<Rule> rules;
+    private final Map<Long, Tiers> byProduct;
+    private final Map<String, Tiers> byCategory;
+    private final long expiresAt;
+
+    private DiscountIndex(List<Rule> rules, Map<Long, Tiers> byProduct, Map<String, Tiers> byCategory, long expiresAt) {
+        this.rules = rules;
+        this.byProduct = byProduct;
+        this.byCategory = byCategory;
+        this.expiresAt = expiresAt;
+    }
+
+    /**
+     * Compiles the rules active at the given instant.
+     *
+     * @param rules All rules, including the ones outside their time window.
+     * @param now The instant to compile for, in epoch milliseconds.
+     * @return The compiled index.
+     */
+    static DiscountIndex compile(List<Rule> rules, long now) {
+        List<Rule> productRules = new ArrayList<>();
+        List<Rule> categoryRules = new ArrayList<>();
+        long expiresAt = Long.MAX_VALUE;
+        for (Rule rule : rules) {
+            if (rule.validFrom() > now) {
+                expiresAt = Math.min(expiresAt, rule.validFrom());
+            } else if (rule.validUntil() > now) {
+                expiresAt = Math.min(expiresAt, rule.validUntil());
+                (rule.productId() != null ? productRules : categoryRules).add(rule);
+            }
+        }
+        return new DiscountIndex(List.copyOf(rules), group(productRules, Rule::productId),
+                group(categoryRules, Rule::category), expiresAt);
+    }
+
+    /**
+     * Finds the best percentage that applies to a cart line: the highest of the product's and the
+     * category's tier for the line's quantity.
+     *
+     * @param productId The ID of the line's product.
+     * @param category The category of the line's product.
+     * @param quantity The quantity of the line.
+     * @return The discount percentage, or BigDecimal.ZERO when no rule applies.
+     */
+    BigDecimal percentage(Long productId, String category, int quantity) {
+        BigDecimal product = productId == null ? null : lookup(byProduct.get(productId), quantity);
+        BigDecimal categoryWide = category == null ? null : lookup(byCategory.get(category), quantity);
+        if (product == null) {
+            return categoryWide == null ? BigDecimal.ZERO : categoryWide;
+        }
+        return categoryWide == null || product.compareTo(categoryWide) >= 0 ? product : categoryWide;
+    }
+
+    /**
+     * @return The instant, in epoch milliseconds, at which a rule starts or ends and this index goes stale.
+     */
+    long expiresAt() {
+        return expiresAt;
+    }
+
+    /**
+     * @return All the rules this index was compiled from.
+     */
+    List<Rule> rules() {
+        return rules;
+    }
+
+    /**
+     * @return The number of rules active in this index's time window.
+     */
+    int activeRules() {
+        int active = 0;
+        for (Tiers tiers : byProduct.values()) {
+            active += tiers.minQuantities().length;
+        }
+        for (Tiers tiers : byCategory.values()) {
+            active += tiers.minQuantities().length;
+        }
+        return active;
+    }
+
+    private static BigDecimal lookup(Tiers tiers, int quantity) {
+        if (tiers == null) {
+            return null;
+        }
+        int i = Arrays.binarySearch(tiers.minQuantities(), quantity);
+        if (i < 0) {
+            i = -i - 2; // The last tier below the quantity
+        }
+        return i < 0 ? null : tiers.percentages()[i];
+    }
+
+    private static <K> Map<K, Tiers> group(List<Rule> rules, Function<Rule, K> key) {
+        Map<K, List<Rule>> groups = new HashMap<>();
+        for (Rule rule : rules) {
+            groups.computeIfAbsent(key.apply(rule), k -> new ArrayList<>()).add(rule);
+        }
+        Map<K, Tiers> compiled = new HashMap<>(groups.size() * 2);
+        groups.forEach((k, group) -> compiled.put(k, tiers(group)));
+        return compiled;
+    }
+
+    private static Tiers tiers(List<Rule> group) {
+        group.sort(Comparator.comparingInt(Rule::minQuantity));
+        int[] minQuantities = new int[group.size()];
+        BigDecimal[] percentages = new BigDecimal[group.size()];
+        int n = 0;
+        BigDecimal best = null;
+        for (Rule rule : group) {
+            if (best == null || rule.percentage().compareTo(best) > 0) {
+                best = rule.percentage(); // A higher tier never gives less than a lower one
+            }
+            if (n > 0 && minQuantities[n - 1] == rule.minQuantity()) {
+                percentages[n - 1] = best; // Same tier defined twice (e.g. overlapping windows): keep the best
+            } else {
+                minQuantities[n] = rule.minQuantity();
+                percentages[n++] = best;
+            }
+        }
+        return new Tiers(Arrays.copyOf(minQuantities, n), Arrays.copyOf(percentages, n));
+    }
+
+    /**
+     * One discount rule, with its time window in epoch milliseconds.
+     *
+     * @param productId The product the rule applies to, or null for a category rule.
+     * @param category The category the rule applies to, when productId is null.
+     * @param minQuantity The line quantity from which the rule applies.
+     * @param percentage The discount percentage.
+     * @param validFrom Start of the window (inclusive), Long.MIN_VALUE for none.
+     * @param validUntil End of the window (exclusive), Long.MAX_VALUE for none.
+     */
+    record Rule(Long productId, String category, int minQuantity, BigDecimal percentage, long validFrom, long validUntil) {
+
+        static Rule forCategory(String category, int minQuantity, BigDecimal percentage) {
+            return new Rule(null, category, minQuantity, percentage, Long.MIN_VALUE, Long.MAX_VALUE);
+        }
+    }
+
+    private record Tiers(int[] minQuantities, BigDecimal[] percentages) {
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.microservicesjavaapp.service;
+
+import com.example.microservicesjavaapp.model.OutboxEvent;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * In-process OutboxSink keeping the published events in memory, standing in for the real destination
+ * in tests (selected with 'app.outbox.sink=memory').
+ */
+@Component // Marks this class as a Spring-managed component
+@ConditionalOnProperty(name = "app.outbox.sink", havingValue = "memory")
+public class InMemoryOutboxSink implements OutboxSink {
+
+    private final List<OutboxEvent> events = new ArrayList<>();
+
+    @Override
+    public synchronized void publish(List<OutboxEvent> batch) {
+        events.addAll(batch);
+    }
+
+    /**
+     * @return A copy of the events published so far, in publication order.
+     */
+    public synchronized List<OutboxEvent> events() {
+        return new ArrayList<>(events);
+    }
+}
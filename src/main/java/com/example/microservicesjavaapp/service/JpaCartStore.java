@@ -0,0 +1,104 @@
+package com.example.microservicesjavaapp.service;
+
+import com.example.microservicesjavaapp.model.Cart;
+import com.example.microservicesjavaapp.model.CartItem;
+import com.example.microservicesjavaapp.model.Product;
+import com.example.microservicesjavaapp.repository.CartItemRepository;
+import com.example.microservicesjavaapp.repository.ProductQuantity;
+import org.hibernate.Hibernate;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Cart store keeping every line as a CartItem row of 'cart_items', through JPA (the default engine).
+ */
+@Component // Marks this class as a Spring-managed component
+@ConditionalOnProperty(name = "app.cart-store.engine", havingValue = "jpa", matchIfMissing = true)
+public class JpaCartStore implements CartStore {
+
+    private final CartItemRepository cartItemRepository;
+
+    public JpaCartStore(CartItemRepository cartItemRepository) {
+        this.cartItemRepository = cartItemRepository;
+    }
+
+    @Override
+    public Change add(Cart cart, Product product, int quantity) {
+        CartItem cartItem = cartItemRepository.findByCartAndProduct(cart, product).orElse(null);
+        // Counted before anything in 'cart_items' is dirty, so the query does not flush the session early
+        int lineCount = cartItemRepository.countByCart(cart) + (cartItem == null ? 1 : 0);
+        int previousQuantity = 0;
+        if (cartItem != null) {
+            previousQuantity = cartItem.getQuantity();
+            cartItem.setQuantity(previousQuantity + quantity);
+        } else {
+            cartItem = new CartItem();
+            cartItem.setCart(cart);
+            cartItem.setProduct(product);
+            cartItem.setQuantity(quantity);
+            if (Hibernate.isInitialized(cart.getItems())) {
+                cart.getItems().add(cartItem); // The item is saved on its own; loading the collection just to add to it is avoided
+            }
+        }
+        cartItem = cartItemRepository.save(cartItem);
+        return new Change(cartItem.getId(), previousQuantity, cartItem.getQuantity(), lineCount);
+    }
+
+    @Override
+    public Optional<Change> remove(Cart cart, Product product) {
+        return cartItemRepository.findByCartAndProduct(cart, product).map(cartItem -> {
+            int lineCount = cartItemRepository.countByCart(cart) - 1; // Counted before the delete, which would be flushed first
+            if (Hibernate.isInitialized(cart.getItems())) {
+                cart.getItems().remove(cartItem); // The item is deleted on its own; loading the collection just to remove from it is avoided
+            }
+            cartItemRepository.delete(cartItem);
+            return new Change(cartItem.getId(), cartItem.getQuantity(), 0, lineCount);
+        });
+    }
+
+    @Override
+    public List<Line> lines(Cart cart) {
+        return cartItemRepository.findWithProductByCart(cart).stream().map(JpaCartStore::line).toList();
+    }
+
+    @Override
+    public Map<Long, List<Line>> lines(List<Cart> carts) {
+        Map<Long, List<Line>> lines = new HashMap<>(carts.size() * 2);
+        for (Cart cart : carts) {
+            lines.put(cart.getId(), cart.getItems().stream().map(JpaCartStore::line).toList());
+        }
+        return lines;
+    }
+
+    @Override
+    public boolean hasLines(Cart cart) {
+        return cartItemRepository.existsByCart(cart);
+    }
+
+    @Override
+    public void promote(Cart cart) {
+        // The lines already are rows of 'cart_items'
+    }
+
+    @Override
+    public int discard(List<Long> cartIds, StockReservations.StockChanges stock) {
+        for (ProductQuantity reserved : cartItemRepository.sumQuantityByProductForCartIdIn(cartIds)) {
+            stock.release(reserved.productId(), reserved.quantity());
+        }
+        return cartItemRepository.deleteByCartIdIn(cartIds);
+    }
+
+    @Override
+    public long unsavedReservedUnits(long productId) {
+        return 0; // Every line is a row: the database counts them all
+    }
+
+    private static Line line(CartItem item) {
+        return new Line(item.getId(), item.getProduct(), item.getQuantity());
+    }
+}
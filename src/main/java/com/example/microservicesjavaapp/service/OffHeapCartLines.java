@@ -0,0 +1,425 @@
+package com.example.microservicesjavaapp.service;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Cart lines held outside the Java heap, as primitives: a line is a cart ID, a product ID and a quantity,
+ * in 24 bytes of a direct buffer, against the few hundred bytes of heap a CartItem entity and its place
+ * in a HashSet cost. The garbage collector never sees the lines, whatever their number.
+ *
+ * Lines are spread over segments by cart ID; each segment has its own read-write lock and two direct
+ * buffers:
+ * - lines: [cart ID (8) | product ID (8) | quantity (4) | next line of the cart + 1 (4)], with the lines
+ *   of a cart chained through 'next' and free lines chained the same way for reuse;
+ * - carts: an open-addressing table (linear probing) of [cart ID (8) | first line + 1 (4) | line count (4)],
+ *   0 in the first-line field marking an empty slot.
+ * A cart's lines are found by walking its chain, which is short: a product appears once per cart.
+ * Both buffers double when full; nothing is ever shrunk.
+ *
+ * Thread-safe. Changes to one cart are expected to be serialized by the caller (CartLockRegistry).
+ */
+final class OffHeapCartLines {
+
+    private static final int LINE_BYTES = 24;
+    private static final int LINE_CART = 0;
+    private static final int LINE_PRODUCT = 8;
+    private static final int LINE_QUANTITY = 16;
+    private static final int LINE_NEXT = 20;
+
+    private static final int SLOT_BYTES = 16;
+    private static final int SLOT_CART = 0;
+    private static final int SLOT_HEAD = 8;
+    private static final int SLOT_COUNT = 12;
+
+    /**
+     * Receives the lines of a cart.
+     */
+    interface LineVisitor {
+        void visit(long productId, int quantity);
+    }
+
+    private final Segment[] segments;
+    private final int segmentMask;
+
+    /**
+     * @param segments The number of segments, rounded up to a power of two.
+     * @param initialLinesPerSegment The lines each segment has room for before it first grows.
+     */
+    OffHeapCartLines(int segments, int initialLinesPerSegment) {
+        int count = segments <= 1 ? 1 : Integer.highestOneBit(segments - 1) << 1;
+        this.segments = new Segment[count];
+        for (int i = 0; i < count; i++) {
+            this.segments[i] = new Segment(Math.max(4, initialLinesPerSegment));
+        }
+        this.segmentMask = count - 1;
+    }
+
+    /**
+     * @return The units of the product in the cart, 0 if it has no line for it.
+     */
+    int quantity(long cartId, long productId) {
+        Segment segment = segment(cartId);
+        segment.lock.readLock().lock();
+        try {
+            int line = segment.findLine(cartId, productId);
+            return line < 0 ? 0 : segment.quantity(line);
+        } finally {
+            segment.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Adds units of a product to a cart, creating its line if needed.
+     *
+     * @return The units before the change.
+     */
+    int add(long cartId, long productId, int quantity) {
+        Segment segment = segment(cartId);
+        segment.lock.writeLock().lock();
+        try {
+            int line = segment.findLine(cartId, productId);
+            if (line < 0) {
+                segment.insertLine(cartId, productId, quantity);
+                return 0;
+            }
+            int previous = segment.quantity(line);
+            segment.lines.putInt(line * LINE_BYTES + LINE_QUANTITY, Math.addExact(previous, quantity));
+            return previous;
+        } finally {
+            segment.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Sets the units of a product in a cart; 0 removes the line.
+     *
+     * @return The units before the change, 0 if there was no line.
+     */
+    int set(long cartId, long productId, int quantity) {
+        Segment segment = segment(cartId);
+        segment.lock.writeLock().lock();
+        try {
+            int line = segment.findLine(cartId, productId);
+            if (line < 0) {
+                if (quantity > 0) {
+                    segment.insertLine(cartId, productId, quantity);
+                }
+                return 0;
+            }
+            int previous = segment.quantity(line);
+            if (quantity > 0) {
+                segment.lines.putInt(line * LINE_BYTES + LINE_QUANTITY, quantity);
+            } else {
+                segment.removeLine(cartId, productId);
+            }
+            return previous;
+        } finally {
+            segment.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Visits the lines of a cart, most recently added first.
+     *
+     * @return The number of lines visited.
+     */
+    int forEachLine(long cartId, LineVisitor visitor) {
+        Segment segment = segment(cartId);
+        segment.lock.readLock().lock();
+        try {
+            int slot = segment.findSlot(cartId);
+            if (slot < 0) {
+                return 0;
+            }
+            int visited = 0;
+            for (int line = segment.head(slot); line >= 0; line = segment.next(line)) {
+                visitor.visit(segment.lines.getLong(line * LINE_BYTES + LINE_PRODUCT), segment.quantity(line));
+                visited++;
+            }
+            return visited;
+        } finally {
+            segment.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return Whether the cart has at least one line.
+     */
+    boolean hasLines(long cartId) {
+        Segment segment = segment(cartId);
+        segment.lock.readLock().lock();
+        try {
+            return segment.findSlot(cartId) >= 0;
+        } finally {
+            segment.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Removes every line of a cart, visiting them first.
+     *
+     * @return The number of lines removed.
+     */
+    int removeCart(long cartId, LineVisitor removed) {
+        Segment segment = segment(cartId);
+        segment.lock.writeLock().lock();
+        try {
+            int slot = segment.findSlot(cartId);
+            if (slot < 0) {
+                return 0;
+            }
+            int count = 0;
+            int line = segment.head(slot);
+            while (line >= 0) {
+                int next = segment.next(line);
+                removed.visit(segment.lines.getLong(line * LINE_BYTES + LINE_PRODUCT), segment.quantity(line));
+                segment.freeLine(line);
+                line = next;
+                count++;
+            }
+            segment.deleteSlot(slot);
+            return count;
+        } finally {
+            segment.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return The number of carts with at least one line.
+     */
+    long cartCount() {
+        long carts = 0;
+        for (Segment segment : segments) {
+            segment.lock.readLock().lock();
+            try {
+                carts += segment.carts;
+            } finally {
+                segment.lock.readLock().unlock();
+            }
+        }
+        return carts;
+    }
+
+    /**
+     * @return The number of lines.
+     */
+    long lineCount() {
+        long lines = 0;
+        for (Segment segment : segments) {
+            segment.lock.readLock().lock();
+            try {
+                lines += segment.liveLines;
+            } finally {
+                segment.lock.readLock().unlock();
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * @return The bytes of direct memory allocated for lines and carts, used or not.
+     */
+    long allocatedBytes() {
+        long bytes = 0;
+        for (Segment segment : segments) {
+            segment.lock.readLock().lock();
+            try {
+                bytes += segment.lines.capacity() + (long) segment.slots.capacity();
+            } finally {
+                segment.lock.readLock().unlock();
+            }
+        }
+        return bytes;
+    }
+
+    private Segment segment(long cartId) {
+        return segments[(int) (mix(cartId) >>> 32) & segmentMask];
+    }
+
+    private static long mix(long value) {
+        long h = value * 0x9E3779B97F4A7C15L;
+        return h ^ (h >>> 29);
+    }
+
+    private static ByteBuffer allocate(int bytes) {
+        return ByteBuffer.allocateDirect(bytes).order(ByteOrder.nativeOrder());
+    }
+
+    private static final class Segment {
+
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        private ByteBuffer lines;
+        private int lineCapacity;
+        private int highWater; // Lines handed out at least once
+        private int freeHead = -1;
+        private int liveLines;
+        private ByteBuffer slots;
+        private int slotMask;
+        private int carts;
+
+        private Segment(int initialLines) {
+            this.lineCapacity = initialLines;
+            this.lines = allocate(initialLines * LINE_BYTES);
+            int slotCount = Integer.highestOneBit(initialLines - 1) << 1; // Room for one cart per line at half load
+            this.slots = allocate(slotCount * SLOT_BYTES);
+            this.slotMask = slotCount - 1;
+        }
+
+        private int quantity(int line) {
+            return lines.getInt(line * LINE_BYTES + LINE_QUANTITY);
+        }
+
+        private int next(int line) {
+            return lines.getInt(line * LINE_BYTES + LINE_NEXT) - 1;
+        }
+
+        private int head(int slot) {
+            return slots.getInt(slot * SLOT_BYTES + SLOT_HEAD) - 1;
+        }
+
+        private int findSlot(long cartId) {
+            for (int slot = (int) mix(cartId) & slotMask; ; slot = (slot + 1) & slotMask) {
+                int offset = slot * SLOT_BYTES;
+                if (slots.getInt(offset + SLOT_HEAD) == 0) {
+                    return -1;
+                }
+                if (slots.getLong(offset + SLOT_CART) == cartId) {
+                    return slot;
+                }
+            }
+        }
+
+        private int findLine(long cartId, long productId) {
+            int slot = findSlot(cartId);
+            if (slot < 0) {
+                return -1;
+            }
+            for (int line = head(slot); line >= 0; line = next(line)) {
+                if (lines.getLong(line * LINE_BYTES + LINE_PRODUCT) == productId) {
+                    return line;
+                }
+            }
+            return -1;
+        }
+
+        private void insertLine(long cartId, long productId, int quantity) {
+            int line = allocateLine();
+            int offset = line * LINE_BYTES;
+            lines.putLong(offset + LINE_CART, cartId);
+            lines.putLong(offset + LINE_PRODUCT, productId);
+            lines.putInt(offset + LINE_QUANTITY, quantity);
+
+            int slot = findSlot(cartId);
+            if (slot < 0) {
+                if ((carts + 1) * 2 > slotMask + 1) {
+                    growSlots();
+                }
+                slot = (int) mix(cartId) & slotMask;
+                while (slots.getInt(slot * SLOT_BYTES + SLOT_HEAD) != 0) {
+                    slot = (slot + 1) & slotMask;
+                }
+                slots.putLong(slot * SLOT_BYTES + SLOT_CART, cartId);
+                slots.putInt(slot * SLOT_BYTES + SLOT_COUNT, 0);
+                lines.putInt(offset + LINE_NEXT, 0);
+                carts++;
+            } else {
+                lines.putInt(offset + LINE_NEXT, head(slot) + 1);
+            }
+            slots.putInt(slot * SLOT_BYTES + SLOT_HEAD, line + 1);
+            slots.putInt(slot * SLOT_BYTES + SLOT_COUNT, slots.getInt(slot * SLOT_BYTES + SLOT_COUNT) + 1);
+        }
+
+        private void removeLine(long cartId, long productId) {
+            int slot = findSlot(cartId);
+            int previous = -1;
+            for (int line = head(slot); line >= 0; previous = line, line = next(line)) {
+                if (lines.getLong(line * LINE_BYTES + LINE_PRODUCT) != productId) {
+                    continue;
+                }
+                int next = next(line);
+                if (previous < 0) {
+                    slots.putInt(slot * SLOT_BYTES + SLOT_HEAD, next + 1);
+                } else {
+                    lines.putInt(previous * LINE_BYTES + LINE_NEXT, next + 1);
+                }
+                freeLine(line);
+                int count = slots.getInt(slot * SLOT_BYTES + SLOT_COUNT) - 1;
+                if (count == 0) {
+                    deleteSlot(slot);
+                } else {
+                    slots.putInt(slot * SLOT_BYTES + SLOT_COUNT, count);
+                }
+                return;
+            }
+        }
+
+        private int allocateLine() {
+            liveLines++;
+            if (freeHead >= 0) {
+                int line = freeHead;
+                freeHead = next(line);
+                return line;
+            }
+            if (highWater == lineCapacity) {
+                int capacity = Math.multiplyExact(lineCapacity, 2);
+                ByteBuffer grown = allocate(Math.multiplyExact(capacity, LINE_BYTES));
+                grown.put(0, lines, 0, lineCapacity * LINE_BYTES);
+                lines = grown;
+                lineCapacity = capacity;
+            }
+            return highWater++;
+        }
+
+        private void freeLine(int line) {
+            int offset = line * LINE_BYTES;
+            lines.putLong(offset + LINE_CART, 0);
+            lines.putLong(offset + LINE_PRODUCT, 0);
+            lines.putInt(offset + LINE_QUANTITY, 0);
+            lines.putInt(offset + LINE_NEXT, freeHead + 1);
+            freeHead = line;
+            liveLines--;
+        }
+
+        /**
+         * Empties a slot, moving back the entries of its probe run that would no longer be found
+         * (backward-shift deletion), so lookups never need tombstones.
+         */
+        private void deleteSlot(int slot) {
+            int hole = slot;
+            for (int probe = (hole + 1) & slotMask; slots.getInt(probe * SLOT_BYTES + SLOT_HEAD) != 0; probe = (probe + 1) & slotMask) {
+                int home = (int) mix(slots.getLong(probe * SLOT_BYTES + SLOT_CART)) & slotMask;
+                boolean reachable = hole <= probe ? hole < home && home <= probe : hole < home || home <= probe;
+                if (reachable) {
+                    continue; // Still found from its home slot without crossing the hole
+                }
+                slots.put(hole * SLOT_BYTES, slots, probe * SLOT_BYTES, SLOT_BYTES);
+                hole = probe;
+            }
+            slots.putLong(hole * SLOT_BYTES + SLOT_CART, 0);
+            slots.putInt(hole * SLOT_BYTES + SLOT_HEAD, 0);
+            slots.putInt(hole * SLOT_BYTES + SLOT_COUNT, 0);
+            carts--;
+        }
+
+        private void growSlots() {
+            ByteBuffer old = slots;
+            int oldCount = slotMask + 1;
+            int count = Math.multiplyExact(oldCount, 2);
+            slots = allocate(Math.multiplyExact(count, SLOT_BYTES));
+            slotMask = count - 1;
+            for (int i = 0; i < oldCount; i++) {
+                int offset = i * SLOT_BYTES;
+                if (old.getInt(offset + SLOT_HEAD) == 0) {
+                    continue;
+                }
+                int slot = (int) mix(old.getLong(offset + SLOT_CART)) & slotMask;
+                while (slots.getInt(slot * SLOT_BYTES + SLOT_HEAD) != 0) {
+                    slot = (slot + 1) & slotMask;
+                }
+                slots.put(slot * SLOT_BYTES, old, offset, SLOT_BYTES);
+            }
+        }
+    }
+}
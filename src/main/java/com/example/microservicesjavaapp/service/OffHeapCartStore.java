@@ -0,0 +1,212 @@
+package com.example.microservicesjavaapp.service;
+
+import com.example.microservicesjavaapp.model.Cart;
+import com.example.microservicesjavaapp.model.Cart.CartStatus;
+import com.example.microservicesjavaapp.model.CartItem;
+import com.example.microservicesjavaapp.model.Product;
+import com.example.microservicesjavaapp.repository.CartItemRepository;
+import com.example.microservicesjavaapp.repository.ProductQuantity;
+import com.example.microservicesjavaapp.repository.ProductRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cart store keeping the lines of ACTIVE carts in memory, off the Java heap (see OffHeapCartLines), for
+ * carts that mostly live and die in memory. Adding and removing products touches no table but 'carts',
+ * whose running totals still change with every line. At checkout the lines are promoted: written to
+ * 'cart_items' in the checkout's transaction and dropped from memory once it commits, so checkout, the
+ * archiver and the order history see a processed cart exactly as with the JPA engine. Carts that are not
+ * ACTIVE are always read from 'cart_items'.
+ *
+ * A change is undone if its transaction rolls back. The units held by lines in memory are counted per
+ * product and reported to StockReservations, which the database alone would not tell.
+ *
+ * The lines live in one process and are lost with it: like CartLockRegistry and StockReservations, this
+ * engine needs every request and order job of a cart served by the same instance, and a restart empties
+ * the ACTIVE carts (the totals checker then zeroes their totals). The reactive stack keeps using 'cart_items'.
+ * Selected with 'app.cart-store.engine=offheap'; sized by 'app.cart-store.offheap.segments' and
+ * 'app.cart-store.offheap.initial-lines-per-segment'. Its size is published as the 'cart.store.offheap.carts',
+ * 'cart.store.offheap.lines' and 'cart.store.offheap.bytes' gauges.
+ */
+@Component // Marks this class as a Spring-managed component
+@ConditionalOnProperty(name = "app.cart-store.engine", havingValue = "offheap")
+public class OffHeapCartStore implements CartStore {
+
+    private final OffHeapCartLines lines;
+    private final CartItemRepository cartItemRepository;
+    private final ProductRepository productRepository;
+    private final ConcurrentHashMap<Long, AtomicLong> reservedUnits = new ConcurrentHashMap<>();
+
+    public OffHeapCartStore(CartItemRepository cartItemRepository,
+                            ProductRepository productRepository,
+                            MeterRegistry meterRegistry,
+                            @Value("${app.cart-store.offheap.segments:64}") int segments,
+                            @Value("${app.cart-store.offheap.initial-lines-per-segment:1024}") int initialLinesPerSegment) {
+        this.lines = new OffHeapCartLines(segments, initialLinesPerSegment);
+        this.cartItemRepository = cartItemRepository;
+        this.productRepository = productRepository;
+        Gauge.builder("cart.store.offheap.carts", lines, OffHeapCartLines::cartCount)
+                .description("ACTIVE carts with lines in off-heap memory")
+                .register(meterRegistry);
+        Gauge.builder("cart.store.offheap.lines", lines, OffHeapCartLines::lineCount)
+                .description("Cart lines in off-heap memory")
+                .register(meterRegistry);
+        Gauge.builder("cart.store.offheap.bytes", lines, OffHeapCartLines::allocatedBytes)
+                .description("Direct memory allocated for cart lines")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public Change add(Cart cart, Product product, int quantity) {
+        long cartId = cart.getId();
+        long productId = product.getId();
+        int previousQuantity = lines.add(cartId, productId, quantity);
+        reserved(productId).addAndGet(quantity);
+        AfterTransaction.onRollback(() -> {
+            lines.set(cartId, productId, previousQuantity);
+            reserved(productId).addAndGet(-quantity);
+        });
+        return new Change(productId, previousQuantity, previousQuantity + quantity, lineCount(cartId));
+    }
+
+    @Override
+    public Optional<Change> remove(Cart cart, Product product) {
+        long cartId = cart.getId();
+        long productId = product.getId();
+        int previousQuantity = lines.set(cartId, productId, 0);
+        if (previousQuantity == 0) {
+            return Optional.empty();
+        }
+        reserved(productId).addAndGet(-previousQuantity);
+        AfterTransaction.onRollback(() -> {
+            lines.set(cartId, productId, previousQuantity);
+            reserved(productId).addAndGet(previousQuantity);
+        });
+        return Optional.of(new Change(productId, previousQuantity, 0, lineCount(cartId)));
+    }
+
+    @Override
+    public List<Line> lines(Cart cart) {
+        if (cart.getStatus() != CartStatus.ACTIVE) {
+            return cartItemRepository.findWithProductByCart(cart).stream().map(OffHeapCartStore::line).toList();
+        }
+        return lines(List.of(cart)).get(cart.getId());
+    }
+
+    /**
+     * Lists the lines of ACTIVE carts from memory, loading all their products in one query, and those of
+     * other carts from their item collections.
+     */
+    @Override
+    public Map<Long, List<Line>> lines(List<Cart> carts) {
+        Map<Long, List<Held>> inMemory = new HashMap<>(carts.size() * 2);
+        Set<Long> productIds = new HashSet<>();
+        for (Cart cart : carts) {
+            if (cart.getStatus() == CartStatus.ACTIVE) {
+                List<Held> held = new ArrayList<>();
+                lines.forEachLine(cart.getId(), (productId, quantity) -> held.add(new Held(productId, quantity)));
+                held.forEach(line -> productIds.add(line.productId()));
+                inMemory.put(cart.getId(), held);
+            }
+        }
+        Map<Long, Product> products = new HashMap<>(productIds.size() * 2);
+        if (!productIds.isEmpty()) {
+            productRepository.findAllById(productIds).forEach(product -> products.put(product.getId(), product));
+        }
+
+        Map<Long, List<Line>> result = new HashMap<>(carts.size() * 2);
+        for (Cart cart : carts) {
+            List<Held> held = inMemory.get(cart.getId());
+            if (held == null) {
+                result.put(cart.getId(), cart.getItems().stream().map(OffHeapCartStore::line).toList());
+                continue;
+            }
+            List<Line> cartLines = new ArrayList<>(held.size());
+            for (Held line : held) {
+                Product product = products.get(line.productId());
+                if (product != null) { // Skips a product deleted since it was added
+                    cartLines.add(new Line(product.getId(), product, line.quantity())); // The product identifies a line held in memory
+                }
+            }
+            result.put(cart.getId(), cartLines);
+        }
+        return result;
+    }
+
+    @Override
+    public boolean hasLines(Cart cart) {
+        return lines.hasLines(cart.getId()) || cartItemRepository.existsByCart(cart);
+    }
+
+    @Override
+    public void promote(Cart cart) {
+        long cartId = cart.getId();
+        List<CartItem> items = new ArrayList<>();
+        lines.forEachLine(cartId, (productId, quantity) ->
+                items.add(new CartItem(null, cart, productRepository.getReferenceById(productId), quantity)));
+        if (items.isEmpty()) {
+            return;
+        }
+        cartItemRepository.saveAll(items);
+        AfterTransaction.onCommit(() -> lines.removeCart(cartId, (productId, quantity) -> reserved(productId).addAndGet(-quantity)));
+    }
+
+    @Override
+    public int discard(List<Long> cartIds, StockReservations.StockChanges stock) {
+        Map<Long, Long> released = new HashMap<>();
+        int discarded = 0;
+        for (Long cartId : cartIds) {
+            discarded += lines.forEachLine(cartId, (productId, quantity) -> released.merge(productId, (long) quantity, Long::sum));
+        }
+        for (ProductQuantity saved : cartItemRepository.sumQuantityByProductForCartIdIn(cartIds)) {
+            released.merge(saved.productId(), saved.quantity(), Long::sum); // Lines saved before the engine was switched
+        }
+        released.forEach(stock::release);
+        discarded += cartItemRepository.deleteByCartIdIn(cartIds);
+        AfterTransaction.onCommit(() -> {
+            for (Long cartId : cartIds) {
+                lines.removeCart(cartId, (productId, quantity) -> reserved(productId).addAndGet(-quantity));
+            }
+        });
+        return discarded;
+    }
+
+    @Override
+    public long unsavedReservedUnits(long productId) {
+        AtomicLong units = reservedUnits.get(productId);
+        return units == null ? 0 : units.get();
+    }
+
+    private int lineCount(long cartId) {
+        return lines.forEachLine(cartId, (productId, quantity) -> {
+        });
+    }
+
+    private AtomicLong reserved(long productId) {
+        return reservedUnits.computeIfAbsent(productId, id -> new AtomicLong());
+    }
+
+    private static Line line(CartItem item) {
+        return new Line(item.getId(), item.getProduct(), item.getQuantity());
+    }
+
+    /**
+     * A line as held in memory, before its product is loaded.
+     */
+    private record Held(long productId, int quantity) {
+    }
+}
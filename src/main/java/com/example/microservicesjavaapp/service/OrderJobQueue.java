@@ -0,0 +1,212 @@
+package com.example.microservicesjavaapp.service;
+
+import com.example.microservicesjavaapp.model.OrderJob;
+import com.example.microservicesjavaapp.model.OrderJob.JobStatus;
+import com.example.microservicesjavaapp.repository.OrderJobRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Durable queue of checkouts, kept in the 'order_jobs' table and shared by every application instance.
+ * Checkout queues a job in the request; OrderJobWorker claims jobs in batches and processes them.
+ *
+ * A claimed job is leased to its instance for 'app.order-jobs.lease'. Claims lock the rows with
+ * SKIP LOCKED, so instances polling together get disjoint batches, and a job whose instance died is
+ * claimed again once its lease has expired. A job that fails goes back to PENDING with an exponential
+ * backoff starting at 'app.order-jobs.initial-backoff'; after 'app.order-jobs.max-attempts' attempts
+ * it is left as DEAD for an operator. Finished jobs are deleted.
+ *
+ * The lease must comfortably exceed the time an order takes to process: an order still running when
+ * its lease expires may be claimed by another instance. CartServiceImpl.processOrder locks the cart row
+ * and checks its status, so such a second run finds the cart PROCESSED and does nothing.
+ */
+@Component // Marks this class as a Spring-managed component
+public class OrderJobQueue {
+
+    private static final Logger logger = LoggerFactory.getLogger(OrderJobQueue.class);
+
+    private static final int MAX_ERROR_LENGTH = 1000; // Size of the last_error column
+
+    private final OrderJobRepository orderJobRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration lease;
+    private final int maxAttempts;
+    private final Duration initialBackoff;
+    private final Duration maxBackoff;
+    private final Counter enqueued;
+    private final Counter claimed;
+    private final Counter reclaimed;
+    private final Counter completed;
+    private final Counter retried;
+    private final Counter deadLettered;
+
+    public OrderJobQueue(OrderJobRepository orderJobRepository,
+                         PlatformTransactionManager transactionManager,
+                         MeterRegistry meterRegistry,
+                         @Value("${app.order-jobs.lease:PT30S}") Duration lease,
+                         @Value("${app.order-jobs.max-attempts:5}") int maxAttempts,
+                         @Value("${app.order-jobs.initial-backoff:PT1S}") Duration initialBackoff,
+                         @Value("${app.order-jobs.max-backoff:PT5M}") Duration maxBackoff) {
+        this.orderJobRepository = orderJobRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.lease = lease;
+        this.maxAttempts = maxAttempts;
+        this.initialBackoff = initialBackoff;
+        this.maxBackoff = maxBackoff;
+        this.enqueued = counter(meterRegistry, "order.jobs.enqueued", "Checkouts queued for processing");
+        this.claimed = counter(meterRegistry, "order.jobs.claimed", "Order jobs claimed by a worker, reclaims included");
+        this.reclaimed = counter(meterRegistry, "order.jobs.reclaimed", "Order jobs claimed again after their lease expired");
+        this.completed = counter(meterRegistry, "order.jobs.completed", "Order jobs processed successfully");
+        this.retried = counter(meterRegistry, "order.jobs.retried", "Failed order jobs scheduled for another attempt");
+        this.deadLettered = counter(meterRegistry, "order.jobs.dead", "Order jobs given up after too many attempts");
+    }
+
+    private static Counter counter(MeterRegistry meterRegistry, String name, String description) {
+        return Counter.builder(name).description(description).register(meterRegistry);
+    }
+
+    /**
+     * Queues a cart for processing. Does nothing if the cart is already queued; a DEAD job of the cart is
+     * queued again, its attempts starting over.
+     *
+     * @param cartId The ID of the cart to process.
+     * @return true if a job was queued or requeued, false if the cart already had a live one.
+     */
+    public boolean enqueue(Long cartId) {
+        Integer inserted;
+        try {
+            inserted = transactionTemplate.execute(status -> orderJobRepository.insertOrRequeue(cartId, LocalDateTime.now()));
+        } catch (DataIntegrityViolationException e) {
+            inserted = 0; // Queued concurrently by another request
+        }
+        if (inserted == null || inserted == 0) {
+            logger.debug("Cart {} is already queued for processing.", cartId);
+            return false;
+        }
+        enqueued.increment();
+        logger.info("Queued cart ID {} for processing.", cartId);
+        return true;
+    }
+
+    /**
+     * Claims up to 'max' jobs for an instance: due PENDING jobs first, then RUNNING jobs whose lease expired.
+     * A job whose lease expired after its last allowed attempt is dead-lettered instead of claimed.
+     *
+     * @param owner The ID of the claiming instance.
+     * @param max The maximum number of jobs to claim.
+     * @return The claimed jobs, now RUNNING and leased to the instance.
+     */
+    public List<OrderJob> claim(String owner, int max) {
+        if (max <= 0) {
+            return List.of();
+        }
+        List<OrderJob> jobs = transactionTemplate.execute(status -> {
+            LocalDateTime now = LocalDateTime.now();
+            List<OrderJob> due = new ArrayList<>(orderJobRepository.lockDueJobs(JobStatus.PENDING.name(), now, max));
+            if (due.size() < max) {
+                for (OrderJob expired : orderJobRepository.lockExpiredJobs(JobStatus.RUNNING.name(), now, max - due.size())) {
+                    logger.warn("Lease of {} on the job for cart ID {} expired after attempt {}; reclaiming it.",
+                            expired.getLeaseOwner(), expired.getCartId(), expired.getAttempts());
+                    reclaimed.increment();
+                    if (expired.getAttempts() >= maxAttempts) {
+                        deadLetter(expired, "Lease of " + expired.getLeaseOwner() + " expired on the last attempt");
+                    } else {
+                        due.add(expired);
+                    }
+                }
+            }
+            for (OrderJob job : due) {
+                job.setStatus(JobStatus.RUNNING);
+                job.setLeaseOwner(owner);
+                job.setLeaseUntil(now.plus(lease));
+                job.setAttempts(job.getAttempts() + 1);
+            }
+            return due;
+        });
+        claimed.increment(jobs.size());
+        return jobs;
+    }
+
+    /**
+     * Removes a processed job. If the instance lost the lease in the meantime, the job is left to its
+     * new owner, which will find the cart already processed.
+     *
+     * @param job The processed job.
+     * @param owner The ID of the instance that processed it.
+     */
+    public void complete(OrderJob job, String owner) {
+        Integer deleted = transactionTemplate.execute(status -> orderJobRepository.deleteByIdAndLeaseOwner(job.getId(), owner));
+        if (deleted == null || deleted == 0) {
+            logger.warn("Job for cart ID {} was reclaimed by another instance before {} completed it.", job.getCartId(), owner);
+            return;
+        }
+        completed.increment();
+    }
+
+    /**
+     * Records a failed attempt: the job is retried after a backoff, or dead-lettered after its last attempt.
+     *
+     * @param job The failed job.
+     * @param owner The ID of the instance that ran it.
+     * @param error Why the attempt failed.
+     */
+    public void fail(OrderJob job, String owner, Throwable error) {
+        transactionTemplate.executeWithoutResult(status -> {
+            OrderJob current = orderJobRepository.findById(job.getId()).orElse(null);
+            if (current == null || current.getStatus() != JobStatus.RUNNING || !owner.equals(current.getLeaseOwner())) {
+                logger.warn("Job for cart ID {} was reclaimed by another instance before {} recorded its failure.",
+                        job.getCartId(), owner);
+                return;
+            }
+            String message = String.valueOf(error);
+            if (current.getAttempts() >= maxAttempts) {
+                deadLetter(current, message);
+                return;
+            }
+            Duration backoff = backoff(current.getAttempts());
+            current.setStatus(JobStatus.PENDING);
+            current.setAvailableAt(LocalDateTime.now().plus(backoff));
+            current.setLeaseOwner(null);
+            current.setLeaseUntil(null);
+            current.setLastError(truncate(message));
+            retried.increment();
+            logger.warn("Attempt {} of the job for cart ID {} failed ({}); retrying in {} ms.",
+                    current.getAttempts(), current.getCartId(), message, backoff.toMillis());
+        });
+    }
+
+    /**
+     * @param attempts The number of attempts made so far (at least 1).
+     * @return The delay before the next attempt: 'initial-backoff', doubled after every attempt, at most 'max-backoff'.
+     */
+    Duration backoff(int attempts) {
+        int doublings = Math.min(attempts - 1, 30);
+        Duration backoff = initialBackoff.multipliedBy(1L << doublings);
+        return backoff.compareTo(maxBackoff) > 0 ? maxBackoff : backoff;
+    }
+
+    private void deadLetter(OrderJob job, String message) {
+        job.setStatus(JobStatus.DEAD);
+        job.setLeaseOwner(null);
+        job.setLeaseUntil(null);
+        job.setLastError(truncate(message));
+        deadLettered.increment();
+        logger.error("Giving up on the job for cart ID {} after {} attempts: {}", job.getCartId(), job.getAttempts(), message);
+    }
+
+    private static String truncate(String message) {
+        return message.length() > MAX_ERROR_LENGTH ? message.substring(0, MAX_ERROR_LENGTH) : message;
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.microservicesjavaapp.service;
+
+import com.example.microservicesjavaapp.model.OrderJob;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool of threads processing the jobs of OrderJobQueue on this instance.
+ * Every 'app.order-jobs.poll-interval' it claims as many jobs as it has idle threads, so an instance
+ * never holds leases on jobs it cannot start yet and adding instances adds throughput. Each job runs
+ * the stack's processOrder; an exception from it is a failed attempt, retried by the queue.
+ *
+ * The instance is identified in the leases by 'app.order-jobs.node-id', a random ID by default.
+ */
+@Component // Marks this class as a Spring-managed component
+@ConditionalOnProperty(name = "app.order-jobs.worker.enabled", havingValue = "true", matchIfMissing = true)
+public class OrderJobWorker implements DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(OrderJobWorker.class);
+
+    private final OrderJobQueue orderJobQueue;
+    private final ObjectProvider<ReactiveCartService> reactiveCartService;
+    private final ObjectProvider<CartService> cartService;
+    private final String nodeId;
+    private final Semaphore idle;
+    private final ExecutorService executor;
+
+    public OrderJobWorker(OrderJobQueue orderJobQueue,
+                          ObjectProvider<ReactiveCartService> reactiveCartService,
+                          ObjectProvider<CartService> cartService,
+                          @Value("${app.order-jobs.node-id:}") String nodeId,
+                          @Value("${app.order-jobs.worker.threads:4}") int threads) {
+        this.orderJobQueue = orderJobQueue;
+        this.reactiveCartService = reactiveCartService;
+        this.cartService = cartService;
+        this.nodeId = nodeId.isBlank() ? UUID.randomUUID().toString() : nodeId;
+        this.idle = new Semaphore(threads);
+        AtomicInteger count = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "order-job-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Claims a batch of jobs for the idle threads and starts them.
+     *
+     * @return The number of jobs started.
+     */
+    @Scheduled(fixedDelayString = "${app.order-jobs.poll-interval:PT0.5S}")
+    public int poll() {
+        int free = idle.availablePermits();
+        if (free == 0) {
+            return 0;
+        }
+        List<OrderJob> jobs = orderJobQueue.claim(nodeId, free);
+        for (OrderJob job : jobs) {
+            idle.acquireUninterruptibly(); // Only this method takes permits, so one is free for every claimed job
+            executor.execute(() -> run(job));
+        }
+        return jobs.size();
+    }
+
+    /**
+     * @return The ID this instance puts in the leases it takes.
+     */
+    public String nodeId() {
+        return nodeId;
+    }
+
+    private void run(OrderJob job) {
+        try {
+            logger.debug("Node {} processing cart ID {} (attempt {}).", nodeId, job.getCartId(), job.getAttempts());
+            ReactiveCartService reactive = reactiveCartService.getIfAvailable();
+            if (reactive != null) {
+                reactive.processOrder(job.getCartId()).block(); // A worker thread, never an event loop
+            } else {
+                cartService.getObject().processOrder(job.getCartId());
+            }
+            orderJobQueue.complete(job, nodeId);
+        } catch (RuntimeException e) {
+            orderJobQueue.fail(job, nodeId, e);
+        } finally {
+            idle.release();
+        }
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        executor.shutdown();
+        if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+            // Interrupted orders roll back; their leases expire and another instance takes them over
+            executor.shutdownNow();
+        }
+    }
+}
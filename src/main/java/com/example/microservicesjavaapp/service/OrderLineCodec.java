@@ -0,0 +1,37 @@
+package com.example.microservicesjavaapp.service;
+
+import com.example.microservicesjavaapp.model.OrderHistory;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.util.List;
+
+/**
+ * Encodes and decodes the compact 'order_lines' column of the order history.
+ */
+final class OrderLineCodec {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final TypeReference<List<OrderHistory.Line>> LINES = new TypeReference<>() {
+    };
+
+    private OrderLineCodec() {
+    }
+
+    static String encode(List<OrderHistory.Line> lines) {
+        try {
+            return MAPPER.writeValueAsString(lines);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not encode order lines", e);
+        }
+    }
+
+    static List<OrderHistory.Line> decode(String encoded) {
+        try {
+            return MAPPER.readValue(encoded, LINES);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not decode order lines", e);
+        }
+    }
+}
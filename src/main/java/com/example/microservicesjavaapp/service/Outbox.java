@@ -0,0 +1,63 @@
+package com.example.microservicesjavaapp.service;
+
+import com.example.microservicesjavaapp.dto.CartEventDto;
+import com.example.microservicesjavaapp.model.Cart;
+import com.example.microservicesjavaapp.model.OutboxEvent;
+import com.example.microservicesjavaapp.model.OutboxEvent.EventType;
+import com.example.microservicesjavaapp.repository.OutboxEventRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.transaction.Transactional;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+
+/**
+ * Records cart lifecycle events in the transactional outbox.
+ * An event is written in the transaction of the change it describes, so it is published if and only if
+ * the change commits, and the downstream systems never sit on the request path: OutboxDispatcher
+ * publishes the events afterwards, in batches.
+ */
+@Component // Marks this class as a Spring-managed component
+public class Outbox {
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final ObjectMapper objectMapper;
+
+    public Outbox(OutboxEventRepository outboxEventRepository, ObjectMapper objectMapper) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Writes an event in the current JPA transaction.
+     *
+     * @param type What happened to the cart.
+     * @param cart The cart, as it is after the change.
+     * @param productCode The product added or removed, or null.
+     * @param quantity The product's quantity in the cart after the change, or null.
+     */
+    @Transactional(Transactional.TxType.MANDATORY) // Outside the change's transaction the event could outlive a rollback
+    public void record(EventType type, Cart cart, String productCode, Integer quantity) {
+        outboxEventRepository.save(event(type, cart, productCode, quantity));
+    }
+
+    /**
+     * Builds an event without writing it, for the reactive stack's R2DBC transactions.
+     *
+     * @param type What happened to the cart.
+     * @param cart The cart, as it is after the change.
+     * @param productCode The product added or removed, or null.
+     * @param quantity The product's quantity in the cart after the change, or null.
+     * @return The event, without an ID.
+     */
+    public OutboxEvent event(EventType type, Cart cart, String productCode, Integer quantity) {
+        CartEventDto payload = new CartEventDto(cart.getId(), cart.getUser().getId(), productCode, quantity,
+                cart.getSubtotal(), cart.getDiscountedTotal());
+        try {
+            return new OutboxEvent(null, cart.getId(), type, objectMapper.writeValueAsString(payload), LocalDateTime.now());
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize the " + type + " event of cart " + cart.getId(), e);
+        }
+    }
+}
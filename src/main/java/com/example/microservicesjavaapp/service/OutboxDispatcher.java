@@ -0,0 +1,131 @@
+package com.example.microservicesjavaapp.service;
+
+import com.example.microservicesjavaapp.model.OutboxEvent;
+import com.example.microservicesjavaapp.repository.OutboxEventRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scheduled job publishing the transactional outbox to the OutboxSink.
+ * Every 'app.outbox.poll-interval' it publishes the waiting events in batches of 'app.outbox.batch-size',
+ * by ascending ID, and deletes each batch in the transaction that published it. Every batch transaction
+ * first locks the 'outbox_dispatcher' row with SKIP LOCKED, so with several instances one publishes while
+ * the others skip their turn, and another takes over if it dies.
+ *
+ * Events of one cart are written under the cart's lock, so they are published in the order they
+ * happened. A batch the sink rejects stays in the table and is published again on the next run.
+ */
+@Component // Marks this class as a Spring-managed component
+@ConditionalOnProperty(name = "app.outbox.dispatcher.enabled", havingValue = "true", matchIfMissing = true)
+public class OutboxDispatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(OutboxDispatcher.class);
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final OutboxSink sink;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final Counter dispatched;
+    private final Counter failures;
+    private final Timer batchTimer;
+    private final Timer lag;
+
+    public OutboxDispatcher(OutboxEventRepository outboxEventRepository,
+                            OutboxSink sink,
+                            PlatformTransactionManager transactionManager,
+                            MeterRegistry meterRegistry,
+                            @Value("${app.outbox.batch-size:100}") int batchSize) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.sink = sink;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+        this.dispatched = Counter.builder("outbox.events.dispatched")
+                .description("Cart events published to the outbox sink")
+                .register(meterRegistry);
+        this.failures = Counter.builder("outbox.dispatch.failures")
+                .description("Outbox batches the sink failed to publish")
+                .register(meterRegistry);
+        this.batchTimer = Timer.builder("outbox.dispatch.batch")
+                .description("Time to publish one batch to the outbox sink")
+                .register(meterRegistry);
+        this.lag = Timer.builder("outbox.lag")
+                .description("Time from a cart change to the publication of its event")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Publishes the outbox on the configured schedule.
+     */
+    @Scheduled(fixedDelayString = "${app.outbox.poll-interval:PT1S}")
+    public void scheduledDispatch() {
+        dispatch();
+    }
+
+    /**
+     * Publishes waiting events, batch by batch, until none is left, another instance is dispatching,
+     * or the sink fails.
+     *
+     * @return The number of events published.
+     */
+    public int dispatch() {
+        int total = 0;
+        while (true) {
+            Integer published;
+            try {
+                published = transactionTemplate.execute(status -> dispatchBatch());
+            } catch (RuntimeException e) {
+                failures.increment();
+                logger.warn("Publishing the outbox failed, retrying on the next run: {}", e.getMessage(), e);
+                break;
+            }
+            if (published == null || published <= 0) {
+                break;
+            }
+            total += published;
+            if (published < batchSize) {
+                break;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * @return The number of events published, or -1 if another instance holds the dispatcher lock.
+     */
+    private int dispatchBatch() {
+        if (outboxEventRepository.lockDispatcher().isEmpty()) {
+            return -1;
+        }
+        List<OutboxEvent> batch = outboxEventRepository.findByOrderByIdAsc(PageRequest.of(0, batchSize));
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        long start = System.nanoTime();
+        sink.publish(batch);
+        batchTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+
+        outboxEventRepository.deleteAllInBatch(batch);
+        LocalDateTime now = LocalDateTime.now();
+        for (OutboxEvent event : batch) {
+            lag.record(Duration.between(event.getCreatedAt(), now));
+        }
+        dispatched.increment(batch.size());
+        logger.debug("Published {} outbox events up to ID {}.", batch.size(), batch.get(batch.size() - 1).getId());
+        return batch.size();
+    }
+}
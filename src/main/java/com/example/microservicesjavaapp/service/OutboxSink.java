@@ -0,0 +1,23 @@
+package com.example.microservicesjavaapp.service;
+
+import com.example.microservicesjavaapp.model.OutboxEvent;
+
+import java.util.List;
+
+/**
+ * Destination of the cart lifecycle events published by OutboxDispatcher, e.g. a message broker.
+ * The sink is selected with 'app.outbox.sink'; this project ships a file sink and an in-memory one.
+ *
+ * Delivery is at least once: a batch is published again if the dispatcher fails to delete it afterwards,
+ * so consumers should ignore event IDs they have already seen.
+ */
+public interface OutboxSink {
+
+    /**
+     * Publishes a batch of events, in order. Returns only once the whole batch is safely delivered.
+     *
+     * @param events The events, by ascending ID.
+     * @throws RuntimeException If the batch could not be delivered; it is published again later.
+     */
+    void publish(List<OutboxEvent> events);
+}
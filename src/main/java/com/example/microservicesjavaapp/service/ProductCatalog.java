@@ -0,0 +1,266 @@
+package com.example.microservicesjavaapp.service;
+
+import com.example.microservicesjavaapp.dto.ProductDto;
+import com.example.microservicesjavaapp.dto.ProductPageDto;
+import com.example.microservicesjavaapp.model.Product;
+import com.example.microservicesjavaapp.repository.ProductRepository;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory catalog behind GET /api/products.
+ * Keeps every product with an inverted index over it: category to sorted product IDs, and lower-cased
+ * name token to product IDs in a sorted map, so a name prefix is a range of that map. Browsing and
+ * searching never query the 'products' table.
+ *
+ * The index is maintained incrementally: a product created, updated or deleted through JPA is re-indexed
+ * on its own once its transaction commits (see {@link IndexOnChange}). A full rebuild runs at startup and
+ * every 'app.products.catalog.refresh-interval', for changes made outside JPA.
+ */
+@Component // Marks this class as a Spring-managed component
+public class ProductCatalog {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProductCatalog.class);
+
+    private final ProductRepository productRepository;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // All guarded by 'lock'
+    private final NavigableMap<Long, ProductDto> products = new TreeMap<>();
+    private final Map<String, NavigableSet<Long>> byCategory = new HashMap<>();
+    private final NavigableMap<String, Set<Long>> byNameToken = new TreeMap<>();
+
+    public ProductCatalog(ProductRepository productRepository) {
+        this.productRepository = productRepository;
+        rebuild();
+    }
+
+    /**
+     * Lists products in ID order, optionally filtered by category and by name prefix.
+     *
+     * @param category Only products of this category (exact match), or null for all categories.
+     * @param query Only products whose name has a word starting with each word of the query
+     *              (case-insensitive), or null/blank for any name.
+     * @param page The zero-based page number.
+     * @param size The page size.
+     * @return The requested page and the total number of matches.
+     */
+    public ProductPageDto search(String category, String query, int page, int size) {
+        List<String> prefixes = tokens(query);
+        lock.readLock().lock();
+        try {
+            NavigableSet<Long> candidates = category == null ? products.navigableKeySet()
+                    : byCategory.getOrDefault(category, Collections.emptyNavigableSet());
+            Collection<Long> matches = prefixes.isEmpty() ? candidates : nameMatches(prefixes, candidates);
+
+            long total = matches.size();
+            List<ProductDto> content = new ArrayList<>();
+            long offset = (long) page * size;
+            if (offset < total) {
+                Iterator<Long> ids = matches.iterator();
+                for (long skipped = 0; skipped < offset; skipped++) {
+                    ids.next();
+                }
+                while (ids.hasNext() && content.size() < size) {
+                    content.add(products.get(ids.next()));
+                }
+            }
+            return new ProductPageDto(content, page, size, total, (int) ((total + size - 1) / size));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Adds a product to the index, or re-indexes it if it is already there.
+     *
+     * @param product The product's current state.
+     */
+    public void put(ProductDto product) {
+        lock.writeLock().lock();
+        try {
+            unindex(product.getId());
+            products.put(product.getId(), product);
+            byCategory.computeIfAbsent(product.getCategory(), c -> new TreeSet<>()).add(product.getId());
+            for (String token : tokens(product.getName())) {
+                byNameToken.computeIfAbsent(token, t -> new HashSet<>()).add(product.getId());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes a product from the index.
+     *
+     * @param productId The ID of the product.
+     */
+    public void remove(Long productId) {
+        lock.writeLock().lock();
+        try {
+            unindex(productId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Rebuilds the whole index from the 'products' table.
+     */
+    @Scheduled(fixedDelayString = "${app.products.catalog.refresh-interval:PT10M}", initialDelayString = "${app.products.catalog.refresh-interval:PT10M}")
+    public void rebuild() {
+        List<ProductDto> all = productRepository.findAll().stream().map(CartDtoMapper::toProductDto).toList();
+        lock.writeLock().lock();
+        try {
+            products.clear();
+            byCategory.clear();
+            byNameToken.clear();
+            all.forEach(this::put); // Reentrant: put takes the write lock again
+        } finally {
+            lock.writeLock().unlock();
+        }
+        logger.debug("Product catalog rebuilt with {} products.", all.size());
+    }
+
+    /**
+     * @return The number of indexed products.
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return products.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void unindex(Long productId) {
+        ProductDto previous = products.remove(productId);
+        if (previous == null) {
+            return;
+        }
+        NavigableSet<Long> categoryIds = byCategory.get(previous.getCategory());
+        if (categoryIds != null && categoryIds.remove(productId) && categoryIds.isEmpty()) {
+            byCategory.remove(previous.getCategory());
+        }
+        for (String token : tokens(previous.getName())) {
+            Set<Long> ids = byNameToken.get(token);
+            if (ids != null && ids.remove(productId) && ids.isEmpty()) {
+                byNameToken.remove(token);
+            }
+        }
+    }
+
+    /**
+     * Intersects the products matching each prefix with the candidates, starting from the smallest set.
+     */
+    private List<Long> nameMatches(List<String> prefixes, Set<Long> candidates) {
+        List<Set<Long>> sets = new ArrayList<>(prefixes.size() + 1);
+        for (String prefix : prefixes) {
+            sets.add(idsWithTokenPrefix(prefix));
+        }
+        sets.add(candidates);
+        sets.sort(Comparator.comparingInt(Set::size));
+
+        List<Long> ids = new ArrayList<>();
+        for (Long id : sets.get(0)) {
+            boolean inAll = true;
+            for (int i = 1; i < sets.size() && inAll; i++) {
+                inAll = sets.get(i).contains(id);
+            }
+            if (inAll) {
+                ids.add(id);
+            }
+        }
+        ids.sort(null); // Pages are in ID order, whatever set the matches came from
+        return ids;
+    }
+
+    private Set<Long> idsWithTokenPrefix(String prefix) {
+        Set<Long> ids = new HashSet<>();
+        // Every token starting with the prefix sorts between the prefix and the prefix followed by the highest char
+        for (Set<Long> tokenIds : byNameToken.subMap(prefix, true, prefix + Character.MAX_VALUE, true).values()) {
+            ids.addAll(tokenIds);
+        }
+        return ids;
+    }
+
+    private static List<String> tokens(String text) {
+        if (text == null || text.isBlank()) {
+            return List.of();
+        }
+        List<String> tokens = new ArrayList<>();
+        for (String token : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+            if (!token.isEmpty() && !tokens.contains(token)) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * JPA entity listener that re-indexes a product once the transaction that changed it commits.
+     * Instantiated by Hibernate through the Spring bean container.
+     */
+    public static class IndexOnChange {
+
+        // Resolved lazily: the catalog depends on the repository, which needs the persistence unit built first
+        private final ObjectProvider<ProductCatalog> catalog;
+
+        public IndexOnChange(ObjectProvider<ProductCatalog> catalog) {
+            this.catalog = catalog;
+        }
+
+        @PostPersist
+        @PostUpdate
+        void index(Product product) {
+            ProductDto snapshot = CartDtoMapper.toProductDto(product); // The entity may change again before commit
+            afterCommit(() -> catalog.ifAvailable(c -> c.put(snapshot)));
+        }
+
+        @PostRemove
+        void unindex(Product product) {
+            Long productId = product.getId();
+            afterCommit(() -> catalog.ifAvailable(c -> c.remove(productId)));
+        }
+
+        private static void afterCommit(Runnable action) {
+            if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+                action.run();
+                return;
+            }
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        }
+    }
+}
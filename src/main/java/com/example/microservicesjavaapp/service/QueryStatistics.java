@@ -0,0 +1,159 @@
+package com.example.microservicesjavaapp.service;
+
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Hibernate statistics broken down by endpoint: for every endpoint, how many statements, entity and
+ * collection loads and flushes its requests caused, in total and at most in one request. A high
+ * 'entityFetches' or 'collectionFetches' per request is the signature of an N+1 lazy-loading problem.
+ *
+ * HibernateStatisticsConfig counts the work of the request running on the current thread through the
+ * static hooks, and reports each finished request with {@link #end(String)}. Work done outside a
+ * request (background jobs, startup) is not attributed to any endpoint. Read through the
+ * 'hibernatestats' actuator endpoint.
+ */
+@Component // Marks this class as a Spring-managed component
+public class QueryStatistics {
+
+    /**
+     * What is counted per request, named after the matching Hibernate statistics.
+     */
+    public enum Counter {
+        STATEMENTS("statements"), // JDBC statements prepared
+        ENTITY_LOADS("entityLoads"), // Entities loaded, by any query
+        ENTITY_FETCHES("entityFetches"), // Entities loaded by a select of their own, e.g. a lazy to-one
+        COLLECTION_LOADS("collectionLoads"), // Collections loaded, by any query
+        COLLECTION_FETCHES("collectionFetches"), // Collections loaded by a select of their own, e.g. a lazy to-many
+        FLUSHES("flushes");
+
+        private final String key;
+
+        Counter(String key) {
+            this.key = key;
+        }
+
+        public String key() {
+            return key;
+        }
+    }
+
+    private static final ThreadLocal<long[]> CURRENT = new ThreadLocal<>();
+
+    private final ConcurrentHashMap<String, EndpointCounters> endpoints = new ConcurrentHashMap<>();
+
+    /**
+     * Counts one occurrence for the request running on the current thread, if any.
+     *
+     * @param counter What happened.
+     */
+    public static void count(Counter counter) {
+        long[] counts = CURRENT.get();
+        if (counts != null) {
+            counts[counter.ordinal()]++;
+        }
+    }
+
+    /**
+     * Starts counting for a request on the current thread.
+     */
+    public void begin() {
+        CURRENT.set(new long[Counter.values().length]);
+    }
+
+    /**
+     * Stops counting for the request on the current thread and adds its counts to its endpoint.
+     *
+     * @param endpoint The endpoint, e.g. "GET /api/carts/{cartId}/items"; null to discard the counts.
+     * @return The counts of the request, indexed by Counter ordinal, or null if none was started.
+     */
+    public long[] end(String endpoint) {
+        long[] counts = CURRENT.get();
+        CURRENT.remove();
+        if (counts != null && endpoint != null) {
+            endpoints.computeIfAbsent(endpoint, e -> new EndpointCounters()).add(counts);
+        }
+        return counts;
+    }
+
+    /**
+     * @return The statistics of every endpoint called since the last reset, by endpoint name.
+     */
+    public Map<String, EndpointStats> snapshot() {
+        Map<String, EndpointStats> snapshot = new TreeMap<>();
+        endpoints.forEach((endpoint, counters) -> snapshot.put(endpoint, counters.snapshot()));
+        return snapshot;
+    }
+
+    /**
+     * Forgets the statistics collected so far.
+     */
+    public void reset() {
+        endpoints.clear();
+    }
+
+    private static final class EndpointCounters {
+        private final LongAdder requests = new LongAdder();
+        private final LongAdder[] totals = new LongAdder[Counter.values().length];
+        private final LongAccumulator[] maxima = new LongAccumulator[Counter.values().length];
+
+        private EndpointCounters() {
+            for (int i = 0; i < totals.length; i++) {
+                totals[i] = new LongAdder();
+                maxima[i] = new LongAccumulator(Math::max, 0L);
+            }
+        }
+
+        private void add(long[] counts) {
+            requests.increment();
+            for (int i = 0; i < counts.length; i++) {
+                totals[i].add(counts[i]);
+                maxima[i].accumulate(counts[i]);
+            }
+        }
+
+        private EndpointStats snapshot() {
+            long count = requests.sum();
+            Map<String, CounterStats> counters = new LinkedHashMap<>();
+            for (Counter counter : Counter.values()) {
+                long total = totals[counter.ordinal()].sum();
+                counters.put(counter.key(), new CounterStats(total, maxima[counter.ordinal()].get(),
+                        count == 0 ? 0.0 : (double) total / count));
+            }
+            return new EndpointStats(count, counters);
+        }
+    }
+
+    /**
+     * Statistics of one endpoint.
+     *
+     * @param requests The number of requests counted.
+     * @param counters The figures of each Counter, by its key.
+     */
+    public record EndpointStats(long requests, Map<String, CounterStats> counters) {
+
+        /**
+         * @param counter A counter.
+         * @return Its figures.
+         */
+        public CounterStats get(Counter counter) {
+            return counters.get(counter.key());
+        }
+    }
+
+    /**
+     * Figures of one counter for one endpoint.
+     *
+     * @param total Over all requests.
+     * @param max In the request that had the most.
+     * @param perRequest Average per request.
+     */
+    public record CounterStats(long total, long max, double perRequest) {
+    }
+}
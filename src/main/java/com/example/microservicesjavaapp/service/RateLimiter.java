@@ -0,0 +1,232 @@
+package com.example.microservicesjavaapp.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Per-user token-bucket rate limiter for the cart endpoints.
+ * Every authenticated user has one bucket per endpoint class (creating carts, changing carts, reading
+ * carts), holding up to 'capacity' requests and refilled at 'refill-per-second'. Applied to both
+ * stacks by RateLimitConfig.
+ *
+ * A bucket is a single AtomicLong, updated with compare-and-set in the GCRA form of the token bucket:
+ * it stores the instant at which the bucket will be full again, so taking a token never locks and never
+ * needs a refill task. Full buckets are evicted every 'app.rate-limit.eviction-interval', so memory only
+ * grows with the users active within that interval.
+ */
+@Component // Marks this class as a Spring-managed component
+@ConditionalOnProperty(name = "app.rate-limit.enabled", havingValue = "true", matchIfMissing = true)
+public class RateLimiter {
+
+    private static final Logger logger = LoggerFactory.getLogger(RateLimiter.class);
+
+    private static final long EVICTED = Long.MIN_VALUE; // Marks a bucket removed from the map
+
+    private final Map<EndpointClass, Limit> limits;
+    private final LongSupplier nanoClock;
+    private final MeterRegistry meterRegistry;
+    private final ConcurrentHashMap<Key, AtomicLong> buckets = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a limiter with the given limits and clock and a private meter registry (used by unit tests).
+     *
+     * @param limits The limit of each endpoint class.
+     * @param nanoClock Supplies the current time in nanoseconds.
+     */
+    RateLimiter(Map<EndpointClass, Limit> limits, LongSupplier nanoClock) {
+        this(limits, nanoClock, new SimpleMeterRegistry());
+    }
+
+    /**
+     * Creates a limiter with the configured limits, publishing its metrics to the given registry.
+     */
+    @Autowired
+    public RateLimiter(@Value("${app.rate-limit.create-cart.capacity:20}") int createCartCapacity,
+                       @Value("${app.rate-limit.create-cart.refill-per-second:1}") double createCartRefill,
+                       @Value("${app.rate-limit.cart-write.capacity:100}") int cartWriteCapacity,
+                       @Value("${app.rate-limit.cart-write.refill-per-second:20}") double cartWriteRefill,
+                       @Value("${app.rate-limit.cart-read.capacity:200}") int cartReadCapacity,
+                       @Value("${app.rate-limit.cart-read.refill-per-second:50}") double cartReadRefill,
+                       MeterRegistry meterRegistry) {
+        this(Map.of(EndpointClass.CREATE_CART, new Limit(createCartCapacity, createCartRefill),
+                        EndpointClass.CART_WRITE, new Limit(cartWriteCapacity, cartWriteRefill),
+                        EndpointClass.CART_READ, new Limit(cartReadCapacity, cartReadRefill)),
+                System::nanoTime, meterRegistry);
+    }
+
+    private RateLimiter(Map<EndpointClass, Limit> limits, LongSupplier nanoClock, MeterRegistry meterRegistry) {
+        this.limits = new EnumMap<>(limits);
+        this.nanoClock = nanoClock;
+        this.meterRegistry = meterRegistry;
+        Gauge.builder("rate.limit.buckets", buckets, Map::size)
+                .description("Token buckets currently held in memory")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Takes a token from the user's bucket for the endpoint class.
+     *
+     * @param user The name of the authenticated user.
+     * @param endpoint The endpoint class of the request.
+     * @return Whether the request may go ahead, with the figures for the rate limit headers.
+     */
+    public Decision tryAcquire(String user, EndpointClass endpoint) {
+        Limit limit = limits.get(endpoint);
+        long interval = limit.intervalNanos();
+        long burst = limit.burstNanos();
+        Key key = new Key(user, endpoint);
+
+        while (true) {
+            long now = nanoClock.getAsLong();
+            AtomicLong bucket = buckets.computeIfAbsent(key, k -> new AtomicLong(now));
+            long fullAt = bucket.get();
+            if (fullAt == EVICTED) {
+                buckets.remove(key, bucket); // Evicted under us: start over with a fresh bucket
+                continue;
+            }
+            long newFullAt = Math.max(fullAt, now) + interval;
+            long untilFull = newFullAt - now;
+            if (untilFull > burst) {
+                Counter.builder("rate.limit.throttled")
+                        .description("Requests rejected by the per-user rate limiter")
+                        .tag("user", user)
+                        .tag("endpoint", endpoint.tag)
+                        .register(meterRegistry)
+                        .increment();
+                logger.debug("User {} throttled on {}.", user, endpoint.tag);
+                return new Decision(false, limit.capacity(), 0, fullAt - now, untilFull - burst);
+            }
+            if (bucket.compareAndSet(fullAt, newFullAt)) {
+                return new Decision(true, limit.capacity(), (burst - untilFull) / interval, untilFull, 0);
+            }
+        }
+    }
+
+    /**
+     * Drops the buckets that have refilled completely: a new one would be in the same state.
+     *
+     * @return The number of evicted buckets.
+     */
+    @Scheduled(fixedDelayString = "${app.rate-limit.eviction-interval:PT1M}", initialDelayString = "${app.rate-limit.eviction-interval:PT1M}")
+    public int evictIdle() {
+        long now = nanoClock.getAsLong();
+        int evicted = 0;
+        for (Map.Entry<Key, AtomicLong> entry : buckets.entrySet()) {
+            AtomicLong bucket = entry.getValue();
+            long fullAt = bucket.get();
+            // Marked first, so a request racing with the removal retries on a fresh bucket instead of a dropped one
+            if (fullAt != EVICTED && fullAt <= now && bucket.compareAndSet(fullAt, EVICTED)) {
+                buckets.remove(entry.getKey(), bucket);
+                evicted++;
+            }
+        }
+        return evicted;
+    }
+
+    /**
+     * @return The number of buckets currently held.
+     */
+    public int size() {
+        return buckets.size();
+    }
+
+    /**
+     * Groups of cart endpoints sharing a bucket.
+     */
+    public enum EndpointClass {
+        CREATE_CART("create-cart"), // POST /api/carts
+        CART_WRITE("cart-write"), // Adding and removing items, checkout
+        CART_READ("cart-read"); // Every GET under /api/carts
+
+        private final String tag;
+
+        EndpointClass(String tag) {
+            this.tag = tag;
+        }
+
+        /**
+         * Classifies a request.
+         *
+         * @param method The HTTP method.
+         * @param path The request path, without the context path.
+         * @return The endpoint class, or null if the request is not rate limited.
+         */
+        public static EndpointClass of(String method, String path) {
+            if (path.equals("/api/carts")) {
+                return method.equals("POST") ? CREATE_CART : null;
+            }
+            if (!path.startsWith("/api/carts/")) {
+                return null;
+            }
+            return method.equals("GET") ? CART_READ : CART_WRITE;
+        }
+    }
+
+    /**
+     * Capacity and refill rate of a bucket.
+     *
+     * @param capacity The number of requests a full bucket allows in a burst.
+     * @param refillPerSecond The number of tokens added back per second.
+     */
+    public record Limit(int capacity, double refillPerSecond) {
+
+        long intervalNanos() {
+            return (long) (TimeUnit.SECONDS.toNanos(1) / refillPerSecond);
+        }
+
+        long burstNanos() {
+            return intervalNanos() * capacity;
+        }
+    }
+
+    /**
+     * Outcome of taking a token.
+     *
+     * @param allowed Whether the request may go ahead.
+     * @param limit The capacity of the bucket.
+     * @param remaining The tokens left after this request.
+     * @param resetNanos Time until the bucket is full again.
+     * @param retryAfterNanos Time until the next token, when the request was rejected.
+     */
+    public record Decision(boolean allowed, int limit, long remaining, long resetNanos, long retryAfterNanos) {
+
+        /**
+         * Writes the RateLimit-Limit, RateLimit-Remaining and RateLimit-Reset headers, plus Retry-After
+         * on a rejection. Times are in whole seconds, rounded up.
+         *
+         * @param header Sets a response header.
+         */
+        public void writeHeaders(BiConsumer<String, String> header) {
+            header.accept("RateLimit-Limit", String.valueOf(limit));
+            header.accept("RateLimit-Remaining", String.valueOf(remaining));
+            header.accept("RateLimit-Reset", String.valueOf(seconds(resetNanos)));
+            if (!allowed) {
+                header.accept("Retry-After", String.valueOf(Math.max(1, seconds(retryAfterNanos))));
+            }
+        }
+
+        private static long seconds(long nanos) {
+            return (Math.max(0, nanos) + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1);
+        }
+    }
+
+    private record Key(String user, EndpointClass endpoint) {
+    }
+}
@@ -0,0 +1,122 @@
+package com.example.microservicesjavaapp.service;
+
+import com.example.microservicesjavaapp.model.Cart;
+import com.example.microservicesjavaapp.model.OutboxEvent.EventType;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * The event-sourced cart history of CartHistory, written and read over R2DBC by the reactive stack.
+ * The tables, the binary format (see CartHistoryCodec), the version numbering and the snapshot interval
+ * are the same, so either stack can read the history the other one wrote.
+ */
+@Component // Marks this class as a Spring-managed component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE) // Only when the reactive stack is selected
+public class ReactiveCartHistory {
+
+    private final DatabaseClient databaseClient;
+    private final int snapshotInterval;
+
+    public ReactiveCartHistory(DatabaseClient databaseClient,
+                               @Value("${app.cart-history.snapshot-interval:50}") int snapshotInterval) {
+        if (snapshotInterval < 1) {
+            throw new IllegalArgumentException("app.cart-history.snapshot-interval must be at least 1");
+        }
+        this.databaseClient = databaseClient;
+        this.snapshotInterval = snapshotInterval;
+    }
+
+    /**
+     * Appends an event to the cart's history, and a snapshot if the event's version is a multiple of the
+     * snapshot interval. To be composed into the R2DBC transaction of the change, under the cart's lock.
+     *
+     * @param type What happened to the cart.
+     * @param cart The cart, as it is after the change.
+     * @param productId The product added or removed, or null.
+     * @param quantity The product's quantity in the cart after the change, or null.
+     * @return A Mono emitting the version of the event once it is written.
+     */
+    public Mono<Long> record(EventType type, Cart cart, Long productId, Integer quantity) {
+        return databaseClient.sql("SELECT COALESCE(MAX(version), 0) FROM cart_events WHERE cart_id = :cartId")
+                .bind("cartId", cart.getId())
+                .map(row -> row.get(0, Long.class) + 1)
+                .one()
+                .flatMap(version -> {
+                    CartHistory.Event event = new CartHistory.Event(version, type, LocalDateTime.now(), productId,
+                            quantity == null ? 0 : quantity, cart.getSubtotal(), cart.getDiscountedTotal());
+                    Mono<Void> insert = databaseClient.sql("INSERT INTO cart_events (cart_id, version, payload) VALUES (:cartId, :version, :payload)")
+                            .bind("cartId", cart.getId())
+                            .bind("version", version)
+                            .bind("payload", CartHistoryCodec.encode(event))
+                            .then();
+                    if (version % snapshotInterval != 0) {
+                        return insert.thenReturn(version);
+                    }
+                    return insert.then(rebuild(cart.getId(), version))
+                            .flatMap(state -> databaseClient.sql("INSERT INTO cart_snapshots (cart_id, version, state) VALUES (:cartId, :version, :state)")
+                                    .bind("cartId", cart.getId())
+                                    .bind("version", version)
+                                    .bind("state", CartHistoryCodec.encode(state))
+                                    .then())
+                            .thenReturn(version);
+                });
+    }
+
+    /**
+     * Lists the history of a cart, as CartHistory.events does.
+     *
+     * @param cartId The ID of the cart.
+     * @param fromVersion The first version to list.
+     * @param limit The most events to list.
+     * @return A Mono emitting the events, oldest first; empty list if the cart has none from that version.
+     */
+    public Mono<List<CartHistory.Event>> events(long cartId, long fromVersion, int limit) {
+        return databaseClient.sql("SELECT version, payload FROM cart_events WHERE cart_id = :cartId AND version >= :fromVersion "
+                        + "ORDER BY version FETCH FIRST :limit ROWS ONLY")
+                .bind("cartId", cartId)
+                .bind("fromVersion", fromVersion)
+                .bind("limit", limit)
+                .map(row -> CartHistoryCodec.decodeEvent(row.get("version", Long.class), row.get("payload", byte[].class)))
+                .all()
+                .collectList();
+    }
+
+    /**
+     * Rebuilds a cart as it was at a version, as CartHistory.rebuild does.
+     *
+     * @param cartId The ID of the cart.
+     * @param version The version to rebuild.
+     * @return A Mono emitting the state at that version; empty if the cart's history does not reach it.
+     */
+    public Mono<CartHistory.State> rebuild(long cartId, long version) {
+        if (version < 1) {
+            return Mono.empty();
+        }
+        return databaseClient.sql("SELECT version, state FROM cart_snapshots WHERE cart_id = :cartId AND version <= :version "
+                        + "ORDER BY version DESC FETCH FIRST 1 ROW ONLY")
+                .bind("cartId", cartId)
+                .bind("version", version)
+                .map(row -> CartHistoryCodec.decodeState(cartId, row.get("version", Long.class), row.get("state", byte[].class)))
+                .all()
+                .collectList()
+                .flatMap(snapshots -> {
+                    CartHistory.State base = snapshots.isEmpty() ? null : snapshots.get(0);
+                    return databaseClient.sql("SELECT version, payload FROM cart_events WHERE cart_id = :cartId AND version > :fromVersion "
+                                    + "AND version <= :version ORDER BY version")
+                            .bind("cartId", cartId)
+                            .bind("fromVersion", base == null ? 0L : base.version())
+                            .bind("version", version)
+                            .map(row -> CartHistoryCodec.decodeEvent(row.get("version", Long.class), row.get("payload", byte[].class)))
+                            .all()
+                            .collectList()
+                            .mapNotNull(events -> CartHistory.replay(cartId, base, events));
+                })
+                .filter(state -> state.version() == version);
+    }
+}
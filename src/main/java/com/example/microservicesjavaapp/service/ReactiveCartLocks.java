@@ -0,0 +1,61 @@
+package com.example.microservicesjavaapp.service;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Non-blocking per-cart serialization for the reactive stack.
+ * The reactive counterpart of CartLockRegistry: operations on the same cart run one after another, in
+ * arrival order, but a waiting operation does not park a thread; it is subscribed once the previous
+ * operation on that cart has completed. Operations on different carts run concurrently.
+ *
+ * Each cart keeps only the completion signal of its latest operation. A new operation swaps itself in
+ * as the latest and chains onto the one it replaced; the entry is removed when the last operation of
+ * an idle cart completes.
+ */
+@Component // Marks this class as a Spring-managed component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE) // Only when the reactive stack is selected
+public class ReactiveCartLocks {
+
+    private final Map<Long, Mono<Void>> tails = new ConcurrentHashMap<>();
+
+    /**
+     * Runs an operation once every earlier operation on the same cart has completed.
+     * The slot is released when the operation completes, fails or is cancelled; a cancelled waiter
+     * still releases its successor only after its own predecessor is done.
+     *
+     * @param cartId The ID of the cart.
+     * @param operation Supplies the operation, subscribed to when the cart's turn comes.
+     * @return A Mono that runs the operation in turn and relays its outcome.
+     */
+    public <T> Mono<T> withLock(Long cartId, Supplier<Mono<T>> operation) {
+        return Mono.defer(() -> {
+            Sinks.Empty<Void> done = Sinks.empty();
+            Mono<Void> mine = done.asMono();
+            Mono<Void> previous = tails.put(cartId, mine);
+            Mono<Void> turn = previous == null ? Mono.empty() : previous;
+
+            return turn.then(Mono.defer(operation))
+                    .doFinally(signal -> {
+                        tails.remove(cartId, mine);
+                        // A waiter cancelled before its turn must not let its successor overtake the predecessor
+                        turn.subscribe(null, error -> done.tryEmitEmpty(), done::tryEmitEmpty);
+                    });
+        });
+    }
+
+    /**
+     * Returns the number of carts with an operation running or waiting.
+     *
+     * @return The number of tracked carts.
+     */
+    public int size() {
+        return tails.size();
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.microservicesjavaapp.service;
+
+import com.example.microservicesjavaapp.dto.CartDto;
+import com.example.microservicesjavaapp.dto.CartHistoryEventDto;
+import com.example.microservicesjavaapp.dto.CartItemDto;
+import com.example.microservicesjavaapp.dto.CartStateDto;
+import com.example.microservicesjavaapp.dto.CartTotalDto;
+import com.example.microservicesjavaapp.dto.OrderHistoryDto;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * Interface for the reactive shopping cart service.
+ * Same operations and error semantics as CartService, as non-blocking publishers.
+ */
+public interface ReactiveCartService {
+
+    /**
+     * Creates a new shopping cart for a given user.
+     *
+     * @param userId The ID of the user for whom to create the cart.
+     * @return A Mono emitting the newly created CartDto.
+     */
+    Mono<CartDto> createCart(Long userId);
+
+    /**
+     * Adds a product to an existing cart. If the product already exists in the cart,
+     * its quantity is updated. Otherwise, a new cart item is created.
+     *
+     * @param cartId The ID of the cart to which to add the product.
+     * @param productCode The code of the product to add.
+     * @param quantity The quantity of the product to add.
+     * @return A Mono emitting the updated or newly created CartItemDto.
+     */
+    Mono<CartItemDto> addProductToCart(Long cartId, String productCode, Integer quantity);
+
+    /**
+     * Removes a product from an existing cart.
+     *
+     * @param cartId The ID of the cart from which to remove the product.
+     * @param productId The ID of the product to remove.
+     * @return A Mono completing once the product is removed.
+     */
+    Mono<Void> removeProductFromCart(Long cartId, Long productId);
+
+    /**
+     * Retrieves all products (CartItems) within a specific cart.
+     *
+     * @param cartId The ID of the cart.
+     * @return A Mono emitting the list of CartItemDto entities.
+     */
+    Mono<List<CartItemDto>> getCartProducts(Long cartId);
+
+    /**
+     * Previews the totals of a cart from its running subtotal and discounted total,
+     * without reading the cart's lines.
+     *
+     * @param cartId The ID of the cart.
+     * @return A Mono emitting the cart's CartTotalDto.
+     */
+    Mono<CartTotalDto> getCartTotal(Long cartId);
+
+    /**
+     * Retrieves all carts associated with a specific user.
+     *
+     * @param userId The ID of the user.
+     * @return A Mono emitting the list of CartDto entities.
+     */
+    Mono<List<CartDto>> getCartsByUserId(Long userId);
+
+    /**
+     * Retrieves the archived (processed and moved to history) orders of a specific user.
+     *
+     * @param userId The ID of the user.
+     * @return A Mono emitting the list of OrderHistoryDto entities, most recently processed first.
+     */
+    Mono<List<OrderHistoryDto>> getOrderHistory(Long userId);
+
+    /**
+     * Lists the changes made to a cart, from its event-sourced history, as CartService.getCartHistory does.
+     *
+     * @param cartId The ID of the cart.
+     * @param fromVersion The first version to list, from 1.
+     * @param limit The most events to list.
+     * @return A Mono emitting the list of CartHistoryEventDto entities, oldest first.
+     */
+    Mono<List<CartHistoryEventDto>> getCartHistory(Long cartId, Long fromVersion, Integer limit);
+
+    /**
+     * Rebuilds a cart as it was at a version of its history, as CartService.getCartAtVersion does.
+     *
+     * @param cartId The ID of the cart.
+     * @param version The version to rebuild, from 1.
+     * @return A Mono emitting the CartStateDto at that version.
+     */
+    Mono<CartStateDto> getCartAtVersion(Long cartId, Long version);
+
+    /**
+     * Queues a shopping cart order for processing, as CartService.enqueueOrder does.
+     *
+     * @param cartId The ID of the cart to process.
+     * @return A Mono completing once the order is queued.
+     */
+    Mono<Void> enqueueOrder(Long cartId);
+
+    /**
+     * Processes a shopping cart order, as a job of the order queue.
+     * Simulates order validation, discount application, and total calculation, then marks the cart as
+     * PROCESSED; a cart that is not ACTIVE is left alone. An error means the attempt failed, so the job
+     * is retried.
+     *
+     * @param cartId The ID of the cart to process.
+     * @return A Mono completing once the order has been processed.
+     */
+    Mono<Void> processOrder(Long cartId);
+}
@@ -0,0 +1,366 @@
+package com.example.microservicesjavaapp.service;
+
+import com.example.microservicesjavaapp.dto.CartDto;
+import com.example.microservicesjavaapp.dto.CartHistoryEventDto;
+import com.example.microservicesjavaapp.dto.CartItemDto;
+import com.example.microservicesjavaapp.dto.CartStateDto;
+import com.example.microservicesjavaapp.dto.CartTotalDto;
+import com.example.microservicesjavaapp.dto.OrderHistoryDto;
+import com.example.microservicesjavaapp.model.Cart;
+import com.example.microservicesjavaapp.model.Cart.CartStatus;
+import com.example.microservicesjavaapp.model.CartItem;
+import com.example.microservicesjavaapp.model.OutboxEvent.EventType;
+import com.example.microservicesjavaapp.model.Product;
+import com.example.microservicesjavaapp.repository.ReactiveCartItemRepository;
+import com.example.microservicesjavaapp.repository.ReactiveCartRepository;
+import com.example.microservicesjavaapp.repository.ReactiveOrderHistoryRepository;
+import com.example.microservicesjavaapp.repository.ReactiveOrderJobRepository;
+import com.example.microservicesjavaapp.repository.ReactiveOutboxEventRepository;
+import com.example.microservicesjavaapp.repository.ReactiveProductRepository;
+import com.example.microservicesjavaapp.repository.ReactiveUserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reactive implementation of the shopping cart operations, used by the 'reactive' profile.
+ * Mirrors CartServiceImpl on R2DBC: the same checks, error messages and logging, but no call blocks a
+ * thread. Writes to a cart are serialized through ReactiveCartLocks and run in an R2DBC transaction
+ * that commits before the cart's next operation starts.
+ */
+@Service // Marks this class as a Spring service
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE) // Only when the reactive stack is selected
+public class ReactiveCartServiceImpl implements ReactiveCartService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReactiveCartServiceImpl.class);
+
+    // Simulated order validation time, as in CartServiceImpl.processOrder
+    private static final Duration PROCESSING_DELAY = Duration.ofSeconds(2);
+
+    @Autowired
+    private ReactiveCartRepository cartRepository;
+
+    @Autowired
+    private ReactiveCartItemRepository cartItemRepository;
+
+    @Autowired
+    private ReactiveProductRepository productRepository;
+
+    @Autowired
+    private ReactiveUserRepository userRepository;
+
+    // Compiled discount rules, evaluated in memory: no query per line on the event loop
+    @Autowired
+    private DiscountEngine discountEngine;
+
+    // Lock-free per-product stock counters, settled once the R2DBC transaction has ended
+    @Autowired
+    private StockReservations stockReservations;
+
+    @Autowired
+    private ReactiveOrderHistoryRepository orderHistoryRepository;
+
+    // Durable checkout queue, processed by the OrderJobWorker of every instance
+    @Autowired
+    private ReactiveOrderJobRepository orderJobRepository;
+
+    // Cart events for downstream systems, written in each change's transaction and published later
+    @Autowired
+    private Outbox outbox;
+
+    @Autowired
+    private ReactiveOutboxEventRepository outboxEventRepository;
+
+    // Event-sourced history of every cart change, written in the same transaction as the change
+    @Autowired
+    private ReactiveCartHistory cartHistory;
+
+    @Autowired
+    private ReactiveCartLocks cartLocks;
+
+    // Concurrent identical reads share one run of their queries
+    @Autowired
+    private SingleFlight singleFlight;
+
+    @Autowired
+    private TransactionalOperator transactionalOperator;
+
+    @Override
+    public Mono<CartDto> createCart(Long userId) {
+        return userRepository.findById(userId)
+                .switchIfEmpty(Mono.defer(() -> {
+                    logger.warn("User with ID {} not found.", userId);
+                    return Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND, "User not found"));
+                }))
+                .flatMap(user -> cartRepository.insert(user, CartStatus.ACTIVE)
+                        .flatMap(cart -> outboxEventRepository.insert(outbox.event(EventType.CART_CREATED, cart, null, null))
+                                .then(cartHistory.record(EventType.CART_CREATED, cart, null, null))
+                                .thenReturn(cart))
+                        .as(transactionalOperator::transactional))
+                .doOnNext(cart -> logger.info("Cart created with ID {} for user ID {}.", cart.getId(), userId))
+                .map(CartDtoMapper::toCartDto);
+    }
+
+    @Override
+    public Mono<CartItemDto> addProductToCart(Long cartId, String productCode, Integer quantity) {
+        return cartLocks.withLock(cartId, () -> {
+            StockReservations.StockChanges stock = stockReservations.changes();
+            return findActiveCart(cartId)
+                    .flatMap(cart -> productRepository.findByCode(productCode)
+                            .switchIfEmpty(Mono.defer(() -> {
+                                logger.warn("Product with code {} not found.", productCode);
+                                return Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND, "Product not found"));
+                            }))
+                            .flatMap(this::withStockTracked)
+                            .doOnNext(product -> stock.reserve(product.getId(), quantity)) // Given back if the transaction rolls back
+                            .flatMap(product -> cartItemRepository.findByCartIdAndProductId(cartId, product.getId())
+                                    .flatMap(cartItem -> {
+                                        int oldQuantity = cartItem.getQuantity();
+                                        cartItem.setQuantity(oldQuantity + quantity);
+                                        logger.info("Updated quantity of product {} in cart {}. New quantity: {}", productCode, cartId, cartItem.getQuantity());
+                                        CartPricing.applyQuantityChange(cart, product, discountEngine, oldQuantity, cartItem.getQuantity());
+                                        return cartItemRepository.updateQuantity(cartItem.getId(), cartItem.getQuantity()).thenReturn(cartItem);
+                                    })
+                                    .switchIfEmpty(Mono.defer(() -> {
+                                        logger.info("Added product {} to cart {} with quantity {}.", productCode, cartId, quantity);
+                                        CartPricing.applyQuantityChange(cart, product, discountEngine, 0, quantity);
+                                        return cartItemRepository.insert(cartId, product, quantity);
+                                    })))
+                            // Also keeps the cart away from the abandoned-cart reaper
+                            .flatMap(cartItem -> cartRepository.updateTotals(cart, LocalDateTime.now())
+                                    .then(outboxEventRepository.insert(outbox.event(EventType.CART_ITEM_ADDED, cart, productCode, cartItem.getQuantity())))
+                                    .then(cartHistory.record(EventType.CART_ITEM_ADDED, cart, cartItem.getProduct().getId(), cartItem.getQuantity()))
+                                    .thenReturn(cartItem)))
+                    .map(CartDtoMapper::toCartItemDto)
+                    .as(transactionalOperator::transactional)
+                    .as(stock::completeAfter);
+        });
+    }
+
+    @Override
+    public Mono<Void> removeProductFromCart(Long cartId, Long productId) {
+        return cartLocks.withLock(cartId, () -> {
+            StockReservations.StockChanges stock = stockReservations.changes();
+            return findActiveCart(cartId)
+                    .flatMap(cart -> productRepository.findById(productId)
+                            .switchIfEmpty(Mono.defer(() -> {
+                                logger.warn("Product with ID {} not found.", productId);
+                                return Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND, "Product not found"));
+                            }))
+                            .flatMap(product -> cartItemRepository.findByCartIdAndProductId(cartId, productId)
+                                    .switchIfEmpty(Mono.defer(() -> {
+                                        logger.warn("Product with ID {} not found in cart {}.", productId, cartId);
+                                        return Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND, "Product not found in cart"));
+                                    }))
+                                    .flatMap(cartItem -> {
+                                        CartPricing.applyQuantityChange(cart, product, discountEngine, cartItem.getQuantity(), 0);
+                                        stock.release(productId, cartItem.getQuantity()); // Given back once the transaction commits
+                                        return cartItemRepository.deleteById(cartItem.getId()).thenReturn(product);
+                                    }))
+                            .doOnNext(removed -> logger.info("Removed product with ID {} from cart {}.", productId, cartId))
+                            // Also keeps the cart away from the abandoned-cart reaper
+                            .flatMap(removed -> cartRepository.updateTotals(cart, LocalDateTime.now())
+                                    .then(outboxEventRepository.insert(outbox.event(EventType.CART_ITEM_REMOVED, cart, removed.getCode(), 0)))
+                                    .then(cartHistory.record(EventType.CART_ITEM_REMOVED, cart, productId, 0))))
+                    .then()
+                    .as(transactionalOperator::transactional)
+                    .as(stock::completeAfter);
+        });
+    }
+
+    @Override
+    public Mono<List<CartItemDto>> getCartProducts(Long cartId) {
+        return singleFlight.executeMono("cart-items", cartId, () -> cartRepository.existsById(cartId)
+                .flatMap(exists -> {
+                    if (!exists) {
+                        logger.warn("Cart with ID {} not found.", cartId);
+                        return Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND, "Cart not found"));
+                    }
+                    return cartItemRepository.findByCartId(cartId)
+                            .map(CartDtoMapper::toCartItemDto)
+                            .collectList()
+                            .map(List::copyOf); // Unmodifiable: the list may be shared by coalesced calls
+                }));
+    }
+
+    @Override
+    public Mono<CartTotalDto> getCartTotal(Long cartId) {
+        return cartRepository.findById(cartId)
+                .switchIfEmpty(Mono.defer(() -> {
+                    logger.warn("Cart with ID {} not found.", cartId);
+                    return Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND, "Cart not found"));
+                }))
+                .map(CartDtoMapper::toCartTotalDto);
+    }
+
+    @Override
+    public Mono<List<CartDto>> getCartsByUserId(Long userId) {
+        return singleFlight.executeMono("user-carts", userId, () -> userRepository.existsById(userId)
+                .flatMap(exists -> {
+                    if (!exists) {
+                        logger.warn("User with ID {} not found.", userId);
+                        return Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND, "User not found"));
+                    }
+                    return cartRepository.findByUserId(userId).collectList();
+                })
+                .flatMap(carts -> carts.isEmpty()
+                        ? Mono.just(carts)
+                        : cartItemRepository.findByCartIdIn(carts.stream().map(Cart::getId).toList())
+                                .collectMultimap(item -> item.getCart().getId())
+                                .map(itemsByCart -> withItems(carts, itemsByCart)))
+                .map(carts -> carts.stream().map(CartDtoMapper::toCartDto).toList()));
+    }
+
+    @Override
+    public Mono<List<OrderHistoryDto>> getOrderHistory(Long userId) {
+        return userRepository.existsById(userId)
+                .flatMap(exists -> {
+                    if (!exists) {
+                        logger.warn("User with ID {} not found.", userId);
+                        return Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND, "User not found"));
+                    }
+                    return orderHistoryRepository.findByUserIdOrderByProcessedAtDesc(userId)
+                            .map(CartDtoMapper::toOrderHistoryDto)
+                            .collectList();
+                });
+    }
+
+    @Override
+    public Mono<List<CartHistoryEventDto>> getCartHistory(Long cartId, Long fromVersion, Integer limit) {
+        return cartHistory.events(cartId, fromVersion, limit)
+                .flatMap(events -> {
+                    if (events.isEmpty() && fromVersion <= 1) {
+                        logger.warn("No history recorded for cart ID {}.", cartId);
+                        return Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND, "Cart history not found"));
+                    }
+                    return Mono.just(events.stream().map(CartDtoMapper::toCartHistoryEventDto).toList());
+                });
+    }
+
+    @Override
+    public Mono<CartStateDto> getCartAtVersion(Long cartId, Long version) {
+        return cartHistory.rebuild(cartId, version)
+                .map(CartDtoMapper::toCartStateDto)
+                .switchIfEmpty(Mono.defer(() -> {
+                    logger.warn("Version {} of cart ID {} not found in its history.", version, cartId);
+                    return Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND, "Cart version not found"));
+                }));
+    }
+
+    @Override
+    public Mono<Void> enqueueOrder(Long cartId) {
+        return orderJobRepository.insertOrRequeue(cartId, LocalDateTime.now())
+                .doOnNext(queued -> {
+                    if (queued) {
+                        logger.info("Queued cart ID {} for processing.", cartId);
+                    } else {
+                        logger.debug("Cart {} is already queued for processing.", cartId);
+                    }
+                })
+                .then();
+    }
+
+    @Override
+    public Mono<Void> processOrder(Long cartId) {
+        return cartLocks.withLock(cartId, () -> {
+            logger.info("Starting processing for cart ID {}.", cartId);
+            return cartRepository.findByIdAndStatus(cartId, CartStatus.ACTIVE)
+                    .switchIfEmpty(Mono.defer(() -> {
+                        logger.warn("Active cart with ID {} not found for processing.", cartId);
+                        return Mono.empty();
+                    }))
+                    .flatMap(cart -> cartItemRepository.existsByCartId(cartId).flatMap(hasItems -> {
+                        if (!hasItems) {
+                            logger.warn("Cart {} is empty, cannot process.", cartId);
+                            return cartRepository.markProcessed(cartId)
+                                    .flatMap(processed -> processed
+                                            ? cartRepository.updateCharge(cart, OrderLineCodec.encode(List.of()))
+                                                    .then(recordProcessed(cart)).thenReturn(true)
+                                            : Mono.just(false))
+                                    .as(transactionalOperator::transactional)
+                                    .doOnNext(processed -> logger.info("Cart {} processed (empty).", cartId));
+                        }
+                        return Mono.delay(PROCESSING_DELAY)
+                                // The reservations become sales: the units leave the stock as the cart leaves ACTIVE.
+                                // markProcessed only succeeds for an ACTIVE cart, so a second run on another instance does nothing.
+                                .then(cartRepository.markProcessed(cartId)
+                                        .flatMap(processed -> processed
+                                                ? charge(cart).then(productRepository.decrementStockByCartItems(cartId))
+                                                        // Another instance sold the same units: the job is attempted again after a restock
+                                                        .onErrorMap(DataIntegrityViolationException.class, e -> new IllegalStateException(
+                                                                "Not enough stock on hand to settle cart ID " + cartId, e))
+                                                        .then(recordProcessed(cart)).thenReturn(true)
+                                                : Mono.just(false))
+                                        .as(transactionalOperator::transactional))
+                                .doOnNext(processed -> logger.info("Order for cart ID {} processed successfully. Total amount: {}",
+                                        cartId, cart.getDiscountedTotal()));
+                    }))
+                    .then();
+        });
+    }
+
+    /**
+     * Charges the cart at today's prices and discounts, as CartServiceImpl.processOrder does: the running
+     * totals go stale when a price changes or a discount window opens or closes after the items were added.
+     * The totals and the lines charged are stored on the cart for the order history.
+     */
+    private Mono<Void> charge(Cart cart) {
+        return cartItemRepository.findByCartId(cart.getId())
+                .map(item -> new CartStore.Line(item.getId(), item.getProduct(), item.getQuantity()))
+                .collectList()
+                .flatMap(lines -> {
+                    CartPricing.Totals totals = CartPricing.totals(lines, discountEngine);
+                    if (!totals.matches(cart)) {
+                        logger.info("Cart {} re-priced at checkout: total {} is now {}.", cart.getId(), cart.getDiscountedTotal(), totals.discountedTotal());
+                        totals.applyTo(cart);
+                    }
+                    return cartRepository.updateCharge(cart, OrderLineCodec.encode(CartPricing.orderLines(lines))).then();
+                });
+    }
+
+    private Mono<Void> recordProcessed(Cart cart) {
+        return outboxEventRepository.insert(outbox.event(EventType.CART_PROCESSED, cart, null, null))
+                .then(cartHistory.record(EventType.CART_PROCESSED, cart, null, null))
+                .then();
+    }
+
+    /**
+     * Loads the product's stock counter with a non-blocking read the first time the product is reserved.
+     */
+    private Mono<Product> withStockTracked(Product product) {
+        if (stockReservations.isTracked(product.getId())) {
+            return Mono.just(product);
+        }
+        return productRepository.findUnreservedStock(product.getId())
+                .doOnNext(unreserved -> stockReservations.track(product.getId(), unreserved))
+                .thenReturn(product);
+    }
+
+    private Mono<Cart> findActiveCart(Long cartId) {
+        return cartRepository.findByIdAndStatus(cartId, CartStatus.ACTIVE)
+                .switchIfEmpty(Mono.defer(() -> {
+                    logger.warn("Active cart with ID {} not found.", cartId);
+                    return Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND, "Active cart not found or already processed"));
+                }));
+    }
+
+    private static List<Cart> withItems(List<Cart> carts, Map<Long, Collection<CartItem>> itemsByCart) {
+        for (Cart cart : carts) {
+            cart.getItems().addAll(itemsByCart.getOrDefault(cart.getId(), List.of()));
+        }
+        return carts;
+    }
+}
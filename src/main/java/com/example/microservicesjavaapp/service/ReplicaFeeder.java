@@ -0,0 +1,164 @@
+package com.example.microservicesjavaapp.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.StringJoiner;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stand-in for database replication, for running the read replica locally on two H2 databases
+ * (see ReadReplicaConfig). Creates the schema on the replica, then, every 'app.read-replica.replication.interval',
+ * copies the 'app.read-replica.replication.tables' of the primary into it: the tables are read in one
+ * transaction on the primary and replaced in one transaction on the replica, so the replica always shows
+ * the primary as it was at some earlier instant, never a mix. That delay is the replication lag that
+ * ReplicaReads protects a user's own writes from.
+ *
+ * Every table is copied whole: fine for trying the routing out, not for a real database, which would
+ * replicate through its own means. Each run is timed in 'replica.replication.run'.
+ */
+public class ReplicaFeeder {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReplicaFeeder.class);
+
+    private final DataSource primary;
+    private final DataSource replica;
+    private final List<String> tables;
+    private final Timer runTimer;
+
+    /**
+     * Creates the schema on the replica and prepares the copies.
+     *
+     * @param primary The DataSource of the primary database.
+     * @param replica The DataSource of the replica database.
+     * @param tables The tables to copy, parents before children.
+     * @param meterRegistry The registry where the replication timer is published.
+     */
+    public ReplicaFeeder(DataSource primary, DataSource replica, List<String> tables, MeterRegistry meterRegistry) {
+        this.primary = primary;
+        this.replica = replica;
+        this.tables = List.copyOf(tables);
+        this.runTimer = Timer.builder("replica.replication.run")
+                .description("Duration of a copy of the primary into the replica")
+                .register(meterRegistry);
+        new ResourceDatabasePopulator(new ClassPathResource("schema.sql")).execute(replica);
+        // The rows are taken as the primary had them; checking their foreign keys again adds nothing
+        new JdbcTemplate(replica).execute("SET REFERENTIAL_INTEGRITY FALSE");
+    }
+
+    /**
+     * Runs a copy on the configured schedule.
+     */
+    @Scheduled(fixedDelayString = "${app.read-replica.replication.interval:PT1S}", initialDelayString = "${app.read-replica.replication.interval:PT1S}")
+    public void scheduledReplicate() {
+        try {
+            replicate();
+        } catch (SQLException e) {
+            logger.warn("Copy of the primary into the replica failed; retrying on the next run.", e);
+        }
+    }
+
+    /**
+     * Copies the tables of the primary into the replica.
+     *
+     * @return The number of rows copied.
+     * @throws SQLException If either database fails.
+     */
+    public int replicate() throws SQLException {
+        long start = System.nanoTime();
+        List<TableRows> snapshot = new ArrayList<>(tables.size());
+        try (Connection connection = primary.getConnection()) {
+            connection.setReadOnly(true);
+            connection.setAutoCommit(false);
+            connection.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+            try (Statement statement = connection.createStatement()) {
+                for (String table : tables) {
+                    snapshot.add(read(statement, table));
+                }
+            } finally {
+                connection.rollback();
+            }
+        }
+
+        int copied = 0;
+        try (Connection connection = replica.getConnection()) {
+            connection.setAutoCommit(false);
+            try {
+                try (Statement statement = connection.createStatement()) {
+                    for (int i = tables.size() - 1; i >= 0; i--) {
+                        statement.executeUpdate("DELETE FROM " + tables.get(i));
+                    }
+                }
+                for (TableRows rows : snapshot) {
+                    copied += write(connection, rows);
+                }
+                connection.commit();
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            }
+        }
+        runTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return copied;
+    }
+
+    private static TableRows read(Statement statement, String table) throws SQLException {
+        try (ResultSet resultSet = statement.executeQuery("SELECT * FROM " + table)) {
+            ResultSetMetaData metaData = resultSet.getMetaData();
+            List<String> columns = new ArrayList<>(metaData.getColumnCount());
+            for (int c = 1; c <= metaData.getColumnCount(); c++) {
+                columns.add(metaData.getColumnName(c));
+            }
+            List<Object[]> rows = new ArrayList<>();
+            while (resultSet.next()) {
+                Object[] row = new Object[columns.size()];
+                for (int c = 0; c < row.length; c++) {
+                    row[c] = resultSet.getObject(c + 1);
+                }
+                rows.add(row);
+            }
+            return new TableRows(table, columns, rows);
+        }
+    }
+
+    private static int write(Connection connection, TableRows rows) throws SQLException {
+        if (rows.rows().isEmpty()) {
+            return 0;
+        }
+        StringJoiner columns = new StringJoiner(", ", "(", ")");
+        StringJoiner values = new StringJoiner(", ", "(", ")");
+        for (String column : rows.columns()) {
+            columns.add(column);
+            values.add("?");
+        }
+        try (PreparedStatement insert = connection.prepareStatement(
+                "INSERT INTO " + rows.table() + " " + columns + " VALUES " + values)) {
+            for (Object[] row : rows.rows()) {
+                for (int c = 0; c < row.length; c++) {
+                    insert.setObject(c + 1, row[c]);
+                }
+                insert.addBatch();
+            }
+            insert.executeBatch();
+        }
+        return rows.rows().size();
+    }
+
+    private record TableRows(String table, List<String> columns, List<Object[]> rows) {
+    }
+}
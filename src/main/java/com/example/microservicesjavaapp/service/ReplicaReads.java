@@ -0,0 +1,205 @@
+package com.example.microservicesjavaapp.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Runs the cart API's queries on the read replica (see ReadReplicaConfig), unless the user or cart they
+ * are about was changed within the last 'app.read-replica.read-your-writes-window': the replica may not
+ * have caught up with that change yet, so those queries stay on the primary and a user always sees their
+ * own writes. Queries run in a read-only transaction, the only kind the routing DataSource ever sends to
+ * the replica; everything else, including the read-only loads of StockReservations and DiscountEngine,
+ * stays on the primary.
+ *
+ * Writes are remembered per process: a user whose requests are spread over several instances is only
+ * protected on the instance that served the write. A caller that coalesces reads (see SingleFlight) decides
+ * the route first and keys the coalescing on it, so a read pinned to the primary never joins a replica read
+ * that started before the write. Every query is counted in 'replica.reads', tagged with
+ * the DataSource it ran on ('replica' or 'primary').
+ * Disabled unless 'app.read-replica.enabled=true', in which case queries run as before, on the primary.
+ */
+@Component // Marks this class as a Spring-managed component
+public class ReplicaReads {
+
+    /**
+     * The DataSource a query runs on.
+     */
+    public enum Target {
+        REPLICA, PRIMARY
+    }
+
+    private static final ThreadLocal<Boolean> ON_REPLICA = new ThreadLocal<>();
+
+    private final boolean enabled;
+    private final TransactionTemplate transactionTemplate;
+    private final long windowNanos;
+    private final ConcurrentHashMap<Key, Long> lastWrites = new ConcurrentHashMap<>();
+    private final Counter replicaReads;
+    private final Counter primaryReads;
+
+    /**
+     * Creates a disabled instance (used by unit tests): every query runs as is, on the primary.
+     */
+    ReplicaReads() {
+        this.enabled = false;
+        this.transactionTemplate = null;
+        this.windowNanos = 0;
+        this.replicaReads = null;
+        this.primaryReads = null;
+    }
+
+    /**
+     * Creates the replica reads of the application.
+     *
+     * @param transactionManager Runs each query in its own read-only transaction.
+     * @param meterRegistry The registry where the query counters are published.
+     * @param enabled Whether queries may go to the replica at all.
+     * @param window How long after a change its user and cart are read from the primary.
+     */
+    @Autowired
+    public ReplicaReads(PlatformTransactionManager transactionManager,
+                        MeterRegistry meterRegistry,
+                        @Value("${app.read-replica.enabled:false}") boolean enabled,
+                        @Value("${app.read-replica.read-your-writes-window:PT5S}") Duration window) {
+        this.enabled = enabled;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.windowNanos = window.toNanos();
+        this.replicaReads = Counter.builder("replica.reads")
+                .description("Cart API queries, by the DataSource they ran on")
+                .tag("target", "replica")
+                .register(meterRegistry);
+        this.primaryReads = Counter.builder("replica.reads")
+                .description("Cart API queries, by the DataSource they ran on")
+                .tag("target", "primary")
+                .register(meterRegistry);
+    }
+
+    /**
+     * @return Whether the current thread is running a query that may be served by the replica.
+     */
+    public static boolean isReplicaRead() {
+        return ON_REPLICA.get() != null;
+    }
+
+    /**
+     * Remembers that a user's cart was changed, once the current transaction commits (at once outside a
+     * transaction): for the next window, queries about either go to the primary.
+     *
+     * @param userId The ID of the user who owns the cart, or null if unknown.
+     * @param cartId The ID of the cart, or null if unknown.
+     */
+    public void recordWrite(Long userId, Long cartId) {
+        if (!enabled) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    stamp(userId, cartId);
+                }
+            });
+        } else {
+            stamp(userId, cartId);
+        }
+    }
+
+    /**
+     * Decides where a query about a user or cart runs: on the primary if the user or cart was changed
+     * within the window, if a transaction is already in progress, or if replica reads are disabled.
+     *
+     * @param userId The ID of the user the query is about, or null.
+     * @param cartId The ID of the cart the query is about, or null.
+     * @return The DataSource the query should run on.
+     */
+    public Target route(Long userId, Long cartId) {
+        if (!enabled || TransactionSynchronizationManager.isActualTransactionActive() || recentlyWritten(userId, cartId)) {
+            return Target.PRIMARY;
+        }
+        return Target.REPLICA;
+    }
+
+    /**
+     * Runs a query in a read-only transaction, on the replica unless the user or cart was changed within
+     * the window. Within a transaction already in progress, the query joins it, on its DataSource.
+     *
+     * @param userId The ID of the user the query is about, or null.
+     * @param cartId The ID of the cart the query is about, or null.
+     * @param query The query.
+     * @return The result of the query.
+     */
+    public <T> T read(Long userId, Long cartId, Supplier<T> query) {
+        return read(route(userId, cartId), query);
+    }
+
+    /**
+     * Runs a query in a read-only transaction on a DataSource already chosen with {@link #route}.
+     *
+     * @param target Where the query runs.
+     * @param query The query.
+     * @return The result of the query.
+     */
+    public <T> T read(Target target, Supplier<T> query) {
+        if (!enabled) {
+            return query.get();
+        }
+        if (target == Target.PRIMARY) {
+            primaryReads.increment();
+            return transactionTemplate.execute(status -> query.get());
+        }
+        replicaReads.increment();
+        ON_REPLICA.set(Boolean.TRUE);
+        try {
+            return transactionTemplate.execute(status -> query.get());
+        } finally {
+            ON_REPLICA.remove();
+        }
+    }
+
+    private void stamp(Long userId, Long cartId) {
+        long now = System.nanoTime();
+        if (userId != null) {
+            lastWrites.put(new Key(Key.USER, userId), now);
+        }
+        if (cartId != null) {
+            lastWrites.put(new Key(Key.CART, cartId), now);
+        }
+        if (lastWrites.size() > 10_000) {
+            lastWrites.values().removeIf(written -> now - written > windowNanos); // Keeps only the open windows
+        }
+    }
+
+    private boolean recentlyWritten(Long userId, Long cartId) {
+        return (userId != null && withinWindow(new Key(Key.USER, userId)))
+                || (cartId != null && withinWindow(new Key(Key.CART, cartId)));
+    }
+
+    private boolean withinWindow(Key key) {
+        Long written = lastWrites.get(key);
+        if (written == null) {
+            return false;
+        }
+        if (System.nanoTime() - written <= windowNanos) {
+            return true;
+        }
+        lastWrites.remove(key, written);
+        return false;
+    }
+
+    private record Key(char kind, long id) {
+        static final char USER = 'u';
+        static final char CART = 'c';
+    }
+}
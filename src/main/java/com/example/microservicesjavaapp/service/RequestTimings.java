@@ -0,0 +1,211 @@
+package com.example.microservicesjavaapp.service;
+
+import java.util.Locale;
+
+/**
+ * Time spent by the current HTTP request in each of its phases, reported in the Server-Timing header
+ * by ServerTimingConfig. The request's filter binds an instance to the thread for the length of the
+ * request; the security filter chain, the cart lock registry, the cart service and the repositories
+ * report to it through the static methods, which do nothing when no request is being timed.
+ *
+ * Phases nest: 'service' includes the lock waits and repository calls it makes, and every phase is
+ * part of 'total'. Writes flushed when the service's transaction commits count as 'service', not 'db'.
+ */
+public final class RequestTimings {
+
+    /**
+     * The timed phases, by their Server-Timing metric name.
+     */
+    public enum Phase {
+        AUTH("auth", "Authentication"),
+        LOCK("lock", "Cart lock wait"),
+        DB("db", "Repositories"),
+        SERVICE("service", "Cart service"),
+        SERIALIZATION("ser", "Response body");
+
+        private final String metric;
+        private final String description;
+
+        Phase(String metric, String description) {
+            this.metric = metric;
+            this.description = description;
+        }
+
+        public String metric() {
+            return metric;
+        }
+    }
+
+    private static final ThreadLocal<RequestTimings> CURRENT = new ThreadLocal<>();
+
+    private final long start = System.nanoTime();
+    private final long[] nanos = new long[Phase.values().length];
+    private final int[] calls = new int[Phase.values().length];
+    private final int[] depth = new int[Phase.values().length];
+    private long serializationStart;
+    private long total = -1;
+
+    private RequestTimings() {
+    }
+
+    /**
+     * Starts timing a request on the current thread. Must be paired with {@link #stop()} in a finally block.
+     *
+     * @return The timings of the request.
+     */
+    public static RequestTimings start() {
+        RequestTimings timings = new RequestTimings();
+        CURRENT.set(timings);
+        return timings;
+    }
+
+    /**
+     * Unbinds the request's timings from the current thread and fixes its total.
+     */
+    public static void stop() {
+        RequestTimings timings = CURRENT.get();
+        CURRENT.remove();
+        if (timings != null) {
+            timings.finish();
+        }
+    }
+
+    /**
+     * @return The timings of the request running on this thread, or null if it is not timed.
+     */
+    public static RequestTimings current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Adds a measured duration to a phase of the current request, if any.
+     *
+     * @param phase The phase.
+     * @param elapsedNanos The duration.
+     */
+    public static void record(Phase phase, long elapsedNanos) {
+        RequestTimings timings = CURRENT.get();
+        if (timings != null) {
+            timings.nanos[phase.ordinal()] += elapsedNanos;
+            timings.calls[phase.ordinal()]++;
+        }
+    }
+
+    /**
+     * Ends the authentication phase of the current request, if any: called once the security filter
+     * chain has let the request through. A request rejected by the chain is all authentication.
+     */
+    public static void authenticated() {
+        RequestTimings timings = CURRENT.get();
+        if (timings != null && timings.calls[Phase.AUTH.ordinal()] == 0) {
+            record(Phase.AUTH, System.nanoTime() - timings.start);
+        }
+    }
+
+    /**
+     * Starts the serialization phase of the current request, if any: called right before the response
+     * body is written. The phase lasts until the request ends.
+     */
+    public static void serializing() {
+        RequestTimings timings = CURRENT.get();
+        if (timings != null && timings.serializationStart == 0) {
+            timings.serializationStart = System.nanoTime();
+        }
+    }
+
+    /**
+     * Enters a phase measured around a call. Calls nested in a call of the same phase are not counted again.
+     *
+     * @param phase The phase.
+     */
+    public void enter(Phase phase) {
+        depth[phase.ordinal()]++;
+    }
+
+    /**
+     * Leaves a phase entered with {@link #enter(Phase)}.
+     *
+     * @param phase The phase.
+     * @param elapsedNanos The duration of the call.
+     */
+    public void exit(Phase phase, long elapsedNanos) {
+        if (--depth[phase.ordinal()] == 0) {
+            nanos[phase.ordinal()] += elapsedNanos;
+            calls[phase.ordinal()]++;
+        }
+    }
+
+    private void finish() {
+        if (total >= 0) {
+            return;
+        }
+        long now = System.nanoTime();
+        total = now - start;
+        if (calls[Phase.AUTH.ordinal()] == 0) {
+            nanos[Phase.AUTH.ordinal()] = total;
+            calls[Phase.AUTH.ordinal()] = 1;
+        }
+        if (serializationStart != 0) {
+            nanos[Phase.SERIALIZATION.ordinal()] = now - serializationStart;
+            calls[Phase.SERIALIZATION.ordinal()] = 1;
+        }
+    }
+
+    /**
+     * @param phase The phase.
+     * @return The time spent in the phase, in milliseconds.
+     */
+    public double millis(Phase phase) {
+        return nanos[phase.ordinal()] / 1_000_000.0;
+    }
+
+    /**
+     * @param phase The phase.
+     * @return How many times the request entered the phase.
+     */
+    public int calls(Phase phase) {
+        return calls[phase.ordinal()];
+    }
+
+    /**
+     * @return The duration of the request, in nanoseconds; only known once it has stopped.
+     */
+    public long totalNanos() {
+        return total;
+    }
+
+    /**
+     * @return The duration of the request, in milliseconds; only known once it has stopped.
+     */
+    public double totalMillis() {
+        return total / 1_000_000.0;
+    }
+
+    /**
+     * Formats the timings as a Server-Timing header value, e.g.
+     * {@code auth;dur=1.204;desc="Authentication", db;dur=0.861;desc="Repositories (3 calls)", total;dur=4.002}.
+     * Phases the request never entered are left out.
+     *
+     * @return The header value.
+     */
+    public String toServerTiming() {
+        StringBuilder header = new StringBuilder(160);
+        for (Phase phase : Phase.values()) {
+            int count = calls(phase);
+            if (count == 0) {
+                continue;
+            }
+            header.append(phase.metric).append(";dur=").append(format(millis(phase)))
+                    .append(";desc=\"").append(phase.description);
+            if (count > 1) {
+                header.append(" (").append(count).append(" calls)");
+            }
+            header.append("\", ");
+        }
+        return header.append("total;dur=").append(format(totalMillis())).toString();
+    }
+
+    private static String format(double millis) {
+        return String.format(Locale.ROOT, "%.3f", millis);
+    }
+}
@@ -0,0 +1,124 @@
+package com.example.microservicesjavaapp.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent identical reads: while a read of a key is in flight, further reads of the same
+ * key wait for it and share its result (or its exception) instead of running the queries again.
+ * Nothing is cached: a key is forgotten as soon as its read completes, so a read that starts afterwards
+ * always runs on its own. A read that joins one already in flight sees the data as of when that one
+ * started, as it would have if it had arrived a moment earlier.
+ *
+ * Results are shared between callers and must not be modified. Every call is counted in
+ * 'singleflight.calls', tagged with the operation and whether it ran ('leader') or joined ('coalesced');
+ * the share of coalesced calls is the coalescing ratio.
+ */
+@Component // Marks this class as a Spring-managed component
+public class SingleFlight {
+
+    private final ConcurrentHashMap<Key, CompletableFuture<Object>> calls = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Key, Mono<Object>> reactiveCalls = new ConcurrentHashMap<>();
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * Creates a SingleFlight with a private meter registry (used by unit tests).
+     */
+    SingleFlight() {
+        this(new SimpleMeterRegistry());
+    }
+
+    /**
+     * Creates a SingleFlight publishing its counters to the given registry.
+     */
+    @Autowired
+    public SingleFlight(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Runs the read, or waits for the identical one in flight and returns its result.
+     *
+     * @param operation The name of the read, e.g. "cart-items".
+     * @param key What the read is about, e.g. the cart ID.
+     * @param read Runs the read in the calling thread.
+     * @return The result of the read.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T execute(String operation, Object key, Supplier<T> read) {
+        Key callKey = new Key(operation, key);
+        CompletableFuture<Object> call = new CompletableFuture<>();
+        CompletableFuture<Object> inFlight = calls.putIfAbsent(callKey, call);
+        if (inFlight != null) {
+            count(operation, "coalesced");
+            try {
+                return (T) inFlight.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException cause ? cause : e;
+            }
+        }
+        count(operation, "leader");
+        T result;
+        try {
+            result = read.get();
+        } catch (RuntimeException | Error e) {
+            calls.remove(callKey, call);
+            call.completeExceptionally(e);
+            throw e;
+        }
+        calls.remove(callKey, call); // Before completing: a read starting from now on must not get this result
+        call.complete(result);
+        return result;
+    }
+
+    /**
+     * Reactive form of execute: subscribers arriving while the read is in flight share its outcome.
+     * The read is cancelled only once every subscriber has cancelled.
+     *
+     * @param operation The name of the read, e.g. "cart-items".
+     * @param key What the read is about, e.g. the cart ID.
+     * @param read Creates the read; only called for the subscriber that starts it.
+     * @return The result of the read.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Mono<T> executeMono(String operation, Object key, Supplier<Mono<T>> read) {
+        return Mono.defer(() -> {
+            Key callKey = new Key(operation, key);
+            boolean[] leader = {false};
+            Mono<Object> call = reactiveCalls.computeIfAbsent(callKey, k -> {
+                leader[0] = true;
+                AtomicReference<Mono<Object>> self = new AtomicReference<>();
+                Mono<Object> shared = Mono.defer(read).cast(Object.class)
+                        .doOnTerminate(() -> reactiveCalls.remove(k, self.get())) // Before the result is emitted
+                        .doOnCancel(() -> reactiveCalls.remove(k, self.get()))
+                        .share();
+                self.set(shared);
+                return shared;
+            });
+            count(operation, leader[0] ? "leader" : "coalesced");
+            return (Mono<T>) call;
+        });
+    }
+
+    private void count(String operation, String role) {
+        Counter.builder("singleflight.calls")
+                .description("Reads run (leader) or served by an identical read in flight (coalesced)")
+                .tag("operation", operation)
+                .tag("role", role)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    private record Key(String operation, Object key) {
+    }
+}
@@ -0,0 +1,328 @@
+package com.example.microservicesjavaapp.service;
+
+import com.example.microservicesjavaapp.model.Cart.CartStatus;
+import com.example.microservicesjavaapp.repository.ProductRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Reserves product stock for cart items without touching the 'products' row on add-to-cart.
+ * Each product has an in-memory counter of its unreserved units (stock less the units in ACTIVE carts),
+ * taken with a compare-and-set loop, so thousands of shoppers racing for one SKU never wait on a lock
+ * and can never take more units than there are.
+ *
+ * A reservation is tied to the transaction that adds the cart item: its units go back if that
+ * transaction rolls back. A release (item removed, cart reaped) only returns its units once its
+ * transaction commits. Checkout leaves the counters alone: the units leave the stock and the ACTIVE
+ * carts at once (see ProductRepository.decrementStockByCartItems).
+ *
+ * The database stays the source of truth. Counters are loaded on a product's first reservation and
+ * reconciled with the database every 'app.stock.reconcile-interval', which picks up restocks and any
+ * change made outside this class.
+ *
+ * The counters are advisory only. They are per process, so instances serving the same database (and
+ * their OrderJobWorkers) can each reserve the same units until the next reconciliation. They keep
+ * add-to-cart fast and turn most oversells away early; the CHECK (stock >= 0) constraint on 'products'
+ * is what guarantees the stock never goes negative, by failing the checkout that would take it there.
+ */
+@Component // Marks this class as a Spring-managed component
+public class StockReservations {
+
+    private static final Logger logger = LoggerFactory.getLogger(StockReservations.class);
+
+    private final Function<Long, Long> loader;
+    private final ConcurrentHashMap<Long, Stock> stocks = new ConcurrentHashMap<>();
+    private final Counter rejected;
+    private final Counter drifted;
+
+    /**
+     * Creates a registry over a fixed source of unreserved stock (used by unit tests and benchmarks).
+     *
+     * @param loader Returns a product's unreserved units, or null if the product does not exist.
+     */
+    StockReservations(Function<Long, Long> loader) {
+        this(loader, new SimpleMeterRegistry());
+    }
+
+    /**
+     * Creates a registry loading and reconciling its counters from the database.
+     *
+     * @param productRepository Computes a product's unreserved units.
+     * @param cartStore Reports the units held by cart lines the database does not see.
+     * @param transactionManager Runs each load in its own read-only transaction.
+     * @param meterRegistry The registry where rejection and drift counters are published.
+     */
+    @Autowired
+    public StockReservations(ProductRepository productRepository,
+                             CartStore cartStore,
+                             PlatformTransactionManager transactionManager,
+                             MeterRegistry meterRegistry) {
+        this(databaseLoader(productRepository, cartStore, transactionManager), meterRegistry);
+    }
+
+    private StockReservations(Function<Long, Long> loader, MeterRegistry meterRegistry) {
+        this.loader = loader;
+        this.rejected = Counter.builder("stock.reservations.rejected")
+                .description("Reservations refused for lack of stock")
+                .register(meterRegistry);
+        this.drifted = Counter.builder("stock.reservations.drifted")
+                .description("Counters corrected by reconciliation with the database")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Starts a set of stock changes that is completed when the current transaction ends.
+     * Outside a transaction, the changes have to be completed by the caller.
+     *
+     * @return The changes of the current transaction.
+     */
+    public StockChanges inTransaction() {
+        StockChanges changes = new StockChanges();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    changes.complete(status == STATUS_COMMITTED);
+                }
+            });
+        }
+        return changes;
+    }
+
+    /**
+     * Starts a set of stock changes the caller completes, e.g. once a reactive transaction has ended.
+     *
+     * @return The new, empty set of changes.
+     */
+    public StockChanges changes() {
+        return new StockChanges();
+    }
+
+    /**
+     * @param productId The ID of the product.
+     * @return Whether the product's counter is already loaded.
+     */
+    public boolean isTracked(Long productId) {
+        return stocks.containsKey(productId);
+    }
+
+    /**
+     * Starts tracking a product with a value read by the caller, e.g. without blocking on the reactive
+     * stack. Ignored if the product is already tracked.
+     *
+     * @param productId The ID of the product.
+     * @param unreserved The product's unreserved units, as read from the database.
+     */
+    public void track(Long productId, long unreserved) {
+        stocks.putIfAbsent(productId, new Stock(unreserved));
+    }
+
+    /**
+     * @param productId The ID of the product.
+     * @return The units of the product currently free to reserve.
+     */
+    public long available(Long productId) {
+        return stock(productId).available.get();
+    }
+
+    /**
+     * Compares every tracked counter with the database and corrects those that drifted.
+     * A counter is only corrected when no change to it was in progress or completed while the database
+     * was read, so a reservation racing with the reconciliation can never be counted twice or lost.
+     *
+     * @return The number of corrected counters.
+     */
+    @Scheduled(fixedDelayString = "${app.stock.reconcile-interval:PT30S}", initialDelayString = "${app.stock.reconcile-interval:PT30S}")
+    public int reconcile() {
+        int corrected = 0;
+        for (Map.Entry<Long, Stock> entry : stocks.entrySet()) {
+            Stock stock = entry.getValue();
+            long version = stock.version.get();
+            if (stock.inFlight.get() != 0) {
+                continue; // Busy: try again next time
+            }
+            long available = stock.available.get();
+            Long expected = loader.apply(entry.getKey());
+            if (expected == null) {
+                stocks.remove(entry.getKey(), stock); // The product is gone
+                continue;
+            }
+            if (expected != available && stock.inFlight.get() == 0 && stock.version.get() == version
+                    && stock.available.compareAndSet(available, expected)) {
+                logger.info("Stock of product {} reconciled: {} units available in memory, {} in the database.",
+                        entry.getKey(), available, expected);
+                drifted.increment();
+                corrected++;
+            }
+        }
+        return corrected;
+    }
+
+    private Stock stock(Long productId) {
+        return stocks.computeIfAbsent(productId, id -> {
+            Long unreserved = loader.apply(id);
+            if (unreserved == null) {
+                throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Product not found");
+            }
+            return new Stock(unreserved);
+        });
+    }
+
+    private static Function<Long, Long> databaseLoader(ProductRepository productRepository,
+                                                       CartStore cartStore,
+                                                       PlatformTransactionManager transactionManager) {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        // A new transaction: a load may run inside the transaction of the first reservation, or after one completed
+        transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        transactionTemplate.setReadOnly(true);
+        return productId -> {
+            Long unreserved = transactionTemplate.execute(status -> productRepository.findUnreservedStock(productId, CartStatus.ACTIVE));
+            return unreserved == null ? null : unreserved - cartStore.unsavedReservedUnits(productId);
+        };
+    }
+
+    /**
+     * Counter of one product. 'inFlight' counts changes begun but not completed and 'version' counts
+     * completed ones; together they tell the reconciliation whether the counter moved while it was reading.
+     */
+    private static final class Stock {
+        private final AtomicLong available;
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicLong version = new AtomicLong();
+
+        private Stock(long available) {
+            this.available = new AtomicLong(available);
+        }
+
+        private boolean tryTake(int units) {
+            long current;
+            do {
+                current = available.get();
+                if (current < units) {
+                    return false;
+                }
+            } while (!available.compareAndSet(current, current - units));
+            return true;
+        }
+    }
+
+    /**
+     * Stock changes made by one unit of work, settled together once its transaction has ended.
+     */
+    public final class StockChanges {
+
+        private record Change(Stock stock, int unitsBackOnCommit, int unitsBackOnRollback) {
+        }
+
+        private final List<Change> changes = new ArrayList<>(2);
+        private final AtomicBoolean completed = new AtomicBoolean();
+
+        private StockChanges() {
+        }
+
+        /**
+         * Takes units off a product's available stock right away.
+         *
+         * @param productId The ID of the product.
+         * @param quantity The number of units to reserve.
+         * @throws ResponseStatusException CONFLICT if fewer units are available.
+         */
+        public void reserve(Long productId, int quantity) {
+            if (!tryReserve(productId, quantity)) {
+                logger.warn("Not enough stock of product {} to reserve {} units.", productId, quantity);
+                throw new ResponseStatusException(HttpStatus.CONFLICT, "Insufficient stock");
+            }
+        }
+
+        /**
+         * Takes units off a product's available stock right away, if there are enough.
+         *
+         * @param productId The ID of the product.
+         * @param quantity The number of units to reserve.
+         * @return false, and nothing taken, if fewer units are available.
+         */
+        public boolean tryReserve(Long productId, int quantity) {
+            Stock stock = stock(productId);
+            stock.inFlight.incrementAndGet();
+            if (!stock.tryTake(quantity)) {
+                stock.inFlight.decrementAndGet();
+                rejected.increment();
+                return false;
+            }
+            changes.add(new Change(stock, 0, quantity));
+            return true;
+        }
+
+        /**
+         * Hands units back to a product's available stock once the transaction commits.
+         * Nothing to do for a product without a counter: it is loaded from the database when next needed.
+         *
+         * @param productId The ID of the product.
+         * @param quantity The number of units to release.
+         */
+        public void release(Long productId, long quantity) {
+            Stock stock = stocks.get(productId);
+            if (stock != null) {
+                stock.inFlight.incrementAndGet();
+                changes.add(new Change(stock, Math.toIntExact(quantity), 0));
+            }
+        }
+
+        /**
+         * Settles the changes: released units come back on commit, reserved units on rollback.
+         * Only the first call has an effect.
+         *
+         * @param committed Whether the transaction that made the changes committed.
+         */
+        public void complete(boolean committed) {
+            if (!completed.compareAndSet(false, true)) {
+                return;
+            }
+            for (Change change : changes) {
+                int units = committed ? change.unitsBackOnCommit() : change.unitsBackOnRollback();
+                if (units > 0) {
+                    change.stock().available.addAndGet(units);
+                }
+                change.stock().version.incrementAndGet();
+                change.stock().inFlight.decrementAndGet();
+            }
+        }
+
+        /**
+         * Completes the changes when a reactive transaction ends: committed if it succeeds, rolled back if
+         * it fails or is cancelled.
+         *
+         * @param transaction The transactional pipeline that made the changes.
+         * @return The same pipeline, completing the changes once it terminates.
+         */
+        public <T> Mono<T> completeAfter(Mono<T> transaction) {
+            return transaction
+                    .doOnSuccess(result -> complete(true))
+                    .doOnError(e -> complete(false))
+                    .doOnCancel(() -> complete(false));
+        }
+    }
+}
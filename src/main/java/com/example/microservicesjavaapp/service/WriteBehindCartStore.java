@@ -0,0 +1,532 @@
+package com.example.microservicesjavaapp.service;
+
+import com.example.microservicesjavaapp.model.Cart;
+import com.example.microservicesjavaapp.model.Cart.CartStatus;
+import com.example.microservicesjavaapp.model.CartItem;
+import com.example.microservicesjavaapp.model.Product;
+import com.example.microservicesjavaapp.repository.CartItemRepository;
+import com.example.microservicesjavaapp.repository.CartRepository;
+import com.example.microservicesjavaapp.repository.ProductQuantity;
+import com.example.microservicesjavaapp.repository.ProductRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Cart store writing the lines of ACTIVE carts behind the request: a change is appended to a
+ * memory-mapped CartJournal and kept in memory as a pending line, and the request commits without
+ * touching 'cart_items'. Reads see the rows of 'cart_items' with the pending lines laid over them.
+ *
+ * Every 'app.cart-store.write-behind.flush-interval' the pending lines are written to 'cart_items',
+ * coalesced (one statement per line, whatever the number of changes it went through) and batched
+ * ('batch-size' carts per transaction). A batch only writes the carts it can lock with SKIP LOCKED: a cart
+ * being checked out, reaped or changed is left for the next run. Once a batch commits, its lines stop
+ * being pending unless they changed meanwhile, and the journal's checkpoint moves past them. Checkout
+ * writes the pending lines of its cart in its own transaction (promote), so the settlement reads them.
+ *
+ * On startup the changes after the checkpoint are read back from the journal and flushed. Records are
+ * absolute quantities, so replaying those a crash kept from being checkpointed changes nothing; records
+ * of carts no longer ACTIVE are dropped. A change whose transaction rolls back is undone with a new
+ * record; a flush running in between may write the undone quantity, which the next flush corrects.
+ *
+ * The running totals in 'carts' are still written by the request, and like the other in-memory engines
+ * this one needs every change of a cart made on one instance. The reactive stack keeps using 'cart_items'.
+ * Selected with 'app.cart-store.engine=write-behind'; the journal is 'app.cart-store.write-behind.journal.path',
+ * with room for 'journal.capacity' records, forced to disk on every change with 'journal.sync'.
+ */
+@Component // Marks this class as a Spring-managed component
+@ConditionalOnProperty(name = "app.cart-store.engine", havingValue = "write-behind")
+public class WriteBehindCartStore implements CartStore, DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(WriteBehindCartStore.class);
+
+    private static final String UPSERT = "MERGE INTO cart_items i "
+            + "USING (VALUES (CAST(? AS BIGINT), CAST(? AS BIGINT), CAST(? AS INTEGER))) AS l (cart_id, product_id, quantity) "
+            + "ON i.cart_id = l.cart_id AND i.product_id = l.product_id "
+            + "WHEN MATCHED THEN UPDATE SET quantity = l.quantity "
+            + "WHEN NOT MATCHED THEN INSERT (cart_id, product_id, quantity) VALUES (l.cart_id, l.product_id, l.quantity)";
+    private static final String DELETE = "DELETE FROM cart_items WHERE cart_id = ? AND product_id = ?";
+
+    private final CartItemRepository cartItemRepository;
+    private final CartRepository cartRepository;
+    private final ProductRepository productRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final CartJournal journal;
+    private final int batchSize;
+    // Lines changed since they were last written, by cart and product. Changed only under the journal's monitor.
+    private final ConcurrentHashMap<Long, ConcurrentHashMap<Long, Pending>> pending = new ConcurrentHashMap<>();
+    // Per product, the units pending lines add to what 'cart_items' holds
+    private final ConcurrentHashMap<Long, AtomicLong> unsavedUnits = new ConcurrentHashMap<>();
+    private final Counter linesFlushed;
+    private final Timer flushTimer;
+
+    public WriteBehindCartStore(CartItemRepository cartItemRepository,
+                                CartRepository cartRepository,
+                                ProductRepository productRepository,
+                                JdbcTemplate jdbcTemplate,
+                                PlatformTransactionManager transactionManager,
+                                MeterRegistry meterRegistry,
+                                @Value("${app.cart-store.write-behind.journal.path:cart-journal.bin}") Path journalPath,
+                                @Value("${app.cart-store.write-behind.journal.capacity:1048576}") int journalCapacity,
+                                @Value("${app.cart-store.write-behind.journal.sync:false}") boolean sync,
+                                @Value("${app.cart-store.write-behind.batch-size:500}") int batchSize) {
+        this.cartItemRepository = cartItemRepository;
+        this.cartRepository = cartRepository;
+        this.productRepository = productRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.journal = new CartJournal(journalPath, journalCapacity, sync);
+        this.batchSize = batchSize;
+        this.linesFlushed = Counter.builder("cart.store.write-behind.flushed")
+                .description("Pending cart lines written to cart_items")
+                .register(meterRegistry);
+        this.flushTimer = Timer.builder("cart.store.write-behind.flush")
+                .description("Duration of a write-behind flush")
+                .register(meterRegistry);
+        Gauge.builder("cart.store.write-behind.pending", this, WriteBehindCartStore::pendingLines)
+                .description("Cart lines changed but not yet written to cart_items")
+                .register(meterRegistry);
+        replay();
+    }
+
+    @Override
+    public Change add(Cart cart, Product product, int quantity) {
+        long cartId = cart.getId();
+        long productId = product.getId();
+        int previousQuantity = currentQuantity(cart, product);
+        int newQuantity = Math.addExact(previousQuantity, quantity);
+        change(cartId, productId, previousQuantity, newQuantity);
+        AfterTransaction.onRollback(() -> change(cartId, productId, newQuantity, previousQuantity));
+        return new Change(null, previousQuantity, newQuantity, lineCount(cart));
+    }
+
+    @Override
+    public Optional<Change> remove(Cart cart, Product product) {
+        long cartId = cart.getId();
+        long productId = product.getId();
+        int previousQuantity = currentQuantity(cart, product);
+        if (previousQuantity == 0) {
+            return Optional.empty();
+        }
+        change(cartId, productId, previousQuantity, 0);
+        AfterTransaction.onRollback(() -> change(cartId, productId, 0, previousQuantity));
+        return Optional.of(new Change(null, previousQuantity, 0, lineCount(cart)));
+    }
+
+    @Override
+    public List<Line> lines(Cart cart) {
+        List<CartItem> saved = cartItemRepository.findWithProductByCart(cart);
+        return overlay(List.of(cart), ignored -> saved).get(cart.getId());
+    }
+
+    @Override
+    public Map<Long, List<Line>> lines(List<Cart> carts) {
+        return overlay(carts, cart -> List.copyOf(cart.getItems()));
+    }
+
+    @Override
+    public boolean hasLines(Cart cart) {
+        return !lines(cart).isEmpty();
+    }
+
+    @Override
+    public void promote(Cart cart) {
+        Map<Long, Pending> lines = pending.get(cart.getId());
+        if (lines == null || lines.isEmpty()) {
+            return;
+        }
+        Map<Long, Map<Long, Pending>> written = Map.of(cart.getId(), Map.copyOf(lines));
+        write(written);
+        AfterTransaction.onCommit(() -> settle(written));
+    }
+
+    @Override
+    public int discard(List<Long> cartIds, StockReservations.StockChanges stock) {
+        Map<Long, Long> released = new HashMap<>();
+        for (ProductQuantity saved : cartItemRepository.sumQuantityByProductForCartIdIn(cartIds)) {
+            released.merge(saved.productId(), saved.quantity(), Long::sum);
+        }
+        int unsavedLines = 0;
+        for (Long cartId : cartIds) {
+            Map<Long, Pending> lines = pending.get(cartId);
+            if (lines == null) {
+                continue;
+            }
+            for (Map.Entry<Long, Pending> line : lines.entrySet()) {
+                released.merge(line.getKey(), (long) line.getValue().unsaved(), Long::sum);
+                if (line.getValue().savedQuantity() == 0 && line.getValue().quantity() > 0) {
+                    unsavedLines++; // A line with no row yet
+                }
+            }
+        }
+        released.forEach((productId, units) -> {
+            if (units > 0) {
+                stock.release(productId, units);
+            }
+        });
+        int discarded = cartItemRepository.deleteByCartIdIn(cartIds) + unsavedLines;
+        AfterTransaction.onCommit(() -> drop(cartIds));
+        return discarded;
+    }
+
+    @Override
+    public long unsavedReservedUnits(long productId) {
+        AtomicLong units = unsavedUnits.get(productId);
+        return units == null ? 0 : units.get();
+    }
+
+    /**
+     * Writes the pending lines on the configured schedule.
+     */
+    @Scheduled(fixedDelayString = "${app.cart-store.write-behind.flush-interval:PT1S}", initialDelayString = "${app.cart-store.write-behind.flush-interval:PT1S}")
+    public void scheduledFlush() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            logger.warn("Write-behind flush failed; its lines stay pending for the next run.", e);
+        }
+    }
+
+    /**
+     * Writes the pending lines of every cart that can be locked to 'cart_items', batch by batch, then moves
+     * the journal's checkpoint past every change now in the database.
+     *
+     * @return The number of lines written.
+     */
+    public int flush() {
+        long start = System.nanoTime();
+        List<Long> cartIds = new ArrayList<>(pending.keySet());
+        int flushed = 0;
+        for (int from = 0; from < cartIds.size(); from += batchSize) {
+            flushed += flushBatch(cartIds.subList(from, Math.min(cartIds.size(), from + batchSize)));
+        }
+        checkpoint();
+        linesFlushed.increment(flushed);
+        flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        if (flushed > 0) {
+            logger.debug("Write-behind flush wrote {} cart lines of {} carts.", flushed, cartIds.size());
+        }
+        return flushed;
+    }
+
+    /**
+     * @return The number of lines changed but not yet written to 'cart_items'.
+     */
+    public int pendingLines() {
+        int lines = 0;
+        for (Map<Long, Pending> cart : pending.values()) {
+            lines += cart.size();
+        }
+        return lines;
+    }
+
+    @Override
+    public void destroy() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            logger.warn("Final write-behind flush failed; the journal keeps the pending lines for the next start.", e);
+        }
+        synchronized (journal) {
+            journal.close();
+        }
+    }
+
+    private int flushBatch(List<Long> cartIds) {
+        List<Long> stale = new ArrayList<>();
+        Map<Long, Map<Long, Pending>> written = transactionTemplate.execute(status -> {
+            Set<Long> active = new HashSet<>(cartRepository.findIdsByIdInAndStatus(cartIds, CartStatus.ACTIVE));
+            cartIds.stream().filter(id -> !active.contains(id)).forEach(stale::add); // Checked out or deleted
+            Map<Long, Map<Long, Pending>> lines = new HashMap<>();
+            if (!active.isEmpty()) {
+                for (Long cartId : cartRepository.lockIdsByStatusSkipLocked(active, CartStatus.ACTIVE.name())) {
+                    Map<Long, Pending> cartLines = pending.get(cartId);
+                    if (cartLines != null && !cartLines.isEmpty()) {
+                        lines.put(cartId, Map.copyOf(cartLines));
+                    }
+                }
+            }
+            write(lines);
+            return lines;
+        });
+        settle(written);
+        drop(stale);
+        return written.values().stream().mapToInt(Map::size).sum();
+    }
+
+    /**
+     * Writes lines to 'cart_items' in the current transaction, upserts and deletes each in one JDBC batch.
+     */
+    private void write(Map<Long, Map<Long, Pending>> lines) {
+        List<Object[]> upserts = new ArrayList<>();
+        List<Object[]> deletes = new ArrayList<>();
+        lines.forEach((cartId, cartLines) -> cartLines.forEach((productId, line) -> {
+            if (line.quantity() > 0) {
+                upserts.add(new Object[]{cartId, productId, line.quantity()});
+            } else {
+                deletes.add(new Object[]{cartId, productId});
+            }
+        }));
+        if (!upserts.isEmpty()) {
+            jdbcTemplate.batchUpdate(UPSERT, upserts);
+        }
+        if (!deletes.isEmpty()) {
+            jdbcTemplate.batchUpdate(DELETE, deletes);
+        }
+    }
+
+    private int currentQuantity(Cart cart, Product product) {
+        Map<Long, Pending> lines = pending.get(cart.getId());
+        Pending line = lines == null ? null : lines.get(product.getId());
+        if (line != null) {
+            return line.quantity();
+        }
+        return cartItemRepository.findByCartAndProduct(cart, product).map(CartItem::getQuantity).orElse(0);
+    }
+
+    /**
+     * Counts the lines of a cart: its rows, plus the pending lines that have none yet, minus the pending
+     * removals of lines that still have one.
+     */
+    private int lineCount(Cart cart) {
+        int count = cartItemRepository.countByCart(cart);
+        Map<Long, Pending> lines = pending.get(cart.getId());
+        if (lines != null) {
+            for (Pending line : lines.values()) {
+                if (line.savedQuantity() == 0 && line.quantity() > 0) {
+                    count++;
+                } else if (line.savedQuantity() > 0 && line.quantity() == 0) {
+                    count--;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Journals a change and makes it pending. Compacts the journal first if it is full.
+     */
+    private void change(long cartId, long productId, int previousQuantity, int quantity) {
+        synchronized (journal) {
+            long sequence = journal.append(cartId, productId, quantity);
+            if (sequence < 0) {
+                compact();
+                sequence = journal.append(cartId, productId, quantity);
+                if (sequence < 0) {
+                    throw new IllegalStateException("The cart journal is full of unflushed lines; raise "
+                            + "app.cart-store.write-behind.journal.capacity or flush more often");
+                }
+            }
+            Map<Long, Pending> lines = pending.get(cartId);
+            Pending old = lines == null ? null : lines.get(productId);
+            put(cartId, productId, new Pending(old == null ? previousQuantity : old.savedQuantity(), quantity, sequence));
+        }
+    }
+
+    /**
+     * Marks written lines as saved: a line that did not change since it was copied stops being pending,
+     * one that did stays pending over its new saved quantity.
+     */
+    private void settle(Map<Long, Map<Long, Pending>> written) {
+        synchronized (journal) {
+            written.forEach((cartId, lines) -> lines.forEach((productId, line) -> {
+                Map<Long, Pending> cartLines = pending.get(cartId);
+                Pending current = cartLines == null ? null : cartLines.get(productId);
+                if (current == null) {
+                    return; // Dropped meanwhile
+                }
+                if (current.sequence() == line.sequence()) {
+                    put(cartId, productId, null);
+                } else {
+                    put(cartId, productId, new Pending(line.quantity(), current.quantity(), current.sequence()));
+                }
+            }));
+        }
+    }
+
+    /**
+     * Forgets the pending lines of carts that were deleted or are no longer ACTIVE.
+     */
+    private void drop(List<Long> cartIds) {
+        synchronized (journal) {
+            for (Long cartId : cartIds) {
+                Map<Long, Pending> lines = pending.get(cartId);
+                if (lines != null) {
+                    new ArrayList<>(lines.keySet()).forEach(productId -> put(cartId, productId, null));
+                }
+            }
+        }
+    }
+
+    /**
+     * Replaces (or removes, with null) a pending line, keeping the unsaved units per product in step.
+     * Called under the journal's monitor.
+     */
+    private void put(long cartId, long productId, Pending line) {
+        ConcurrentHashMap<Long, Pending> lines = pending.computeIfAbsent(cartId, id -> new ConcurrentHashMap<>());
+        Pending old = line == null ? lines.remove(productId) : lines.put(productId, line);
+        long delta = (line == null ? 0 : line.unsaved()) - (old == null ? 0 : old.unsaved());
+        if (delta != 0) {
+            unsavedUnits.computeIfAbsent(productId, id -> new AtomicLong()).addAndGet(delta);
+        }
+        if (lines.isEmpty()) {
+            pending.remove(cartId);
+        }
+    }
+
+    /**
+     * Moves the checkpoint to just before the oldest change still pending.
+     */
+    private void checkpoint() {
+        synchronized (journal) {
+            long oldest = journal.lastSequence() + 1;
+            for (Map<Long, Pending> lines : pending.values()) {
+                for (Pending line : lines.values()) {
+                    oldest = Math.min(oldest, line.sequence());
+                }
+            }
+            journal.checkpoint(oldest - 1);
+        }
+    }
+
+    /**
+     * Rewrites the journal with one record per pending line. Called under the journal's monitor.
+     */
+    private void compact() {
+        List<long[]> keys = new ArrayList<>();
+        List<CartJournal.Entry> lines = new ArrayList<>();
+        pending.forEach((cartId, cartLines) -> cartLines.forEach((productId, line) -> {
+            keys.add(new long[]{cartId, productId});
+            lines.add(new CartJournal.Entry(0, cartId, productId, line.quantity()));
+        }));
+        long[] sequences = journal.compact(lines);
+        for (int i = 0; i < sequences.length; i++) {
+            Pending line = pending.get(keys.get(i)[0]).get(keys.get(i)[1]);
+            put(keys.get(i)[0], keys.get(i)[1], new Pending(line.savedQuantity(), line.quantity(), sequences[i]));
+        }
+        logger.info("Compacted the cart journal to {} pending lines.", sequences.length);
+    }
+
+    /**
+     * Makes the changes read back from the journal pending again, over the quantities 'cart_items' holds,
+     * and writes them.
+     */
+    private void replay() {
+        List<CartJournal.Entry> entries = journal.recovered();
+        if (entries.isEmpty()) {
+            return;
+        }
+        Map<Long, Map<Long, Integer>> saved = new HashMap<>();
+        synchronized (journal) {
+            for (CartJournal.Entry entry : entries) {
+                Map<Long, Integer> cartRows = saved.computeIfAbsent(entry.cartId(), cartId -> {
+                    Map<Long, Integer> rows = new HashMap<>();
+                    jdbcTemplate.query("SELECT product_id, quantity FROM cart_items WHERE cart_id = ?",
+                            row -> {
+                                rows.put(row.getLong(1), row.getInt(2));
+                            }, cartId);
+                    return rows;
+                });
+                put(entry.cartId(), entry.productId(), new Pending(cartRows.getOrDefault(entry.productId(), 0),
+                        entry.quantity(), entry.sequence()));
+            }
+        }
+        logger.info("Replaying {} cart journal records for {} carts.", entries.size(), saved.size());
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            logger.warn("Flushing the replayed cart journal failed; its lines stay pending for the next run.", e);
+        }
+    }
+
+    /**
+     * Lays the pending lines of ACTIVE carts over their saved rows, loading the products of new lines in
+     * one query.
+     */
+    private Map<Long, List<Line>> overlay(List<Cart> carts, Function<Cart, List<CartItem>> savedItems) {
+        Map<Long, List<CartItem>> saved = new HashMap<>(carts.size() * 2);
+        Map<Long, Map<Long, Pending>> changed = new HashMap<>();
+        Set<Long> newProductIds = new HashSet<>();
+        for (Cart cart : carts) {
+            List<CartItem> items = savedItems.apply(cart);
+            saved.put(cart.getId(), items);
+            Map<Long, Pending> lines = cart.getStatus() == CartStatus.ACTIVE ? pending.get(cart.getId()) : null;
+            if (lines == null || lines.isEmpty()) {
+                continue;
+            }
+            Map<Long, Pending> copy = Map.copyOf(lines);
+            changed.put(cart.getId(), copy);
+            Set<Long> savedProductIds = new HashSet<>();
+            items.forEach(item -> savedProductIds.add(item.getProduct().getId()));
+            copy.forEach((productId, line) -> {
+                if (line.quantity() > 0 && !savedProductIds.contains(productId)) {
+                    newProductIds.add(productId);
+                }
+            });
+        }
+        Map<Long, Product> newProducts = new HashMap<>(newProductIds.size() * 2);
+        if (!newProductIds.isEmpty()) {
+            productRepository.findAllById(newProductIds).forEach(product -> newProducts.put(product.getId(), product));
+        }
+
+        Map<Long, List<Line>> result = new HashMap<>(carts.size() * 2);
+        for (Cart cart : carts) {
+            Map<Long, Pending> lines = new HashMap<>(changed.getOrDefault(cart.getId(), Map.of()));
+            List<Line> cartLines = new ArrayList<>();
+            for (CartItem item : saved.get(cart.getId())) {
+                Pending line = lines.remove(item.getProduct().getId());
+                int quantity = line == null ? item.getQuantity() : line.quantity();
+                if (quantity > 0) {
+                    cartLines.add(new Line(item.getId(), item.getProduct(), quantity));
+                }
+            }
+            lines.forEach((productId, line) -> {
+                Product product = newProducts.get(productId);
+                if (line.quantity() > 0 && product != null) { // Skips a product deleted since it was added
+                    cartLines.add(new Line(null, product, line.quantity()));
+                }
+            });
+            result.put(cart.getId(), cartLines);
+        }
+        return result;
+    }
+
+    /**
+     * A line changed since it was last written.
+     *
+     * @param savedQuantity The units 'cart_items' holds for it, 0 if it has no row.
+     * @param quantity The units the cart holds.
+     * @param sequence The journal record of its latest change.
+     */
+    private record Pending(int savedQuantity, int quantity, long sequence) {
+
+        int unsaved() {
+            return quantity - savedQuantity;
+        }
+    }
+}
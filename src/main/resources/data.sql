@@ -5,16 +5,25 @@
 INSERT INTO users (id, username) VALUES (1, 'john_doe');
 INSERT INTO users (id, username) VALUES (2, 'jane_smith');
 INSERT INTO users (id, username) VALUES (3, 'admin_user');
+-- Rows inserted with explicit IDs leave the identity counter behind: move it past them, or the first user
+-- saved by the application would get ID 1 again
+ALTER TABLE users ALTER COLUMN id RESTART WITH 4;
 
 -- Insert initial products
 -- Using ON CONFLICT(id) DO NOTHING for idempotency in case of multiple executions
-INSERT INTO products (id, code, name, price, category) VALUES (101, 'PROD001', 'Laptop', 1200.00, 'Electronics');
-INSERT INTO products (id, code, name, price, category) VALUES (102, 'PROD002', 'Smartphone', 800.00, 'Electronics');
-INSERT INTO products (id, code, name, price, category) VALUES (103, 'PROD003', 'Java Programming Book', 50.00, 'Books');
-INSERT INTO products (id, code, name, price, category) VALUES (104, 'PROD004', 'Coffee Mug', 15.00, 'HomeGoods');
-INSERT INTO products (id, code, name, price, category) VALUES (105, 'PROD005', 'Mechanical Keyboard', 150.00, 'Electronics');
+INSERT INTO products (id, code, name, price, category, stock) VALUES (101, 'PROD001', 'Laptop', 1200.00, 'Electronics', 2500);
+INSERT INTO products (id, code, name, price, category, stock) VALUES (102, 'PROD002', 'Smartphone', 800.00, 'Electronics', 4000);
+INSERT INTO products (id, code, name, price, category, stock) VALUES (103, 'PROD003', 'Java Programming Book', 50.00, 'Books', 10000);
+INSERT INTO products (id, code, name, price, category, stock) VALUES (104, 'PROD004', 'Coffee Mug', 15.00, 'HomeGoods', 20000);
+INSERT INTO products (id, code, name, price, category, stock) VALUES (105, 'PROD005', 'Mechanical Keyboard', 150.00, 'Electronics', 3000);
+ALTER TABLE products ALTER COLUMN id RESTART WITH 106;
 
 -- Insert initial discounts
 INSERT INTO discounts (id, category, percentage) VALUES (1, 'Electronics', 10.00);
 INSERT INTO discounts (id, category, percentage) VALUES (2, 'Books', 5.00);
+ALTER TABLE discounts ALTER COLUMN id RESTART WITH 3;
 -- No discount for 'HomeGoods' category currently, to show scenario where no discount applies.
+
+-- Insert initial discount rules (evaluated together with the category discounts above; the best one wins)
+INSERT INTO discount_rules (product_id, category, min_quantity, percentage) VALUES (101, NULL, 3, 15.00);
+INSERT INTO discount_rules (product_id, category, min_quantity, percentage) VALUES (NULL, 'Books', 10, 12.00);
@@ -15,7 +15,11 @@ CREATE TABLE IF NOT EXISTS products (
     code VARCHAR(255) NOT NULL UNIQUE,
     name VARCHAR(255) NOT NULL,
     price DECIMAL(19, 2) NOT NULL,
-    category VARCHAR(255) NOT NULL
+    category VARCHAR(255) NOT NULL,
+    stock INTEGER DEFAULT 0 NOT NULL, -- Units on hand; decremented at checkout, reservations live in StockReservations
+    -- The only hard guarantee against overselling: the in-memory reservations are per instance, so a checkout
+    -- that would take a product below zero fails here and is retried, instead of leaving a negative stock
+    CONSTRAINT chk_products_stock_non_negative CHECK (stock >= 0)
 );
 
 -- Create DISCOUNTS table
@@ -25,15 +29,40 @@ CREATE TABLE IF NOT EXISTS discounts (
     percentage DECIMAL(19, 2) NOT NULL
 );
 
+-- Create DISCOUNT_RULES table
+-- Product-level, quantity-tiered and time-windowed discounts. DiscountEngine loads them all at once
+-- and compiles them into an in-memory index, so no lookup ever reads this table per cart line.
+CREATE TABLE IF NOT EXISTS discount_rules (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    product_id BIGINT,
+    category VARCHAR(255),
+    min_quantity INTEGER DEFAULT 1 NOT NULL,
+    percentage DECIMAL(19, 2) NOT NULL,
+    valid_from TIMESTAMP(6),
+    valid_until TIMESTAMP(6),
+    CHECK ((product_id IS NULL) <> (category IS NULL)) -- A rule targets either a product or a category
+);
+-- No foreign key on product_id: a rule left behind by a deleted product never matches a cart line.
+
 -- Create CARTS table
 CREATE TABLE IF NOT EXISTS carts (
     id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
     user_id BIGINT NOT NULL,
     created_at TIMESTAMP(6) NOT NULL,
+    updated_at TIMESTAMP(6) NOT NULL,
     status VARCHAR(255) NOT NULL,
+    subtotal DECIMAL(19, 2) DEFAULT 0 NOT NULL, -- Running totals, updated with every item change
+    discounted_total DECIMAL(19, 2) DEFAULT 0 NOT NULL,
+    order_lines CHARACTER LARGE OBJECT, -- Lines as charged at checkout, in the 'order_history' format; null until then
     FOREIGN KEY (user_id) REFERENCES users(id)
 );
 
+-- Serves CartRepository.findWithItemsByUser (prefix) and findByUserAndStatus
+CREATE INDEX IF NOT EXISTS idx_carts_user_status ON carts (user_id, status);
+
+-- Lets the abandoned-cart reaper find idle carts of a given status without scanning the table
+CREATE INDEX IF NOT EXISTS idx_carts_status_updated_at ON carts (status, updated_at);
+
 -- Create CART_ITEMS table
 CREATE TABLE IF NOT EXISTS cart_items (
     id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
@@ -44,3 +73,81 @@ CREATE TABLE IF NOT EXISTS cart_items (
     FOREIGN KEY (cart_id) REFERENCES carts(id),
     FOREIGN KEY (product_id) REFERENCES products(id)
 );
+
+-- No extra index on cart_items(cart_id): the UNIQUE (cart_id, product_id) index has cart_id as its
+-- leading column and already serves findByCart, findByCartAndProduct and deleteByCartIdIn.
+-- H2 indexes the product_id foreign key on its own.
+
+-- Create ORDER_HISTORY table
+-- Append-only archive of processed carts: one denormalized row per order, with its lines stored
+-- compactly in 'order_lines' so history reads never touch the live carts/cart_items tables.
+CREATE TABLE IF NOT EXISTS order_history (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    cart_id BIGINT NOT NULL UNIQUE,
+    user_id BIGINT NOT NULL,
+    created_at TIMESTAMP(6) NOT NULL,
+    processed_at TIMESTAMP(6) NOT NULL,
+    line_count INTEGER NOT NULL,
+    total_amount DECIMAL(19, 2) NOT NULL,
+    order_lines CHARACTER LARGE OBJECT NOT NULL
+);
+
+-- Serves the per-user order history listing, newest first
+CREATE INDEX IF NOT EXISTS idx_order_history_user_processed ON order_history (user_id, processed_at);
+
+-- Create ORDER_JOBS table
+-- Durable queue of checkouts waiting to be processed, shared by every application instance.
+-- Workers claim due jobs with SELECT ... FOR UPDATE SKIP LOCKED and lease them until 'lease_until';
+-- finished jobs are deleted, jobs that keep failing stay behind as DEAD until the cart is checked out again.
+CREATE TABLE IF NOT EXISTS order_jobs (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    cart_id BIGINT NOT NULL UNIQUE, -- At most one job per cart: checking out twice queues it once
+    status VARCHAR(20) NOT NULL,
+    attempts INTEGER DEFAULT 0 NOT NULL,
+    available_at TIMESTAMP(6) NOT NULL, -- Not claimed before this instant (retry backoff)
+    lease_owner VARCHAR(64),
+    lease_until TIMESTAMP(6),
+    last_error VARCHAR(1000),
+    created_at TIMESTAMP(6) NOT NULL
+);
+
+-- Serve the claim queries: due PENDING jobs by available_at, RUNNING jobs by expired lease
+CREATE INDEX IF NOT EXISTS idx_order_jobs_status_available_at ON order_jobs (status, available_at);
+CREATE INDEX IF NOT EXISTS idx_order_jobs_status_lease_until ON order_jobs (status, lease_until);
+
+-- Create OUTBOX_EVENTS table
+-- Cart lifecycle events, written in the same transaction as the change they describe and deleted once
+-- OutboxDispatcher has published them; the identity column gives their publication order.
+CREATE TABLE IF NOT EXISTS outbox_events (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    aggregate_id BIGINT NOT NULL, -- The cart the event is about
+    event_type VARCHAR(40) NOT NULL,
+    payload VARCHAR(4000) NOT NULL, -- JSON
+    created_at TIMESTAMP(6) NOT NULL
+);
+
+-- Create OUTBOX_DISPATCHER table
+-- Its single row is locked by the instance publishing the outbox, so only one instance dispatches at a time
+CREATE TABLE IF NOT EXISTS outbox_dispatcher (
+    id INT PRIMARY KEY
+);
+MERGE INTO outbox_dispatcher (id) KEY (id) VALUES (1);
+
+-- Create CART_EVENTS table
+-- Append-only history of every change to a cart, for audit and replay (see CartHistory): one compact binary
+-- event per change, numbered per cart. No foreign key: the history outlives the reaped and archived carts.
+CREATE TABLE IF NOT EXISTS cart_events (
+    cart_id BIGINT NOT NULL,
+    version BIGINT NOT NULL, -- 1 for the cart's first event
+    payload VARBINARY(64) NOT NULL, -- See CartHistoryCodec
+    PRIMARY KEY (cart_id, version)
+);
+
+-- Create CART_SNAPSHOTS table
+-- The state of a cart every 'app.cart-history.snapshot-interval' events, so a rebuild replays a bounded tail
+CREATE TABLE IF NOT EXISTS cart_snapshots (
+    cart_id BIGINT NOT NULL,
+    version BIGINT NOT NULL, -- The version of the last event the state includes
+    state VARBINARY NOT NULL, -- See CartHistoryCodec
+    PRIMARY KEY (cart_id, version)
+);
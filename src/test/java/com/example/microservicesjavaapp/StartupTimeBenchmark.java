@@ -0,0 +1,154 @@
+package com.example.microservicesjavaapp;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Measures time-to-first-successful-request of a freshly started application.
+ * Each run launches a separate JVM, polls GET /api/carts/user/1 until it answers 200, and records the
+ * elapsed wall-clock time from process start, so JVM boot, context refresh and the first database round
+ * trip are all included.
+ *
+ * The default mode starts the application from the test classpath. When the fast-start layout exists
+ * (mvn -Pfaststart package -DskipTests), it is measured too: Spring AOT initializers, the 'faststart'
+ * profile and the AppCDS archive recorded by the training run.
+ *
+ * Not part of the default build; run with: mvn test -Pbenchmark -Dtest=StartupTimeBenchmark
+ * Tunables: -Dbench.startupRuns (default 3), -Dbench.startup.maxMillis (fails the faststart mode,
+ * or the default mode if there is no faststart build, when its median exceeds this value).
+ */
+@Tag("benchmark")
+public class StartupTimeBenchmark {
+
+    private static final int RUNS = Integer.getInteger("bench.startupRuns", 3);
+    private static final long MAX_MILLIS = Long.getLong("bench.startup.maxMillis", Long.MAX_VALUE);
+    private static final Duration START_TIMEOUT = Duration.ofMinutes(2);
+    private static final Path FASTSTART_DIR = Paths.get("target", "faststart");
+    private static final String AUTHORIZATION = "Basic "
+            + Base64.getEncoder().encodeToString("user:password".getBytes(StandardCharsets.UTF_8));
+
+    private final HttpClient client = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(1))
+            .build();
+
+    @Test
+    void timeToFirstSuccessfulRequest() throws Exception {
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+
+        List<String> defaultCommand = List.of(java,
+                "-cp", System.getProperty("java.class.path"),
+                MicroservicesJavaAppApplication.class.getName());
+        long defaultMedian = measure("default", defaultCommand, new File("."));
+
+        Path fastStartJar = findFastStartJar();
+        long checkedMedian = defaultMedian;
+        if (fastStartJar != null) {
+            List<String> fastStartCommand = List.of(java,
+                    "-XX:SharedArchiveFile=app.jsa",
+                    "-Dspring.aot.enabled=true",
+                    "-Dspring.profiles.active=faststart",
+                    "-jar", fastStartJar.getFileName().toString());
+            checkedMedian = measure("faststart", fastStartCommand, FASTSTART_DIR.toFile());
+            System.out.printf("speedup           : %.2fx%n", (double) defaultMedian / checkedMedian);
+        } else {
+            System.out.println("faststart         : skipped, run 'mvn -Pfaststart package -DskipTests' first");
+        }
+
+        assertTrue(checkedMedian <= MAX_MILLIS,
+                "Median time to first request " + checkedMedian + " ms exceeds " + MAX_MILLIS + " ms");
+    }
+
+    private long measure(String mode, List<String> command, File workingDirectory) throws Exception {
+        long[] samples = new long[RUNS];
+        for (int i = 0; i < RUNS; i++) {
+            samples[i] = timeToFirstRequest(command, workingDirectory);
+        }
+        Arrays.sort(samples);
+        long median = samples[RUNS / 2];
+        System.out.printf("%-18s: median %d ms, runs %s%n", mode, median, Arrays.toString(samples));
+        return median;
+    }
+
+    private long timeToFirstRequest(List<String> command, File workingDirectory) throws Exception {
+        int port = freePort();
+        List<String> args = new ArrayList<>(command);
+        args.add("--server.port=" + port);
+        args.add("--spring.jpa.show-sql=false");
+        args.add("--logging.level.root=WARN");
+        args.add("--logging.level.org.hibernate.SQL=WARN");
+        args.add("--logging.level.org.hibernate.orm.jdbc.bind=WARN");
+        args.add("--app.cart-reaper.enabled=false");
+        args.add("--app.cart-archiver.enabled=false");
+
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/carts/user/1"))
+                .header("Authorization", AUTHORIZATION)
+                .timeout(Duration.ofSeconds(5))
+                .build();
+
+        long start = System.nanoTime();
+        Process process = new ProcessBuilder(args)
+                .directory(workingDirectory)
+                .redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .start();
+        try {
+            long deadline = start + START_TIMEOUT.toNanos();
+            while (System.nanoTime() < deadline) {
+                if (!process.isAlive()) {
+                    throw new IllegalStateException("Application exited with code " + process.exitValue());
+                }
+                try {
+                    if (client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+                        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                    }
+                } catch (IOException e) {
+                    // Not listening yet
+                }
+                Thread.sleep(10);
+            }
+            throw new IllegalStateException("Application did not answer within " + START_TIMEOUT);
+        } finally {
+            process.destroy();
+            if (!process.waitFor(10, TimeUnit.SECONDS)) {
+                process.destroyForcibly().waitFor();
+            }
+        }
+    }
+
+    private static Path findFastStartJar() throws IOException {
+        if (!Files.isRegularFile(FASTSTART_DIR.resolve("app.jsa"))) {
+            return null;
+        }
+        try (var files = Files.list(FASTSTART_DIR)) {
+            return files.filter(path -> path.getFileName().toString().endsWith("-faststart.jar"))
+                    .findFirst()
+                    .orElse(null);
+        }
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
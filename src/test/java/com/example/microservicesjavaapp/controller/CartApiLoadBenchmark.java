@@ -0,0 +1,173 @@
+package com.example.microservicesjavaapp.controller;
+
+import com.example.microservicesjavaapp.MicroservicesJavaAppApplication;
+import com.example.microservicesjavaapp.model.Cart.CartStatus;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Comparative load report for the servlet and the reactive editions of the cart API.
+ * Starts each stack in turn, keeps 'bench.connections' requests in flight over separate connections
+ * (80% item listings, 20% item additions spread over many carts), and prints throughput, latency
+ * percentiles, errors and the peak number of JVM threads while under load.
+ * Every request pays for BCrypt basic authentication on both stacks, as in production.
+ *
+ * Not part of the default build; run with: mvn test -Pbenchmark -Dtest=CartApiLoadBenchmark
+ * Tunables: -Dbench.connections (default 1000), -Dbench.requests (default 1000), -Dbench.carts (default 200).
+ */
+@Tag("benchmark")
+public class CartApiLoadBenchmark {
+
+    private static final int CONNECTIONS = Integer.getInteger("bench.connections", 1000);
+    private static final int REQUESTS = Integer.getInteger("bench.requests", 1000);
+    private static final int CARTS = Integer.getInteger("bench.carts", 200);
+    private static final String[] PRODUCT_CODES = {"PROD001", "PROD002", "PROD003", "PROD004", "PROD005"};
+    private static final String AUTHORIZATION = "Basic "
+            + Base64.getEncoder().encodeToString("user:password".getBytes(StandardCharsets.UTF_8));
+
+    @Test
+    void servletVersusReactive() throws Exception {
+        Report servlet = run("servlet");
+        Report reactive = run("reactive");
+
+        System.out.printf("%n=== Cart API load (%d requests, %d concurrent connections, %d carts) ===%n", REQUESTS, CONNECTIONS, CARTS);
+        System.out.printf("%-20s %12s %12s%n", "", "servlet", "reactive");
+        System.out.printf("%-20s %12.1f %12.1f%n", "throughput (req/s)", servlet.throughput, reactive.throughput);
+        System.out.printf("%-20s %12d %12d%n", "p50 latency (ms)", servlet.p50Millis, reactive.p50Millis);
+        System.out.printf("%-20s %12d %12d%n", "p99 latency (ms)", servlet.p99Millis, reactive.p99Millis);
+        System.out.printf("%-20s %12d %12d%n", "max latency (ms)", servlet.maxMillis, reactive.maxMillis);
+        System.out.printf("%-20s %12d %12d%n", "errors", servlet.errors, reactive.errors);
+        System.out.printf("%-20s %12d %12d%n", "peak JVM threads", servlet.peakThreads, reactive.peakThreads);
+
+        assertEquals(0, servlet.errors);
+        assertEquals(0, reactive.errors);
+    }
+
+    private Report run(String stack) throws Exception {
+        List<String> profiles = new ArrayList<>(List.of("test"));
+        if (stack.equals("reactive")) {
+            profiles.add("reactive");
+        }
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(MicroservicesJavaAppApplication.class)
+                .profiles(profiles.toArray(new String[0]))
+                .run("--server.port=0", // Arguments, so they win over application.properties
+                        "--spring.jpa.show-sql=false",
+                        "--logging.level.root=WARN",
+                        "--logging.level.com.example.microservicesjavaapp=WARN",
+                        "--logging.level.org.hibernate.SQL=WARN",
+                        "--logging.level.org.hibernate.orm.jdbc.bind=WARN",
+                        "--app.cart-reaper.enabled=false",
+                        "--app.cart-archiver.enabled=false",
+                        "--app.rate-limit.enabled=false", // Every virtual client is the same user
+                        "--app.concurrency-limit.enabled=false")) { // Measures the stacks, not the load shedding
+            String baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port") + "/api/carts";
+            long firstCartId = seed(context.getBean(JdbcTemplate.class));
+
+            HttpClient client = HttpClient.newBuilder()
+                    .connectTimeout(Duration.ofSeconds(10))
+                    .build();
+            load(client, baseUrl, firstCartId, Math.min(REQUESTS, 200)); // Warm-up
+
+            ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+            threads.resetPeakThreadCount();
+            Report report = load(client, baseUrl, firstCartId, REQUESTS);
+            report.peakThreads = threads.getPeakThreadCount();
+            return report;
+        }
+    }
+
+    private long seed(JdbcTemplate jdbcTemplate) {
+        Long firstCartId = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) + 1 FROM carts", Long.class);
+        jdbcTemplate.update("INSERT INTO carts (id, user_id, created_at, updated_at, status) "
+                        + "SELECT ? + X - 1, 1, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP, ? FROM SYSTEM_RANGE(1, ?)",
+                firstCartId, CartStatus.ACTIVE.name(), CARTS);
+        jdbcTemplate.update("INSERT INTO cart_items (cart_id, product_id, quantity) "
+                        + "SELECT ? + X - 1, 101, 1 FROM SYSTEM_RANGE(1, ?)",
+                firstCartId, CARTS);
+        jdbcTemplate.execute("ALTER TABLE carts ALTER COLUMN id RESTART WITH " + (firstCartId + CARTS));
+        return firstCartId;
+    }
+
+    private Report load(HttpClient client, String baseUrl, long firstCartId, int requests) throws Exception {
+        Semaphore inFlight = new Semaphore(CONNECTIONS);
+        AtomicLong errors = new AtomicLong();
+        long[] latencies = new long[requests];
+        List<CompletableFuture<?>> pending = new ArrayList<>(requests);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < requests; i++) {
+            inFlight.acquire();
+            int index = i;
+            long sent = System.nanoTime();
+            pending.add(client.sendAsync(request(baseUrl, firstCartId), HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((response, failure) -> {
+                        latencies[index] = System.nanoTime() - sent;
+                        if (failure != null || response.statusCode() >= 300) {
+                            errors.incrementAndGet();
+                        }
+                        inFlight.release();
+                    }));
+        }
+        CompletableFuture.allOf(pending.toArray(new CompletableFuture[0]))
+                .exceptionally(failure -> null)
+                .get(10, TimeUnit.MINUTES);
+        long elapsed = System.nanoTime() - start;
+
+        Arrays.sort(latencies);
+        Report report = new Report();
+        report.throughput = requests / (elapsed / 1_000_000_000.0);
+        report.p50Millis = TimeUnit.NANOSECONDS.toMillis(latencies[requests / 2]);
+        report.p99Millis = TimeUnit.NANOSECONDS.toMillis(latencies[(int) Math.min(requests - 1, Math.ceil(requests * 0.99) - 1)]);
+        report.maxMillis = TimeUnit.NANOSECONDS.toMillis(latencies[requests - 1]);
+        report.errors = errors.get();
+        return report;
+    }
+
+    private HttpRequest request(String baseUrl, long firstCartId) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long cartId = firstCartId + random.nextInt(CARTS);
+        HttpRequest.Builder builder = HttpRequest.newBuilder()
+                .header("Authorization", AUTHORIZATION)
+                .timeout(Duration.ofMinutes(2));
+        if (random.nextInt(10) < 8) {
+            return builder.uri(URI.create(baseUrl + "/" + cartId + "/items")).GET().build();
+        }
+        String body = "{\"productCode\":\"" + PRODUCT_CODES[random.nextInt(PRODUCT_CODES.length)] + "\",\"quantity\":1}";
+        return builder.uri(URI.create(baseUrl + "/" + cartId + "/items"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+    }
+
+    private static final class Report {
+        private double throughput;
+        private long p50Millis;
+        private long p99Millis;
+        private long maxMillis;
+        private long errors;
+        private int peakThreads;
+    }
+}
@@ -1,56 +1,64 @@
 package com.example.microservicesjavaapp.controller;
 
+import com.example.microservicesjavaapp.config.BinaryCodecConfig;
+import com.example.microservicesjavaapp.dto.AddProductRequest;
+import com.example.microservicesjavaapp.dto.CartItemDto;
 import com.example.microservicesjavaapp.model.Cart;
 import com.example.microservicesjavaapp.model.Cart.CartStatus;
 import com.example.microservicesjavaapp.model.CartItem;
 import com.example.microservicesjavaapp.model.User;
 import com.example.microservicesjavaapp.model.Product;
 import com.example.microservicesjavaapp.model.Discount;
+import com.example.microservicesjavaapp.model.DiscountRule;
 import com.example.microservicesjavaapp.repository.CartRepository;
 import com.example.microservicesjavaapp.repository.UserRepository;
 import com.example.microservicesjavaapp.repository.ProductRepository;
 import com.example.microservicesjavaapp.repository.DiscountRepository;
+import com.example.microservicesjavaapp.repository.DiscountRuleRepository;
+import com.example.microservicesjavaapp.repository.OrderHistoryRepository;
+import com.example.microservicesjavaapp.service.CartArchiver;
+import com.example.microservicesjavaapp.service.QueryStatistics;
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
 import org.hamcrest.Matchers;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
-import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.context.ActiveProfiles;
-import org.springframework.test.web.servlet.MockMvc;
-import org.springframework.test.web.servlet.MvcResult;
-import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.test.web.reactive.server.WebTestClient;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 
 import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.is;
-import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
-import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
-import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.httpBasic;
+import static org.hamcrest.Matchers.lessThan;
 import static org.hamcrest.MatcherAssert.assertThat;
 
 
 /**
  * Integration tests for the CartController.
- * These tests use MockMvc to send HTTP requests and verify the responses,
+ * These tests use WebTestClient to send real HTTP requests to the running server and verify the responses,
  * interacting with the full Spring application context and the H2 in-memory database.
  * Basic authentication is applied to all requests as per the SecurityConfig.
+ * ReactiveCartControllerIntegrationTest runs the same tests against the reactive stack.
  */
-@SpringBootTest // Boots up the full Spring application context
-@AutoConfigureMockMvc // Configures MockMvc for testing MVC controllers
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT) // Boots up the full application on a random port
 @ActiveProfiles("test") // Use a 'test' profile if specific test configs are needed (optional)
 public class CartControllerIntegrationTest {
 
     @Autowired
-    private MockMvc mockMvc; // Used to perform HTTP requests
+    private WebTestClient webTestClient; // Used to perform HTTP requests
 
     @Autowired
     private ObjectMapper objectMapper; // Used to convert objects to JSON and vice-versa
@@ -67,6 +75,18 @@ public class CartControllerIntegrationTest {
     @Autowired
     private DiscountRepository discountRepository;
 
+    @Autowired
+    private DiscountRuleRepository discountRuleRepository;
+
+    @Autowired
+    private OrderHistoryRepository orderHistoryRepository;
+
+    @Autowired
+    private CartArchiver cartArchiver;
+
+    @Autowired
+    private QueryStatistics queryStatistics;
+
     private User user1;
     private User user2;
     private Product product1;
@@ -77,39 +97,63 @@ public class CartControllerIntegrationTest {
     private static final String USERNAME = "user";
     private static final String PASSWORD = "password";
 
+    // Most SQL statements a single request may run on each CartController endpoint, so that a lazy-loading
+    // regression fails the build. On the reactive stack requests never reach Hibernate and nothing is counted.
+    // The cart history endpoints have none: they read with plain JDBC, which the Hibernate statistics do not see.
+    private static final StatementBudget STATEMENT_BUDGET = StatementBudget.forPath("/api/carts")
+            .allow("POST /api/carts", 3)
+            .allow("POST /api/carts/{cartId}/items", 8) // Including the count of the cart's lines, for the flight recorder
+            .allow("DELETE /api/carts/{cartId}/items/{productId}", 7) // Same
+            .allow("GET /api/carts/{cartId}/items", 2) // Cart, then its lines with their products, however many lines
+            .allow("GET /api/carts/{cartId}/total", 1)
+            .allow("POST /api/carts/{cartId}/process", 1)
+            .allow("GET /api/carts/user/{userId}", 2) // User, then its carts with their items and products, however many carts
+            .allow("GET /api/carts/user/{userId}/history", 2);
+
     @BeforeEach
     void setup() {
+        queryStatistics.reset();
+
         // Clear all repositories before each test to ensure a clean state
         cartRepository.deleteAll();
         userRepository.deleteAll();
         productRepository.deleteAll();
         discountRepository.deleteAll();
+        discountRuleRepository.deleteAll();
+        orderHistoryRepository.deleteAll();
 
         // Populate initial data for tests
         user1 = userRepository.save(new User(null, "testuser1"));
         user2 = userRepository.save(new User(null, "testuser2"));
 
-        product1 = productRepository.save(new Product(null, "PROD001", "Laptop", new BigDecimal("1200.00"), "Electronics"));
-        product2 = productRepository.save(new Product(null, "PROD002", "Mouse", new BigDecimal("25.00"), "Electronics"));
-        productRepository.save(new Product(null, "PROD003", "Book", new BigDecimal("50.00"), "Books"));
+        product1 = productRepository.save(new Product(null, "PROD001", "Laptop", new BigDecimal("1200.00"), "Electronics", 100));
+        product2 = productRepository.save(new Product(null, "PROD002", "Mouse", new BigDecimal("25.00"), "Electronics", 100));
+        productRepository.save(new Product(null, "PROD003", "Book", new BigDecimal("50.00"), "Books", 100));
 
         electronicsDiscount = discountRepository.save(new Discount(null, "Electronics", new BigDecimal("10.00"))); // 10% discount
     }
 
+    @AfterEach
+    void statementsWithinBudget() {
+        STATEMENT_BUDGET.verify(queryStatistics);
+    }
+
     @Test
     void createCart_Success() throws Exception {
         // Using the new CreateCartRequest DTO structure
         Map<String, Long> requestBody = new HashMap<>();
         requestBody.put("userId", user1.getId());
 
-        mockMvc.perform(post("/api/carts")
-                        .with(httpBasic(USERNAME, PASSWORD)) // Apply basic authentication
-                        .contentType(MediaType.APPLICATION_JSON)
-                        .content(objectMapper.writeValueAsString(requestBody)))
-                .andExpect(status().isCreated()) // Expect HTTP 201 Created
-                .andExpect(jsonPath("$.id").isNumber())
-                .andExpect(jsonPath("$.user.id", is(user1.getId().intValue()))) // Asserting on nested UserDto
-                .andExpect(jsonPath("$.status", is("ACTIVE")));
+        webTestClient.post().uri("/api/carts")
+                .headers(headers -> headers.setBasicAuth(USERNAME, PASSWORD)) // Apply basic authentication
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(objectMapper.writeValueAsString(requestBody))
+                .exchange()
+                .expectStatus().isCreated() // Expect HTTP 201 Created
+                .expectBody()
+                .jsonPath("$.id").isNumber()
+                .jsonPath("$.user.id").value(is(user1.getId().intValue())) // Asserting on nested UserDto
+                .jsonPath("$.status").value(is("ACTIVE"));
     }
 
     @Test
@@ -117,36 +161,40 @@ public class CartControllerIntegrationTest {
         Map<String, Long> requestBody = new HashMap<>();
         requestBody.put("userId", 999L); // Non-existent user ID
 
-        mockMvc.perform(post("/api/carts")
-                        .with(httpBasic(USERNAME, PASSWORD))
-                        .contentType(MediaType.APPLICATION_JSON)
-                        .content(objectMapper.writeValueAsString(requestBody)))
-                .andExpect(status().isNotFound()) // Expect HTTP 404 Not Found
-                .andExpect(jsonPath("$.message", is("User not found")));
+        webTestClient.post().uri("/api/carts")
+                .headers(headers -> headers.setBasicAuth(USERNAME, PASSWORD))
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(objectMapper.writeValueAsString(requestBody))
+                .exchange()
+                .expectStatus().isNotFound() // Expect HTTP 404 Not Found
+                .expectBody()
+                .jsonPath("$.message").value(is("User not found"));
     }
 
     @Test
     void addProductToCart_NewItem_Success() throws Exception {
-        Cart cart = cartRepository.save(new Cart(null, user1, LocalDateTime.now(), null, CartStatus.ACTIVE));
+        Cart cart = cartRepository.save(newCart(user1, CartStatus.ACTIVE));
 
         // Using the new AddProductRequest DTO structure
         Map<String, Object> requestBody = new HashMap<>();
         requestBody.put("productCode", product1.getCode());
         requestBody.put("quantity", 2);
 
-        mockMvc.perform(post("/api/carts/{cartId}/items", cart.getId())
-                        .with(httpBasic(USERNAME, PASSWORD))
-                        .contentType(MediaType.APPLICATION_JSON)
-                        .content(objectMapper.writeValueAsString(requestBody)))
-                .andExpect(status().isOk()) // Expect HTTP 200 OK
-                .andExpect(jsonPath("$.id").isNumber())
-                .andExpect(jsonPath("$.product.code", is(product1.getCode()))) // Asserting on nested ProductDto
-                .andExpect(jsonPath("$.quantity", is(2)));
+        webTestClient.post().uri("/api/carts/{cartId}/items", cart.getId())
+                .headers(headers -> headers.setBasicAuth(USERNAME, PASSWORD))
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(objectMapper.writeValueAsString(requestBody))
+                .exchange()
+                .expectStatus().isOk() // Expect HTTP 200 OK
+                .expectBody()
+                .jsonPath("$.id").isNumber()
+                .jsonPath("$.product.code").value(is(product1.getCode())) // Asserting on nested ProductDto
+                .jsonPath("$.quantity").value(is(2));
     }
 
     @Test
     void addProductToCart_UpdateExistingItem_Success() throws Exception {
-        Cart cart = cartRepository.save(new Cart(null, user1, LocalDateTime.now(), new HashSet<>(), CartStatus.ACTIVE));
+        Cart cart = cartRepository.save(newCart(user1, CartStatus.ACTIVE));
         cart.getItems().add(new CartItem(null, cart, product1, 1));
         cartRepository.save(cart); // Save with existing item
 
@@ -154,12 +202,14 @@ public class CartControllerIntegrationTest {
         requestBody.put("productCode", product1.getCode());
         requestBody.put("quantity", 3);
 
-        mockMvc.perform(post("/api/carts/{cartId}/items", cart.getId())
-                        .with(httpBasic(USERNAME, PASSWORD))
-                        .contentType(MediaType.APPLICATION_JSON)
-                        .content(objectMapper.writeValueAsString(requestBody)))
-                .andExpect(status().isOk())
-                .andExpect(jsonPath("$.quantity", is(4))); // 1 (existing) + 3 (added) = 4
+        webTestClient.post().uri("/api/carts/{cartId}/items", cart.getId())
+                .headers(headers -> headers.setBasicAuth(USERNAME, PASSWORD))
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(objectMapper.writeValueAsString(requestBody))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.quantity").value(is(4)); // 1 (existing) + 3 (added) = 4
     }
 
     @Test
@@ -168,110 +218,370 @@ public class CartControllerIntegrationTest {
         requestBody.put("productCode", product1.getCode());
         requestBody.put("quantity", 1);
 
-        mockMvc.perform(post("/api/carts/{cartId}/items", 999L) // Non-existent cart ID
-                        .with(httpBasic(USERNAME, PASSWORD))
-                        .contentType(MediaType.APPLICATION_JSON)
-                        .content(objectMapper.writeValueAsString(requestBody)))
-                .andExpect(status().isNotFound())
-                .andExpect(jsonPath("$.message", is("Active cart not found or already processed")));
+        webTestClient.post().uri("/api/carts/{cartId}/items", 999L) // Non-existent cart ID
+                .headers(headers -> headers.setBasicAuth(USERNAME, PASSWORD))
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(objectMapper.writeValueAsString(requestBody))
+                .exchange()
+                .expectStatus().isNotFound()
+                .expectBody()
+                .jsonPath("$.message").value(is("Active cart not found or already processed"));
+    }
+
+    @Test
+    void addProductToCart_BeyondStock_ReturnsConflict() throws Exception {
+        Product console = productRepository.save(new Product(null, "PROD009", "Console", new BigDecimal("500.00"), "Electronics", 3));
+        Cart cart1 = cartRepository.save(newCart(user1, CartStatus.ACTIVE));
+        Cart cart2 = cartRepository.save(newCart(user2, CartStatus.ACTIVE));
+
+        addProduct(cart1.getId(), console.getCode(), 2);
+        webTestClient.post().uri("/api/carts/{cartId}/items", cart2.getId())
+                .headers(headers -> headers.setBasicAuth(USERNAME, PASSWORD))
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(objectMapper.writeValueAsString(new AddProductRequest(console.getCode(), 2)))
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.CONFLICT) // Only 1 of the 3 units is left
+                .expectBody()
+                .jsonPath("$.message").value(is("Insufficient stock"));
+        addProduct(cart2.getId(), console.getCode(), 1);
+
+        // Removing the item from the first cart releases its 2 units
+        webTestClient.delete().uri("/api/carts/{cartId}/items/{productId}", cart1.getId(), console.getId())
+                .headers(headers -> headers.setBasicAuth(USERNAME, PASSWORD))
+                .exchange()
+                .expectStatus().isNoContent();
+        addProduct(cart2.getId(), console.getCode(), 2);
     }
 
     @Test
     void removeProductFromCart_Success() throws Exception {
-        Cart cart = cartRepository.save(new Cart(null, user1, LocalDateTime.now(), new HashSet<>(), CartStatus.ACTIVE));
+        Cart cart = cartRepository.save(newCart(user1, CartStatus.ACTIVE));
         CartItem cartItem = new CartItem(null, cart, product1, 2);
         cart.getItems().add(cartItem);
         cartRepository.save(cart); // Ensure cart has the item
 
-        mockMvc.perform(delete("/api/carts/{cartId}/items/{productId}", cart.getId(), product1.getId())
-                        .with(httpBasic(USERNAME, PASSWORD)))
-                .andExpect(status().isNoContent()); // Expect HTTP 204 No Content
+        webTestClient.delete().uri("/api/carts/{cartId}/items/{productId}", cart.getId(), product1.getId())
+                .headers(headers -> headers.setBasicAuth(USERNAME, PASSWORD))
+                .exchange()
+                .expectStatus().isNoContent(); // Expect HTTP 204 No Content
     }
 
     @Test
     void removeProductFromCart_ProductNotInCart_ReturnsNotFound() throws Exception {
-        Cart cart = cartRepository.save(new Cart(null, user1, LocalDateTime.now(), null, CartStatus.ACTIVE));
-
-        mockMvc.perform(delete("/api/carts/{cartId}/items/{productId}", cart.getId(), product1.getId())
-                        .with(httpBasic(USERNAME, PASSWORD)))
-                .andExpect(status().isNotFound())
-                .andExpect(jsonPath("$.message", is("Product not found in cart")));
+        Cart cart = cartRepository.save(newCart(user1, CartStatus.ACTIVE));
+
+        webTestClient.delete().uri("/api/carts/{cartId}/items/{productId}", cart.getId(), product1.getId())
+                .headers(headers -> headers.setBasicAuth(USERNAME, PASSWORD))
+                .exchange()
+                .expectStatus().isNotFound()
+                .expectBody()
+                .jsonPath("$.message").value(is("Product not found in cart"));
     }
 
     @Test
     void getCartProducts_Success() throws Exception {
-        Cart cart = cartRepository.save(new Cart(null, user1, LocalDateTime.now(), new HashSet<>(), CartStatus.ACTIVE));
+        Cart cart = cartRepository.save(newCart(user1, CartStatus.ACTIVE));
         cart.getItems().add(new CartItem(null, cart, product1, 2));
         cart.getItems().add(new CartItem(null, cart, product2, 1));
         cartRepository.save(cart);
 
-        mockMvc.perform(get("/api/carts/{cartId}/items", cart.getId())
-                        .with(httpBasic(USERNAME, PASSWORD)))
-                .andExpect(status().isOk())
-                .andExpect(jsonPath("$", hasSize(2)))
-                .andExpect(jsonPath("$[*].product.id", Matchers.containsInAnyOrder(
+        webTestClient.get().uri("/api/carts/{cartId}/items", cart.getId())
+                .headers(headers -> headers.setBasicAuth(USERNAME, PASSWORD))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$").value(hasSize(2))
+                .jsonPath("$[*].product.id").value(Matchers.containsInAnyOrder(
                         product1.getId().intValue(),
                         product2.getId().intValue()
-                ))); // Asserting on nested ProductDto
+                )); // Asserting on nested ProductDto
+    }
+
+    @Test
+    void getCartProducts_Cbor_SameItemsAsJson() throws Exception {
+        Cart cart = cartRepository.save(newCart(user1, CartStatus.ACTIVE));
+        cart.getItems().add(new CartItem(null, cart, product1, 2));
+        cart.getItems().add(new CartItem(null, cart, product2, 1));
+        cartRepository.save(cart);
+
+        byte[] json = webTestClient.get().uri("/api/carts/{cartId}/items", cart.getId())
+                .headers(headers -> headers.setBasicAuth(USERNAME, PASSWORD))
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType(MediaType.APPLICATION_JSON) // JSON stays the default
+                .expectBody(byte[].class).returnResult().getResponseBody();
+        byte[] cbor = webTestClient.get().uri("/api/carts/{cartId}/items", cart.getId())
+                .headers(headers -> headers.setBasicAuth(USERNAME, PASSWORD))
+                .accept(MediaType.APPLICATION_CBOR)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType(MediaType.APPLICATION_CBOR)
+                .expectBody(byte[].class).returnResult().getResponseBody();
+
+        TypeReference<Set<CartItemDto>> items = new TypeReference<>() {};
+        Set<CartItemDto> fromCbor = new ObjectMapper(new CBORFactory()).readValue(cbor, items);
+        assertThat(fromCbor, hasSize(2));
+        assertThat(fromCbor, is(objectMapper.readValue(json, items)));
+        assertThat(cbor.length, lessThan(json.length));
+    }
+
+    @Test
+    void addProductToCart_Smile_RequestAndResponse() throws Exception {
+        Cart cart = cartRepository.save(newCart(user1, CartStatus.ACTIVE));
+        ObjectMapper smileMapper = new ObjectMapper(new SmileFactory());
+
+        byte[] response = webTestClient.post().uri("/api/carts/{cartId}/items", cart.getId())
+                .headers(headers -> headers.setBasicAuth(USERNAME, PASSWORD))
+                .contentType(BinaryCodecConfig.APPLICATION_SMILE)
+                .accept(BinaryCodecConfig.APPLICATION_SMILE)
+                .bodyValue(smileMapper.writeValueAsBytes(new AddProductRequest(product2.getCode(), 3)))
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType(BinaryCodecConfig.APPLICATION_SMILE)
+                .expectBody(byte[].class).returnResult().getResponseBody();
+
+        CartItemDto item = smileMapper.readValue(response, CartItemDto.class);
+        assertThat(item.getProduct().getCode(), is(product2.getCode()));
+        assertThat(item.getProduct().getPrice(), Matchers.comparesEqualTo(product2.getPrice()));
+        assertThat(item.getQuantity(), is(3));
     }
 
     @Test
     void getCartProducts_CartNotFound_ReturnsNotFound() throws Exception {
-        mockMvc.perform(get("/api/carts/{cartId}/items", 999L)
-                        .with(httpBasic(USERNAME, PASSWORD)))
-                .andExpect(status().isNotFound())
-                .andExpect(jsonPath("$.message", is("Cart not found")));
+        webTestClient.get().uri("/api/carts/{cartId}/items", 999L)
+                .headers(headers -> headers.setBasicAuth(USERNAME, PASSWORD))
+                .exchange()
+                .expectStatus().isNotFound()
+                .expectBody()
+                .jsonPath("$.message").value(is("Cart not found"));
+    }
+
+    @Test
+    void getCartTotal_FollowsItemChanges() throws Exception {
+        Cart cart = cartRepository.save(newCart(user1, CartStatus.ACTIVE));
+
+        addProduct(cart.getId(), product1.getCode(), 2);
+        addProduct(cart.getId(), product2.getCode(), 1);
+
+        webTestClient.get().uri("/api/carts/{cartId}/total", cart.getId())
+                .headers(headers -> headers.setBasicAuth(USERNAME, PASSWORD))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.cartId").value(is(cart.getId().intValue()))
+                .jsonPath("$.subtotal").value(is(2425.00)) // 2 x 1200.00 + 25.00
+                .jsonPath("$.discountedTotal").value(is(2182.50)); // Less 10% on Electronics
+
+        webTestClient.delete().uri("/api/carts/{cartId}/items/{productId}", cart.getId(), product1.getId())
+                .headers(headers -> headers.setBasicAuth(USERNAME, PASSWORD))
+                .exchange()
+                .expectStatus().isNoContent();
+
+        webTestClient.get().uri("/api/carts/{cartId}/total", cart.getId())
+                .headers(headers -> headers.setBasicAuth(USERNAME, PASSWORD))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.subtotal").value(is(25.00))
+                .jsonPath("$.discountedTotal").value(is(22.50));
+    }
+
+    @Test
+    void getCartTotal_AppliesProductQuantityTier() throws Exception {
+        // 20% off laptops from 3 units; below that the 10% Electronics discount still applies
+        discountRuleRepository.save(new DiscountRule(null, product1.getId(), null, 3, new BigDecimal("20.00"), null, null));
+        Cart cart = cartRepository.save(newCart(user1, CartStatus.ACTIVE));
+
+        addProduct(cart.getId(), product1.getCode(), 2);
+        addProduct(cart.getId(), product1.getCode(), 1);
+
+        webTestClient.get().uri("/api/carts/{cartId}/total", cart.getId())
+                .headers(headers -> headers.setBasicAuth(USERNAME, PASSWORD))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.subtotal").value(is(3600.00)) // 3 x 1200.00
+                .jsonPath("$.discountedTotal").value(is(2880.00)); // The whole line moved to the 20% tier
+    }
+
+    @Test
+    void getCartTotal_CartNotFound_ReturnsNotFound() throws Exception {
+        webTestClient.get().uri("/api/carts/{cartId}/total", 999L)
+                .headers(headers -> headers.setBasicAuth(USERNAME, PASSWORD))
+                .exchange()
+                .expectStatus().isNotFound()
+                .expectBody()
+                .jsonPath("$.message").value(is("Cart not found"));
     }
 
     @Test
     void processCart_Success() throws Exception {
-        Cart cart = cartRepository.save(new Cart(null, user1, LocalDateTime.now(), new HashSet<>(), CartStatus.ACTIVE));
+        Cart cart = cartRepository.save(newCart(user1, CartStatus.ACTIVE));
         cart.getItems().add(new CartItem(null, cart, product1, 1)); // Add an item to make processing meaningful
         cartRepository.save(cart);
 
-        mockMvc.perform(post("/api/carts/{cartId}/process", cart.getId())
-                        .with(httpBasic(USERNAME, PASSWORD)))
-                .andExpect(status().isAccepted()) // Expect HTTP 202 Accepted
-                .andExpect(content().string("Estamos procesando su orden"));
+        webTestClient.post().uri("/api/carts/{cartId}/process", cart.getId())
+                .headers(headers -> headers.setBasicAuth(USERNAME, PASSWORD))
+                .exchange()
+                .expectStatus().isAccepted() // Expect HTTP 202 Accepted
+                .expectBody(String.class).isEqualTo("Estamos procesando su orden");
 
-        // Verify cart status changed to PROCESSED after some delay (async operation)
-        Thread.sleep(3000); // Wait longer than the simulated delay in CartService
-        Cart processedCart = cartRepository.findById(cart.getId()).orElseThrow();
-        assertThat(processedCart.getStatus(), is(CartStatus.PROCESSED));
+        // Verify cart status changed to PROCESSED once a worker has picked up the queued job
+        assertThat(awaitProcessing(cart.getId()).getStatus(), is(CartStatus.PROCESSED));
+        assertThat(productRepository.findById(product1.getId()).orElseThrow().getStock(), is(99)); // The sold unit left the stock
     }
 
     @Test
     void getCartsByUserId_Success() throws Exception {
-        Cart cart1 = cartRepository.save(new Cart(null, user1, LocalDateTime.now(), null, CartStatus.ACTIVE));
-        Cart cart2 = cartRepository.save(new Cart(null, user1, LocalDateTime.now(), null, CartStatus.PROCESSED));
-        cartRepository.save(new Cart(null, user2, LocalDateTime.now(), null, CartStatus.ACTIVE)); // Cart for another user
-
-        mockMvc.perform(get("/api/carts/user/{userId}", user1.getId())
-                        .with(httpBasic(USERNAME, PASSWORD)))
-                .andExpect(status().isOk())
-                .andExpect(jsonPath("$", hasSize(2)))
-                .andExpect(jsonPath("$[0].user.id", is(user1.getId().intValue()))) // Asserting on nested UserDto
-                .andExpect(jsonPath("$[1].user.id", is(user1.getId().intValue())));
+        Cart cart1 = cartRepository.save(newCart(user1, CartStatus.ACTIVE));
+        Cart cart2 = cartRepository.save(newCart(user1, CartStatus.PROCESSED));
+        cartRepository.save(newCart(user2, CartStatus.ACTIVE)); // Cart for another user
+
+        webTestClient.get().uri("/api/carts/user/{userId}", user1.getId())
+                .headers(headers -> headers.setBasicAuth(USERNAME, PASSWORD))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$").value(hasSize(2))
+                .jsonPath("$[0].user.id").value(is(user1.getId().intValue())) // Asserting on nested UserDto
+                .jsonPath("$[1].user.id").value(is(user1.getId().intValue()));
     }
 
     @Test
     void getCartsByUserId_UserNotFound_ReturnsNotFound() throws Exception {
-        mockMvc.perform(get("/api/carts/user/{userId}", 999L)
-                        .with(httpBasic(USERNAME, PASSWORD)))
-                .andExpect(status().isNotFound())
-                .andExpect(jsonPath("$.message", is("User not found")));
+        webTestClient.get().uri("/api/carts/user/{userId}", 999L)
+                .headers(headers -> headers.setBasicAuth(USERNAME, PASSWORD))
+                .exchange()
+                .expectStatus().isNotFound()
+                .expectBody()
+                .jsonPath("$.message").value(is("User not found"));
+    }
+
+    @Test
+    void getOrderHistory_ServesArchivedCarts() throws Exception {
+        Cart cart = cartRepository.save(newCart(user1, CartStatus.ACTIVE));
+        addProduct(cart.getId(), "PROD001", 2); // 2 x 1200.00 with 10% off
+        addProduct(cart.getId(), "PROD002", 1); // 1 x 25.00 with 10% off
+        webTestClient.post().uri("/api/carts/{cartId}/process", cart.getId())
+                .headers(headers -> headers.setBasicAuth(USERNAME, PASSWORD))
+                .exchange()
+                .expectStatus().isAccepted();
+        assertThat(awaitProcessing(cart.getId()).getStatus(), is(CartStatus.PROCESSED));
+        Cart active = cartRepository.save(newCart(user1, CartStatus.ACTIVE));
+
+        // Prices and discounts change after checkout: the history keeps what was charged
+        Product laptop = productRepository.findById(product1.getId()).orElseThrow();
+        laptop.setPrice(new BigDecimal("1500.00"));
+        productRepository.save(laptop);
+        discountRepository.delete(electronicsDiscount);
+
+        cartArchiver.archive(LocalDateTime.now().plusMinutes(1));
+
+        webTestClient.get().uri("/api/carts/user/{userId}/history", user1.getId())
+                .headers(headers -> headers.setBasicAuth(USERNAME, PASSWORD))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$").value(hasSize(1))
+                .jsonPath("$[0].cartId").value(is(cart.getId().intValue()))
+                .jsonPath("$[0].totalAmount").value(is(2182.5))
+                .jsonPath("$[0].lines").value(hasSize(2))
+                .jsonPath("$[0].lines[0].productCode").value(is("PROD001"))
+                .jsonPath("$[0].lines[0].unitPrice").value(is(1200.0));
+
+        // The archived cart left the live tables; the active one stayed
+        webTestClient.get().uri("/api/carts/user/{userId}", user1.getId())
+                .headers(headers -> headers.setBasicAuth(USERNAME, PASSWORD))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$").value(hasSize(1))
+                .jsonPath("$[0].id").value(is(active.getId().intValue()));
+    }
+
+    @Test
+    void cartHistory_ListsTheChangesAndReplaysAnyVersion() throws Exception {
+        Cart cart = cartRepository.save(newCart(user1, CartStatus.ACTIVE));
+        addProduct(cart.getId(), product1.getCode(), 2);
+        addProduct(cart.getId(), product2.getCode(), 1);
+        webTestClient.delete().uri("/api/carts/{cartId}/items/{productId}", cart.getId(), product2.getId())
+                .headers(headers -> headers.setBasicAuth(USERNAME, PASSWORD))
+                .exchange()
+                .expectStatus().isNoContent();
+
+        webTestClient.get().uri("/api/carts/{cartId}/history", cart.getId())
+                .headers(headers -> headers.setBasicAuth(USERNAME, PASSWORD))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$").value(hasSize(3))
+                .jsonPath("$[*].type").value(Matchers.contains("CART_ITEM_ADDED", "CART_ITEM_ADDED", "CART_ITEM_REMOVED"))
+                .jsonPath("$[2].productId").value(is(product2.getId().intValue()))
+                .jsonPath("$[2].quantity").value(is(0));
+
+        webTestClient.get().uri("/api/carts/{cartId}/history/{version}", cart.getId(), 2)
+                .headers(headers -> headers.setBasicAuth(USERNAME, PASSWORD))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.version").value(is(2))
+                .jsonPath("$.status").value(is("ACTIVE"))
+                .jsonPath("$.lines").value(hasSize(2))
+                .jsonPath("$.subtotal").value(is(2425.00)) // 2 x 1200.00 + 25.00
+                .jsonPath("$.discountedTotal").value(is(2182.50)); // Less 10% on Electronics
+
+        webTestClient.get().uri("/api/carts/{cartId}/history/{version}", cart.getId(), 4)
+                .headers(headers -> headers.setBasicAuth(USERNAME, PASSWORD))
+                .exchange()
+                .expectStatus().isNotFound()
+                .expectBody()
+                .jsonPath("$.message").value(is("Cart version not found"));
     }
 
     @Test
     void accessWithoutAuthentication_ReturnsUnauthorized() throws Exception {
-        mockMvc.perform(get("/api/carts/user/1"))
-                .andExpect(status().isUnauthorized()); // Expect HTTP 401 Unauthorized
+        webTestClient.get().uri("/api/carts/user/1")
+                .exchange()
+                .expectStatus().isUnauthorized(); // Expect HTTP 401 Unauthorized
     }
 
     @Test
     void accessWithInvalidAuthentication_ReturnsUnauthorized() throws Exception {
-        mockMvc.perform(get("/api/carts/user/1")
-                        .with(httpBasic("wronguser", "wrongpass")))
-                .andExpect(status().isUnauthorized());
+        webTestClient.get().uri("/api/carts/user/1")
+                .headers(headers -> headers.setBasicAuth("wronguser", "wrongpass"))
+                .exchange()
+                .expectStatus().isUnauthorized();
+    }
+
+    private void addProduct(Long cartId, String productCode, int quantity) throws Exception {
+        webTestClient.post().uri("/api/carts/{cartId}/items", cartId)
+                .headers(headers -> headers.setBasicAuth(USERNAME, PASSWORD))
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(objectMapper.writeValueAsString(new AddProductRequest(productCode, quantity)))
+                .exchange()
+                .expectStatus().isOk();
+    }
+
+    /**
+     * Waits up to 10 seconds for a worker to pick up the cart's queued job and process the cart.
+     *
+     * @return The cart as it is once processed, or at the deadline.
+     */
+    private Cart awaitProcessing(Long cartId) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        Cart cart = cartRepository.findById(cartId).orElseThrow();
+        while (cart.getStatus() != CartStatus.PROCESSED && System.currentTimeMillis() < deadline) {
+            Thread.sleep(100);
+            cart = cartRepository.findById(cartId).orElseThrow();
+        }
+        return cart;
+    }
+
+    /**
+     * A cart with no lines and no running totals yet, last modified when it was created.
+     */
+    private static Cart newCart(User user, CartStatus status) {
+        LocalDateTime now = LocalDateTime.now();
+        return new Cart(null, user, now, now, new HashSet<>(), status, BigDecimal.ZERO, BigDecimal.ZERO, null);
     }
 }
@@ -0,0 +1,154 @@
+package com.example.microservicesjavaapp.controller;
+
+import com.example.microservicesjavaapp.model.User;
+import com.example.microservicesjavaapp.repository.CartRepository;
+import com.example.microservicesjavaapp.repository.UserRepository;
+import com.example.microservicesjavaapp.service.ConcurrencyLimiter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.EntityExchangeResult;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Integration tests for the adaptive concurrency limit of the servlet stack.
+ * The DataSource is wrapped so that every connection can be made to take 'latencyMillis' to obtain,
+ * standing in for a slow database. The reactive stack reads through R2DBC, which the wrapper cannot slow
+ * down, so it is only covered by ConcurrencyLimiterTest.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, // Boots up the full application on a random port
+        properties = {"app.concurrency-limit.initial-limit=8", "app.concurrency-limit.min-limit=2",
+                "app.concurrency-limit.window=PT0.2S", "app.concurrency-limit.min-window-samples=5"})
+@ActiveProfiles("test")
+public class ConcurrencyLimitIntegrationTest {
+
+    private static final String USERNAME = "user";
+    private static final String PASSWORD = "password";
+    private static final int CLIENTS = 24;
+
+    private static volatile long latencyMillis;
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @Autowired
+    private CartRepository cartRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ConcurrencyLimiter concurrencyLimiter;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    /**
+     * Wraps the application's DataSource with one that waits 'latencyMillis' before every connection.
+     */
+    @TestConfiguration
+    static class LatencyInjection {
+
+        @Bean
+        static BeanPostProcessor latencyInjectingDataSource() {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    if (!(bean instanceof DataSource dataSource)) {
+                        return bean;
+                    }
+                    return new DelegatingDataSource(dataSource) {
+                        @Override
+                        public Connection getConnection() throws SQLException {
+                            if (latencyMillis > 0) {
+                                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(latencyMillis));
+                            }
+                            return super.getConnection();
+                        }
+                    };
+                }
+            };
+        }
+    }
+
+    @AfterEach
+    void removeLatency() {
+        latencyMillis = 0;
+    }
+
+    @Test
+    void slowDatabase_ShrinksLimitAndShedsExcessRequests() throws Exception {
+        cartRepository.deleteAll();
+        userRepository.deleteAll();
+        User user = userRepository.save(new User(null, "concurrent"));
+
+        // Baseline: one request at a time, which teaches the limiter the normal latency without moving the limit
+        for (int i = 0; i < 100; i++) {
+            getCarts(user);
+        }
+        Thread.sleep(250); // Let the last baseline window end
+        getCarts(user);
+        assertEquals(8, (int) concurrencyLimiter.limit());
+
+        latencyMillis = 100;
+        List<EntityExchangeResult<String>> results = new ArrayList<>();
+        ExecutorService clients = Executors.newFixedThreadPool(CLIENTS);
+        try {
+            long loadEnd = System.nanoTime() + TimeUnit.SECONDS.toNanos(2); // About ten windows
+            while (System.nanoTime() < loadEnd) {
+                List<Future<EntityExchangeResult<String>>> futures = new ArrayList<>();
+                for (int i = 0; i < CLIENTS; i++) {
+                    futures.add(clients.submit(() -> getCarts(user)));
+                }
+                for (Future<EntityExchangeResult<String>> future : futures) {
+                    results.add(future.get());
+                }
+            }
+        } finally {
+            clients.shutdown();
+        }
+
+        List<EntityExchangeResult<String>> shed = results.stream()
+                .filter(result -> result.getStatus() == HttpStatus.SERVICE_UNAVAILABLE)
+                .toList();
+        assertThat(shed.size(), greaterThan(0));
+        assertEquals("1", shed.get(0).getResponseHeaders().getFirst("Retry-After"));
+        assertThat(shed.get(0).getResponseBody(), containsString("Server busy, please retry shortly"));
+        assertThat(concurrencyLimiter.limit(), lessThan(8.0));
+        assertEquals(shed.size(), (int) meterRegistry.get("concurrency.limit.rejected").tag("priority", "high").counter().count());
+        assertEquals(0, concurrencyLimiter.inFlight());
+    }
+
+    private EntityExchangeResult<String> getCarts(User user) {
+        return webTestClient.get().uri("/api/carts/user/{userId}", user.getId())
+                .headers(headers -> headers.setBasicAuth(USERNAME, PASSWORD))
+                .exchange()
+                .expectBody(String.class)
+                .returnResult();
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.microservicesjavaapp.controller;
+
+import com.example.microservicesjavaapp.model.Product;
+import com.example.microservicesjavaapp.model.User;
+import com.example.microservicesjavaapp.repository.ProductRepository;
+import com.example.microservicesjavaapp.repository.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Integration tests for the connection hold time of the servlet stack. Open-session-in-view is off, so a
+ * read holds a connection only for its queries, and its fetch plan loads everything it serializes.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT) // Boots up the full application on a random port
+@ActiveProfiles("test")
+public class ConnectionHoldIntegrationTest {
+
+    private static final String USERNAME = "user";
+    private static final String PASSWORD = "password";
+    private static final String[][] ENDPOINTS = {{"POST", "/api/carts"}, {"POST", "/api/carts/{cartId}/items"}, {"GET", "/api/carts/user/{userId}"}};
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Test
+    void cartRequests_RecordTheirConnectionHoldTimePerEndpoint() {
+        Long userId = userRepository.save(new User(null, "hold_user")).getId();
+        productRepository.save(new Product(null, "HOLD001", "Monitor", new BigDecimal("300.00"), "Electronics", 10));
+        long[] before = new long[ENDPOINTS.length];
+        for (int i = 0; i < ENDPOINTS.length; i++) {
+            before[i] = hold(ENDPOINTS[i]).count(); // The context may be shared with other tests
+        }
+
+        Long cartId = ((Number) webTestClient.post().uri("/api/carts")
+                .headers(headers -> headers.setBasicAuth(USERNAME, PASSWORD))
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(Map.of("userId", userId))
+                .exchange()
+                .expectStatus().isCreated()
+                .expectBody(Map.class).returnResult().getResponseBody().get("id")).longValue();
+        webTestClient.post().uri("/api/carts/{cartId}/items", cartId)
+                .headers(headers -> headers.setBasicAuth(USERNAME, PASSWORD))
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(Map.of("productCode", "HOLD001", "quantity", 1))
+                .exchange()
+                .expectStatus().isOk();
+
+        webTestClient.get().uri("/api/carts/user/{userId}", userId)
+                .headers(headers -> headers.setBasicAuth(USERNAME, PASSWORD))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$[0].items[0].product.code").value(is("HOLD001")); // Loaded by the fetch plan, not while serializing
+
+        for (int i = 0; i < ENDPOINTS.length; i++) {
+            Timer hold = hold(ENDPOINTS[i]);
+            String endpoint = ENDPOINTS[i][0] + " " + ENDPOINTS[i][1];
+            assertEquals(before[i] + 1, hold.count(), endpoint);
+            assertTrue(hold.max(TimeUnit.NANOSECONDS) > 0, endpoint); // Every one of them queried the database
+        }
+    }
+
+    private Timer hold(String[] endpoint) {
+        return meterRegistry.timer("http.server.requests.connection.hold", "method", endpoint[0], "uri", endpoint[1]);
+    }
+}
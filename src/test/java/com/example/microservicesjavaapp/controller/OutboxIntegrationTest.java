@@ -0,0 +1,136 @@
+package com.example.microservicesjavaapp.controller;
+
+import com.example.microservicesjavaapp.dto.CartEventDto;
+import com.example.microservicesjavaapp.model.OutboxEvent;
+import com.example.microservicesjavaapp.model.OutboxEvent.EventType;
+import com.example.microservicesjavaapp.model.Product;
+import com.example.microservicesjavaapp.model.User;
+import com.example.microservicesjavaapp.repository.CartRepository;
+import com.example.microservicesjavaapp.repository.OutboxEventRepository;
+import com.example.microservicesjavaapp.repository.ProductRepository;
+import com.example.microservicesjavaapp.repository.UserRepository;
+import com.example.microservicesjavaapp.service.InMemoryOutboxSink;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Integration tests for the transactional outbox: cart changes made through the API must reach the
+ * sink as events, once, in the order they happened, and changes that fail must leave no event.
+ * ReactiveOutboxIntegrationTest runs the same tests against the reactive stack.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = "app.outbox.poll-interval=PT0.1S")
+@ActiveProfiles("test")
+public class OutboxIntegrationTest {
+
+    private static final String USERNAME = "user";
+    private static final String PASSWORD = "password";
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private CartRepository cartRepository;
+
+    @Autowired
+    private OutboxEventRepository outboxEventRepository;
+
+    @Autowired
+    private InMemoryOutboxSink sink;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private User user;
+    private Product product;
+
+    @BeforeEach
+    void setup() {
+        cartRepository.deleteAll();
+        userRepository.deleteAll();
+        user = userRepository.save(new User(null, "outbox-user"));
+        product = productRepository.save(new Product(null, "OUTBOX" + System.nanoTime(), "Keyboard", new BigDecimal("40.00"), "Electronics", 10));
+    }
+
+    @Test
+    void cartLifecycle_PublishesOneEventPerCommittedChangeInOrder() throws Exception {
+        Long cartId = ((Number) webTestClient.post().uri("/api/carts")
+                .headers(headers -> headers.setBasicAuth(USERNAME, PASSWORD))
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(Map.of("userId", user.getId()))
+                .exchange()
+                .expectStatus().isCreated()
+                .expectBody(Map.class).returnResult().getResponseBody().get("id")).longValue();
+
+        addProduct(cartId, 2).expectStatus().isOk();
+        addProduct(cartId, 1000).expectStatus().isEqualTo(409); // Rolled back: no event
+        webTestClient.delete().uri("/api/carts/{cartId}/items/{productId}", cartId, product.getId())
+                .headers(headers -> headers.setBasicAuth(USERNAME, PASSWORD))
+                .exchange()
+                .expectStatus().is2xxSuccessful();
+        addProduct(cartId, 1).expectStatus().isOk();
+        webTestClient.post().uri("/api/carts/{cartId}/process", cartId)
+                .headers(headers -> headers.setBasicAuth(USERNAME, PASSWORD))
+                .exchange()
+                .expectStatus().isAccepted();
+
+        long deadline = System.currentTimeMillis() + 15_000;
+        while ((!eventTypes(cartId).contains(EventType.CART_PROCESSED) || outboxEventRepository.count() > 0)
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(100);
+        }
+
+        assertEquals(List.of(EventType.CART_CREATED, EventType.CART_ITEM_ADDED, EventType.CART_ITEM_REMOVED,
+                EventType.CART_ITEM_ADDED, EventType.CART_PROCESSED), eventTypes(cartId));
+        assertEquals(0, outboxEventRepository.count()); // Published events leave the outbox
+
+        List<OutboxEvent> events = events(cartId);
+        for (int i = 1; i < events.size(); i++) {
+            assertTrue(events.get(i).getId() > events.get(i - 1).getId());
+        }
+        CartEventDto added = objectMapper.readValue(events.get(1).getPayload(), CartEventDto.class);
+        assertEquals(cartId, added.getCartId());
+        assertEquals(user.getId(), added.getUserId());
+        assertEquals(product.getCode(), added.getProductCode());
+        assertEquals(2, added.getQuantity());
+        assertEquals(0, new BigDecimal("80.00").compareTo(added.getSubtotal()));
+        assertTrue(meterRegistry.counter("outbox.events.dispatched").count() >= events.size());
+    }
+
+    private WebTestClient.ResponseSpec addProduct(Long cartId, int quantity) {
+        return webTestClient.post().uri("/api/carts/{cartId}/items", cartId)
+                .headers(headers -> headers.setBasicAuth(USERNAME, PASSWORD))
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(Map.of("productCode", product.getCode(), "quantity", quantity))
+                .exchange();
+    }
+
+    private List<OutboxEvent> events(Long cartId) {
+        return sink.events().stream().filter(event -> event.getAggregateId().equals(cartId)).toList();
+    }
+
+    private List<EventType> eventTypes(Long cartId) {
+        return events(cartId).stream().map(OutboxEvent::getEventType).toList();
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.microservicesjavaapp.controller;
+
+import com.example.microservicesjavaapp.model.Product;
+import com.example.microservicesjavaapp.repository.CartRepository;
+import com.example.microservicesjavaapp.repository.DiscountRuleRepository;
+import com.example.microservicesjavaapp.repository.ProductRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.math.BigDecimal;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+
+/**
+ * Integration tests for the ProductController.
+ * Products are saved through the repository, so every test also checks that the in-memory catalog
+ * picks up changes made through JPA. ReactiveProductControllerIntegrationTest runs the same tests
+ * against the reactive stack.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT) // Boots up the full application on a random port
+@ActiveProfiles("test")
+public class ProductControllerIntegrationTest {
+
+    private static final String USERNAME = "user";
+    private static final String PASSWORD = "password";
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @Autowired
+    private CartRepository cartRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private DiscountRuleRepository discountRuleRepository;
+
+    private Product laptop;
+    private Product gamingLaptop;
+
+    @BeforeEach
+    void setup() {
+        cartRepository.deleteAll();
+        discountRuleRepository.deleteAll();
+        productRepository.deleteAll();
+
+        laptop = productRepository.save(new Product(null, "PROD001", "Laptop", new BigDecimal("1200.00"), "Electronics", 100));
+        productRepository.save(new Product(null, "PROD002", "Wireless Mouse", new BigDecimal("25.00"), "Electronics", 100));
+        productRepository.save(new Product(null, "PROD003", "Java Programming Book", new BigDecimal("50.00"), "Books", 100));
+        gamingLaptop = productRepository.save(new Product(null, "PROD004", "Gaming Laptop Pro", new BigDecimal("2000.00"), "Electronics", 100));
+        productRepository.save(new Product(null, "PROD005", "Laptop Stand", new BigDecimal("40.00"), "HomeGoods", 100));
+    }
+
+    @Test
+    void getProducts_FiltersByCategoryAndPaginates() {
+        webTestClient.get().uri("/api/products?category=Electronics&page=1&size=2")
+                .headers(headers -> headers.setBasicAuth(USERNAME, PASSWORD))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.content").value(hasSize(1))
+                .jsonPath("$.content[0].code").value(is("PROD004")) // ID order: PROD001, PROD002 | PROD004
+                .jsonPath("$.totalElements").value(is(3))
+                .jsonPath("$.totalPages").value(is(2));
+    }
+
+    @Test
+    void getProducts_SearchesNamePrefixes() {
+        webTestClient.get().uri("/api/products?q=LAP")
+                .headers(headers -> headers.setBasicAuth(USERNAME, PASSWORD))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.content[*].code").value(contains("PROD001", "PROD004", "PROD005"));
+
+        webTestClient.get().uri("/api/products?q=lap pro&category=Electronics")
+                .headers(headers -> headers.setBasicAuth(USERNAME, PASSWORD))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.content[*].code").value(contains("PROD004")); // Every word must match
+    }
+
+    @Test
+    void getProducts_FollowsProductChanges() {
+        laptop.setName("Ultrabook");
+        productRepository.save(laptop);
+        productRepository.delete(gamingLaptop);
+
+        webTestClient.get().uri("/api/products?q=laptop&category=Electronics")
+                .headers(headers -> headers.setBasicAuth(USERNAME, PASSWORD))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.totalElements").value(is(0));
+
+        webTestClient.get().uri("/api/products?q=ultra")
+                .headers(headers -> headers.setBasicAuth(USERNAME, PASSWORD))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.content[*].code").value(contains("PROD001"));
+    }
+
+    @Test
+    void getProducts_InvalidPageSize_ReturnsBadRequest() {
+        webTestClient.get().uri("/api/products?size=0")
+                .headers(headers -> headers.setBasicAuth(USERNAME, PASSWORD))
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    @Test
+    void getProducts_WithoutAuthentication_ReturnsUnauthorized() {
+        webTestClient.get().uri("/api/products")
+                .exchange()
+                .expectStatus().isUnauthorized();
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.microservicesjavaapp.controller;
+
+import com.example.microservicesjavaapp.model.User;
+import com.example.microservicesjavaapp.repository.CartRepository;
+import com.example.microservicesjavaapp.repository.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.util.Map;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Integration tests for the per-user rate limit of the cart endpoints.
+ * Cart creation allows a burst of two and practically never refills, so the third creation is throttled.
+ * ReactiveRateLimitIntegrationTest runs the same tests against the reactive stack.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, // Boots up the full application on a random port
+        properties = {"app.rate-limit.create-cart.capacity=2", "app.rate-limit.create-cart.refill-per-second=0.001"})
+@ActiveProfiles("test")
+public class RateLimitIntegrationTest {
+
+    private static final String USERNAME = "user";
+    private static final String PASSWORD = "password";
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @Autowired
+    private CartRepository cartRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    void createCart_BeyondBurst_ReturnsTooManyRequests() {
+        cartRepository.deleteAll();
+        userRepository.deleteAll();
+        User user = userRepository.save(new User(null, "ratelimited"));
+
+        for (int remaining = 1; remaining >= 0; remaining--) {
+            createCart(user)
+                    .expectStatus().isCreated()
+                    .expectHeader().valueEquals("RateLimit-Limit", "2")
+                    .expectHeader().valueEquals("RateLimit-Remaining", String.valueOf(remaining));
+        }
+
+        createCart(user)
+                .expectStatus().isEqualTo(HttpStatus.TOO_MANY_REQUESTS)
+                .expectHeader().valueEquals("RateLimit-Remaining", "0")
+                .expectHeader().valueEquals("Retry-After", "1000") // One token every 1000 seconds
+                .expectBody()
+                .jsonPath("$.status").value(is(429))
+                .jsonPath("$.message").value(is("Too many requests"))
+                .jsonPath("$.path").value(is("/api/carts"));
+
+        // Reading has a bucket of its own
+        webTestClient.get().uri("/api/carts/user/{userId}", user.getId())
+                .headers(headers -> headers.setBasicAuth(USERNAME, PASSWORD))
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals("RateLimit-Limit", "100000");
+
+        assertEquals(1.0, meterRegistry.get("rate.limit.throttled")
+                .tag("user", USERNAME).tag("endpoint", "create-cart").counter().count());
+    }
+
+    private WebTestClient.ResponseSpec createCart(User user) {
+        return webTestClient.post().uri("/api/carts")
+                .headers(headers -> headers.setBasicAuth(USERNAME, PASSWORD))
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(Map.of("userId", user.getId()))
+                .exchange();
+    }
+}
@@ -0,0 +1,11 @@
+package com.example.microservicesjavaapp.controller;
+
+import org.springframework.test.context.ActiveProfiles;
+
+/**
+ * Runs every OutboxIntegrationTest against the reactive stack (WebFlux on Netty, R2DBC).
+ * The 'reactive' profile is added to the inherited 'test' profile.
+ */
+@ActiveProfiles("reactive") // Selects the reactive edition of the API
+public class ReactiveOutboxIntegrationTest extends OutboxIntegrationTest {
+}
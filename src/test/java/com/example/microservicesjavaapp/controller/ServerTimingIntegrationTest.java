@@ -0,0 +1,96 @@
+package com.example.microservicesjavaapp.controller;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.system.CapturedOutput;
+import org.springframework.boot.test.system.OutputCaptureExtension;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Integration tests for the Server-Timing header of the servlet stack. Every request counts as slow,
+ * so every request is also logged.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, // Boots up the full application on a random port
+        properties = {"app.server-timing.enabled=true", "app.server-timing.slow-threshold=PT0S"})
+@ActiveProfiles("test")
+@ExtendWith(OutputCaptureExtension.class)
+public class ServerTimingIntegrationTest {
+
+    private static final String USERNAME = "user";
+    private static final String PASSWORD = "password";
+    private static final long USER_ID = 1; // From data.sql
+    private static final Pattern METRIC = Pattern.compile("(\\w+);dur=([0-9.]+)");
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @Test
+    void cartRequests_BreakTheirLatencyDownByPhase(CapturedOutput output) {
+        Long cartId = ((Number) webTestClient.post().uri("/api/carts")
+                .headers(headers -> headers.setBasicAuth(USERNAME, PASSWORD))
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(Map.of("userId", USER_ID))
+                .exchange()
+                .expectStatus().isCreated()
+                .expectBody(Map.class).returnResult().getResponseBody().get("id")).longValue();
+
+        String added = webTestClient.post().uri("/api/carts/{cartId}/items", cartId)
+                .headers(headers -> headers.setBasicAuth(USERNAME, PASSWORD))
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(Map.of("productCode", "PROD001", "quantity", 1))
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(String.class).getResponseHeaders().getFirst("Server-Timing");
+        Map<String, Double> addTimings = parse(added);
+        assertTrue(addTimings.keySet().containsAll(List.of("auth", "lock", "db", "service", "ser", "total")), added);
+        assertTrue(addTimings.get("service") >= addTimings.get("db"), added); // The service's repository calls are part of it
+        assertTrue(addTimings.get("total") >= addTimings.get("auth") + addTimings.get("service"), added);
+        assertTrue(added.contains("Repositories ("), added); // Several repository calls
+
+        webTestClient.get().uri("/api/carts/{cartId}/items", cartId)
+                .headers(headers -> headers.setBasicAuth(USERNAME, PASSWORD))
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().value("Server-Timing", header -> assertFalse(parse(header).containsKey("lock"), header))
+                .expectBody()
+                .jsonPath("$[0].product.code").value(is("PROD001")); // The buffered body still reaches the client
+
+        assertTrue(output.getOut().contains("Slow request POST /api/carts/" + cartId + "/items (200)"), output::getOut);
+    }
+
+    @Test
+    void rejectedRequest_IsLoggedAsAllAuthentication(CapturedOutput output) {
+        webTestClient.get().uri("/api/carts/user/{userId}", USER_ID)
+                .exchange()
+                .expectStatus().isUnauthorized(); // Sent as an error, which commits the response before the header is known
+
+        String logged = output.getOut().lines()
+                .filter(line -> line.contains("Slow request GET /api/carts/user/" + USER_ID + " (401)"))
+                .findFirst().orElseThrow();
+        assertEquals(Set.of("auth", "total"), parse(logged).keySet(), logged);
+    }
+
+    private static Map<String, Double> parse(String header) {
+        Map<String, Double> timings = new HashMap<>();
+        Matcher matcher = METRIC.matcher(Objects.requireNonNull(header, "No Server-Timing header"));
+        while (matcher.find()) {
+            timings.put(matcher.group(1), Double.parseDouble(matcher.group(2)));
+        }
+        return timings;
+    }
+}
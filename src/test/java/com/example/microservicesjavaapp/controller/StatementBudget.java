@@ -0,0 +1,81 @@
+package com.example.microservicesjavaapp.controller;
+
+import com.example.microservicesjavaapp.service.QueryStatistics;
+import com.example.microservicesjavaapp.service.QueryStatistics.Counter;
+import com.example.microservicesjavaapp.service.QueryStatistics.EndpointStats;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Test utility holding the maximum number of SQL statements one request may run on each endpoint under
+ * a path, checked against the per-endpoint Hibernate statistics of QueryStatistics. A lazy association
+ * loaded in a loop adds a statement per row and breaks its endpoint's budget; an endpoint under the path
+ * without a budget fails too, so new endpoints get one. Only endpoints whose requests ran no statement
+ * Hibernate saw, e.g. those reading with plain JDBC, may go without a budget: there is nothing to measure.
+ *
+ * Reset the statistics before each test and verify after it, so a failure points at the test's requests.
+ */
+public final class StatementBudget {
+
+    private final String pathPrefix;
+    private final Map<String, Integer> budgets = new LinkedHashMap<>();
+
+    private StatementBudget(String pathPrefix) {
+        this.pathPrefix = pathPrefix;
+    }
+
+    /**
+     * @param pathPrefix The path covered, e.g. "/api/carts".
+     * @return An empty budget for the endpoints under the path.
+     */
+    public static StatementBudget forPath(String pathPrefix) {
+        return new StatementBudget(pathPrefix);
+    }
+
+    /**
+     * @param endpoint The endpoint, as QueryStatistics names it, e.g. "GET /api/carts/{cartId}/items".
+     * @param maxStatements The most statements one request to it may run.
+     * @return This budget.
+     */
+    public StatementBudget allow(String endpoint, int maxStatements) {
+        budgets.put(endpoint, maxStatements);
+        return this;
+    }
+
+    /**
+     * Fails if a request counted since the last reset ran more statements than its endpoint allows.
+     *
+     * @param queryStatistics The application's per-endpoint statistics.
+     */
+    public void verify(QueryStatistics queryStatistics) {
+        List<String> failures = new ArrayList<>();
+        queryStatistics.snapshot().forEach((endpoint, stats) -> {
+            if (!endpoint.substring(endpoint.indexOf(' ') + 1).startsWith(pathPrefix)) {
+                return;
+            }
+            Integer budget = budgets.get(endpoint);
+            long statements = stats.get(Counter.STATEMENTS).max();
+            if (budget == null) {
+                if (statements > 0) {
+                    failures.add(endpoint + " has no statement budget (ran " + statements + ")" + details(stats));
+                }
+            } else if (statements > budget) {
+                failures.add(endpoint + " ran " + statements + " statements in one request, budget is " + budget + details(stats));
+            }
+        });
+        if (!failures.isEmpty()) {
+            fail(String.join("\n", failures));
+        }
+    }
+
+    private static String details(EndpointStats stats) {
+        return "; at most " + stats.get(Counter.ENTITY_FETCHES).max() + " entity fetches, "
+                + stats.get(Counter.COLLECTION_FETCHES).max() + " collection fetches and "
+                + stats.get(Counter.FLUSHES).max() + " flushes per request";
+    }
+}
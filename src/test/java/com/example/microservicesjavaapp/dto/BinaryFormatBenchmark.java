@@ -0,0 +1,78 @@
+package com.example.microservicesjavaapp.dto;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Payload size and encode/decode time of a cart listing response (GET /api/carts/user/{userId}) in JSON,
+ * CBOR and Smile, with mappers built like the application's (see BinaryCodecConfig).
+ * The response is the one of CartSerializationBenchmark and takes the same tunables.
+ *
+ * Not part of the default build; run with: mvn test -Pbenchmark -Dtest=BinaryFormatBenchmark
+ * Tunables: -Dbench.carts (default 20), -Dbench.itemsPerCart (default 10), -Dbench.products (default 50),
+ * -Dbench.iterations (default 20000).
+ */
+@Tag("benchmark")
+public class BinaryFormatBenchmark {
+
+    private static final int ITERATIONS = Integer.getInteger("bench.iterations", 20_000);
+    private static final TypeReference<List<CartDto>> CARTS = new TypeReference<>() {};
+
+    @Test
+    void jsonVersusCborVersusSmile() throws Exception {
+        List<CartDto> response = CartSerializationBenchmark.response();
+        Result json = measure(mapper(new JsonFactory()), response);
+        Result cbor = measure(mapper(new CBORFactory()), response);
+        Result smile = measure(mapper(new SmileFactory()), response);
+
+        System.out.printf("%n=== Cart listing encodings (%d carts, %d iterations) ===%n", response.size(), ITERATIONS);
+        System.out.printf("%-20s %12s %12s %12s%n", "", "json", "cbor", "smile");
+        System.out.printf("%-20s %12d %12d %12d%n", "payload (bytes)", json.bytes, cbor.bytes, smile.bytes);
+        System.out.printf("%-20s %12.1f %12.1f %12.1f%n", "encode (us)", json.encodeMicros, cbor.encodeMicros, smile.encodeMicros);
+        System.out.printf("%-20s %12.1f %12.1f %12.1f%n", "decode (us)", json.decodeMicros, cbor.decodeMicros, smile.decodeMicros);
+    }
+
+    private static ObjectMapper mapper(JsonFactory factory) {
+        return Jackson2ObjectMapperBuilder.json()
+                .factory(factory)
+                .serializerByType(CartItemDto.class, new CartItemDtoSerializer(new ProductJsonCache()))
+                .build();
+    }
+
+    private Result measure(ObjectMapper mapper, List<CartDto> response) throws IOException {
+        ObjectWriter writer = mapper.writerFor(CARTS);
+        ObjectReader reader = mapper.readerFor(CARTS);
+        byte[] payload = writer.writeValueAsBytes(response);
+        assertEquals(response, reader.readValue(payload)); // Every DTO field survives the round trip
+
+        for (int i = 0; i < ITERATIONS; i++) { // Warm-up
+            reader.readValue(writer.writeValueAsBytes(response));
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            writer.writeValueAsBytes(response);
+        }
+        long encoded = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            reader.readValue(payload);
+        }
+        long decoded = System.nanoTime();
+        return new Result(payload.length, (encoded - start) / 1_000.0 / ITERATIONS, (decoded - encoded) / 1_000.0 / ITERATIONS);
+    }
+
+    private record Result(int bytes, double encodeMicros, double decodeMicros) {
+    }
+}
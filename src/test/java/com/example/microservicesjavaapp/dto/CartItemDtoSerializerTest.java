@@ -0,0 +1,64 @@
+package com.example.microservicesjavaapp.dto;
+
+import com.example.microservicesjavaapp.model.Cart.CartStatus;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for CartItemDtoSerializer and ProductJsonCache.
+ */
+public class CartItemDtoSerializerTest {
+
+    private final ProductJsonCache cache = new ProductJsonCache();
+    private final ObjectMapper defaultMapper = Jackson2ObjectMapperBuilder.json().build();
+    private final ObjectMapper cachingMapper = Jackson2ObjectMapperBuilder.json()
+            .serializerByType(CartItemDto.class, new CartItemDtoSerializer(cache))
+            .build();
+
+    @Test
+    void writesTheSameJsonAsTheDefaultSerializer() throws Exception {
+        ProductDto laptop = new ProductDto(101L, "PROD001", "Laptop \"15\" ñ", new BigDecimal("1200.00"), "Electronics");
+        ProductDto unnamed = new ProductDto(102L, "PROD002", null, new BigDecimal("8E+2"), "Electronics");
+        Set<CartItemDto> items = new LinkedHashSet<>(List.of(
+                new CartItemDto(1L, laptop, 2),
+                new CartItemDto(2L, unnamed, 1),
+                new CartItemDto(null, null, null)));
+        CartDto cart = new CartDto(7L, new UserDto(1L, "john_doe"), LocalDateTime.of(2024, 5, 1, 10, 30), CartStatus.ACTIVE, items);
+
+        // Twice: once encoding the products, once from the cache
+        assertEquals(defaultMapper.writeValueAsString(cart), cachingMapper.writeValueAsString(cart));
+        assertEquals(new String(defaultMapper.writeValueAsBytes(List.of(cart)), "UTF-8"),
+                new String(cachingMapper.writeValueAsBytes(List.of(cart)), "UTF-8"));
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    void reEncodesAProductOnceItChanges() throws Exception {
+        ProductDto product = new ProductDto(101L, "PROD001", "Laptop", new BigDecimal("1200.00"), "Electronics");
+        cachingMapper.writeValueAsString(new CartItemDto(1L, product, 1));
+
+        // Same ID, new price: the cached entry no longer matches the product
+        ProductDto repriced = new ProductDto(101L, "PROD001", "Laptop", new BigDecimal("999.00"), "Electronics");
+        String json = cachingMapper.writeValueAsString(new CartItemDto(1L, repriced, 1));
+        assertTrue(json.contains("999.00"));
+        assertEquals(defaultMapper.writeValueAsString(new CartItemDto(1L, repriced, 1)), json);
+
+        // Changing the original DTO afterwards does not alter the cached entry
+        repriced.setPrice(new BigDecimal("1.00"));
+        assertTrue(cachingMapper.writeValueAsString(new CartItemDto(1L, new ProductDto(101L, "PROD001", "Laptop",
+                new BigDecimal("999.00"), "Electronics"), 1)).contains("999.00"));
+
+        cache.evict(101L);
+        assertEquals(0, cache.size());
+    }
+}
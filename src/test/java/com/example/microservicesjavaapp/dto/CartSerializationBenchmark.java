@@ -0,0 +1,104 @@
+package com.example.microservicesjavaapp.dto;
+
+import com.example.microservicesjavaapp.model.Cart.CartStatus;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+/**
+ * Serialization cost of a cart listing response (GET /api/carts/user/{userId}), with and without the
+ * pre-encoded product JSON of CartItemDtoSerializer.
+ * Both mappers are built like Spring Boot's; the response is written as UTF-8 to a discarding stream, as
+ * the HTTP message converters do. Reports time and bytes allocated per response on the calling thread.
+ *
+ * Not part of the default build; run with: mvn test -Pbenchmark -Dtest=CartSerializationBenchmark
+ * Tunables: -Dbench.carts (default 20), -Dbench.itemsPerCart (default 10), -Dbench.products (default 50),
+ * -Dbench.iterations (default 20000).
+ */
+@Tag("benchmark")
+public class CartSerializationBenchmark {
+
+    private static final int CARTS = Integer.getInteger("bench.carts", 20);
+    private static final int ITEMS_PER_CART = Integer.getInteger("bench.itemsPerCart", 10);
+    private static final int PRODUCTS = Integer.getInteger("bench.products", 50);
+    private static final int ITERATIONS = Integer.getInteger("bench.iterations", 20_000);
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    @Test
+    void preEncodedProductsVersusDefault() throws Exception {
+        List<CartDto> response = response();
+        ObjectWriter defaultWriter = Jackson2ObjectMapperBuilder.json().build().writer();
+        ObjectMapper cachingMapper = Jackson2ObjectMapperBuilder.json()
+                .serializerByType(CartItemDto.class, new CartItemDtoSerializer(new ProductJsonCache()))
+                .build();
+        ObjectWriter cachingWriter = cachingMapper.writer();
+
+        byte[] expected = defaultWriter.writeValueAsBytes(response);
+        assertArrayEquals(expected, cachingWriter.writeValueAsBytes(response));
+
+        // Warm up both paths, then measure them alternately
+        measure(defaultWriter, response);
+        measure(cachingWriter, response);
+        Result defaults = measure(defaultWriter, response);
+        Result cached = measure(cachingWriter, response);
+
+        System.out.printf("%n=== Cart listing serialization (%d carts x %d items, %d products, %d bytes) ===%n",
+                CARTS, ITEMS_PER_CART, PRODUCTS, expected.length);
+        System.out.printf("%-24s %12s %12s%n", "", "default", "pre-encoded");
+        System.out.printf("%-24s %12.1f %12.1f%n", "time per response (us)", defaults.micros, cached.micros);
+        System.out.printf("%-24s %12d %12d%n", "allocated per response", defaults.allocatedBytes, cached.allocatedBytes);
+    }
+
+    private Result measure(ObjectWriter writer, List<CartDto> response) throws IOException {
+        long thread = Thread.currentThread().getId();
+        long allocatedBefore = THREADS.getThreadAllocatedBytes(thread);
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            writer.writeValue(OutputStream.nullOutputStream(), response); // The writer closes its target
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocated = THREADS.getThreadAllocatedBytes(thread) - allocatedBefore;
+        return new Result(elapsed / 1_000.0 / ITERATIONS, allocated / ITERATIONS);
+    }
+
+    static List<CartDto> response() {
+        List<ProductDto> products = new ArrayList<>(PRODUCTS);
+        for (int p = 0; p < PRODUCTS; p++) {
+            products.add(new ProductDto(100L + p, String.format("PROD%03d", p), "Product number " + p,
+                    new BigDecimal("19.99").add(BigDecimal.valueOf(p)), p % 2 == 0 ? "Electronics" : "Books"));
+        }
+        UserDto user = new UserDto(1L, "john_doe");
+        List<CartDto> carts = new ArrayList<>(CARTS);
+        long itemId = 1;
+        for (int c = 0; c < CARTS; c++) {
+            Set<CartItemDto> items = new HashSet<>();
+            for (int i = 0; i < ITEMS_PER_CART; i++) {
+                ProductDto product = products.get((c * ITEMS_PER_CART + i) % PRODUCTS);
+                // A fresh DTO per line, as CartDtoMapper produces them
+                items.add(new CartItemDto(itemId++, new ProductDto(product.getId(), product.getCode(), product.getName(),
+                        product.getPrice(), product.getCategory()), 1 + i % 3));
+            }
+            carts.add(new CartDto((long) c + 1, user, LocalDateTime.now(), CartStatus.ACTIVE, items));
+        }
+        return carts;
+    }
+
+    private record Result(double micros, long allocatedBytes) {
+    }
+}
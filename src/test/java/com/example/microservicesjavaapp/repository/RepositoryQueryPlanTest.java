@@ -0,0 +1,251 @@
+package com.example.microservicesjavaapp.repository;
+
+import com.example.microservicesjavaapp.model.Cart;
+import com.example.microservicesjavaapp.model.Cart.CartStatus;
+import com.example.microservicesjavaapp.model.OrderJob.JobStatus;
+import com.example.microservicesjavaapp.model.Product;
+import com.example.microservicesjavaapp.model.User;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Query-plan regression suite for the repository package.
+ * Seeds a realistically sized database, runs every query method declared on the repositories,
+ * captures the SQL Hibernate sends and asserts that H2's EXPLAIN plan for each statement
+ * uses an index rather than a table scan.
+ *
+ * Adding a query method to a repository without covering it here fails {@link #everyRepositoryQueryIsCovered()}.
+ */
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+        + "com.example.microservicesjavaapp.repository.RepositoryQueryPlanTest$CapturingStatementInspector")
+@ActiveProfiles("test")
+public class RepositoryQueryPlanTest {
+
+    private static final int USERS = 2_000;
+    private static final int PRODUCTS = 500;
+    private static final int CARTS_PER_USER = 10;
+    private static final int ITEMS_PER_CART = 3;
+    private static final long ID_OFFSET = 1_000L; // Keeps clear of the IDs used by data.sql
+
+    private static final List<Class<?>> REPOSITORIES = List.of(
+            UserRepository.class, ProductRepository.class, DiscountRepository.class, DiscountRuleRepository.class,
+            CartRepository.class, CartItemRepository.class, OrderHistoryRepository.class, OrderJobRepository.class,
+            OutboxEventRepository.class);
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private DiscountRepository discountRepository;
+
+    @Autowired
+    private CartRepository cartRepository;
+
+    @Autowired
+    private CartItemRepository cartItemRepository;
+
+    @Autowired
+    private OrderHistoryRepository orderHistoryRepository;
+
+    @Autowired
+    private OrderJobRepository orderJobRepository;
+
+    @Autowired
+    private OutboxEventRepository outboxEventRepository;
+
+    private static boolean seeded;
+
+    @BeforeEach
+    void seed() {
+        if (seeded) {
+            return;
+        }
+        jdbcTemplate.update("INSERT INTO users (id, username) SELECT ? + X, 'plan_user_' || X FROM SYSTEM_RANGE(1, ?)",
+                ID_OFFSET, USERS);
+        // Enough stock for the checkout decrement, which the CHECK (stock >= 0) constraint would otherwise reject
+        jdbcTemplate.update("INSERT INTO products (id, code, name, price, category, stock) "
+                        + "SELECT ? + X, 'PLAN' || X, 'Product ' || X, 10.00 + MOD(X, 90), 'Category' || MOD(X, 20), 1000 FROM SYSTEM_RANGE(1, ?)",
+                ID_OFFSET, PRODUCTS);
+        // Most carts are processed history, one in ten is still active, as in a long-running system
+        jdbcTemplate.update("INSERT INTO carts (id, user_id, created_at, updated_at, status) "
+                        + "SELECT ? + X, ? + 1 + MOD(X, ?), DATEADD('MINUTE', -X, CURRENT_TIMESTAMP), DATEADD('MINUTE', -X, CURRENT_TIMESTAMP), "
+                        + "CASEWHEN(MOD(X, 10) = 0, ?, ?) FROM SYSTEM_RANGE(1, ?)",
+                ID_OFFSET, ID_OFFSET, USERS, CartStatus.ACTIVE.name(), CartStatus.PROCESSED.name(), USERS * CARTS_PER_USER);
+        jdbcTemplate.update("INSERT INTO cart_items (cart_id, product_id, quantity) "
+                        + "SELECT ? + 1 + (X - 1) / ?, ? + 1 + MOD(X * 7, ?), 1 + MOD(X, 3) FROM SYSTEM_RANGE(1, ?)",
+                ID_OFFSET, ITEMS_PER_CART, ID_OFFSET, PRODUCTS, USERS * CARTS_PER_USER * ITEMS_PER_CART);
+        jdbcTemplate.update("INSERT INTO order_history (cart_id, user_id, created_at, processed_at, line_count, total_amount, order_lines) "
+                        + "SELECT ? + X, ? + 1 + MOD(X, ?), DATEADD('DAY', -X, CURRENT_TIMESTAMP), DATEADD('DAY', -X, CURRENT_TIMESTAMP), 1, 10.00, "
+                        + "'[[1,\"PLAN1\",1,10.00]]' FROM SYSTEM_RANGE(1, ?)",
+                ID_OFFSET * 1_000, ID_OFFSET, USERS, USERS * CARTS_PER_USER);
+        // A backlog of queued checkouts, most of them waiting for a retry, a few leased to a worker
+        jdbcTemplate.update("INSERT INTO order_jobs (cart_id, status, attempts, available_at, lease_owner, lease_until, created_at) "
+                        + "SELECT ? + X, CASEWHEN(MOD(X, 10) = 0, 'RUNNING', 'PENDING'), 1, DATEADD('SECOND', X, CURRENT_TIMESTAMP), "
+                        + "CASEWHEN(MOD(X, 10) = 0, 'plan-node', NULL), CASEWHEN(MOD(X, 10) = 0, DATEADD('SECOND', X, CURRENT_TIMESTAMP), NULL), "
+                        + "CURRENT_TIMESTAMP FROM SYSTEM_RANGE(1, ?)",
+                ID_OFFSET * 1_000, USERS);
+        jdbcTemplate.update("INSERT INTO outbox_events (aggregate_id, event_type, payload, created_at) "
+                        + "SELECT ? + X, 'CART_ITEM_ADDED', '{}', CURRENT_TIMESTAMP FROM SYSTEM_RANGE(1, ?)",
+                ID_OFFSET, USERS);
+        jdbcTemplate.execute("ANALYZE");
+        seeded = true;
+    }
+
+    /**
+     * One invocation per query method declared on a repository, keyed by "Repository.method".
+     */
+    private Map<String, Runnable> queries() {
+        User user = userRepository.findById(ID_OFFSET + 42).orElseThrow();
+        Product product = productRepository.findById(ID_OFFSET + 7).orElseThrow();
+        Cart cart = cartRepository.findById(ID_OFFSET + 420).orElseThrow();
+
+        Map<String, Runnable> queries = new LinkedHashMap<>();
+        queries.put("UserRepository.findByUsername", () -> userRepository.findByUsername("plan_user_42"));
+        queries.put("ProductRepository.findByCode", () -> productRepository.findByCode("PLAN7"));
+        queries.put("ProductRepository.findUnreservedStock", () -> productRepository.findUnreservedStock(product.getId(), CartStatus.ACTIVE));
+        queries.put("ProductRepository.decrementStockByCartItems", () -> productRepository.decrementStockByCartItems(cart.getId()));
+        queries.put("DiscountRepository.findByCategory", () -> discountRepository.findByCategory("Electronics"));
+        queries.put("CartRepository.findByIdAndStatus", () -> cartRepository.findByIdAndStatus(cart.getId(), CartStatus.ACTIVE));
+        queries.put("CartRepository.lockByIdAndStatus", () -> cartRepository.lockByIdAndStatus(cart.getId(), CartStatus.ACTIVE));
+        queries.put("CartRepository.findWithItemsByUser", () -> cartRepository.findWithItemsByUser(user));
+        queries.put("CartRepository.findByUserAndStatus", () -> cartRepository.findByUserAndStatus(user, CartStatus.ACTIVE));
+        queries.put("CartRepository.lockIdleCartIds", () -> cartRepository.lockIdleCartIds(
+                CartStatus.ACTIVE, LocalDateTime.now().minusDays(1), PageRequest.of(0, 100)));
+        queries.put("CartRepository.findAllWithItemsByIdIn", () -> cartRepository.findAllWithItemsByIdIn(List.of(cart.getId(), cart.getId() + 1)));
+        queries.put("CartRepository.deleteByIdIn", () -> cartRepository.deleteByIdIn(List.of(-1L, -2L)));
+        queries.put("CartRepository.findMaxId", () -> cartRepository.findMaxId());
+        queries.put("CartRepository.findIdsByStatusFromId", () -> cartRepository.findIdsByStatusFromId(
+                CartStatus.ACTIVE, cart.getId(), PageRequest.of(0, 100)));
+        // The write-behind store runs both on every flush, for each batch of dirty carts: primary key lookups
+        queries.put("CartRepository.lockIdsByStatusSkipLocked", () -> cartRepository.lockIdsByStatusSkipLocked(
+                List.of(cart.getId(), cart.getId() + 1), CartStatus.ACTIVE.name()));
+        queries.put("CartRepository.findIdsByIdInAndStatus", () -> cartRepository.findIdsByIdInAndStatus(
+                List.of(cart.getId(), cart.getId() + 1), CartStatus.ACTIVE));
+        queries.put("CartRepository.updateTotalsIfUnchanged", () -> cartRepository.updateTotalsIfUnchanged(
+                cart.getId(), BigDecimal.ZERO, BigDecimal.ZERO, BigDecimal.ONE, BigDecimal.ONE));
+        queries.put("CartItemRepository.findByCartAndProduct", () -> cartItemRepository.findByCartAndProduct(cart, product));
+        queries.put("CartItemRepository.findWithProductByCart", () -> cartItemRepository.findWithProductByCart(cart));
+        queries.put("CartItemRepository.existsByCart", () -> cartItemRepository.existsByCart(cart));
+        queries.put("CartItemRepository.countByCart", () -> cartItemRepository.countByCart(cart));
+        queries.put("CartItemRepository.findByIdAndCart", () -> cartItemRepository.findByIdAndCart(1L, cart));
+        queries.put("CartItemRepository.deleteByCartIdIn", () -> cartItemRepository.deleteByCartIdIn(List.of(-1L, -2L)));
+        queries.put("CartItemRepository.sumQuantityByProductForCartIdIn", () -> cartItemRepository.sumQuantityByProductForCartIdIn(
+                List.of(cart.getId(), cart.getId() + 1)));
+        queries.put("OrderHistoryRepository.findByUserIdOrderByProcessedAtDesc",
+                () -> orderHistoryRepository.findByUserIdOrderByProcessedAtDesc(user.getId()));
+        queries.put("OrderJobRepository.insertOrRequeue", () -> orderJobRepository.insertOrRequeue(cart.getId(), LocalDateTime.now()));
+        queries.put("OrderJobRepository.lockDueJobs", () -> orderJobRepository.lockDueJobs(
+                JobStatus.PENDING.name(), LocalDateTime.now(), 10));
+        queries.put("OrderJobRepository.lockExpiredJobs", () -> orderJobRepository.lockExpiredJobs(
+                JobStatus.RUNNING.name(), LocalDateTime.now(), 10));
+        queries.put("OrderJobRepository.deleteByIdAndLeaseOwner", () -> orderJobRepository.deleteByIdAndLeaseOwner(-1L, "node"));
+        queries.put("OutboxEventRepository.lockDispatcher", () -> outboxEventRepository.lockDispatcher());
+        queries.put("OutboxEventRepository.findByOrderByIdAsc", () -> outboxEventRepository.findByOrderByIdAsc(PageRequest.of(0, 100)));
+        return queries;
+    }
+
+    @Test
+    void everyRepositoryQueryIsCovered() {
+        Set<String> declared = new TreeSet<>();
+        for (Class<?> repository : REPOSITORIES) {
+            for (Method method : repository.getDeclaredMethods()) {
+                if (!method.isDefault() && !method.isSynthetic()) {
+                    declared.add(repository.getSimpleName() + "." + method.getName());
+                }
+            }
+        }
+        assertEquals(declared, new TreeSet<>(queries().keySet()),
+                "Every query method in the repository package needs a plan check in RepositoryQueryPlanTest");
+    }
+
+    @Test
+    void noRepositoryQueryFallsBackToATableScan() {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        List<String> failures = new ArrayList<>();
+
+        for (Map.Entry<String, Runnable> query : queries().entrySet()) {
+            tx.executeWithoutResult(status -> {
+                CapturingStatementInspector.STATEMENTS.clear();
+                query.getValue().run();
+                List<String> statements = new ArrayList<>(CapturingStatementInspector.STATEMENTS);
+                assertFalse(statements.isEmpty(), query.getKey() + " issued no SQL");
+
+                for (String sql : statements) {
+                    String plan = explain(sql);
+                    if (plan.contains(".tableScan")) {
+                        failures.add(query.getKey() + " scans a table:\n  " + sql + "\n  plan: " + plan);
+                    }
+                }
+                status.setRollbackOnly(); // Modifying queries must not disturb the seeded data
+            });
+        }
+
+        assertTrue(failures.isEmpty(), String.join("\n", failures));
+    }
+
+    private String explain(String sql) {
+        return jdbcTemplate.execute((java.sql.Connection connection) -> {
+            try (PreparedStatement ps = connection.prepareStatement("EXPLAIN " + sql)) {
+                int parameters = ps.getParameterMetaData().getParameterCount();
+                for (int i = 1; i <= parameters; i++) {
+                    ps.setObject(i, null);
+                }
+                try (ResultSet rs = ps.executeQuery()) {
+                    List<String> lines = new ArrayList<>();
+                    while (rs.next()) {
+                        lines.add(rs.getString(1));
+                    }
+                    return lines.stream().collect(Collectors.joining(" ")).replaceAll("\\s+", " ");
+                }
+            }
+        });
+    }
+
+    /**
+     * Hibernate statement inspector recording every SQL statement sent to the database.
+     */
+    public static class CapturingStatementInspector implements StatementInspector {
+        static final List<String> STATEMENTS = new CopyOnWriteArrayList<>();
+
+        @Override
+        public String inspect(String sql) {
+            STATEMENTS.add(sql);
+            return sql;
+        }
+    }
+}
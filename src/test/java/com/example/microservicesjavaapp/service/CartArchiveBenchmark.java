@@ -0,0 +1,128 @@
+package com.example.microservicesjavaapp.service;
+
+import com.example.microservicesjavaapp.model.Cart.CartStatus;
+import com.example.microservicesjavaapp.repository.CartRepository;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Measures the effect of the processed-cart archiver on the live tables.
+ * Seeds a long-running-system mix (mostly processed carts, a minority still active), then reports
+ * the size of 'carts'/'cart_items' and the latency of CartRepository.findByIdAndStatus on active
+ * carts, before and after archiving.
+ *
+ * Not part of the default build; run with: mvn test -Pbenchmark -Dtest=CartArchiveBenchmark
+ * Tunables: -Dbench.processedCarts (default 100000), -Dbench.activeCarts (default 10000), -Dbench.lookups (default 20000).
+ */
+@Tag("benchmark")
+@SpringBootTest(properties = {
+        "spring.jpa.show-sql=false",
+        "logging.level.org.hibernate.SQL=WARN",
+        "logging.level.org.hibernate.orm.jdbc.bind=WARN",
+        "logging.level.com.example.microservicesjavaapp=WARN",
+        "app.cart-archiver.batch-size=1000"
+})
+@ActiveProfiles("test")
+public class CartArchiveBenchmark {
+
+    private static final int PROCESSED_CARTS = Integer.getInteger("bench.processedCarts", 100_000);
+    private static final int ACTIVE_CARTS = Integer.getInteger("bench.activeCarts", 10_000);
+    private static final int LOOKUPS = Integer.getInteger("bench.lookups", 20_000);
+    private static final int ITEMS_PER_CART = 3;
+    private static final long ID_OFFSET = 1_000L;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private CartRepository cartRepository;
+
+    @Autowired
+    private CartArchiver cartArchiver;
+
+    @Test
+    void archivingShrinksTheLiveTables() {
+        seed();
+
+        Measurement before = measure();
+        long start = System.nanoTime();
+        long archived = cartArchiver.archive(LocalDateTime.now().minusHours(1));
+        long archiveMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        jdbcTemplate.execute("ANALYZE");
+        Measurement after = measure();
+
+        System.out.printf("%n=== Processed-cart archiving (%d processed, %d active) ===%n", PROCESSED_CARTS, ACTIVE_CARTS);
+        System.out.printf("archived          : %d carts in %d ms%n", archived, archiveMillis);
+        System.out.printf("%-18s %12s %12s%n", "", "before", "after");
+        System.out.printf("%-18s %12d %12d%n", "carts rows", before.carts, after.carts);
+        System.out.printf("%-18s %12d %12d%n", "cart_items rows", before.items, after.items);
+        System.out.printf("%-18s %12d %12d%n", "history rows", before.history, after.history);
+        System.out.printf("%-18s %12.1f %12.1f%n", "lookup mean (us)", before.meanMicros, after.meanMicros);
+        System.out.printf("%-18s %12.1f %12.1f%n", "lookup p99 (us)", before.p99Micros, after.p99Micros);
+
+        assertEquals(PROCESSED_CARTS, archived);
+        assertEquals(ACTIVE_CARTS, after.carts);
+        assertTrue(after.items < before.items);
+    }
+
+    private void seed() {
+        int total = PROCESSED_CARTS + ACTIVE_CARTS;
+        // Every (PROCESSED + ACTIVE) / ACTIVE-th cart stays active; the rest were processed two days ago
+        int stride = Math.max(1, total / Math.max(1, ACTIVE_CARTS));
+        jdbcTemplate.update("INSERT INTO users (id, username) SELECT ? + X, 'bench_user_' || X FROM SYSTEM_RANGE(1, 1000)", ID_OFFSET);
+        jdbcTemplate.update("INSERT INTO carts (id, user_id, created_at, updated_at, status) "
+                        + "SELECT ? + X, ? + 1 + MOD(X, 1000), DATEADD('DAY', -2, CURRENT_TIMESTAMP), "
+                        + "CASEWHEN(MOD(X, ?) = 0 AND X / ? <= ?, CURRENT_TIMESTAMP, DATEADD('DAY', -2, CURRENT_TIMESTAMP)), "
+                        + "CASEWHEN(MOD(X, ?) = 0 AND X / ? <= ?, ?, ?) FROM SYSTEM_RANGE(1, ?)",
+                ID_OFFSET, ID_OFFSET, stride, stride, ACTIVE_CARTS, stride, stride, ACTIVE_CARTS,
+                CartStatus.ACTIVE.name(), CartStatus.PROCESSED.name(), total);
+        jdbcTemplate.update("INSERT INTO cart_items (cart_id, product_id, quantity) "
+                        + "SELECT ? + 1 + (X - 1) / ?, 101 + MOD(X - 1, ?), 1 FROM SYSTEM_RANGE(1, ?)",
+                ID_OFFSET, ITEMS_PER_CART, ITEMS_PER_CART, total * ITEMS_PER_CART);
+        jdbcTemplate.execute("ANALYZE");
+    }
+
+    private Measurement measure() {
+        long carts = count("carts");
+        long items = count("cart_items");
+        long history = count("order_history");
+        Long[] activeIds = jdbcTemplate.queryForList("SELECT id FROM carts WHERE status = ?", Long.class,
+                CartStatus.ACTIVE.name()).toArray(new Long[0]);
+
+        // Warm up, then time single lookups of random active carts
+        for (int i = 0; i < Math.min(LOOKUPS, 2_000); i++) {
+            cartRepository.findByIdAndStatus(activeIds[i % activeIds.length], CartStatus.ACTIVE);
+        }
+        long[] samples = new long[LOOKUPS];
+        for (int i = 0; i < LOOKUPS; i++) {
+            Long id = activeIds[ThreadLocalRandom.current().nextInt(activeIds.length)];
+            long start = System.nanoTime();
+            cartRepository.findByIdAndStatus(id, CartStatus.ACTIVE);
+            samples[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(samples);
+        double mean = Arrays.stream(samples).average().orElse(0) / 1_000.0;
+        double p99 = samples[(int) Math.min(samples.length - 1, Math.ceil(samples.length * 0.99) - 1)] / 1_000.0;
+        return new Measurement(carts, items, history, mean, p99);
+    }
+
+    private long count(String table) {
+        Long count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + table, Long.class);
+        return count == null ? 0 : count;
+    }
+
+    private record Measurement(long carts, long items, long history, double meanMicros, double p99Micros) {
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.microservicesjavaapp.service;
+
+import com.example.microservicesjavaapp.dto.CartDto;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Records the cart service with the settings of 'jfr/cart.jfc' under the 'jfr' profile, then parses
+ * the recording: the lock, operation and checkout stage events must be in it, tagged with the cart.
+ */
+@SpringBootTest(properties = "app.order-jobs.worker.enabled=false")
+@ActiveProfiles({"test", "jfr"})
+public class CartFlightRecorderTest {
+
+    private static final long USER_ID = 1; // From data.sql
+    private static final String PRODUCT_CODE = "PROD001";
+    private static final String OTHER_PRODUCT_CODE = "PROD002";
+    private static final long OTHER_PRODUCT_ID = 102; // PROD002, from data.sql
+
+    @Autowired
+    private CartService cartService;
+
+    private Recording recording;
+    private Path file;
+
+    @BeforeEach
+    void setup() throws Exception {
+        try (Reader settings = new InputStreamReader(Objects.requireNonNull(
+                getClass().getResourceAsStream("/jfr/cart.jfc")), StandardCharsets.UTF_8)) {
+            recording = new Recording(Configuration.create(settings));
+        }
+        file = Files.createTempFile("cart", ".jfr");
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        recording.close();
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    void recording_HasTheEventsOfEveryOperationAndCheckoutStage() throws Exception {
+        recording.start();
+        CartDto cart = cartService.createCart(USER_ID);
+        Long cartId = cart.getId();
+        cartService.addProductToCart(cartId, PRODUCT_CODE, 2);
+        cartService.addProductToCart(cartId, OTHER_PRODUCT_CODE, 1);
+        cartService.removeProductFromCart(cartId, OTHER_PRODUCT_ID);
+        assertEquals(1, cartService.getCartProducts(cartId).size());
+        cartService.processOrder(cartId);
+        recording.stop();
+        recording.dump(file);
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file).stream()
+                .filter(e -> e.getEventType().getName().startsWith("com.example.cart."))
+                .filter(e -> e.getLong("cartId") == cartId)
+                .sorted(Comparator.comparing(RecordedEvent::getEndTime))
+                .toList();
+
+        List<RecordedEvent> operations = ofType(events, "com.example.cart.Operation");
+        assertEquals(List.of("createCart", "addProductToCart", "addProductToCart", "removeProductFromCart", "getCartProducts", "processOrder"),
+                operations.stream().map(e -> e.getString("operation")).toList());
+        assertEquals(List.of(0, 1, 2, 1, 1, 1), operations.stream().map(e -> e.getInt("lineCount")).toList());
+
+        List<RecordedEvent> stages = ofType(events, "com.example.cart.CheckoutStage");
+        assertEquals(List.of("lock", "load", "validate", "settle"),
+                stages.stream().map(e -> e.getString("stage")).toList());
+        assertTrue(stages.get(2).getDuration().toMillis() >= 2000); // The simulated validation
+
+        List<RecordedEvent> locks = ofType(events, "com.example.cart.LockAcquired");
+        assertEquals(4, locks.size()); // addProductToCart twice, removeProductFromCart and processOrder
+        locks.forEach(e -> assertTrue(e.getLong("waitNanos") >= 0));
+    }
+
+    @Test
+    void disabled_EmitsNothingEvenWhileRecording() {
+        CartFlightRecorder disabled = new CartFlightRecorder(false);
+        recording.start();
+        assertNull(disabled.beginOperation("getCartTotal", 1L));
+        assertNull(disabled.beginStage(1L, CartFlightRecorder.STAGE_LOAD));
+        assertNull(disabled.beginLockWait());
+        disabled.endOperation(null, 1L, 0); // Null events are ignored
+        recording.stop();
+    }
+
+    private static List<RecordedEvent> ofType(List<RecordedEvent> events, String name) {
+        return events.stream().filter(e -> e.getEventType().getName().equals(name)).toList();
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.microservicesjavaapp.service;
+
+import com.example.microservicesjavaapp.model.Cart;
+import com.example.microservicesjavaapp.model.OutboxEvent.EventType;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Time to rebuild a cart at its latest version as its history grows, with no snapshots (every rebuild
+ * replays the whole history) and with a snapshot every 'bench.snapshotInterval' events (a rebuild reads
+ * one snapshot and replays fewer events than that). Each history belongs to a cart ID of its own, well
+ * clear of the real carts; the events are recorded through CartHistory, 'bench.batch' per transaction.
+ *
+ * Not part of the default build; run with: mvn test -Pbenchmark -Dtest=CartHistoryBenchmark
+ * Tunables: -Dbench.eventCounts (default 100,1000,10000,100000), -Dbench.snapshotInterval (default 50),
+ * -Dbench.rebuilds (default 50), -Dbench.batch (default 1000).
+ */
+@Tag("benchmark")
+@SpringBootTest(properties = {
+        "spring.jpa.show-sql=false",
+        "logging.level.org.hibernate.SQL=WARN",
+        "logging.level.org.hibernate.orm.jdbc.bind=WARN",
+        "logging.level.com.example.microservicesjavaapp=WARN",
+        "app.order-jobs.worker.enabled=false"
+})
+@ActiveProfiles("test")
+public class CartHistoryBenchmark {
+
+    private static final int[] EVENT_COUNTS = Arrays.stream(System.getProperty("bench.eventCounts", "100,1000,10000,100000").split(","))
+            .mapToInt(count -> Integer.parseInt(count.trim()))
+            .toArray();
+    private static final int SNAPSHOT_INTERVAL = Integer.getInteger("bench.snapshotInterval", 50);
+    private static final int REBUILDS = Integer.getInteger("bench.rebuilds", 50);
+    private static final int BATCH = Integer.getInteger("bench.batch", 1_000);
+    private static final long FIRST_CART_ID = 1_000_000_000L;
+    private static final long[] PRODUCT_IDS = {101L, 102L, 103L}; // From data.sql
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void rebuildTimeByEventCount() {
+        CartHistory fullReplay = new CartHistory(jdbcTemplate, Integer.MAX_VALUE);
+        CartHistory snapshotted = new CartHistory(jdbcTemplate, SNAPSHOT_INTERVAL);
+        long cartId = FIRST_CART_ID;
+
+        System.out.printf("%n=== Cart rebuild at the latest version, %d rebuilds each ===%n", REBUILDS);
+        System.out.printf("%10s %18s %24s%n", "events", "full replay (us)", "snapshot every " + SNAPSHOT_INTERVAL + " (us)");
+        for (int events : EVENT_COUNTS) {
+            long fullReplayCart = cartId++;
+            long snapshottedCart = cartId++;
+            record(fullReplay, fullReplayCart, events);
+            record(snapshotted, snapshottedCart, events);
+
+            CartHistory.State expected = fullReplay.rebuild(fullReplayCart, events).orElseThrow();
+            assertEquals(expected.lines(), snapshotted.rebuild(snapshottedCart, events).orElseThrow().lines());
+            double fullReplayMicros = meanRebuildMicros(fullReplay, fullReplayCart, events);
+            double snapshottedMicros = meanRebuildMicros(snapshotted, snapshottedCart, events);
+            System.out.printf("%10d %18.1f %24.1f%n", events, fullReplayMicros, snapshottedMicros);
+        }
+    }
+
+    /**
+     * Records a history of item changes: the products in turn, each quantity cycling from 1 to 5.
+     */
+    private void record(CartHistory history, long cartId, int events) {
+        Cart cart = new Cart();
+        cart.setId(cartId);
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        for (int from = 0; from < events; from += BATCH) {
+            int to = Math.min(events, from + BATCH);
+            int first = from;
+            transactionTemplate.executeWithoutResult(status -> {
+                for (int i = first; i < to; i++) {
+                    int quantity = 1 + (i / PRODUCT_IDS.length) % 5;
+                    cart.setSubtotal(BigDecimal.valueOf(i, 2));
+                    cart.setDiscountedTotal(BigDecimal.valueOf(i, 2));
+                    history.record(EventType.CART_ITEM_ADDED, cart, PRODUCT_IDS[i % PRODUCT_IDS.length], quantity);
+                }
+            });
+        }
+    }
+
+    private double meanRebuildMicros(CartHistory history, long cartId, int version) {
+        for (int i = 0; i < Math.max(1, REBUILDS / 5); i++) {
+            history.rebuild(cartId, version).orElseThrow(); // Warm-up
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < REBUILDS; i++) {
+            history.rebuild(cartId, version).orElseThrow();
+        }
+        return TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start) / (double) REBUILDS;
+    }
+}
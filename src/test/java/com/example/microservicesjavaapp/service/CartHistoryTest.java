@@ -0,0 +1,143 @@
+package com.example.microservicesjavaapp.service;
+
+import com.example.microservicesjavaapp.dto.CartDto;
+import com.example.microservicesjavaapp.dto.CartHistoryEventDto;
+import com.example.microservicesjavaapp.dto.CartStateDto;
+import com.example.microservicesjavaapp.model.Cart;
+import com.example.microservicesjavaapp.model.Cart.CartStatus;
+import com.example.microservicesjavaapp.model.OutboxEvent.EventType;
+import com.example.microservicesjavaapp.model.User;
+import com.example.microservicesjavaapp.repository.CartRepository;
+import com.example.microservicesjavaapp.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.IllegalTransactionStateException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Integration tests for the event-sourced cart history: the changes CartServiceImpl records, their
+ * snapshots, and carts rebuilt at past versions. Snapshots are taken every 3 events so a short history
+ * crosses several of them.
+ */
+@SpringBootTest(properties = {
+        "app.cart-history.snapshot-interval=3",
+        "app.order-jobs.worker.enabled=false"})
+@ActiveProfiles("test")
+public class CartHistoryTest {
+
+    private static final Long LAPTOP = 101L; // PROD001, from data.sql
+    private static final Long BOOK = 103L; // PROD003, from data.sql
+
+    @Autowired
+    private CartService cartService;
+
+    @Autowired
+    private CartHistory cartHistory;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CartRepository cartRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void rebuild_ShowsTheCartAsItWasBeforeCheckout() {
+        CartDto cart = newCart("history_buyer");
+        cartService.addProductToCart(cart.getId(), "PROD001", 2);
+        cartService.addProductToCart(cart.getId(), "PROD003", 1);
+        cartService.removeProductFromCart(cart.getId(), BOOK);
+        cartService.processOrder(cart.getId());
+
+        List<CartHistoryEventDto> events = cartService.getCartHistory(cart.getId(), 1L, 100);
+        assertEquals(List.of(EventType.CART_CREATED, EventType.CART_ITEM_ADDED, EventType.CART_ITEM_ADDED,
+                EventType.CART_ITEM_REMOVED, EventType.CART_PROCESSED), events.stream().map(CartHistoryEventDto::getType).toList());
+        assertEquals(List.of(1L, 2L, 3L, 4L, 5L), events.stream().map(CartHistoryEventDto::getVersion).toList());
+
+        CartStateDto beforeCheckout = cartService.getCartAtVersion(cart.getId(), 4L);
+        assertEquals(CartStatus.ACTIVE, beforeCheckout.getStatus());
+        assertEquals(List.of(new CartStateDto.Line(LAPTOP, 2)), beforeCheckout.getLines());
+        assertEquals(new BigDecimal("2400.00"), beforeCheckout.getSubtotal());
+
+        CartStateDto withTheBook = cartService.getCartAtVersion(cart.getId(), 3L); // From the snapshot at 3
+        assertEquals(List.of(new CartStateDto.Line(LAPTOP, 2), new CartStateDto.Line(BOOK, 1)), withTheBook.getLines());
+
+        assertEquals(CartStatus.PROCESSED, cartService.getCartAtVersion(cart.getId(), 5L).getStatus());
+        assertThrows(ResponseStatusException.class, () -> cartService.getCartAtVersion(cart.getId(), 6L));
+    }
+
+    @Test
+    void snapshots_GiveTheSameStatesAsAFullReplay() {
+        CartDto cart = newCart("history_snapshots");
+        for (int i = 0; i < 10; i++) {
+            cartService.addProductToCart(cart.getId(), i % 2 == 0 ? "PROD001" : "PROD003", 1);
+            if (i % 4 == 3) {
+                cartService.removeProductFromCart(cart.getId(), BOOK);
+            }
+        }
+
+        List<Long> snapshots = jdbcTemplate.queryForList(
+                "SELECT version FROM cart_snapshots WHERE cart_id = ? ORDER BY version", Long.class, cart.getId());
+        assertEquals(List.of(3L, 6L, 9L, 12L), snapshots); // 13 events: created, 10 adds, 2 removals
+
+        List<CartHistory.Event> events = cartHistory.events(cart.getId(), 1, 100);
+        assertEquals(13, events.size());
+        for (int version = 1; version <= events.size(); version++) {
+            CartHistory.State fromSnapshot = cartHistory.rebuild(cart.getId(), version).orElseThrow();
+            CartHistory.State fromScratch = CartHistory.replay(cart.getId(), null, events.subList(0, version));
+            assertEquals(fromScratch, fromSnapshot, "version " + version);
+        }
+        CartHistory.State last = cartHistory.rebuild(cart.getId(), 13).orElseThrow();
+        assertEquals(Map.of(LAPTOP, 5, BOOK, 1), last.lines());
+        Cart saved = cartRepository.findById(cart.getId()).orElseThrow();
+        assertEquals(saved.getDiscountedTotal(), last.discountedTotal()); // The query model agrees
+    }
+
+    @Test
+    void rolledBackChange_LeavesNoEvent() {
+        CartDto cart = newCart("history_rollback");
+        Cart entity = cartRepository.findById(cart.getId()).orElseThrow();
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            cartHistory.record(EventType.CART_ITEM_ADDED, entity, LAPTOP, 1);
+            status.setRollbackOnly();
+        });
+
+        assertEquals(1, cartHistory.events(cart.getId(), 1, 100).size()); // Only the creation
+        assertThrows(IllegalTransactionStateException.class, () -> cartHistory.record(EventType.CART_ITEM_ADDED, entity, LAPTOP, 1),
+                "An event is only recorded in the transaction of its change");
+    }
+
+    @Test
+    void codec_RoundTripsEventsAndStates() {
+        CartHistory.Event event = new CartHistory.Event(7, EventType.CART_ITEM_ADDED, LocalDateTime.of(2024, 5, 1, 12, 30, 15, 123_456_000),
+                LAPTOP, 3, new BigDecimal("3600.00"), new BigDecimal("3240.00"));
+        byte[] encoded = CartHistoryCodec.encode(event);
+        assertEquals(CartHistoryCodec.EVENT_BYTES, encoded.length);
+        assertEquals(event, CartHistoryCodec.decodeEvent(7, encoded));
+
+        CartHistory.State state = CartHistory.replay(42L, null, List.of(event));
+        assertEquals(state, CartHistoryCodec.decodeState(42L, 7, CartHistoryCodec.encode(state)));
+    }
+
+    private CartDto newCart(String username) {
+        return cartService.createCart(userRepository.save(new User(null, username)).getId());
+    }
+}
@@ -0,0 +1,131 @@
+package com.example.microservicesjavaapp.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for CartJournal, reopening the file to stand for a restart.
+ * The last test kills a JVM appending to a journal and recovers what it left behind.
+ */
+public class CartJournalTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void reopen_RecoversTheRecordsAfterTheCheckpoint() {
+        Path path = directory.resolve("cart.journal");
+        try (CartJournal journal = new CartJournal(path, 16, false)) {
+            assertEquals(1, journal.append(1L, 101L, 2));
+            assertEquals(2, journal.append(1L, 102L, 3));
+            journal.checkpoint(1);
+            assertEquals(3, journal.append(2L, 101L, 1));
+        }
+
+        try (CartJournal journal = new CartJournal(path, 16, false)) {
+            assertEquals(List.of(new CartJournal.Entry(2, 1L, 102L, 3), new CartJournal.Entry(3, 2L, 101L, 1)),
+                    journal.recovered());
+            assertEquals(4, journal.append(2L, 102L, 5)); // Appends after the recovered records
+        }
+    }
+
+    @Test
+    void tornRecord_EndsTheJournal() throws Exception {
+        Path path = directory.resolve("cart.journal");
+        try (CartJournal journal = new CartJournal(path, 16, false)) {
+            journal.append(1L, 101L, 2);
+            journal.append(1L, 102L, 3);
+            journal.append(1L, 103L, 4);
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            // The quantity of the second record, as if the process died while writing it
+            channel.write(ByteBuffer.wrap(new byte[]{7}), CartJournal.HEADER_BYTES + CartJournal.RECORD_BYTES + 24);
+        }
+
+        try (CartJournal journal = new CartJournal(path, 16, false)) {
+            assertEquals(List.of(new CartJournal.Entry(1, 1L, 101L, 2)), journal.recovered());
+            assertEquals(2, journal.append(1L, 104L, 1));
+        }
+        try (CartJournal journal = new CartJournal(path, 16, false)) {
+            // The third record, intact but now after the new second one, is not replayed
+            assertEquals(2, journal.recovered().size());
+            assertEquals(104L, journal.recovered().get(1).productId());
+        }
+    }
+
+    @Test
+    void compact_KeepsOnlyTheGivenLines() {
+        Path path = directory.resolve("cart.journal");
+        try (CartJournal journal = new CartJournal(path, 3, false)) {
+            journal.append(1L, 101L, 1);
+            journal.append(1L, 101L, 2);
+            journal.append(2L, 101L, 1);
+            assertEquals(-1, journal.append(2L, 101L, 2));
+
+            long[] sequences = journal.compact(List.of(new CartJournal.Entry(0, 1L, 101L, 2)));
+
+            assertArrayEquals(new long[]{4}, sequences);
+            assertEquals(5, journal.append(2L, 101L, 2));
+        }
+
+        try (CartJournal journal = new CartJournal(path, 3, false)) {
+            assertEquals(List.of(new CartJournal.Entry(4, 1L, 101L, 2), new CartJournal.Entry(5, 2L, 101L, 2)),
+                    journal.recovered());
+        }
+    }
+
+    @Test
+    void killedWriter_LeavesAConsistentPrefix() throws Exception {
+        Path path = directory.resolve("killed.journal");
+        Process writer = new ProcessBuilder(Path.of(System.getProperty("java.home"), "bin", "java").toString(),
+                "-cp", System.getProperty("java.class.path"), Writer.class.getName(), path.toString())
+                .redirectErrorStream(true)
+                .start();
+        try (BufferedReader output = new BufferedReader(new InputStreamReader(writer.getInputStream()))) {
+            assertEquals("appending", output.readLine());
+            TimeUnit.MILLISECONDS.sleep(50);
+            writer.destroyForcibly(); // SIGKILL: no shutdown hook, no close
+            assertTrue(writer.waitFor(10, TimeUnit.SECONDS));
+        }
+
+        try (CartJournal journal = new CartJournal(path, Writer.CAPACITY, false)) {
+            List<CartJournal.Entry> recovered = journal.recovered();
+            assertTrue(recovered.size() >= Writer.READY);
+            for (int i = 0; i < recovered.size(); i++) {
+                CartJournal.Entry entry = recovered.get(i);
+                assertEquals(new CartJournal.Entry(i + 1, i + 1, (i + 1) % 50, (i + 1) % 1000), entry);
+            }
+        }
+    }
+
+    /**
+     * Appends records until killed: record n is cart n, product n % 50, quantity n % 1000.
+     */
+    public static final class Writer {
+
+        static final int CAPACITY = 4_000_000;
+        static final int READY = 10_000;
+
+        public static void main(String[] args) {
+            CartJournal journal = new CartJournal(Path.of(args[0]), CAPACITY, false);
+            for (long n = 1; n <= CAPACITY; n++) {
+                journal.append(n, n % 50, (int) (n % 1000));
+                if (n == READY) {
+                    System.out.println("appending");
+                    System.out.flush();
+                }
+            }
+        }
+    }
+}
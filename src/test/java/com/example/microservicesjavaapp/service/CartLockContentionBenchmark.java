@@ -0,0 +1,225 @@
+package com.example.microservicesjavaapp.service;
+
+import com.example.microservicesjavaapp.model.User;
+import com.example.microservicesjavaapp.repository.UserRepository;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Contention scenarios for the per-cart locks held by CartServiceImpl.
+ * Each scenario runs in a fresh application context so the lock metrics only reflect that scenario,
+ * and prints throughput, lock-wait percentiles and queue depth (convoying) at the end.
+ *
+ * Not part of the default build; run with: mvn test -Pbenchmark
+ * Tunables: -Dbench.threads (default 32), -Dbench.opsPerThread (default 100), -Dbench.mixedSeconds (default 10).
+ */
+@Tag("benchmark")
+@SpringBootTest(properties = {
+        "spring.jpa.show-sql=false",
+        "logging.level.org.hibernate.SQL=WARN",
+        "logging.level.org.hibernate.orm.jdbc.bind=WARN",
+        "logging.level.com.example.microservicesjavaapp=WARN"
+})
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+public class CartLockContentionBenchmark {
+
+    private static final int THREADS = Integer.getInteger("bench.threads", 32);
+    private static final int OPS_PER_THREAD = Integer.getInteger("bench.opsPerThread", 100);
+    private static final int MIXED_SECONDS = Integer.getInteger("bench.mixedSeconds", 10);
+    private static final String[] PRODUCT_CODES = {"PROD001", "PROD002", "PROD003", "PROD004", "PROD005"};
+
+    @Autowired
+    private CartService cartService;
+
+    @Autowired
+    private CartLockRegistry cartLockRegistry;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        user = userRepository.findByUsername("john_doe").orElseThrow();
+    }
+
+    @Test
+    void nThreadsOnOneCart() throws Exception {
+        Long cartId = cartService.createCart(user.getId()).getId();
+        Result result = run(THREADS, worker -> {
+            for (int i = 0; i < OPS_PER_THREAD; i++) {
+                cartService.addProductToCart(cartId, PRODUCT_CODES[i % PRODUCT_CODES.length], 1);
+                worker.completed.increment();
+            }
+        });
+        report("N threads -> 1 cart", result);
+        assertEquals((long) THREADS * OPS_PER_THREAD, result.completed);
+        assertEquals(0, cartLockRegistry.size());
+    }
+
+    @Test
+    void nThreadsOnNCarts() throws Exception {
+        List<Long> cartIds = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            cartIds.add(cartService.createCart(user.getId()).getId());
+        }
+        Result result = run(THREADS, worker -> {
+            Long cartId = cartIds.get(worker.index);
+            for (int i = 0; i < OPS_PER_THREAD; i++) {
+                cartService.addProductToCart(cartId, PRODUCT_CODES[i % PRODUCT_CODES.length], 1);
+                worker.completed.increment();
+            }
+        });
+        report("N threads -> N carts", result);
+        assertEquals((long) THREADS * OPS_PER_THREAD, result.completed);
+    }
+
+    @Test
+    void writersMixedWithCheckout() throws Exception {
+        int carts = Math.max(1, THREADS / 8);
+        AtomicLongArray cartIds = new AtomicLongArray(carts);
+        for (int i = 0; i < carts; i++) {
+            cartIds.set(i, cartService.createCart(user.getId()).getId());
+        }
+        AtomicBoolean running = new AtomicBoolean(true);
+        LongAdder checkouts = new LongAdder();
+
+        // One thread keeps checking out random shared carts; processOrder holds the lock for its whole run
+        Thread checkout = new Thread(() -> {
+            while (running.get()) {
+                int slot = ThreadLocalRandom.current().nextInt(carts);
+                cartService.processOrder(cartIds.get(slot));
+                checkouts.increment();
+                try {
+                    TimeUnit.MILLISECONDS.sleep(500);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }, "bench-checkout");
+        checkout.start();
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(MIXED_SECONDS);
+        Result result = run(THREADS, worker -> {
+            int i = 0;
+            while (System.nanoTime() < deadline) {
+                int slot = worker.index % carts;
+                long cartId = cartIds.get(slot);
+                try {
+                    cartService.addProductToCart(cartId, PRODUCT_CODES[i++ % PRODUCT_CODES.length], 1);
+                    worker.completed.increment();
+                } catch (ResponseStatusException e) {
+                    // The cart was checked out under us: start a new one in the same slot, like a returning shopper
+                    worker.rejected.increment();
+                    cartIds.compareAndSet(slot, cartId, cartService.createCart(user.getId()).getId());
+                }
+            }
+        });
+        running.set(false);
+        checkout.join();
+        report("N threads -> " + carts + " carts + checkout (" + checkouts.sum() + " orders)", result);
+        assertTrue(result.completed > 0);
+    }
+
+    private Result run(int threads, Workload workload) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Worker> workers = new ArrayList<>();
+        List<Future<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            Worker worker = new Worker(i);
+            workers.add(worker);
+            futures.add(pool.submit(() -> {
+                start.await();
+                workload.run(worker);
+                return null;
+            }));
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(10, TimeUnit.MINUTES), "benchmark did not finish");
+        long elapsed = System.nanoTime() - begin;
+        for (Future<Void> future : futures) {
+            future.get(); // Surfaces any failure inside a worker
+        }
+
+        long completed = workers.stream().mapToLong(w -> w.completed.sum()).sum();
+        long rejected = workers.stream().mapToLong(w -> w.rejected.sum()).sum();
+        return new Result(completed, rejected, elapsed);
+    }
+
+    private void report(String scenario, Result result) {
+        Timer wait = meterRegistry.get("cart.lock.wait").timer();
+        Timer hold = meterRegistry.get("cart.lock.hold").timer();
+        DistributionSummary depth = meterRegistry.get("cart.lock.queue.depth").summary();
+        HistogramSnapshot waits = wait.takeSnapshot();
+
+        double seconds = result.elapsedNanos / 1e9;
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%n=== %s (%d threads) ===%n", scenario, THREADS));
+        sb.append(String.format("ops completed     : %d (%d rejected) in %.2f s%n", result.completed, result.rejected, seconds));
+        sb.append(String.format("throughput        : %.1f ops/s%n", result.completed / seconds));
+        sb.append(String.format("lock acquisitions : %d, mean wait %.3f ms, max wait %.3f ms%n",
+                wait.count(), wait.mean(TimeUnit.MILLISECONDS), wait.max(TimeUnit.MILLISECONDS)));
+        for (ValueAtPercentile p : waits.percentileValues()) {
+            sb.append(String.format("lock wait p%-5s   : %.3f ms%n", trim(p.percentile() * 100), p.value(TimeUnit.MILLISECONDS)));
+        }
+        sb.append(String.format("lock hold         : mean %.3f ms, max %.3f ms%n",
+                hold.mean(TimeUnit.MILLISECONDS), hold.max(TimeUnit.MILLISECONDS)));
+        sb.append(String.format("queue depth       : mean %.2f, max %.0f (convoying when mean >> 0)%n",
+                depth.mean(), depth.max()));
+        System.out.println(sb);
+    }
+
+    private static String trim(double percentile) {
+        return percentile == Math.rint(percentile) ? String.valueOf((long) percentile) : String.valueOf(percentile);
+    }
+
+    private interface Workload {
+        void run(Worker worker) throws Exception;
+    }
+
+    private static final class Worker {
+        private final int index;
+        private final LongAdder completed = new LongAdder();
+        private final LongAdder rejected = new LongAdder();
+
+        private Worker(int index) {
+            this.index = index;
+        }
+    }
+
+    private record Result(long completed, long rejected, long elapsedNanos) {
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.microservicesjavaapp.service;
+
+import com.example.microservicesjavaapp.service.CartLockRegistry.CartLock;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for CartLockRegistry: the reference-counted lock entries, and locks released by
+ * releaseAfterTransaction only once the surrounding transaction has committed or rolled back.
+ * Transactions come from a no-op transaction manager, which runs Spring's real synchronization callbacks.
+ */
+public class CartLockRegistryTest {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final CartLockRegistry registry = new CartLockRegistry(meterRegistry, false, new CartFlightRecorder(false));
+    private final TransactionTemplate transactionTemplate = new TransactionTemplate(new NoOpTransactionManager());
+
+    @Test
+    void release_DropsTheEntryOnlyOnceNoThreadHoldsOrWaitsForIt() throws Exception {
+        CartLock lock = registry.acquire(1L);
+        assertSame(lock, registry.acquire(1L)); // Reentrant: the same entry, counted twice
+        registry.release(1L, lock);
+        assertEquals(1, registry.size());
+        assertTrue(lock.isHeldByCurrentThread());
+
+        CountDownLatch acquired = new CountDownLatch(1);
+        ExecutorService waiter = Executors.newSingleThreadExecutor();
+        try {
+            Future<CartLock> waiting = waiter.submit(() -> {
+                CartLock shared = registry.acquire(1L);
+                acquired.countDown();
+                registry.release(1L, shared);
+                return shared;
+            });
+            while (!lock.hasQueuedThreads()) {
+                Thread.sleep(1);
+            }
+
+            registry.release(1L, lock);
+            assertTrue(acquired.await(10, TimeUnit.SECONDS));
+            assertSame(lock, waiting.get(10, TimeUnit.SECONDS)); // The waiter kept the entry alive
+        } finally {
+            waiter.shutdownNow();
+        }
+        assertEquals(0, registry.size());
+        assertFalse(lock.isLocked());
+
+        CartLock next = registry.acquire(1L);
+        assertNotSame(lock, next); // A fresh entry once the last user has left
+        registry.release(1L, next);
+        assertEquals(0, registry.size());
+    }
+
+    @Test
+    void releaseAfterTransaction_UnlocksOnCommit() {
+        CartLock lock = transactionTemplate.execute(status -> {
+            CartLock held = registry.acquire(2L);
+            registry.releaseAfterTransaction(2L, held);
+            assertTrue(held.isHeldByCurrentThread(), "Held until the transaction completes");
+            assertEquals(1, registry.size());
+            return held;
+        });
+
+        assertFalse(lock.isLocked());
+        assertEquals(0, registry.size());
+        assertEquals(1, meterRegistry.timer("cart.lock.hold").count());
+    }
+
+    @Test
+    void releaseAfterTransaction_UnlocksOnRollback() {
+        CartLock[] lock = new CartLock[1];
+        assertThrows(IllegalStateException.class, () -> transactionTemplate.executeWithoutResult(status -> {
+            lock[0] = registry.acquire(3L);
+            registry.releaseAfterTransaction(3L, lock[0]);
+            throw new IllegalStateException("Rolls back");
+        }));
+
+        assertFalse(lock[0].isLocked());
+        assertEquals(0, registry.size());
+    }
+
+    @Test
+    void releaseAfterTransaction_UnlocksAtOnceOutsideATransaction() {
+        CartLock lock = registry.acquire(4L);
+        registry.releaseAfterTransaction(4L, lock);
+
+        assertFalse(lock.isLocked());
+        assertEquals(0, registry.size());
+    }
+
+    /**
+     * Begins, commits and rolls back nothing, but drives the transaction synchronizations as a real one does.
+     */
+    private static final class NoOpTransactionManager extends AbstractPlatformTransactionManager {
+
+        @Override
+        protected Object doGetTransaction() {
+            return new Object();
+        }
+
+        @Override
+        protected void doBegin(Object transaction, TransactionDefinition definition) {
+        }
+
+        @Override
+        protected void doCommit(DefaultTransactionStatus status) {
+        }
+
+        @Override
+        protected void doRollback(DefaultTransactionStatus status) {
+        }
+    }
+}
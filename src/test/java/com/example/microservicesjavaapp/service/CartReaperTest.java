@@ -0,0 +1,112 @@
+package com.example.microservicesjavaapp.service;
+
+import com.example.microservicesjavaapp.model.Cart;
+import com.example.microservicesjavaapp.model.Cart.CartStatus;
+import com.example.microservicesjavaapp.model.CartItem;
+import com.example.microservicesjavaapp.model.Product;
+import com.example.microservicesjavaapp.model.User;
+import com.example.microservicesjavaapp.repository.CartItemRepository;
+import com.example.microservicesjavaapp.repository.CartRepository;
+import com.example.microservicesjavaapp.repository.ProductRepository;
+import com.example.microservicesjavaapp.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Integration tests for the CartReaper against the H2 database.
+ * The reaper under test uses a batch size of 2 so a sweep has to go through several batches.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+public class CartReaperTest {
+
+    private CartReaper cartReaper;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private CartRepository cartRepository;
+
+    @Autowired
+    private CartItemRepository cartItemRepository;
+
+    @Autowired
+    private CartStore cartStore;
+
+    @Autowired
+    private StockReservations stockReservations;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    private User user;
+    private Product product;
+
+    @BeforeEach
+    void setup() {
+        cartRepository.deleteAll();
+        userRepository.deleteAll();
+        productRepository.deleteAll();
+
+        user = userRepository.save(new User(null, "reaper-user"));
+        product = productRepository.save(new Product(null, "PROD001", "Laptop", new BigDecimal("1200.00"), "Electronics", 100));
+
+        cartReaper = new CartReaper(cartRepository, cartStore, stockReservations, transactionManager,
+                new SimpleMeterRegistry(), Duration.ofDays(1), 2);
+    }
+
+    @Test
+    void sweep_RemovesOnlyIdleActiveCartsAndTheirItems() {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime twoDaysAgo = now.minusDays(2);
+
+        for (int i = 0; i < 3; i++) {
+            saveCartWithItem(twoDaysAgo, CartStatus.ACTIVE);
+        }
+        Cart recent = saveCartWithItem(now, CartStatus.ACTIVE);
+        Cart processed = saveCartWithItem(twoDaysAgo, CartStatus.PROCESSED);
+        assertEquals(96, stockReservations.available(product.getId())); // 100 on hand, 4 units in ACTIVE carts
+
+        CartReaper.SweepResult result = cartReaper.sweep(now.minusDays(1));
+
+        assertEquals(3, result.cartsRemoved());
+        assertEquals(3, result.itemsRemoved());
+        assertEquals(2, cartRepository.count());
+        assertTrue(cartRepository.findById(recent.getId()).isPresent());
+        assertTrue(cartRepository.findById(processed.getId()).isPresent());
+        assertEquals(2, cartItemRepository.count());
+        assertEquals(99, stockReservations.available(product.getId())); // The reaped carts' units are back
+    }
+
+    @Test
+    void sweep_NothingIdle_RemovesNothing() {
+        saveCartWithItem(LocalDateTime.now(), CartStatus.ACTIVE);
+
+        CartReaper.SweepResult result = cartReaper.sweep(LocalDateTime.now().minusDays(1));
+
+        assertEquals(0, result.cartsRemoved());
+        assertEquals(1, cartRepository.count());
+    }
+
+    private Cart saveCartWithItem(LocalDateTime lastModified, CartStatus status) {
+        Cart cart = new Cart(null, user, lastModified, lastModified, new HashSet<>(), status, BigDecimal.ZERO, BigDecimal.ZERO, null);
+        cart.getItems().add(new CartItem(null, cart, product, 1));
+        return cartRepository.save(cart);
+    }
+}
@@ -7,24 +7,27 @@ import com.example.microservicesjavaapp.dto.UserDto;
 import com.example.microservicesjavaapp.model.Cart;
 import com.example.microservicesjavaapp.model.Cart.CartStatus;
 import com.example.microservicesjavaapp.model.CartItem;
-import com.example.microservicesjavaapp.model.Discount;
 import com.example.microservicesjavaapp.model.Product;
 import com.example.microservicesjavaapp.model.User;
 import com.example.microservicesjavaapp.repository.CartItemRepository;
 import com.example.microservicesjavaapp.repository.CartRepository;
-import com.example.microservicesjavaapp.repository.DiscountRepository;
 import com.example.microservicesjavaapp.repository.ProductRepository;
 import com.example.microservicesjavaapp.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.web.server.ResponseStatusException;
 
 import java.math.BigDecimal;
+import java.time.Clock;
 import java.time.LocalDateTime;
 import java.util.Arrays;
 import java.util.HashSet;
@@ -55,8 +58,30 @@ public class CartServiceTest {
     @Mock // Mocks the UserRepository dependency
     private UserRepository userRepository;
 
-    @Mock // Mocks the DiscountRepository dependency
-    private DiscountRepository discountRepository;
+    @Mock // Mocks the transactional outbox: the events are covered by OutboxIntegrationTest
+    private Outbox outbox;
+
+    @Mock // Mocks the cart history: its events and replay are covered by CartHistoryTest
+    private CartHistory cartHistory;
+
+    @Spy // Real discount engine over a fixed rule set: 10% off Electronics
+    private DiscountEngine discountEngine = new DiscountEngine(() -> List.of(
+            DiscountIndex.Rule.forCategory("Electronics", 1, new BigDecimal("10.00"))), Clock.systemDefaultZone());
+
+    @Spy // Real stock counters: 100 units of every product
+    private StockReservations stockReservations = new StockReservations(productId -> 100L);
+
+    @Spy // Real per-cart lock registry, injected alongside the mocks
+    private CartLockRegistry cartLockRegistry = new CartLockRegistry(new SimpleMeterRegistry(), false, new CartFlightRecorder(false));
+
+    @Spy // Real single-flight layer: calls made one at a time never coalesce
+    private SingleFlight singleFlight = new SingleFlight();
+
+    @Spy // Flight recorder switched off: its events are covered by CartFlightRecorderTest
+    private CartFlightRecorder flightRecorder = new CartFlightRecorder(false);
+
+    @Spy // Read replica switched off: every query runs on the one database; routing is covered by ReadReplicaTest
+    private ReplicaReads replicaReads = new ReplicaReads();
 
     @InjectMocks // Injects the mocked dependencies into CartServiceImpl
     private CartServiceImpl cartService; // Inject the implementation class
@@ -70,10 +95,13 @@ public class CartServiceTest {
     void setUp() {
         // Initialize common test data before each test method
         testUser = new User(1L, "testuser");
-        testProduct1 = new Product(101L, "PROD001", "Laptop", new BigDecimal("1200.00"), "Electronics");
-        testProduct2 = new Product(102L, "PROD002", "Mouse", new BigDecimal("25.00"), "Electronics");
+        testProduct1 = new Product(101L, "PROD001", "Laptop", new BigDecimal("1200.00"), "Electronics", 100);
+        testProduct2 = new Product(102L, "PROD002", "Mouse", new BigDecimal("25.00"), "Electronics", 100);
         // Ensure that the cart's items set is initialized, as the service expects it
-        testCart = new Cart(1L, testUser, LocalDateTime.now(), new HashSet<>(), CartStatus.ACTIVE);
+        LocalDateTime now = LocalDateTime.now();
+        testCart = new Cart(1L, testUser, now, now, new HashSet<>(), CartStatus.ACTIVE, BigDecimal.ZERO, BigDecimal.ZERO, null);
+        // Real JPA cart store over the mocked item repository, which only exists once the mocks are created
+        ReflectionTestUtils.setField(cartService, "cartStore", new JpaCartStore(cartItemRepository));
     }
 
     @Test
@@ -159,6 +187,30 @@ public class CartServiceTest {
         verify(cartItemRepository, times(1)).save(existingItem); // Ensure the existing entity was saved
     }
 
+    @Test
+    void addAndRemoveProduct_UpdatesRunningTotals() {
+        CartItem existingItem = new CartItem(1L, testCart, testProduct1, 1);
+        testCart.getItems().add(existingItem);
+        testCart.setSubtotal(new BigDecimal("1200.00"));
+        testCart.setDiscountedTotal(new BigDecimal("1080.00"));
+
+        when(cartRepository.findByIdAndStatus(1L, CartStatus.ACTIVE)).thenReturn(Optional.of(testCart));
+        when(productRepository.findByCode("PROD001")).thenReturn(Optional.of(testProduct1));
+        when(productRepository.findById(101L)).thenReturn(Optional.of(testProduct1));
+        when(cartItemRepository.findByCartAndProduct(testCart, testProduct1)).thenReturn(Optional.of(existingItem));
+        when(cartItemRepository.save(any(CartItem.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        cartService.addProductToCart(1L, "PROD001", 2);
+
+        assertEquals(new BigDecimal("3600.00"), testCart.getSubtotal()); // 3 x 1200.00
+        assertEquals(new BigDecimal("3240.00"), testCart.getDiscountedTotal()); // Less 10%
+
+        cartService.removeProductFromCart(1L, 101L);
+
+        assertEquals(0, BigDecimal.ZERO.compareTo(testCart.getSubtotal()));
+        assertEquals(0, BigDecimal.ZERO.compareTo(testCart.getDiscountedTotal()));
+    }
+
     @Test
     void addProductToCart_CartNotFound() {
         when(cartRepository.findByIdAndStatus(anyLong(), any(CartStatus.class))).thenReturn(Optional.empty());
@@ -228,7 +280,7 @@ public class CartServiceTest {
         List<CartItem> cartEntities = Arrays.asList(item1, item2); // Entities to be returned by repo
 
         when(cartRepository.findById(1L)).thenReturn(Optional.of(testCart));
-        when(cartItemRepository.findByCart(testCart)).thenReturn(cartEntities);
+        when(cartItemRepository.findWithProductByCart(testCart)).thenReturn(cartEntities);
 
         List<CartItemDto> retrievedItems = cartService.getCartProducts(1L);
 
@@ -241,7 +293,7 @@ public class CartServiceTest {
         assertEquals(item2.getProduct().getCode(), retrievedItems.get(1).getProduct().getCode());
 
         verify(cartRepository, times(1)).findById(1L);
-        verify(cartItemRepository, times(1)).findByCart(testCart);
+        verify(cartItemRepository, times(1)).findWithProductByCart(testCart);
     }
 
     @Test
@@ -257,12 +309,13 @@ public class CartServiceTest {
 
     @Test
     void getCartsByUserId_Success() {
-        Cart cart1 = new Cart(1L, testUser, LocalDateTime.now(), new HashSet<>(), CartStatus.ACTIVE);
-        Cart cart2 = new Cart(2L, testUser, LocalDateTime.now(), new HashSet<>(), CartStatus.PROCESSED);
+        LocalDateTime now = LocalDateTime.now();
+        Cart cart1 = new Cart(1L, testUser, now, now, new HashSet<>(), CartStatus.ACTIVE, BigDecimal.ZERO, BigDecimal.ZERO, null);
+        Cart cart2 = new Cart(2L, testUser, now, now, new HashSet<>(), CartStatus.PROCESSED, BigDecimal.ZERO, BigDecimal.ZERO, null);
         List<Cart> userCartEntities = Arrays.asList(cart1, cart2); // Entities to be returned by repo
 
         when(userRepository.findById(1L)).thenReturn(Optional.of(testUser));
-        when(cartRepository.findByUser(testUser)).thenReturn(userCartEntities);
+        when(cartRepository.findWithItemsByUser(testUser)).thenReturn(userCartEntities);
 
         List<CartDto> retrievedCarts = cartService.getCartsByUserId(1L);
 
@@ -275,7 +328,7 @@ public class CartServiceTest {
         assertEquals(cart2.getStatus(), retrievedCarts.get(1).getStatus());
 
         verify(userRepository, times(1)).findById(1L);
-        verify(cartRepository, times(1)).findByUser(testUser);
+        verify(cartRepository, times(1)).findWithItemsByUser(testUser);
     }
 
     @Test
@@ -290,54 +343,84 @@ public class CartServiceTest {
     }
 
     @Test
-    void processOrder_Success_WithDiscount() throws InterruptedException {
+    void processOrder_Success_WithDiscount() {
         // Setup a cart with items
         CartItem item1 = new CartItem(1L, testCart, testProduct1, 2); // Laptop (Electronics)
         CartItem item2 = new CartItem(2L, testCart, testProduct2, 1); // Mouse (Electronics)
         testCart.getItems().add(item1);
         testCart.getItems().add(item2);
 
-        Discount electronicsDiscount = new Discount(1L, "Electronics", new BigDecimal("10.00")); // 10% discount
+        // Running totals as maintained by add/remove: 2 x 1200.00 + 25.00, less 10% on Electronics
+        testCart.setSubtotal(new BigDecimal("2425.00"));
+        testCart.setDiscountedTotal(new BigDecimal("2182.50"));
 
-        when(cartRepository.findByIdAndStatus(1L, CartStatus.ACTIVE)).thenReturn(Optional.of(testCart));
-        when(discountRepository.findByCategory("Electronics")).thenReturn(Optional.of(electronicsDiscount));
+        when(cartRepository.lockByIdAndStatus(1L, CartStatus.ACTIVE)).thenReturn(Optional.of(testCart));
+        when(cartItemRepository.existsByCart(testCart)).thenReturn(true);
+        when(cartItemRepository.findWithProductByCart(testCart)).thenReturn(List.of(item1, item2));
         when(cartRepository.save(any(Cart.class))).thenReturn(testCart);
 
-        // Call the async method
         cartService.processOrder(1L);
 
-        // Allow some time for the async method to complete.
-        Thread.sleep(2500);
-
         // Verify that the cart status was updated to PROCESSED
         assertEquals(CartStatus.PROCESSED, testCart.getStatus());
+        assertEquals(new BigDecimal("2182.50"), testCart.getDiscountedTotal()); // Re-priced, and still up to date
         verify(cartRepository, times(1)).save(testCart);
-        verify(cartRepository, times(1)).findByIdAndStatus(1L, CartStatus.ACTIVE);
-        verify(discountRepository, times(2)).findByCategory("Electronics"); // Called for each item
+        verify(cartRepository, times(1)).lockByIdAndStatus(1L, CartStatus.ACTIVE);
     }
 
     @Test
-    void processOrder_CartNotFound_ShouldLogAndNotProceed() throws InterruptedException {
-        when(cartRepository.findByIdAndStatus(anyLong(), any(CartStatus.class))).thenReturn(Optional.empty());
+    void processOrder_PriceChangedSinceAdded_ChargesTheCurrentPrice() {
+        CartItem item = new CartItem(1L, testCart, testProduct1, 2);
+        testCart.getItems().add(item);
+        // Running totals from when the laptop cost 1200.00; it now costs 1000.00
+        testCart.setSubtotal(new BigDecimal("2400.00"));
+        testCart.setDiscountedTotal(new BigDecimal("2160.00"));
+        testProduct1.setPrice(new BigDecimal("1000.00"));
+
+        when(cartRepository.lockByIdAndStatus(1L, CartStatus.ACTIVE)).thenReturn(Optional.of(testCart));
+        when(cartItemRepository.existsByCart(testCart)).thenReturn(true);
+        when(cartItemRepository.findWithProductByCart(testCart)).thenReturn(List.of(item));
 
-        cartService.processOrder(99L);
+        cartService.processOrder(1L);
 
-        Thread.sleep(100);
+        assertEquals(CartStatus.PROCESSED, testCart.getStatus());
+        assertEquals(new BigDecimal("2000.00"), testCart.getSubtotal());
+        assertEquals(new BigDecimal("1800.00"), testCart.getDiscountedTotal()); // Less 10% on Electronics
+        verify(cartRepository, times(1)).save(testCart);
+    }
+
+    @Test
+    void processOrder_StockSoldElsewhere_FailsTheJob() {
+        testCart.getItems().add(new CartItem(1L, testCart, testProduct1, 2));
+        when(cartRepository.lockByIdAndStatus(1L, CartStatus.ACTIVE)).thenReturn(Optional.of(testCart));
+        when(cartItemRepository.existsByCart(testCart)).thenReturn(true);
+        // The CHECK (stock >= 0) constraint rejects the decrement: another instance reserved the same units
+        when(productRepository.decrementStockByCartItems(1L)).thenThrow(new DataIntegrityViolationException("CHK_PRODUCTS_STOCK_NON_NEGATIVE"));
+
+        assertThrows(IllegalStateException.class, () -> cartService.processOrder(1L));
+
+        assertEquals(CartStatus.ACTIVE, testCart.getStatus());
+        verify(cartRepository, never()).save(any(Cart.class));
+    }
+
+    @Test
+    void processOrder_CartNotFound_ShouldLogAndNotProceed() {
+        when(cartRepository.lockByIdAndStatus(anyLong(), any(CartStatus.class))).thenReturn(Optional.empty());
+
+        cartService.processOrder(99L);
 
         verify(cartRepository, never()).save(any(Cart.class));
     }
 
     @Test
-    void processOrder_EmptyCart() throws InterruptedException {
+    void processOrder_EmptyCart() {
         // Mock a cart with no items
         testCart.setItems(new HashSet<>());
-        when(cartRepository.findByIdAndStatus(1L, CartStatus.ACTIVE)).thenReturn(Optional.of(testCart));
+        when(cartRepository.lockByIdAndStatus(1L, CartStatus.ACTIVE)).thenReturn(Optional.of(testCart));
         when(cartRepository.save(any(Cart.class))).thenReturn(testCart);
 
         cartService.processOrder(1L);
 
-        Thread.sleep(100); // Allow async operation to complete
-
         assertEquals(CartStatus.PROCESSED, testCart.getStatus());
         verify(cartRepository, times(1)).save(testCart);
     }
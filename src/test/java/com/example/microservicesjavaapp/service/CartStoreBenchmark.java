@@ -0,0 +1,145 @@
+package com.example.microservicesjavaapp.service;
+
+import com.example.microservicesjavaapp.model.Cart;
+import com.example.microservicesjavaapp.model.Cart.CartStatus;
+import com.example.microservicesjavaapp.model.CartItem;
+import com.example.microservicesjavaapp.model.Product;
+import com.example.microservicesjavaapp.model.User;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * One million ACTIVE carts held by one instance: what their lines cost as the managed entities the JPA
+ * engine works with (a Cart with a HashSet of CartItem per cart, as the persistence context holds them)
+ * against OffHeapCartLines. Reports the heap each takes after a full GC, the direct memory of the
+ * off-heap tables, and the throughput of adding lines and reading a cart's lines back, single-threaded
+ * so neither side pays for locking it does not need. The products are shared by every cart, as they
+ * are in a persistence context.
+ *
+ * Not part of the default build; run with: mvn test -Pbenchmark -Dtest=CartStoreBenchmark
+ * Tunables: -Dbench.carts (default 1000000), -Dbench.linesPerCart (default 3), -Dbench.products (default 1000),
+ * -Dbench.segments (default 64). Give the JVM room: -DargLine="-Xmx4g -XX:MaxDirectMemorySize=1g".
+ */
+@Tag("benchmark")
+public class CartStoreBenchmark {
+
+    private static final int CARTS = Integer.getInteger("bench.carts", 1_000_000);
+    private static final int LINES_PER_CART = Integer.getInteger("bench.linesPerCart", 3);
+    private static final int PRODUCTS = Integer.getInteger("bench.products", 1_000);
+    private static final int SEGMENTS = Integer.getInteger("bench.segments", 64);
+
+    @Test
+    void millionActiveCarts() {
+        Product[] products = new Product[PRODUCTS];
+        for (int i = 0; i < PRODUCTS; i++) {
+            products[i] = new Product((long) i + 1, "PROD" + i, "Product " + i, new BigDecimal("10.00"), "Books", 1_000_000);
+        }
+        User user = new User(1L, "bench");
+
+        long heapBefore = usedHeap();
+        long start = System.nanoTime();
+        Map<Long, Cart> entities = new HashMap<>();
+        for (long cartId = 1; cartId <= CARTS; cartId++) {
+            LocalDateTime now = LocalDateTime.now();
+            Cart cart = new Cart(cartId, user, now, now, new HashSet<>(), CartStatus.ACTIVE, BigDecimal.ZERO, BigDecimal.ZERO, null);
+            for (int line = 0; line < LINES_PER_CART; line++) {
+                cart.getItems().add(new CartItem(cartId * LINES_PER_CART + line, cart, products[product(cartId, line)], 1));
+            }
+            entities.put(cartId, cart);
+        }
+        long entityAddNanos = System.nanoTime() - start;
+        long entityHeap = usedHeap() - heapBefore;
+        long entityReadNanos = time(() -> {
+            long units = 0;
+            for (long cartId = 1; cartId <= CARTS; cartId++) {
+                for (CartItem item : entities.get(cartId).getItems()) {
+                    units += item.getQuantity();
+                }
+            }
+            return units;
+        });
+        entities.clear();
+
+        heapBefore = usedHeap();
+        start = System.nanoTime();
+        OffHeapCartLines lines = new OffHeapCartLines(SEGMENTS, 1_024);
+        for (long cartId = 1; cartId <= CARTS; cartId++) {
+            for (int line = 0; line < LINES_PER_CART; line++) {
+                lines.add(cartId, products[product(cartId, line)].getId(), 1);
+            }
+        }
+        long offHeapAddNanos = System.nanoTime() - start;
+        long offHeapHeap = usedHeap() - heapBefore;
+        long[] units = new long[1];
+        long offHeapReadNanos = time(() -> {
+            units[0] = 0;
+            for (long cartId = 1; cartId <= CARTS; cartId++) {
+                lines.forEachLine(cartId, (productId, quantity) -> units[0] += quantity);
+            }
+            return units[0];
+        });
+        assertEquals((long) CARTS * LINES_PER_CART, lines.lineCount());
+
+        long totalLines = (long) CARTS * LINES_PER_CART;
+        System.out.printf("%n=== %d ACTIVE carts x %d lines (%d products) ===%n", CARTS, LINES_PER_CART, PRODUCTS);
+        System.out.printf("%-28s %16s %16s%n", "", "JPA entities", "off-heap");
+        System.out.printf("%-28s %16s %16s%n", "heap", mb(entityHeap), mb(offHeapHeap));
+        System.out.printf("%-28s %16s %16s%n", "direct memory", mb(0), mb(lines.allocatedBytes()));
+        System.out.printf("%-28s %16d %16d%n", "bytes per line", entityHeap / totalLines,
+                (offHeapHeap + lines.allocatedBytes()) / totalLines);
+        System.out.printf("%-28s %16.0f %16.0f%n", "lines added/s", perSecond(totalLines, entityAddNanos),
+                perSecond(totalLines, offHeapAddNanos));
+        System.out.printf("%-28s %16.0f %16.0f%n", "carts read/s", perSecond(CARTS, entityReadNanos),
+                perSecond(CARTS, offHeapReadNanos));
+        System.out.println("Off-heap keeps the cart row itself in the database; the entity figures include it.");
+    }
+
+    /**
+     * Spreads the lines of each cart over distinct products.
+     */
+    private static int product(long cartId, int line) {
+        return (int) ((cartId * 7 + line * 131) % PRODUCTS);
+    }
+
+    private static long time(LongSupplier work) {
+        work.getAsLong(); // Warm-up
+        long start = System.nanoTime();
+        long result = work.getAsLong();
+        long elapsed = System.nanoTime() - start;
+        if (result < 0) {
+            throw new IllegalStateException(); // Keeps the result alive
+        }
+        return elapsed;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            try {
+                TimeUnit.MILLISECONDS.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static double perSecond(long operations, long nanos) {
+        return operations * 1e9 / nanos;
+    }
+
+    private static String mb(long bytes) {
+        return String.format("%.1f MB", bytes / (1024.0 * 1024.0));
+    }
+}
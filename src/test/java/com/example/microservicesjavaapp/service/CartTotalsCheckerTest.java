@@ -0,0 +1,108 @@
+package com.example.microservicesjavaapp.service;
+
+import com.example.microservicesjavaapp.model.Cart;
+import com.example.microservicesjavaapp.model.Cart.CartStatus;
+import com.example.microservicesjavaapp.model.CartItem;
+import com.example.microservicesjavaapp.model.Discount;
+import com.example.microservicesjavaapp.model.Product;
+import com.example.microservicesjavaapp.model.User;
+import com.example.microservicesjavaapp.repository.CartRepository;
+import com.example.microservicesjavaapp.repository.DiscountRepository;
+import com.example.microservicesjavaapp.repository.ProductRepository;
+import com.example.microservicesjavaapp.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Integration tests for the CartTotalsChecker against the H2 database.
+ * Carts are saved straight through the repository, so their stored totals are whatever the test sets.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+public class CartTotalsCheckerTest {
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private CartRepository cartRepository;
+
+    @Autowired
+    private DiscountRepository discountRepository;
+
+    @Autowired
+    private CartStore cartStore;
+
+    @Autowired
+    private DiscountEngine discountEngine;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    private User user;
+    private Product laptop;
+    private Product book;
+
+    @BeforeEach
+    void setup() {
+        cartRepository.deleteAll();
+        userRepository.deleteAll();
+        productRepository.deleteAll();
+        discountRepository.deleteAll();
+
+        user = userRepository.save(new User(null, "checker-user"));
+        laptop = productRepository.save(new Product(null, "PROD001", "Laptop", new BigDecimal("1200.00"), "Electronics", 100));
+        book = productRepository.save(new Product(null, "PROD003", "Book", new BigDecimal("50.00"), "Books", 100));
+        discountRepository.save(new Discount(null, "Electronics", new BigDecimal("10.00"))); // 10% discount
+    }
+
+    @Test
+    void check_RepairsDriftedCartsOnly() {
+        Cart consistent = saveCart(new BigDecimal("2450.00"), new BigDecimal("2210.00"));
+        Cart drifted = saveCart(new BigDecimal("2400.00"), new BigDecimal("2400.00"));
+
+        int driftedCount = checker(true).check(10);
+
+        assertEquals(1, driftedCount);
+        Cart repaired = cartRepository.findById(drifted.getId()).orElseThrow();
+        assertEquals(new BigDecimal("2450.00"), repaired.getSubtotal()); // 2 x 1200.00 + 50.00
+        assertEquals(new BigDecimal("2210.00"), repaired.getDiscountedTotal()); // Less 10% on the laptops
+        assertEquals(new BigDecimal("2210.00"), cartRepository.findById(consistent.getId()).orElseThrow().getDiscountedTotal());
+        assertEquals(0, checker(true).check(10));
+    }
+
+    @Test
+    void check_WithoutRepair_OnlyReports() {
+        Cart drifted = saveCart(BigDecimal.ZERO, BigDecimal.ZERO);
+
+        assertEquals(1, checker(false).check(10));
+        assertEquals(0, BigDecimal.ZERO.compareTo(cartRepository.findById(drifted.getId()).orElseThrow().getSubtotal()));
+    }
+
+    private CartTotalsChecker checker(boolean repair) {
+        return new CartTotalsChecker(cartRepository, cartStore, discountEngine, transactionManager,
+                new SimpleMeterRegistry(), 100, repair);
+    }
+
+    private Cart saveCart(BigDecimal subtotal, BigDecimal discountedTotal) {
+        LocalDateTime now = LocalDateTime.now();
+        Cart cart = new Cart(null, user, now, now, new HashSet<>(), CartStatus.ACTIVE, subtotal, discountedTotal, null);
+        cart.getItems().add(new CartItem(null, cart, laptop, 2));
+        cart.getItems().add(new CartItem(null, cart, book, 1));
+        return cartRepository.save(cart);
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.microservicesjavaapp.service;
+
+import com.example.microservicesjavaapp.service.ConcurrencyLimiter.Permit;
+import com.example.microservicesjavaapp.service.ConcurrencyLimiter.Priority;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for ConcurrencyLimiter.
+ * The clock only moves when a test advances it, so every request takes exactly the latency the test gives it.
+ */
+public class ConcurrencyLimiterTest {
+
+    private long now;
+
+    private final ConcurrencyLimiter limiter = new ConcurrencyLimiter(10, 2, 100, 0.8, 0.5, () -> now);
+
+    @Test
+    void tryAcquire_ShedsLowPriorityFirst() {
+        List<Permit> permits = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            permits.add(limiter.tryAcquire(Priority.LOW));
+        }
+        assertNull(limiter.tryAcquire(Priority.LOW)); // Half the limit
+        for (int i = 0; i < 3; i++) {
+            permits.add(limiter.tryAcquire(Priority.NORMAL));
+        }
+        assertNull(limiter.tryAcquire(Priority.NORMAL)); // 80% of the limit
+        permits.add(limiter.tryAcquire(Priority.HIGH));
+        permits.add(limiter.tryAcquire(Priority.HIGH));
+        assertNull(limiter.tryAcquire(Priority.HIGH)); // The whole limit
+        assertFalse(permits.contains(null));
+
+        permits.forEach(Permit::release);
+        assertEquals(0, limiter.inFlight());
+        assertNotNull(limiter.tryAcquire(Priority.LOW));
+    }
+
+    @Test
+    void limit_GrowsWhileLatencyHoldsAndShrinksWhenItRises() {
+        for (int window = 0; window < 5; window++) {
+            saturatedWindow(10);
+        }
+        double grown = limiter.limit();
+        assertTrue(grown > 10, "limit should grow while latency holds, was " + grown);
+
+        for (int window = 0; window < 10; window++) {
+            saturatedWindow(100); // The database slowed down tenfold
+        }
+        assertTrue(limiter.limit() < grown / 2, "limit should shrink when latency rises, was " + limiter.limit());
+    }
+
+    @Test
+    void limit_IgnoresWindowsThatUseFewSlots() {
+        for (int window = 0; window < 5; window++) {
+            Permit permit = limiter.tryAcquire(Priority.HIGH);
+            now += TimeUnit.SECONDS.toNanos(1);
+            permit.release();
+        }
+        assertEquals(10, limiter.limit());
+    }
+
+    /**
+     * Opens a new window, fills every slot, then completes all the requests after 'latencyMillis'.
+     */
+    private void saturatedWindow(long latencyMillis) {
+        now += TimeUnit.SECONDS.toNanos(1); // Each window is one second in this test
+        List<Permit> permits = new ArrayList<>();
+        Permit permit;
+        while ((permit = limiter.tryAcquire(Priority.HIGH)) != null) {
+            permits.add(permit);
+        }
+        now += TimeUnit.MILLISECONDS.toNanos(latencyMillis);
+        permits.forEach(Permit::release);
+    }
+}
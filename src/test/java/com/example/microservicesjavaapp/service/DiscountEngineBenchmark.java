@@ -0,0 +1,146 @@
+package com.example.microservicesjavaapp.service;
+
+import com.example.microservicesjavaapp.model.Product;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Cost of evaluating one cart line's discount against 10,000 rules: the compiled DiscountEngine versus
+ * a straightforward scan that checks every rule for the line (product or category match, quantity tier
+ * and time window), as an unindexed rule store would.
+ * Rules mix product tiers, category tiers and time-windowed category rules. Reports time and bytes
+ * allocated per lookup on the calling thread; the engine is expected to allocate nothing.
+ *
+ * Not part of the default build; run with: mvn test -Pbenchmark -Dtest=DiscountEngineBenchmark
+ * Tunables: -Dbench.rules (default 10000), -Dbench.lines (default 4096), -Dbench.iterations (default 2000).
+ */
+@Tag("benchmark")
+public class DiscountEngineBenchmark {
+
+    private static final int RULES = Integer.getInteger("bench.rules", 10_000);
+    private static final int LINES = Integer.getInteger("bench.lines", 4_096);
+    private static final int ITERATIONS = Integer.getInteger("bench.iterations", 2_000);
+    private static final int CATEGORIES = 200;
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    @Test
+    void compiledIndexVersusRuleScan() {
+        Random random = new Random(42);
+        long now = System.currentTimeMillis();
+        List<DiscountIndex.Rule> rules = rules(random, now);
+        int products = RULES * 8 / 10 / 4;
+        Product[] lineProducts = new Product[LINES];
+        int[] lineQuantities = new int[LINES];
+        for (int i = 0; i < LINES; i++) {
+            long id = random.nextInt(products * 5 / 4) + 1L; // Some lines hit products without rules of their own
+            lineProducts[i] = new Product(id, "P" + id, "Product " + id, BigDecimal.TEN, "Category" + (id % CATEGORIES), 100);
+            lineQuantities[i] = 1 + random.nextInt(12);
+        }
+
+        DiscountEngine engine = new DiscountEngine(() -> rules, Clock.systemDefaultZone());
+        for (int i = 0; i < LINES; i++) {
+            assertEquals(0, scan(rules, lineProducts[i], lineQuantities[i], now)
+                    .compareTo(engine.percentage(lineProducts[i], lineQuantities[i])));
+        }
+
+        // Warm up both paths, then measure them alternately
+        measureEngine(engine, lineProducts, lineQuantities, ITERATIONS);
+        measureScan(rules, lineProducts, lineQuantities, now, Math.max(1, ITERATIONS / 100));
+        Result compiled = measureEngine(engine, lineProducts, lineQuantities, ITERATIONS);
+        Result scanned = measureScan(rules, lineProducts, lineQuantities, now, Math.max(1, ITERATIONS / 100));
+
+        System.out.printf("%n=== Discount lookup (%d rules, %d distinct lines) ===%n", rules.size(), LINES);
+        System.out.printf("%-24s %12s %12s%n", "", "rule scan", "compiled");
+        System.out.printf("%-24s %12.1f %12.1f%n", "time per lookup (ns)", scanned.nanos, compiled.nanos);
+        System.out.printf("%-24s %12.2f %12.2f%n", "allocated per lookup", scanned.allocatedBytes, compiled.allocatedBytes);
+    }
+
+    private Result measureEngine(DiscountEngine engine, Product[] products, int[] quantities, int iterations) {
+        long thread = Thread.currentThread().getId();
+        long allocatedBefore = THREADS.getThreadAllocatedBytes(thread);
+        long start = System.nanoTime();
+        int sink = 0;
+        for (int it = 0; it < iterations; it++) {
+            for (int i = 0; i < products.length; i++) {
+                sink += engine.percentage(products[i], quantities[i]).signum();
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocated = THREADS.getThreadAllocatedBytes(thread) - allocatedBefore;
+        return result(elapsed, allocated, (long) iterations * products.length, sink);
+    }
+
+    private Result measureScan(List<DiscountIndex.Rule> rules, Product[] products, int[] quantities, long now, int iterations) {
+        long thread = Thread.currentThread().getId();
+        long allocatedBefore = THREADS.getThreadAllocatedBytes(thread);
+        long start = System.nanoTime();
+        int sink = 0;
+        for (int it = 0; it < iterations; it++) {
+            for (int i = 0; i < products.length; i++) {
+                sink += scan(rules, products[i], quantities[i], now).signum();
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocated = THREADS.getThreadAllocatedBytes(thread) - allocatedBefore;
+        return result(elapsed, allocated, (long) iterations * products.length, sink);
+    }
+
+    private static BigDecimal scan(List<DiscountIndex.Rule> rules, Product product, int quantity, long now) {
+        BigDecimal best = BigDecimal.ZERO;
+        for (DiscountIndex.Rule rule : rules) {
+            boolean matches = rule.productId() != null ? rule.productId().equals(product.getId()) : rule.category().equals(product.getCategory());
+            if (matches && quantity >= rule.minQuantity() && rule.validFrom() <= now && now < rule.validUntil()
+                    && rule.percentage().compareTo(best) > 0) {
+                best = rule.percentage();
+            }
+        }
+        return best;
+    }
+
+    /**
+     * 80% product rules (four tiers per product), 10% category tiers, 10% time-windowed category rules,
+     * half of them active now.
+     */
+    private static List<DiscountIndex.Rule> rules(Random random, long now) {
+        List<DiscountIndex.Rule> rules = new ArrayList<>(RULES);
+        int productRules = RULES * 8 / 10;
+        for (int i = 0; i < productRules; i++) {
+            long productId = i / 4 + 1L;
+            int tier = i % 4;
+            rules.add(new DiscountIndex.Rule(productId, null, 1 + tier * 3, BigDecimal.valueOf(5 + tier * 5L),
+                    Long.MIN_VALUE, Long.MAX_VALUE));
+        }
+        int categoryTiers = RULES / 10;
+        for (int i = 0; i < categoryTiers; i++) {
+            rules.add(DiscountIndex.Rule.forCategory("Category" + (i % CATEGORIES), 1 + i / CATEGORIES,
+                    BigDecimal.valueOf(2 + i / CATEGORIES)));
+        }
+        while (rules.size() < RULES) {
+            long validFrom = random.nextBoolean() ? now - 3_600_000L : now + 3_600_000L; // Started an hour ago, or starts in one
+            rules.add(new DiscountIndex.Rule(null, "Category" + random.nextInt(CATEGORIES), 1 + random.nextInt(6),
+                    BigDecimal.valueOf(10 + random.nextInt(20)), validFrom, validFrom + 7_200_000L));
+        }
+        return rules;
+    }
+
+    private static Result result(long elapsedNanos, long allocatedBytes, long lookups, int sink) {
+        if (sink == Integer.MIN_VALUE) {
+            System.out.println(sink); // Keeps the lookups from being optimized away
+        }
+        return new Result((double) elapsedNanos / lookups, (double) allocatedBytes / lookups);
+    }
+
+    private record Result(double nanos, double allocatedBytes) {
+    }
+}
@@ -0,0 +1,164 @@
+package com.example.microservicesjavaapp.service;
+
+import com.example.microservicesjavaapp.model.Product;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the DiscountEngine and its compiled DiscountIndex.
+ * The engine runs over fixed rule sets and a clock the tests move by hand.
+ */
+public class DiscountEngineTest {
+
+    private static final long NOW = 1_700_000_000_000L;
+
+    private final Product laptop = new Product(101L, "PROD001", "Laptop", new BigDecimal("1200.00"), "Electronics", 100);
+    private final Product mouse = new Product(102L, "PROD002", "Mouse", new BigDecimal("25.00"), "Electronics", 100);
+    private final Product mug = new Product(104L, "PROD004", "Coffee Mug", new BigDecimal("15.00"), "HomeGoods", 100);
+
+    @Test
+    void percentage_PicksQuantityTierAndBestOfProductAndCategory() {
+        DiscountEngine engine = engine(List.of(
+                DiscountIndex.Rule.forCategory("Electronics", 1, new BigDecimal("10.00")),
+                productRule(101L, 3, "15.00"),
+                productRule(101L, 10, "25.00"),
+                productRule(102L, 1, "5.00")));
+
+        assertEquals(new BigDecimal("10.00"), engine.percentage(laptop, 2)); // Below the product's first tier
+        assertEquals(new BigDecimal("15.00"), engine.percentage(laptop, 3));
+        assertEquals(new BigDecimal("15.00"), engine.percentage(laptop, 9));
+        assertEquals(new BigDecimal("25.00"), engine.percentage(laptop, 50));
+        assertEquals(new BigDecimal("10.00"), engine.percentage(mouse, 1)); // The category beats the product rule
+        assertSame(BigDecimal.ZERO, engine.percentage(mug, 5)); // No rule for HomeGoods
+    }
+
+    @Test
+    void percentage_HigherTierNeverGivesLess() {
+        DiscountEngine engine = engine(List.of(productRule(101L, 1, "20.00"), productRule(101L, 5, "10.00")));
+
+        assertEquals(new BigDecimal("20.00"), engine.percentage(laptop, 6));
+    }
+
+    @Test
+    void percentage_FollowsTimeWindowsWithoutReloading() {
+        MutableClock clock = new MutableClock(NOW);
+        List<DiscountIndex.Rule> rules = List.of(
+                new DiscountIndex.Rule(null, "Electronics", 1, new BigDecimal("30.00"), NOW + 1_000, NOW + 2_000));
+        int[] loads = {0};
+        DiscountEngine engine = new DiscountEngine(() -> {
+            loads[0]++;
+            return rules;
+        }, clock);
+
+        assertSame(BigDecimal.ZERO, engine.percentage(laptop, 1)); // Not started yet
+        clock.millis = NOW + 1_000;
+        assertEquals(new BigDecimal("30.00"), engine.percentage(laptop, 1)); // Start is inclusive
+        clock.millis = NOW + 2_000;
+        assertSame(BigDecimal.ZERO, engine.percentage(laptop, 1)); // End is exclusive
+        assertEquals(1, loads[0]);
+    }
+
+    @Test
+    void reload_SwapsInTheNewRuleSet() {
+        List<DiscountIndex.Rule> rules = new ArrayList<>(List.of(DiscountIndex.Rule.forCategory("Electronics", 1, new BigDecimal("10.00"))));
+        DiscountEngine engine = new DiscountEngine(() -> List.copyOf(rules), Clock.fixed(Instant.ofEpochMilli(NOW), ZoneOffset.UTC));
+
+        rules.set(0, DiscountIndex.Rule.forCategory("Electronics", 1, new BigDecimal("12.50")));
+        assertEquals(new BigDecimal("10.00"), engine.percentage(laptop, 1)); // Unchanged until reloaded
+
+        engine.reload();
+        assertEquals(new BigDecimal("12.50"), engine.percentage(laptop, 1));
+    }
+
+    @Test
+    void reload_NeverSwapsInRulesOlderThanTheLastReload() throws Exception {
+        List<DiscountIndex.Rule> rules = new ArrayList<>(List.of(DiscountIndex.Rule.forCategory("Electronics", 1, new BigDecimal("10.00"))));
+        CountDownLatch slowLoadRead = new CountDownLatch(1);
+        CountDownLatch slowLoadGoes = new CountDownLatch(1);
+        Thread[] slow = new Thread[1];
+        DiscountEngine engine = new DiscountEngine(() -> {
+            List<DiscountIndex.Rule> read = List.copyOf(rules);
+            if (Thread.currentThread() == slow[0]) {
+                slowLoadRead.countDown();
+                awaitUninterruptibly(slowLoadGoes);
+            }
+            return read;
+        }, Clock.fixed(Instant.ofEpochMilli(NOW), ZoneOffset.UTC));
+
+        // A scheduled reload reads the rules, then stalls before swapping them in
+        slow[0] = new Thread(engine::reload);
+        slow[0].start();
+        assertTrue(slowLoadRead.await(10, TimeUnit.SECONDS));
+
+        // A change commits and its reload starts meanwhile: it waits for the stalled one
+        rules.set(0, DiscountIndex.Rule.forCategory("Electronics", 1, new BigDecimal("12.50")));
+        Thread afterCommit = new Thread(engine::reload);
+        afterCommit.start();
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (afterCommit.getState() != Thread.State.BLOCKED && afterCommit.isAlive() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        slowLoadGoes.countDown();
+        slow[0].join(10_000);
+        afterCommit.join(10_000);
+
+        assertEquals(new BigDecimal("12.50"), engine.percentage(laptop, 1));
+    }
+
+    private static DiscountEngine engine(List<DiscountIndex.Rule> rules) {
+        return new DiscountEngine(() -> rules, Clock.fixed(Instant.ofEpochMilli(NOW), ZoneOffset.UTC));
+    }
+
+    private static DiscountIndex.Rule productRule(Long productId, int minQuantity, String percentage) {
+        return new DiscountIndex.Rule(productId, null, minQuantity, new BigDecimal(percentage), Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static final class MutableClock extends Clock {
+
+        private long millis;
+
+        private MutableClock(long millis) {
+            this.millis = millis;
+        }
+
+        @Override
+        public long millis() {
+            return millis;
+        }
+
+        @Override
+        public Instant instant() {
+            return Instant.ofEpochMilli(millis);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.microservicesjavaapp.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for OffHeapCartLines.
+ * Small segments make the tables grow and their probe runs wrap, which the larger tests rely on.
+ */
+public class OffHeapCartLinesTest {
+
+    private final OffHeapCartLines lines = new OffHeapCartLines(2, 4);
+
+    @Test
+    void addSetAndRemove_KeepOneLinePerProduct() {
+        assertEquals(0, lines.add(1L, 101L, 2));
+        assertEquals(2, lines.add(1L, 101L, 3));
+        assertEquals(0, lines.add(1L, 102L, 1));
+        assertEquals(5, lines.quantity(1L, 101L));
+        assertEquals(1, lines.cartCount());
+        assertEquals(2, lines.lineCount());
+
+        assertEquals(5, lines.set(1L, 101L, 0)); // Removes the line
+        assertEquals(0, lines.quantity(1L, 101L));
+        assertEquals(0, lines.set(1L, 101L, 0)); // Nothing left to remove
+        assertEquals(1, lines.lineCount());
+
+        assertEquals(1, lines.set(1L, 102L, 0));
+        assertFalse(lines.hasLines(1L));
+        assertEquals(0, lines.cartCount());
+    }
+
+    @Test
+    void removeCart_VisitsAndDropsEveryLineOfTheCartOnly() {
+        lines.add(1L, 101L, 2);
+        lines.add(1L, 102L, 3);
+        lines.add(2L, 101L, 7);
+
+        Map<Long, Integer> removed = new HashMap<>();
+        assertEquals(2, lines.removeCart(1L, removed::put));
+
+        assertEquals(Map.of(101L, 2, 102L, 3), removed);
+        assertFalse(lines.hasLines(1L));
+        assertEquals(7, lines.quantity(2L, 101L));
+        assertEquals(0, lines.removeCart(1L, (productId, quantity) -> fail("The cart has no lines left")));
+    }
+
+    @Test
+    void manyCarts_SurviveGrowthAndDeletes() {
+        long before = lines.allocatedBytes();
+        Map<Long, Integer> expected = new HashMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 20_000; i++) {
+            long cartId = random.nextInt(5_000) + 1;
+            long productId = random.nextInt(8) + 101;
+            long key = cartId * 1_000 + productId;
+            if (random.nextInt(4) == 0) {
+                int previous = lines.set(cartId, productId, 0);
+                assertEquals(expected.getOrDefault(key, 0), previous);
+                expected.remove(key);
+            } else {
+                int previous = lines.add(cartId, productId, 1);
+                assertEquals(expected.getOrDefault(key, 0), previous);
+                expected.merge(key, 1, Integer::sum);
+            }
+        }
+
+        assertTrue(lines.allocatedBytes() > before);
+        assertEquals(expected.size(), lines.lineCount());
+        Map<Long, Integer> actual = new HashMap<>();
+        for (long cartId = 1; cartId <= 5_000; cartId++) {
+            long id = cartId;
+            int visited = lines.forEachLine(cartId, (productId, quantity) -> actual.put(id * 1_000 + productId, quantity));
+            assertEquals(visited > 0, lines.hasLines(cartId));
+        }
+        assertEquals(expected, actual);
+    }
+}
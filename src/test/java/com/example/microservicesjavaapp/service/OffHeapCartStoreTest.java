@@ -0,0 +1,114 @@
+package com.example.microservicesjavaapp.service;
+
+import com.example.microservicesjavaapp.dto.CartDto;
+import com.example.microservicesjavaapp.dto.CartItemDto;
+import com.example.microservicesjavaapp.model.Cart;
+import com.example.microservicesjavaapp.model.User;
+import com.example.microservicesjavaapp.repository.CartItemRepository;
+import com.example.microservicesjavaapp.repository.CartRepository;
+import com.example.microservicesjavaapp.repository.ProductRepository;
+import com.example.microservicesjavaapp.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Integration tests for the cart service on the off-heap cart store: lines stay out of 'cart_items'
+ * until checkout promotes them, and the stock they hold is still accounted for.
+ */
+@SpringBootTest(properties = {
+        "app.cart-store.engine=offheap",
+        "app.order-jobs.worker.enabled=false"})
+@ActiveProfiles("test")
+public class OffHeapCartStoreTest {
+
+    private static final Long LAPTOP = 101L; // PROD001, from data.sql
+    private static final Long BOOK = 103L; // PROD003, from data.sql
+
+    @Autowired
+    private CartService cartService;
+
+    @Autowired
+    private CartStore cartStore;
+
+    @Autowired
+    private CartReaper cartReaper;
+
+    @Autowired
+    private StockReservations stockReservations;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CartRepository cartRepository;
+
+    @Autowired
+    private CartItemRepository cartItemRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Test
+    void addAndRemove_KeepTheLinesInMemory() {
+        assertInstanceOf(OffHeapCartStore.class, cartStore);
+        CartDto cart = cartService.createCart(userRepository.save(new User(null, "offheap_shopper")).getId());
+        long rows = cartItemRepository.count();
+        long laptopsAvailable = stockReservations.available(LAPTOP);
+
+        cartService.addProductToCart(cart.getId(), "PROD001", 2);
+        CartItemDto laptops = cartService.addProductToCart(cart.getId(), "PROD001", 1);
+        cartService.addProductToCart(cart.getId(), "PROD003", 4);
+        cartService.removeProductFromCart(cart.getId(), BOOK);
+
+        assertEquals(3, laptops.getQuantity());
+        assertEquals(LAPTOP, laptops.getId()); // A line held in memory is identified by its product
+        List<CartItemDto> items = cartService.getCartProducts(cart.getId());
+        assertEquals(1, items.size());
+        assertEquals(LAPTOP, items.get(0).getId());
+        assertEquals("PROD001", items.get(0).getProduct().getCode());
+        assertEquals(3, items.get(0).getQuantity());
+        assertEquals(1, cartService.getCartsByUserId(cart.getUser().getId()).get(0).getItems().size());
+        assertEquals(0, new BigDecimal("3600.00").compareTo(cartService.getCartTotal(cart.getId()).getSubtotal()));
+        assertEquals(rows, cartItemRepository.count()); // Nothing written to 'cart_items'
+
+        assertEquals(laptopsAvailable - 3, stockReservations.available(LAPTOP));
+        assertEquals(0, stockReservations.reconcile()); // The database alone would count the 3 laptops as free
+        assertEquals(laptopsAvailable - 3, stockReservations.available(LAPTOP));
+    }
+
+    @Test
+    void processOrder_PromotesTheLinesToCartItems() {
+        CartDto cart = cartService.createCart(userRepository.save(new User(null, "offheap_buyer")).getId());
+        cartService.addProductToCart(cart.getId(), "PROD003", 5);
+        int stock = productRepository.findById(BOOK).orElseThrow().getStock();
+
+        cartService.processOrder(cart.getId());
+
+        Cart processed = cartRepository.findById(cart.getId()).orElseThrow();
+        assertEquals(Cart.CartStatus.PROCESSED, processed.getStatus());
+        assertEquals(1, cartItemRepository.findWithProductByCart(processed).size());
+        assertEquals(stock - 5, productRepository.findById(BOOK).orElseThrow().getStock());
+        assertEquals(5, cartService.getCartProducts(cart.getId()).get(0).getQuantity()); // Now read from 'cart_items'
+    }
+
+    @Test
+    void reaper_DiscardsTheLinesOfIdleCarts() {
+        CartDto cart = cartService.createCart(userRepository.save(new User(null, "offheap_idle")).getId());
+        cartService.addProductToCart(cart.getId(), "PROD003", 2);
+        long booksAvailable = stockReservations.available(BOOK);
+
+        cartReaper.sweep(LocalDateTime.now().plusMinutes(1)); // Every ACTIVE cart counts as idle
+
+        assertTrue(cartRepository.findById(cart.getId()).isEmpty());
+        assertEquals(booksAvailable + 2, stockReservations.available(BOOK));
+        assertEquals(0, stockReservations.reconcile());
+    }
+}
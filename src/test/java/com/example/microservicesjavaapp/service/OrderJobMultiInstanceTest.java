@@ -0,0 +1,127 @@
+package com.example.microservicesjavaapp.service;
+
+import com.example.microservicesjavaapp.MicroservicesJavaAppApplication;
+import com.example.microservicesjavaapp.model.Cart.CartStatus;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.h2.tools.Server;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs two servlet instances and one reactive instance of the application on one H2 server, as
+ * separate nodes sharing a database, and checks out carts through all of them. Every cart must be
+ * processed exactly once, its stock taken once, by workers spread over more than one node.
+ */
+public class OrderJobMultiInstanceTest {
+
+    private static final int CARTS = 30;
+    private static final long PRODUCT_ID = 101; // From data.sql
+    private static final String AUTHORIZATION = "Basic "
+            + Base64.getEncoder().encodeToString("user:password".getBytes(StandardCharsets.UTF_8));
+
+    @Test
+    void everyCheckoutIsProcessedOnceAcrossInstances() throws Exception {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        Server h2 = Server.createTcpServer("-tcpPort", String.valueOf(port), "-ifNotExists").start();
+        String url = "jdbc:h2:tcp://localhost:" + port + "/mem:jobs-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1";
+        List<ConfigurableApplicationContext> nodes = new ArrayList<>();
+        try {
+            nodes.add(start(url, "node-a", true, "test"));
+            nodes.add(start(url, "node-b", false, "test"));
+            nodes.add(start(url, "node-c", false, "test", "reactive"));
+
+            JdbcTemplate jdbcTemplate = nodes.get(0).getBean(JdbcTemplate.class);
+            int stockBefore = jdbcTemplate.queryForObject("SELECT stock FROM products WHERE id = ?", Integer.class, PRODUCT_ID);
+            long firstCartId = seed(jdbcTemplate);
+
+            // Each cart is checked out twice, on different nodes
+            HttpClient client = HttpClient.newHttpClient();
+            for (int i = 0; i < CARTS; i++) {
+                long cartId = firstCartId + i;
+                assertEquals(202, checkout(client, nodes.get(i % 3), cartId));
+                assertEquals(202, checkout(client, nodes.get((i + 1) % 3), cartId));
+            }
+
+            long deadline = System.currentTimeMillis() + 60_000;
+            while ((pending(jdbcTemplate, firstCartId) > 0 || queued(jdbcTemplate) > 0) && System.currentTimeMillis() < deadline) {
+                Thread.sleep(200);
+            }
+            assertEquals(0, pending(jdbcTemplate, firstCartId));
+            assertEquals(stockBefore - CARTS,
+                    jdbcTemplate.queryForObject("SELECT stock FROM products WHERE id = ?", Integer.class, PRODUCT_ID));
+            assertEquals(0, queued(jdbcTemplate));
+
+            int busyNodes = 0;
+            double completed = 0;
+            for (ConfigurableApplicationContext node : nodes) {
+                double jobs = node.getBean(MeterRegistry.class).counter("order.jobs.completed").count();
+                completed += jobs;
+                busyNodes += jobs > 0 ? 1 : 0;
+            }
+            assertEquals(CARTS, completed, 0.0); // No job ran twice
+            assertTrue(busyNodes >= 2, "Jobs should be spread over the nodes, " + busyNodes + " did any");
+        } finally {
+            nodes.forEach(ConfigurableApplicationContext::close);
+            h2.stop();
+        }
+    }
+
+    private ConfigurableApplicationContext start(String url, String nodeId, boolean initSchema, String... profiles) {
+        return new SpringApplicationBuilder(MicroservicesJavaAppApplication.class)
+                .profiles(profiles)
+                .run("--server.port=0", // Arguments, so they win over application.properties and the test profile
+                        "--spring.datasource.url=" + url,
+                        "--spring.sql.init.mode=" + (initSchema ? "always" : "never"), // data.sql must run once
+                        "--spring.jpa.show-sql=false",
+                        "--app.order-jobs.node-id=" + nodeId,
+                        "--app.order-jobs.poll-interval=PT0.1S",
+                        "--app.cart-reaper.enabled=false",
+                        "--app.cart-archiver.enabled=false");
+    }
+
+    private long seed(JdbcTemplate jdbcTemplate) {
+        Long firstCartId = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) + 1 FROM carts", Long.class);
+        jdbcTemplate.update("INSERT INTO carts (id, user_id, created_at, updated_at, status) "
+                        + "SELECT ? + X - 1, 1, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP, ? FROM SYSTEM_RANGE(1, ?)",
+                firstCartId, CartStatus.ACTIVE.name(), CARTS);
+        jdbcTemplate.update("INSERT INTO cart_items (cart_id, product_id, quantity) SELECT ? + X - 1, ?, 1 FROM SYSTEM_RANGE(1, ?)",
+                firstCartId, PRODUCT_ID, CARTS);
+        return firstCartId;
+    }
+
+    private int checkout(HttpClient client, ConfigurableApplicationContext node, long cartId) throws Exception {
+        String port = node.getEnvironment().getProperty("local.server.port");
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/carts/" + cartId + "/process"))
+                .header("Authorization", AUTHORIZATION)
+                .POST(HttpRequest.BodyPublishers.noBody())
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+
+    private int queued(JdbcTemplate jdbcTemplate) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM order_jobs", Integer.class);
+    }
+
+    private int pending(JdbcTemplate jdbcTemplate, long firstCartId) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM carts WHERE id >= ? AND id < ? AND status <> ?",
+                Integer.class, firstCartId, firstCartId + CARTS, CartStatus.PROCESSED.name());
+    }
+}
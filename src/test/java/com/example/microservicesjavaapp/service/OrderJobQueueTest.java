@@ -0,0 +1,122 @@
+package com.example.microservicesjavaapp.service;
+
+import com.example.microservicesjavaapp.model.OrderJob;
+import com.example.microservicesjavaapp.model.OrderJob.JobStatus;
+import com.example.microservicesjavaapp.repository.OrderJobRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Integration tests for the OrderJobQueue against the H2 database.
+ * The workers are off, so jobs only move when a test claims them; leases and backoffs are made to
+ * expire by moving their timestamps into the past.
+ */
+@SpringBootTest(properties = "app.order-jobs.worker.enabled=false")
+@ActiveProfiles("test")
+public class OrderJobQueueTest {
+
+    private OrderJobQueue queue;
+
+    @Autowired
+    private OrderJobRepository orderJobRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setup() {
+        orderJobRepository.deleteAll();
+        queue = new OrderJobQueue(orderJobRepository, transactionManager, new SimpleMeterRegistry(),
+                Duration.ofSeconds(30), 2, Duration.ofSeconds(10), Duration.ofSeconds(15));
+    }
+
+    @Test
+    void claim_HandsEachJobToOneInstanceOnly() {
+        assertTrue(queue.enqueue(1L));
+        assertFalse(queue.enqueue(1L)); // Checking out twice queues the cart once
+        assertTrue(queue.enqueue(2L));
+
+        List<OrderJob> first = queue.claim("node-a", 1);
+        List<OrderJob> second = queue.claim("node-b", 5);
+        assertEquals(1, first.size());
+        assertEquals(1, second.size());
+        assertNotEquals(first.get(0).getCartId(), second.get(0).getCartId());
+        assertTrue(queue.claim("node-c", 5).isEmpty());
+
+        queue.complete(first.get(0), "node-a");
+        queue.complete(second.get(0), "node-b");
+        assertEquals(0, orderJobRepository.count());
+    }
+
+    @Test
+    void fail_RetriesAfterBackoffThenDeadLetters() {
+        queue.enqueue(1L);
+        OrderJob job = queue.claim("node-a", 1).get(0);
+
+        queue.fail(job, "node-a", new IllegalStateException("boom"));
+        OrderJob retried = orderJobRepository.findById(job.getId()).orElseThrow();
+        assertEquals(JobStatus.PENDING, retried.getStatus());
+        assertEquals(1, retried.getAttempts());
+        assertTrue(retried.getAvailableAt().isAfter(LocalDateTime.now().plusSeconds(5)));
+        assertTrue(retried.getLastError().contains("boom"));
+        assertTrue(queue.claim("node-a", 1).isEmpty()); // Still backing off
+
+        makeDue(job.getId());
+        OrderJob secondAttempt = queue.claim("node-b", 1).get(0);
+        assertEquals(2, secondAttempt.getAttempts());
+
+        queue.fail(secondAttempt, "node-b", new IllegalStateException("boom again"));
+        OrderJob dead = orderJobRepository.findById(job.getId()).orElseThrow();
+        assertEquals(JobStatus.DEAD, dead.getStatus());
+        makeDue(job.getId());
+        assertTrue(queue.claim("node-a", 1).isEmpty());
+
+        // Checking the cart out again gives the job a fresh start
+        assertTrue(queue.enqueue(1L));
+        OrderJob requeued = queue.claim("node-a", 1).get(0);
+        assertEquals(job.getId(), requeued.getId());
+        assertEquals(1, requeued.getAttempts());
+        assertNull(requeued.getLastError());
+        assertFalse(queue.enqueue(1L)); // Live again: not queued twice
+
+        assertEquals(Duration.ofSeconds(10), queue.backoff(1));
+        assertEquals(Duration.ofSeconds(15), queue.backoff(2)); // 20 s, capped
+    }
+
+    @Test
+    void claim_ReclaimsJobsWhoseLeaseExpired() {
+        queue.enqueue(1L);
+        OrderJob job = queue.claim("node-a", 1).get(0);
+        assertTrue(queue.claim("node-b", 1).isEmpty());
+
+        // node-a dies without completing the job
+        jdbcTemplate.update("UPDATE order_jobs SET lease_until = ? WHERE id = ?", LocalDateTime.now().minusSeconds(1), job.getId());
+        OrderJob reclaimed = queue.claim("node-b", 1).get(0);
+        assertEquals("node-b", reclaimed.getLeaseOwner());
+        assertEquals(2, reclaimed.getAttempts());
+
+        queue.complete(job, "node-a"); // Too late: the lease is node-b's
+        assertEquals(1, orderJobRepository.count());
+        queue.complete(reclaimed, "node-b");
+        assertEquals(0, orderJobRepository.count());
+    }
+
+    private void makeDue(Long jobId) {
+        jdbcTemplate.update("UPDATE order_jobs SET available_at = ? WHERE id = ?", LocalDateTime.now().minusSeconds(1), jobId);
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.microservicesjavaapp.service;
+
+import com.example.microservicesjavaapp.model.OutboxEvent;
+import com.example.microservicesjavaapp.model.OutboxEvent.EventType;
+import com.example.microservicesjavaapp.repository.OutboxEventRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Integration tests for the OutboxDispatcher against the H2 database.
+ * The scheduled dispatcher is off; each test builds one over its own sink, with batches of 2 events.
+ */
+@SpringBootTest(properties = "app.outbox.dispatcher.enabled=false")
+@ActiveProfiles("test")
+public class OutboxDispatcherTest {
+
+    @Autowired
+    private OutboxEventRepository outboxEventRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @BeforeEach
+    void setup() {
+        outboxEventRepository.deleteAll();
+        for (long cartId = 1; cartId <= 5; cartId++) {
+            outboxEventRepository.save(new OutboxEvent(null, cartId, EventType.CART_CREATED, "{}", LocalDateTime.now()));
+        }
+    }
+
+    @Test
+    void dispatch_PublishesInIdOrderAndEmptiesTheOutbox() {
+        List<OutboxEvent> published = new ArrayList<>();
+        List<Integer> batches = new ArrayList<>();
+        OutboxDispatcher dispatcher = dispatcher(events -> {
+            batches.add(events.size());
+            published.addAll(events);
+        });
+
+        assertEquals(5, dispatcher.dispatch());
+        assertEquals(List.of(2, 2, 1), batches);
+        assertEquals(List.of(1L, 2L, 3L, 4L, 5L), published.stream().map(OutboxEvent::getAggregateId).toList());
+        assertEquals(0, outboxEventRepository.count());
+        assertEquals(5, meterRegistry.counter("outbox.events.dispatched").count());
+        assertEquals(5, meterRegistry.timer("outbox.lag").count());
+    }
+
+    @Test
+    void dispatch_KeepsBatchesTheSinkRejected() {
+        OutboxDispatcher failing = dispatcher(events -> {
+            throw new IllegalStateException("Sink unavailable");
+        });
+
+        assertEquals(0, failing.dispatch());
+        assertEquals(5, outboxEventRepository.count());
+        assertEquals(1, meterRegistry.counter("outbox.dispatch.failures").count());
+
+        List<OutboxEvent> published = new ArrayList<>();
+        assertEquals(5, dispatcher(published::addAll).dispatch()); // Delivered on the next run
+        assertEquals(5, published.size());
+    }
+
+    @Test
+    void dispatch_SkipsItsTurnWhileAnotherInstanceDispatches() throws Exception {
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(1);
+        CompletableFuture<Void> otherInstance = CompletableFuture.runAsync(() ->
+                new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+                    assertFalse(outboxEventRepository.lockDispatcher().isEmpty());
+                    locked.countDown();
+                    try {
+                        done.await(10, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }));
+        assertTrue(locked.await(10, TimeUnit.SECONDS));
+
+        List<OutboxEvent> published = new ArrayList<>();
+        OutboxDispatcher dispatcher = dispatcher(published::addAll);
+        assertEquals(0, dispatcher.dispatch());
+        assertEquals(5, outboxEventRepository.count());
+
+        done.countDown();
+        otherInstance.get(10, TimeUnit.SECONDS);
+        assertEquals(5, dispatcher.dispatch());
+    }
+
+    private OutboxDispatcher dispatcher(OutboxSink sink) {
+        return new OutboxDispatcher(outboxEventRepository, sink, transactionManager, meterRegistry, 2);
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.microservicesjavaapp.service;
+
+import com.example.microservicesjavaapp.service.RateLimiter.Decision;
+import com.example.microservicesjavaapp.service.RateLimiter.EndpointClass;
+import com.example.microservicesjavaapp.service.RateLimiter.Limit;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for RateLimiter.
+ * The clock only moves when a test advances it.
+ */
+public class RateLimiterTest {
+
+    private long now = TimeUnit.HOURS.toNanos(1);
+
+    private final RateLimiter rateLimiter = new RateLimiter(Map.of(
+            EndpointClass.CREATE_CART, new Limit(3, 1),
+            EndpointClass.CART_WRITE, new Limit(10, 10),
+            EndpointClass.CART_READ, new Limit(10, 10)), () -> now);
+
+    @Test
+    void tryAcquire_AllowsBurstThenRefillsOverTime() {
+        for (int remaining = 2; remaining >= 0; remaining--) {
+            Decision decision = rateLimiter.tryAcquire("alice", EndpointClass.CREATE_CART);
+            assertTrue(decision.allowed());
+            assertEquals(remaining, decision.remaining());
+        }
+
+        Decision throttled = rateLimiter.tryAcquire("alice", EndpointClass.CREATE_CART);
+        assertFalse(throttled.allowed());
+        Map<String, String> headers = new HashMap<>();
+        throttled.writeHeaders(headers::put);
+        assertEquals(Map.of("RateLimit-Limit", "3", "RateLimit-Remaining", "0", "RateLimit-Reset", "3", "Retry-After", "1"), headers);
+
+        // Other users and other endpoint classes have buckets of their own
+        assertTrue(rateLimiter.tryAcquire("bob", EndpointClass.CREATE_CART).allowed());
+        assertTrue(rateLimiter.tryAcquire("alice", EndpointClass.CART_WRITE).allowed());
+
+        now += TimeUnit.SECONDS.toNanos(1); // One token back
+        assertTrue(rateLimiter.tryAcquire("alice", EndpointClass.CREATE_CART).allowed());
+        assertFalse(rateLimiter.tryAcquire("alice", EndpointClass.CREATE_CART).allowed());
+    }
+
+    @Test
+    void evictIdle_DropsOnlyFullBuckets() {
+        rateLimiter.tryAcquire("alice", EndpointClass.CREATE_CART);
+        rateLimiter.tryAcquire("bob", EndpointClass.CART_READ);
+        now += TimeUnit.MILLISECONDS.toNanos(500); // Bob's bucket is full again, Alice's is not
+
+        assertEquals(1, rateLimiter.evictIdle());
+        assertEquals(1, rateLimiter.size());
+
+        now += TimeUnit.MILLISECONDS.toNanos(500);
+        assertEquals(1, rateLimiter.evictIdle());
+        assertEquals(0, rateLimiter.size());
+        assertEquals(2, rateLimiter.tryAcquire("alice", EndpointClass.CREATE_CART).remaining()); // A fresh, full bucket
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.microservicesjavaapp.service;
+
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Unit tests for ReactiveCartLocks.
+ */
+public class ReactiveCartLocksTest {
+
+    private final ReactiveCartLocks cartLocks = new ReactiveCartLocks();
+
+    @Test
+    void operationsOnTheSameCartNeverOverlap() {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+
+        Flux<Integer> operations = Flux.range(0, 50)
+                .flatMap(i -> cartLocks.withLock(1L, () -> Mono.fromCallable(() -> {
+                            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                            return i;
+                        })
+                        .delayElement(Duration.ofMillis(1))
+                        .doOnNext(value -> running.decrementAndGet()))
+                        .subscribeOn(Schedulers.parallel()), 50);
+
+        StepVerifier.create(operations).expectNextCount(50).verifyComplete();
+        assertEquals(1, maxRunning.get());
+        assertEquals(0, cartLocks.size()); // Idle carts are evicted
+    }
+
+    @Test
+    void operationsRunInArrivalOrderAndFailuresReleaseTheCart() {
+        List<Integer> order = new CopyOnWriteArrayList<>();
+        Sinks.Empty<Void> gate = Sinks.empty();
+
+        Mono<Void> first = cartLocks.withLock(1L, () -> gate.asMono().then(Mono.fromRunnable(() -> order.add(1))));
+        Mono<Void> failing = cartLocks.withLock(1L, () -> Mono.<Void>error(new IllegalStateException("boom")));
+        Mono<Void> third = cartLocks.withLock(1L, () -> Mono.fromRunnable(() -> order.add(3)));
+        Mono<Void> otherCart = cartLocks.withLock(2L, () -> Mono.fromRunnable(() -> order.add(2)));
+
+        first.subscribe();
+        failing.onErrorResume(e -> Mono.empty()).subscribe();
+        third.subscribe();
+        otherCart.block(Duration.ofSeconds(1)); // Another cart is not held up by cart 1
+        assertEquals(List.of(2), order);
+
+        gate.tryEmitEmpty();
+        cartLocks.withLock(1L, Mono::empty).block(Duration.ofSeconds(1));
+        assertEquals(List.of(2, 1, 3), order);
+        assertEquals(0, cartLocks.size());
+    }
+}
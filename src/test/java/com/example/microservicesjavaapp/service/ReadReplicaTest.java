@@ -0,0 +1,143 @@
+package com.example.microservicesjavaapp.service;
+
+import com.example.microservicesjavaapp.dto.CartDto;
+import com.example.microservicesjavaapp.dto.CartItemDto;
+import com.example.microservicesjavaapp.model.Cart;
+import com.example.microservicesjavaapp.model.User;
+import com.example.microservicesjavaapp.repository.CartRepository;
+import com.example.microservicesjavaapp.repository.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Integration tests for the read replica on two H2 databases. The ReplicaFeeder only copies the primary
+ * into the replica when a test asks it to, so the replica lags behind until then.
+ */
+@SpringBootTest(properties = {
+        "app.read-replica.enabled=true",
+        "app.read-replica.url=jdbc:h2:mem:replica-${random.uuid}",
+        "app.read-replica.read-your-writes-window=PT1M",
+        "app.read-replica.replication.enabled=true",
+        "app.read-replica.replication.interval=PT1H",
+        "app.order-jobs.worker.enabled=false"})
+@ActiveProfiles("test")
+public class ReadReplicaTest {
+
+    @Autowired
+    private CartService cartService;
+
+    @Autowired
+    private ReplicaFeeder replicaFeeder;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CartRepository cartRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private SingleFlight singleFlight;
+
+    @Test
+    void queries_AreServedByTheReplica_WhichLagsBehindThePrimary() throws Exception {
+        User user = userRepository.save(new User(null, "replica_reader"));
+        double replicaReads = reads("replica");
+
+        // Written without the cart service: nothing pins the user to the primary
+        ResponseStatusException notYetReplicated = assertThrows(ResponseStatusException.class,
+                () -> cartService.getCartsByUserId(user.getId()));
+        assertEquals(HttpStatus.NOT_FOUND, notYetReplicated.getStatusCode());
+
+        replicaFeeder.replicate();
+        assertTrue(cartService.getCartsByUserId(user.getId()).isEmpty());
+
+        Cart cart = new Cart();
+        cart.setUser(user);
+        cartRepository.save(cart);
+        assertTrue(cartService.getCartsByUserId(user.getId()).isEmpty()); // Still the replica's old copy
+
+        replicaFeeder.replicate();
+        assertEquals(1, cartService.getCartsByUserId(user.getId()).size());
+        assertEquals(replicaReads + 4, reads("replica"));
+    }
+
+    @Test
+    void ownChanges_AreReadFromThePrimaryWithinTheWindow() throws Exception {
+        User user = userRepository.save(new User(null, "replica_writer"));
+        replicaFeeder.replicate();
+        double replicaReads = reads("replica");
+        double primaryReads = reads("primary");
+
+        CartDto cart = cartService.createCart(user.getId());
+        assertEquals(1, cartService.getCartsByUserId(user.getId()).size()); // Not on the replica yet
+
+        cartService.addProductToCart(cart.getId(), "PROD001", 2); // From data.sql
+        List<CartItemDto> items = cartService.getCartProducts(cart.getId());
+        assertEquals(1, items.size());
+        assertEquals(2, items.get(0).getQuantity());
+        assertEquals(1, cartService.getCartTotal(cart.getId()).getSubtotal().signum());
+
+        assertEquals(replicaReads, reads("replica"));
+        assertEquals(primaryReads + 3, reads("primary"));
+    }
+
+    @Test
+    void ownChanges_NeverJoinAReplicaReadAlreadyInFlight() throws Exception {
+        User user = userRepository.save(new User(null, "replica_coalescer"));
+        replicaFeeder.replicate();
+
+        // A replica read of the user's carts, started before the write and still running
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService reader = Executors.newSingleThreadExecutor();
+        try {
+            Future<List<CartDto>> stale = reader.submit(() -> singleFlight.execute("user-carts",
+                    List.of(ReplicaReads.Target.REPLICA, user.getId()), () -> {
+                        started.countDown();
+                        await(release);
+                        return List.<CartDto>of();
+                    }));
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+
+            cartService.createCart(user.getId());
+            // Runs on its own, on the primary, rather than waiting for the stale read
+            assertEquals(1, assertTimeoutPreemptively(Duration.ofSeconds(10), () -> cartService.getCartsByUserId(user.getId())).size());
+
+            release.countDown();
+            assertTrue(stale.get(10, TimeUnit.SECONDS).isEmpty());
+        } finally {
+            release.countDown();
+            reader.shutdownNow();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private double reads(String target) {
+        return meterRegistry.counter("replica.reads", "target", target).count();
+    }
+}
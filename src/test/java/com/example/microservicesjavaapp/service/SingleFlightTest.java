@@ -0,0 +1,127 @@
+package com.example.microservicesjavaapp.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for SingleFlight.
+ * The first read of each test blocks until the test has seen the other callers join it.
+ */
+public class SingleFlightTest {
+
+    private static final int CALLERS = 4;
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final SingleFlight singleFlight = new SingleFlight(meterRegistry);
+
+    @Test
+    void execute_ConcurrentIdenticalReadsShareOneRun() throws Exception {
+        AtomicInteger runs = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService callers = Executors.newFixedThreadPool(CALLERS);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < CALLERS; i++) {
+                results.add(callers.submit(() -> singleFlight.execute("cart-items", 1L, () -> {
+                    runs.incrementAndGet();
+                    await(release);
+                    return "items of cart 1";
+                })));
+            }
+            awaitCalls("coalesced", CALLERS - 1);
+            release.countDown();
+            for (Future<String> result : results) {
+                assertEquals("items of cart 1", result.get(10, TimeUnit.SECONDS));
+            }
+        } finally {
+            callers.shutdownNow();
+        }
+        assertEquals(1, runs.get());
+
+        // The read is over: the next one runs again
+        assertEquals("fresh", singleFlight.execute("cart-items", 1L, () -> "fresh"));
+        assertEquals(2, count("leader"));
+    }
+
+    @Test
+    void execute_SharesTheException() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService callers = Executors.newFixedThreadPool(2);
+        try {
+            List<Future<Object>> results = new ArrayList<>();
+            for (int i = 0; i < 2; i++) {
+                results.add(callers.submit(() -> singleFlight.execute("cart-items", 99L, () -> {
+                    await(release);
+                    throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Cart not found");
+                })));
+            }
+            awaitCalls("coalesced", 1);
+            release.countDown();
+            for (Future<Object> result : results) {
+                Exception exception = assertThrows(Exception.class, () -> result.get(10, TimeUnit.SECONDS));
+                assertInstanceOf(ResponseStatusException.class, exception.getCause());
+            }
+        } finally {
+            callers.shutdownNow();
+        }
+    }
+
+    @Test
+    void executeMono_SubscribersShareOneRun() {
+        AtomicInteger runs = new AtomicInteger();
+        Sinks.One<String> database = Sinks.one();
+        Mono<String> read = singleFlight.executeMono("user-carts", 1L, () -> {
+            runs.incrementAndGet();
+            return database.asMono();
+        });
+
+        List<String> results = new ArrayList<>();
+        for (int i = 0; i < CALLERS; i++) {
+            read.subscribe(results::add);
+        }
+        database.tryEmitValue("carts of user 1");
+
+        assertEquals(List.of("carts of user 1", "carts of user 1", "carts of user 1", "carts of user 1"), results);
+        assertEquals(1, runs.get());
+        assertEquals(CALLERS - 1, count("coalesced"));
+        assertEquals("fresh", singleFlight.executeMono("user-carts", 1L, () -> Mono.just("fresh")).block());
+    }
+
+    private void awaitCalls(String role, int expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (count(role) < expected) {
+            assertTrue(System.nanoTime() < deadline, "callers did not join the read in flight");
+            Thread.sleep(5);
+        } // A caller is counted once it holds the read in flight, so it gets its result even if it has not blocked yet
+    }
+
+    private int count(String role) {
+        return meterRegistry.find("singleflight.calls").tag("role", role).counters().stream()
+                .mapToInt(counter -> (int) counter.count()).sum();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package com.example.microservicesjavaapp.service;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Flash sale on one SKU: thousands of concurrent shoppers reserve, and some give back, units of a
+ * single product. Compares the lock-free StockReservations counter with the same bookkeeping behind one
+ * lock per product, which is what a SELECT ... FOR UPDATE (or a conditional UPDATE) on the product row
+ * amounts to. Each add-to-cart also does 'bench.ioMicros' of database I/O, modelled as a park: the row
+ * lock is held across it, the lock-free counter is not. A second run without I/O isolates the cost of
+ * the counters themselves. Checks that neither ever sells more than the stock.
+ *
+ * Not part of the default build; run with: mvn test -Pbenchmark -Dtest=StockReservationContentionBenchmark
+ * Tunables: -Dbench.shoppers (default 4096), -Dbench.threads (default 64), -Dbench.stock (default 100000),
+ * -Dbench.attempts (default 20, reservations per shopper), -Dbench.ioMicros (default 200).
+ */
+@Tag("benchmark")
+public class StockReservationContentionBenchmark {
+
+    private static final int SHOPPERS = Integer.getInteger("bench.shoppers", 4_096);
+    private static final int THREADS = Integer.getInteger("bench.threads", 64);
+    private static final long STOCK = Long.getLong("bench.stock", 100_000L);
+    private static final int ATTEMPTS = Integer.getInteger("bench.attempts", 20);
+    private static final long IO_NANOS = TimeUnit.MICROSECONDS.toNanos(Long.getLong("bench.ioMicros", 200L));
+    private static final Long SKU = 1L;
+
+    @Test
+    void oneSkuManyShoppers() throws Exception {
+        run(0); // Warm-up
+        Result[] withoutIo = run(0);
+        Result[] withIo = run(IO_NANOS);
+
+        System.out.printf("%n=== Flash sale: %d shoppers x %d reservations on one SKU (%d threads, stock %d) ===%n",
+                SHOPPERS, ATTEMPTS, THREADS, STOCK);
+        System.out.printf("%-32s %14s %14s%n", "", "row lock", "lock-free");
+        System.out.printf("%-32s %14.0f %14.0f%n", "ops/s, counters only", withoutIo[0].opsPerSecond(), withoutIo[1].opsPerSecond());
+        System.out.printf("%-32s %14.0f %14.0f%n", "ops/s, " + TimeUnit.NANOSECONDS.toMicros(IO_NANOS) + " us I/O per operation",
+                withIo[0].opsPerSecond(), withIo[1].opsPerSecond());
+        System.out.printf("%-32s %14d %14d%n", "units sold", withIo[0].held, withIo[1].held);
+        System.out.printf("%-32s %14d %14d%n", "reservations refused", withIo[0].refused, withIo[1].refused);
+    }
+
+    /**
+     * Runs the sale against a row lock, then against StockReservations.
+     */
+    private Result[] run(long ioNanos) throws Exception {
+        long[] available = {STOCK};
+        Object rowLock = new Object();
+        Result locked = run(quantity -> {
+            synchronized (rowLock) {
+                if (available[0] < quantity) {
+                    return false;
+                }
+                available[0] -= quantity;
+                io(ioNanos); // Insert the cart item and commit, still holding the row lock
+                return true;
+            }
+        }, quantity -> {
+            synchronized (rowLock) {
+                available[0] += quantity;
+                io(ioNanos);
+            }
+        });
+        assertEquals(STOCK - locked.held, available[0]);
+
+        StockReservations reservations = new StockReservations(productId -> STOCK);
+        Result lockFree = run(quantity -> {
+            StockReservations.StockChanges changes = reservations.changes();
+            boolean reserved = changes.tryReserve(SKU, quantity);
+            if (reserved) {
+                io(ioNanos); // Insert the cart item and commit; nothing is locked
+            }
+            changes.complete(true);
+            return reserved;
+        }, quantity -> {
+            StockReservations.StockChanges changes = reservations.changes();
+            changes.release(SKU, quantity);
+            io(ioNanos);
+            changes.complete(true);
+        });
+        assertEquals(STOCK - lockFree.held, reservations.available(SKU));
+        return new Result[] {locked, lockFree};
+    }
+
+    private static void io(long nanos) {
+        if (nanos > 0) {
+            LockSupport.parkNanos(nanos);
+        }
+    }
+
+    /**
+     * Every shopper tries to reserve 1 or 2 units ATTEMPTS times and gives back one reservation in four.
+     */
+    private Result run(Reserve reserve, Release release) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        LongAdder held = new LongAdder();
+        LongAdder refused = new LongAdder();
+        LongAdder operations = new LongAdder();
+        List<Future<Void>> futures = new ArrayList<>(SHOPPERS);
+        for (int s = 0; s < SHOPPERS; s++) {
+            int shopper = s;
+            futures.add(pool.submit(() -> {
+                start.await();
+                for (int i = 0; i < ATTEMPTS; i++) {
+                    int quantity = 1 + (shopper + i) % 2;
+                    operations.increment();
+                    if (!reserve.reserve(quantity)) {
+                        refused.increment();
+                    } else if ((shopper + i) % 4 == 0) {
+                        release.release(quantity);
+                        operations.increment();
+                    } else {
+                        held.add(quantity);
+                    }
+                }
+                return null;
+            }));
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(10, TimeUnit.MINUTES), "benchmark did not finish");
+        long elapsed = System.nanoTime() - begin;
+        for (Future<Void> future : futures) {
+            future.get(); // Surfaces any failure inside a shopper
+        }
+        assertTrue(held.sum() <= STOCK, "sold more than the stock");
+        return new Result(held.sum(), refused.sum(), operations.sum(), elapsed);
+    }
+
+    private interface Reserve {
+        boolean reserve(int quantity);
+    }
+
+    private interface Release {
+        void release(int quantity);
+    }
+
+    private record Result(long held, long refused, long operations, long elapsedNanos) {
+        double opsPerSecond() {
+            return operations / (elapsedNanos / 1e9);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.microservicesjavaapp.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for StockReservations.
+ * The "database" is a map of unreserved units per product that the tests change by hand.
+ */
+public class StockReservationsTest {
+
+    private static final Long CONSOLE = 1L;
+
+    private final Map<Long, Long> database = new HashMap<>(Map.of(CONSOLE, 5L));
+    private final StockReservations reservations = new StockReservations(database::get);
+
+    @Test
+    void reserve_NeverTakesMoreThanAvailable() {
+        reservations.changes().reserve(CONSOLE, 3);
+
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+                () -> reservations.changes().reserve(CONSOLE, 3));
+        assertEquals(HttpStatus.CONFLICT, exception.getStatusCode());
+        assertEquals("Insufficient stock", exception.getReason());
+        assertEquals(2, reservations.available(CONSOLE)); // The refused reservation took nothing
+    }
+
+    @Test
+    void complete_ReturnsReservationsOnRollbackAndReleasesOnCommit() {
+        StockReservations.StockChanges rolledBack = reservations.changes();
+        rolledBack.reserve(CONSOLE, 4);
+        assertEquals(1, reservations.available(CONSOLE));
+        rolledBack.complete(false);
+        assertEquals(5, reservations.available(CONSOLE));
+
+        StockReservations.StockChanges added = reservations.changes();
+        added.reserve(CONSOLE, 4);
+        added.complete(true);
+        StockReservations.StockChanges removed = reservations.changes();
+        removed.release(CONSOLE, 4);
+        assertEquals(1, reservations.available(CONSOLE)); // Not back until the removal commits
+        removed.complete(true);
+        removed.complete(true); // Only the first completion counts
+        assertEquals(5, reservations.available(CONSOLE));
+    }
+
+    @Test
+    void reconcile_CorrectsDriftOnlyWhenNoChangeIsInFlight() {
+        reservations.changes().reserve(CONSOLE, 1); // Never completed: its transaction is still open
+        database.put(CONSOLE, 14L); // Restocked by 10 units, as the database sees it
+
+        assertEquals(0, reservations.reconcile());
+        assertEquals(4, reservations.available(CONSOLE));
+
+        StockReservations idle = new StockReservations(database::get);
+        StockReservations.StockChanges settled = idle.changes();
+        settled.reserve(CONSOLE, 1);
+        settled.complete(true);
+        database.put(CONSOLE, 20L);
+
+        assertEquals(1, idle.reconcile());
+        assertEquals(20, idle.available(CONSOLE));
+    }
+}
@@ -0,0 +1,120 @@
+package com.example.microservicesjavaapp.service;
+
+import com.example.microservicesjavaapp.model.User;
+import com.example.microservicesjavaapp.repository.CartItemRepository;
+import com.example.microservicesjavaapp.repository.UserRepository;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.AopTestUtils;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Latency of add-to-cart with the lines written synchronously to 'cart_items' (the JPA cart store)
+ * against the write-behind cart store, through the same CartServiceImpl: the store is swapped under
+ * the service between the runs. Each run adds 'bench.adds' products round-robin over 'bench.carts'
+ * fresh carts, so most adds update an existing line. The write-behind run then reports the one flush
+ * that writes its whole backlog. The scheduled flush is held off so it never lands inside a sample.
+ *
+ * Not part of the default build; run with: mvn test -Pbenchmark -Dtest=WriteBehindBenchmark
+ * Tunables: -Dbench.carts (default 200), -Dbench.adds (default 20000). Add
+ * -Dapp.cart-store.write-behind.journal.sync=true to force every journal record to disk.
+ */
+@Tag("benchmark")
+@SpringBootTest(properties = {
+        "spring.jpa.show-sql=false",
+        "logging.level.org.hibernate.SQL=WARN",
+        "logging.level.org.hibernate.orm.jdbc.bind=WARN",
+        "logging.level.com.example.microservicesjavaapp=WARN",
+        "app.cart-store.engine=write-behind",
+        "app.cart-store.write-behind.flush-interval=PT1H",
+        "app.cart-store.write-behind.journal.path=${java.io.tmpdir}/cart-journal-bench-${random.uuid}.bin",
+        "app.order-jobs.worker.enabled=false"
+})
+@ActiveProfiles("test")
+public class WriteBehindBenchmark {
+
+    private static final int CARTS = Integer.getInteger("bench.carts", 200);
+    private static final int ADDS = Integer.getInteger("bench.adds", 20_000);
+    private static final String[] PRODUCTS = {"PROD001", "PROD002", "PROD003"}; // From data.sql
+
+    @Autowired
+    private CartService cartService;
+
+    @Autowired
+    private WriteBehindCartStore writeBehindCartStore;
+
+    @Autowired
+    private CartItemRepository cartItemRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void addToCartLatency() {
+        jdbcTemplate.update("UPDATE products SET stock = ?", 100_000_000); // Before the stock counters are loaded
+        CartServiceImpl service = AopTestUtils.getUltimateTargetObject(cartService);
+        JpaCartStore synchronous = new JpaCartStore(cartItemRepository);
+
+        ReflectionTestUtils.setField(service, "cartStore", synchronous);
+        Latency sync;
+        try {
+            run("warmup-sync");
+            sync = run("sync");
+        } finally {
+            ReflectionTestUtils.setField(service, "cartStore", writeBehindCartStore);
+        }
+
+        run("warmup-write-behind");
+        writeBehindCartStore.flush();
+        Latency writeBehind = run("write-behind");
+        int backlog = writeBehindCartStore.pendingLines();
+        long start = System.nanoTime();
+        int flushed = writeBehindCartStore.flush();
+        long flushMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        System.out.printf("%n=== Add-to-cart latency: %d adds over %d carts ===%n", ADDS, CARTS);
+        System.out.printf("%-16s %12s %12s%n", "", "sync", "write-behind");
+        System.out.printf("%-16s %12.1f %12.1f%n", "mean (us)", sync.meanMicros, writeBehind.meanMicros);
+        System.out.printf("%-16s %12.1f %12.1f%n", "p50 (us)", sync.p50Micros, writeBehind.p50Micros);
+        System.out.printf("%-16s %12.1f %12.1f%n", "p99 (us)", sync.p99Micros, writeBehind.p99Micros);
+        System.out.printf("flush           : %d pending lines written in %d ms%n", flushed, flushMillis);
+
+        assertEquals(backlog, flushed);
+    }
+
+    private Latency run(String name) {
+        Long[] cartIds = new Long[CARTS];
+        for (int i = 0; i < CARTS; i++) {
+            User user = userRepository.save(new User(null, "bench_" + name + "_" + i));
+            cartIds[i] = cartService.createCart(user.getId()).getId();
+        }
+        long[] samples = new long[ADDS];
+        for (int i = 0; i < ADDS; i++) {
+            long start = System.nanoTime();
+            cartService.addProductToCart(cartIds[i % CARTS], PRODUCTS[(i / CARTS) % PRODUCTS.length], 1);
+            samples[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(samples);
+        double mean = Arrays.stream(samples).average().orElse(0) / 1_000.0;
+        return new Latency(mean, percentile(samples, 0.50), percentile(samples, 0.99));
+    }
+
+    private static double percentile(long[] sorted, double fraction) {
+        return sorted[(int) Math.min(sorted.length - 1, Math.ceil(sorted.length * fraction) - 1)] / 1_000.0;
+    }
+
+    private record Latency(double meanMicros, double p50Micros, double p99Micros) {
+    }
+}
@@ -0,0 +1,156 @@
+package com.example.microservicesjavaapp.service;
+
+import com.example.microservicesjavaapp.dto.CartDto;
+import com.example.microservicesjavaapp.dto.CartItemDto;
+import com.example.microservicesjavaapp.model.Cart;
+import com.example.microservicesjavaapp.model.CartItem;
+import com.example.microservicesjavaapp.model.User;
+import com.example.microservicesjavaapp.repository.CartItemRepository;
+import com.example.microservicesjavaapp.repository.CartRepository;
+import com.example.microservicesjavaapp.repository.ProductRepository;
+import com.example.microservicesjavaapp.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Integration tests for the cart service on the write-behind cart store. The scheduled flush is held off,
+ * so each test flushes when it wants to. A restart is a second store opened on a copy of the journal file,
+ * which is what a killed process leaves on disk.
+ */
+@SpringBootTest(properties = {
+        "app.cart-store.engine=write-behind",
+        "app.cart-store.write-behind.flush-interval=PT1H",
+        "app.cart-store.write-behind.batch-size=1",
+        "app.order-jobs.worker.enabled=false"})
+@ActiveProfiles("test")
+public class WriteBehindCartStoreTest {
+
+    private static final Long LAPTOP = 101L; // PROD001, from data.sql
+    private static final Long SMARTPHONE = 102L; // PROD002, from data.sql
+    private static final Long BOOK = 103L; // PROD003, from data.sql
+    // A fresh journal per run, set below: a '${random.uuid}' property resolves to a new value on every lookup
+    private static final Path JOURNAL = Path.of(System.getProperty("java.io.tmpdir"), "cart-journal-" + UUID.randomUUID() + ".bin");
+
+    @Autowired
+    private CartService cartService;
+
+    @Autowired
+    private WriteBehindCartStore cartStore;
+
+    @Autowired
+    private StockReservations stockReservations;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CartRepository cartRepository;
+
+    @Autowired
+    private CartItemRepository cartItemRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @DynamicPropertySource
+    static void journal(DynamicPropertyRegistry registry) {
+        registry.add("app.cart-store.write-behind.journal.path", JOURNAL::toString);
+    }
+
+    @Test
+    void changes_AreReadBackAtOnceAndWrittenCoalescedByTheFlush() {
+        CartDto cart = newCart("write_behind_shopper");
+        long laptopsAvailable = stockReservations.available(LAPTOP);
+
+        for (int i = 0; i < 3; i++) {
+            cartService.addProductToCart(cart.getId(), "PROD001", 1);
+        }
+        cartService.addProductToCart(cart.getId(), "PROD003", 2);
+        cartService.removeProductFromCart(cart.getId(), BOOK);
+
+        assertTrue(savedLines(cart).isEmpty()); // Nothing written yet
+        List<CartItemDto> items = cartService.getCartProducts(cart.getId());
+        assertEquals(1, items.size());
+        assertEquals(3, items.get(0).getQuantity());
+        assertEquals(0, stockReservations.reconcile()); // The pending laptops still count as reserved
+        assertEquals(laptopsAvailable - 3, stockReservations.available(LAPTOP));
+
+        cartStore.flush();
+
+        assertEquals(Map.of(LAPTOP, 3), savedLines(cart)); // One row for three changes, none for the book
+        assertEquals(0, cartStore.pendingLines());
+        assertEquals(0, stockReservations.reconcile());
+        assertEquals(3, cartService.getCartProducts(cart.getId()).get(0).getQuantity());
+    }
+
+    @Test
+    void processOrder_WritesThePendingLinesItSettles() {
+        CartDto cart = newCart("write_behind_buyer");
+        cartService.addProductToCart(cart.getId(), "PROD003", 5);
+        int stock = productRepository.findById(BOOK).orElseThrow().getStock();
+
+        cartService.processOrder(cart.getId());
+
+        assertEquals(Map.of(BOOK, 5), savedLines(cart));
+        assertEquals(stock - 5, productRepository.findById(BOOK).orElseThrow().getStock());
+        assertEquals(0, cartStore.pendingLines());
+    }
+
+    @Test
+    void restartAfterAKillMidFlush_ReplaysTheJournal() throws Exception {
+        CartDto first = newCart("write_behind_first");
+        CartDto second = newCart("write_behind_second");
+        cartService.addProductToCart(first.getId(), "PROD001", 2);
+        cartService.addProductToCart(first.getId(), "PROD002", 1);
+        cartService.removeProductFromCart(first.getId(), SMARTPHONE);
+        cartService.addProductToCart(second.getId(), "PROD003", 4);
+
+        // The process is killed mid-flush: the first cart's batch committed, the second's did not, and the
+        // journal on disk still has its checkpoint from before the flush
+        Path crashed = Files.copy(JOURNAL, JOURNAL.resolveSibling(JOURNAL.getFileName() + ".crashed"));
+        cartStore.flush();
+        jdbcTemplate.update("DELETE FROM cart_items WHERE cart_id = ?", second.getId());
+
+        WriteBehindCartStore restarted = new WriteBehindCartStore(cartItemRepository, cartRepository, productRepository,
+                jdbcTemplate, transactionManager, new SimpleMeterRegistry(), crashed, 1024, false, 1);
+        try {
+            assertEquals(0, restarted.pendingLines()); // Replayed and flushed on startup
+            assertEquals(Map.of(LAPTOP, 2), savedLines(first)); // Replaying the committed batch changed nothing
+            assertEquals(Map.of(BOOK, 4), savedLines(second));
+        } finally {
+            restarted.destroy();
+        }
+    }
+
+    private CartDto newCart(String username) {
+        return cartService.createCart(userRepository.save(new User(null, username)).getId());
+    }
+
+    private Map<Long, Integer> savedLines(CartDto cart) {
+        Cart entity = cartRepository.findById(cart.getId()).orElseThrow();
+        return cartItemRepository.findWithProductByCart(entity).stream()
+                .collect(Collectors.toMap(item -> item.getProduct().getId(), CartItem::getQuantity));
+    }
+}